@@ -43,4 +43,11 @@ public class UtilHelper {
         }
         return date.format(DateTimeFormatter.ISO_LOCAL_DATE);
     }
+
+    /**
+     * Canonical ticker key stored in every collection: trimmed and upper-case.
+     */
+    public static String canonicalTicker(String ticker) {
+        return ticker == null ? null : ticker.trim().toUpperCase();
+    }
 }
@@ -0,0 +1,255 @@
+package org.myswan.config;
+
+import org.bson.Document;
+
+import java.util.*;
+
+/**
+ * Short BSON keys for the daily history collections (stockHistory, optionsHistory, patternHistory).
+ *
+ * Every mapping is explicit: Java property name to short key, per collection and per embedded object.
+ * Fields that are filtered, sorted, indexed or $set by name (ticker, histDate, optionId, eventId,
+ * metricsInfo, ...) are never mapped, so queries, indexes and archive pruning work on both layouts.
+ * {@link #expand} restores the property names before a document is mapped to Stock, Options or
+ * Pattern, which keeps one entity class per collection; documents written in the long layout pass
+ * through unchanged, so a collection can hold both layouts while it is being migrated.
+ */
+public final class CompactSchema {
+
+    public static final List<String> COLLECTIONS = List.of("stockHistory", "optionsHistory", "patternHistory");
+
+    private static final Map<String, Mapping> MAPPINGS = Map.of(
+            "stockHistory", stockMapping().validated(Set.of()),
+            // iv is stored under its own (already short) name
+            "optionsHistory", optionsMapping().validated(Set.of("iv")),
+            "patternHistory", patternMapping().validated(Set.of()));
+
+    private CompactSchema() {
+    }
+
+    public static boolean covers(String collection) {
+        return MAPPINGS.containsKey(collection);
+    }
+
+    /**
+     * Rewrite a document of the collection to short keys, in place. Drops the _class hint, which
+     * history reads never need since each collection maps to a single entity class.
+     */
+    public static Document compact(String collection, Document doc) {
+        Mapping mapping = MAPPINGS.get(collection);
+        if (mapping == null || doc == null) return doc;
+        doc.remove("_class");
+        mapping.compact(doc);
+        return doc;
+    }
+
+    /**
+     * Rewrite a document of the collection back to property names, in place.
+     */
+    public static Document expand(String collection, Document doc) {
+        Mapping mapping = MAPPINGS.get(collection);
+        if (mapping == null || doc == null) return doc;
+        mapping.expand(doc);
+        return doc;
+    }
+
+    /**
+     * Whether the document still has top-level keys of the other layout than the one requested.
+     */
+    public static boolean needsRewrite(String collection, Document doc, boolean toCompact) {
+        Mapping mapping = MAPPINGS.get(collection);
+        if (mapping == null || doc == null) return false;
+        if (toCompact) {
+            return doc.containsKey("_class") || doc.keySet().stream().anyMatch(mapping.toShort::containsKey);
+        }
+        return doc.keySet().stream().anyMatch(mapping.toLong::containsKey);
+    }
+
+    /**
+     * Property name to short key, with embedded objects as "parent.property".
+     */
+    public static Map<String, String> dictionary(String collection) {
+        Map<String, String> dictionary = new LinkedHashMap<>();
+        Mapping mapping = MAPPINGS.get(collection);
+        if (mapping != null) mapping.describe("", dictionary);
+        return dictionary;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Dictionaries
+    // ---------------------------------------------------------------------------------------------
+
+    private static Mapping stockMapping() {
+        Mapping rating = new Mapping("rating", Set.of())
+                .map("btAnalysts", "ba").map("btAnalystRating", "bar").map("btShortRating", "bsr")
+                .map("btLongRating", "blr").map("btRating", "br").map("btTrend", "btt")
+                .map("zacksRank", "zk").map("zacksRating", "zr")
+                .map("siusScore", "ss").map("siusRating", "sr").map("siusDays", "sd")
+                .map("tipRating", "tr").map("tipBuyHoldSell", "tb")
+                .map("tradingViewTechRating", "tvt").map("tradingViewAnalystsRating", "tva")
+                .map("tradingViewMARating", "tvm").map("tradingViewOSRating", "tvo")
+                .map("tradingViewBullBearPower", "tvb")
+                .map("tickeronRating", "kr").map("tickeronRatingAt", "kra").map("tickeronRatingOn", "kro")
+                .map("tickeronAIRating", "kai").map("tickeronUnderOver", "kuo");
+        Mapping score = new Mapping("score", Set.of())
+                .map("signal", "s").map("signalDays", "sd").map("signalReason", "sr")
+                .map("overallScore", "o").map("dayTradingScore", "d").map("swingTradingScore", "w")
+                .map("reversalScore", "r").map("breakoutScore", "b").map("patternScore", "p")
+                .map("overallReason", "or").map("dayTradingReason", "dr").map("swingTradingReason", "wr")
+                .map("reversalReason", "rr").map("breakoutReason", "br").map("patternReason", "pr");
+        Mapping bottom = new Mapping("bottom", Set.of())
+                .map("isBottom", "b").map("conditionsMet", "cm").map("strength", "s").map("reasons", "rs");
+        Mapping spike = new Mapping("spike", Set.of())
+                .map("spikeScore", "ss").map("spikeType", "st").map("spikeLikely", "sl").map("reasons", "rs");
+        Mapping oversold = new Mapping("oversold", Set.of())
+                .map("isOversoldBounce", "b").map("bounceScore", "bs").map("bounceType", "bt").map("reasons", "rs");
+        Mapping momPop = new Mapping("momPop", Set.of())
+                .map("isMomentumPop", "m").map("popScore", "ps").map("popType", "pt").map("reasons", "rs");
+        Mapping filterCategory = new Mapping("filterCategory", Set.of())
+                .map("primaryCategory", "pc").map("category", "c").map("criteria", "cr");
+        Mapping dailyRank = new Mapping("dailyRank", Set.of())
+                .map("finalRank", "fr").map("safetyRank", "sr").map("pickScore", "ps").map("allocation", "a");
+        Mapping gateSignal = new Mapping("gateSignal", Set.of())
+                .map("gatePass", "gp").map("gateType", "gt").map("gateScore", "gs")
+                .map("day0RsiCheck", "r0").map("day0VolumeCheck", "v0").map("day0AtrCheck", "a0")
+                .map("day0BottomCheck", "b0").map("day0PriceCheck", "p0").map("day0DownDaysCheck", "d0")
+                .map("day0LiquidityCheck", "l0").map("day0UpDaysCheck", "u0")
+                .map("day1HigherLow", "hl1").map("day1Consolidation", "c1").map("day1VolumeCooling", "v1")
+                .map("day1NotExtended", "e1").map("day1NoFomoGap", "g1").map("day1NotLate", "n1")
+                .map("reason", "r");
+        Mapping confidenceTier = new Mapping("confidenceTier", Set.of())
+                .map("tier", "t").map("tierScore", "ts").map("tierDescription", "td")
+                .map("positionSize", "psz").map("stopLoss", "sl").map("targetRange", "tr").map("holdDays", "hd")
+                .map("spikeScore", "ss").map("bottomConditions", "bc").map("bounceScore", "bs")
+                .map("meetsAPlusCriteria", "ap").map("meetsACriteria", "a").map("meetsBPlusCriteria", "bp")
+                .map("reason", "r").map("tradeable", "tb");
+
+        // ticker/histDate: filters and the unique index; metricsInfo: exists filters and $set by DayChange
+        return new Mapping("stockHistory", Set.of("_id", "ticker", "histDate", "metricsInfo"))
+                .map("type", "ty")
+                .nest("rating", "rt", rating).nest("score", "sc", score).nest("bottom", "bt", bottom)
+                .nest("spike", "sp", spike).nest("oversold", "ov", oversold).nest("filterCategory", "fc", filterCategory)
+                .nest("momPop", "mp", momPop).nest("dailyRank", "dr", dailyRank).nest("gateSignal", "gs", gateSignal)
+                .nest("confidenceTier", "ct", confidenceTier)
+                .map("price", "p").map("open", "o").map("high", "h").map("low", "l").map("change", "c")
+                .map("prevClose", "pc").map("priceChg5D", "c5").map("priceChg10D", "c10").map("priceChg20D", "c20")
+                .map("low52", "l52").map("high52", "h52").map("hasPattern", "hp")
+                .map("upDays", "ud").map("downDays", "dd").map("downLow", "dl").map("upHigh", "uh")
+                .map("earningsDate", "ed").map("earningDays", "eds")
+                .map("sma9", "s9").map("sma20", "s20").map("sma21", "s21").map("sma50", "s50")
+                .map("sma100", "s100").map("sma200", "s200")
+                .map("ema9", "e9").map("ema20", "e20").map("ema21", "e21").map("ema50", "e50")
+                .map("ema100", "e100").map("ema200", "e200")
+                .map("macd1226", "md").map("rsi14", "r14").map("atr14", "a14").map("momentum", "mo")
+                .map("volume", "v").map("volumeChange", "vc").map("avgVolume10D", "av10").map("vwap", "vw")
+                .map("noOfLongPatterns", "nlp").map("noOfShortPatterns", "nsp").map("optionPref", "op")
+                .map("myFavorite", "mf").map("myDayTrade", "mdt").map("etf2X", "x2");
+    }
+
+    private static Mapping optionsMapping() {
+        // optionId: streak lookups and retention; optionName: retention reads the expiry from it
+        return new Mapping("optionsHistory", Set.of("_id", "ticker", "histDate", "optionId", "optionName"))
+                .map("type", "ty").map("priceOnAdd", "pa").map("stockPriceOnAdd", "spa")
+                .map("stockPriceCurrent", "spc").map("underlyingChange", "uc")
+                .map("change", "c").map("changeSinceAdded", "csa").map("price", "p").map("high", "h").map("low", "l")
+                .map("volume", "v").map("openInterest", "oi")
+                .map("delta", "dl").map("gamma", "gm").map("theta", "th").map("vega", "vg")
+                .map("daysUpDown", "dud");
+    }
+
+    private static Mapping patternMapping() {
+        // eventId and targetDate: event lookups and retention
+        return new Mapping("patternHistory", Set.of("_id", "ticker", "histDate", "eventId", "targetDate"))
+                .map("entry", "en").map("minPT", "mn").map("maxPT", "mx").map("stop", "st")
+                .map("patternEmergenceDate", "ped").map("eventBeginDate", "ebd").map("eventEndDate", "eed")
+                .map("name", "n").map("trend", "tr").map("status", "s")
+                .map("noOfLongPatterns", "nlp").map("noOfShortPatterns", "nsp").map("patternMet", "pm");
+    }
+
+    /**
+     * Key mapping for one document level, with the mappings of its embedded objects.
+     */
+    private static final class Mapping {
+        private final String name;
+        private final Set<String> pinned;
+        private final Map<String, String> toShort = new LinkedHashMap<>();
+        private final Map<String, String> toLong = new HashMap<>();
+        private final Map<String, Mapping> nested = new HashMap<>();
+
+        Mapping(String name, Set<String> pinned) {
+            this.name = name;
+            this.pinned = pinned;
+        }
+
+        Mapping map(String property, String key) {
+            if (pinned.contains(property)) {
+                throw new IllegalStateException(name + "." + property + " is queried by name and cannot be mapped");
+            }
+            if (toShort.containsKey(property) || toLong.containsKey(key)) {
+                throw new IllegalStateException("Duplicate mapping " + name + "." + property + " -> " + key);
+            }
+            toShort.put(property, key);
+            toLong.put(key, property);
+            return this;
+        }
+
+        Mapping nest(String property, String key, Mapping mapping) {
+            map(property, key);
+            nested.put(property, mapping);
+            return this;
+        }
+
+        /**
+         * A short key must never be read back as a property name of the long layout.
+         */
+        Mapping validated(Set<String> unmapped) {
+            for (String key : toLong.keySet()) {
+                if (toShort.containsKey(key) || pinned.contains(key) || unmapped.contains(key)) {
+                    throw new IllegalStateException("Short key " + key + " collides with a property of " + name);
+                }
+            }
+            nested.values().forEach(child -> child.validated(Set.of()));
+            return this;
+        }
+
+        void compact(Document doc) {
+            rename(doc, toShort);
+        }
+
+        void expand(Document doc) {
+            rename(doc, toLong);
+        }
+
+        /**
+         * Rename the keys found in names, recursing into embedded objects of renamed keys. Documents
+         * without any such key (already in the target layout) are left untouched.
+         */
+        private void rename(Document doc, Map<String, String> names) {
+            if (doc.keySet().stream().noneMatch(names::containsKey)) return;
+
+            List<Map.Entry<String, Object>> entries = new ArrayList<>(doc.entrySet());
+            doc.clear();
+            for (Map.Entry<String, Object> entry : entries) {
+                String key = entry.getKey();
+                String renamed = names.get(key);
+                if (renamed == null) {
+                    doc.put(key, entry.getValue());
+                    continue;
+                }
+                Mapping child = nested.get(names == toShort ? key : renamed);
+                if (child != null && entry.getValue() instanceof Document embedded) {
+                    child.rename(embedded, names == toShort ? child.toShort : child.toLong);
+                }
+                doc.put(renamed, entry.getValue());
+            }
+        }
+
+        void describe(String prefix, Map<String, String> dictionary) {
+            toShort.forEach((property, key) -> {
+                dictionary.put(prefix + property, key);
+                Mapping child = nested.get(property);
+                if (child != null) child.describe(prefix + property + ".", dictionary);
+            });
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.myswan.config;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterLoadEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies {@link CompactSchema} to the history collections: documents are written with short keys
+ * when {@code history.compact.enabled} is set, and every history document is expanded back to
+ * property names after load whatever the setting, so switching it off never strands compact rows.
+ */
+@Component
+public class CompactSchemaListener extends AbstractMongoEventListener<Object> {
+
+    /** Write history documents with short keys */
+    @Value("${history.compact.enabled:false}")
+    private boolean enabled;
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<Object> event) {
+        if (enabled && CompactSchema.covers(event.getCollectionName())) {
+            CompactSchema.compact(event.getCollectionName(), event.getDocument());
+        }
+    }
+
+    @Override
+    public void onAfterLoad(AfterLoadEvent<Object> event) {
+        Document document = event.getDocument();
+        if (document != null && CompactSchema.covers(event.getCollectionName())) {
+            CompactSchema.expand(event.getCollectionName(), document);
+        }
+    }
+}
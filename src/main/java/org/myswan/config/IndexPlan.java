@@ -0,0 +1,139 @@
+package org.myswan.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declared index plan for every collection. Each entry names the queries it serves, so the
+ * index advisor can compare what is declared, what exists and what the profiler shows is used.
+ * Tickers are stored in canonical upper case (see {@link TickerKeyListener}), so ticker lookups
+ * are exact matches and can use these indexes.
+ */
+public final class IndexPlan {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexPlan.class);
+
+    private static final List<Spec> PLAN = List.of(
+            // stock: replaceStocks deletes by ticker $in
+            spec("stock", "replaceStocks delete").asc("ticker"),
+
+            // stockHistory: per-ticker history, per-date sync/delete
+            spec("stockHistory", "history by ticker and date range").asc("ticker").asc("histDate").unique(),
+            spec("stockHistory", "history by date, sync delete").asc("histDate"),
+
+            spec("futures", "bulk replace by ticker").asc("ticker"),
+            spec("futuresHistory", "history by ticker and date range").asc("ticker").asc("histDate").unique(),
+            spec("futuresHistory", "history by date").asc("histDate"),
+
+            spec("master", "lookup by ticker").asc("ticker"),
+
+            // pattern: patterns per ticker, upsert by event
+            spec("pattern", "patterns by ticker").asc("ticker"),
+            spec("pattern", "upsert by event").asc("eventId"),
+            spec("patternHistory", "history by ticker").asc("ticker").desc("histDate"),
+            spec("patternHistory", "sync delete by date").asc("histDate"),
+            spec("patternHistory", "history by event").asc("eventId"),
+
+            spec("picks", "picks by ticker").asc("ticker"),
+            spec("picksHistory", "latest history per ticker").asc("ticker").desc("historyDate"),
+            spec("picksHistory", "sync delete by date").desc("historyDate"),
+
+            // options: upsert by option id, per-ticker lists
+            spec("options", "upsert by option id").asc("optionId"),
+            spec("options", "options by ticker").asc("ticker").desc("histDate"),
+            spec("optionsHistory", "streak and history by option id").asc("optionId").desc("histDate"),
+            spec("optionsHistory", "history by ticker").asc("ticker").desc("histDate"),
+            spec("optionsHistory", "sync delete by date").asc("histDate"),
+
+            // guaranteedPicks: repository finders
+            spec("guaranteedPicks", "findByDateOrderByRankAsc").asc("date").asc("rank"),
+            spec("guaranteedPicks", "findByTicker").asc("ticker"),
+            spec("guaranteedPicks", "findByTrackedFalse").asc("tracked").asc("trackingDate"),
+            spec("guaranteedPicks", "findByOutcome / countByOutcome").asc("outcome"),
+
+            spec("watchlist", "findByTicker / existsByTicker / deleteByTicker").asc("ticker")
+    );
+
+    private IndexPlan() {
+    }
+
+    public static List<Spec> specs() {
+        return PLAN;
+    }
+
+    /**
+     * Ensure every declared index exists. Failures are logged per index so one bad collection
+     * (e.g. duplicates blocking a unique index) does not stop the rest of the plan.
+     *
+     * @return number of indexes ensured
+     */
+    public static int apply(MongoTemplate mongoTemplate) {
+        int ensured = 0;
+        for (Spec spec : PLAN) {
+            try {
+                mongoTemplate.indexOps(spec.getCollection()).ensureIndex(spec.toIndex());
+                ensured++;
+            } catch (Exception e) {
+                log.error("Failed to ensure index {} on {}: {}", spec.getKeys(), spec.getCollection(), e.getMessage());
+            }
+        }
+        log.info("Index plan applied: {}/{} indexes ensured", ensured, PLAN.size());
+        return ensured;
+    }
+
+    private static Spec spec(String collection, String purpose) {
+        return new Spec(collection, purpose);
+    }
+
+    public static final class Spec {
+        private final String collection;
+        private final String purpose;
+        private final LinkedHashMap<String, Integer> keys = new LinkedHashMap<>();
+        private boolean unique;
+
+        private Spec(String collection, String purpose) {
+            this.collection = collection;
+            this.purpose = purpose;
+        }
+
+        private Spec asc(String field) {
+            keys.put(field, 1);
+            return this;
+        }
+
+        private Spec desc(String field) {
+            keys.put(field, -1);
+            return this;
+        }
+
+        private Spec unique() {
+            this.unique = true;
+            return this;
+        }
+
+        public String getCollection() { return collection; }
+        public String getPurpose() { return purpose; }
+        public Map<String, Integer> getKeys() { return keys; }
+        public boolean isUnique() { return unique; }
+
+        public List<String> fields() {
+            return new ArrayList<>(keys.keySet());
+        }
+
+        Index toIndex() {
+            Index index = new Index();
+            keys.forEach((field, direction) ->
+                    index.on(field, direction > 0 ? Sort.Direction.ASC : Sort.Direction.DESC));
+            if (unique) index.unique();
+            return index;
+        }
+    }
+}
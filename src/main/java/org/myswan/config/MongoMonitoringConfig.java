@@ -0,0 +1,18 @@
+package org.myswan.config;
+
+import org.myswan.service.internal.MongoCommandMonitor;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the command monitor on the auto-configured Mongo client.
+ */
+@Configuration
+public class MongoMonitoringConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer commandMonitorCustomizer(MongoCommandMonitor monitor) {
+        return builder -> builder.addCommandListener(monitor);
+    }
+}
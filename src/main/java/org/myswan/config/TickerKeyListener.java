@@ -0,0 +1,54 @@
+package org.myswan.config;
+
+import org.myswan.common.UtilHelper;
+import org.myswan.model.collection.*;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Enforces the canonical (trimmed, upper-case) ticker key on every entity written through
+ * MongoTemplate or a repository, so ticker lookups can be exact matches served by an index.
+ * Embedded stock copies are normalised too. Field updates ($set) do not pass through here,
+ * which is fine because none of them rewrite the ticker.
+ */
+@Component
+public class TickerKeyListener extends AbstractMongoEventListener<Object> {
+
+    @Override
+    public void onBeforeConvert(BeforeConvertEvent<Object> event) {
+        Object source = event.getSource();
+        if (source instanceof Stock stock) {
+            canonicalize(stock);
+        } else if (source instanceof Master master) {
+            // Master is keyed by ticker
+            if (master.getId() != null && master.getId().equalsIgnoreCase(master.getTicker())) {
+                master.setId(UtilHelper.canonicalTicker(master.getId()));
+            }
+            master.setTicker(UtilHelper.canonicalTicker(master.getTicker()));
+        } else if (source instanceof Options options) {
+            options.setTicker(UtilHelper.canonicalTicker(options.getTicker()));
+        } else if (source instanceof Pattern pattern) {
+            pattern.setTicker(UtilHelper.canonicalTicker(pattern.getTicker()));
+        } else if (source instanceof Picks picks) {
+            picks.setTicker(UtilHelper.canonicalTicker(picks.getTicker()));
+            canonicalize(picks.getStock());
+        } else if (source instanceof GuaranteedPick pick) {
+            pick.setTicker(UtilHelper.canonicalTicker(pick.getTicker()));
+            canonicalize(pick.getStock());
+        } else if (source instanceof Watchlist watchlist) {
+            watchlist.setTicker(UtilHelper.canonicalTicker(watchlist.getTicker()));
+        } else if (source instanceof Futures futures) {
+            futures.setTicker(UtilHelper.canonicalTicker(futures.getTicker()));
+        }
+    }
+
+    private void canonicalize(Stock stock) {
+        if (stock == null) return;
+        // Stock is keyed by ticker
+        if (stock.getId() != null && stock.getId().equalsIgnoreCase(stock.getTicker())) {
+            stock.setId(UtilHelper.canonicalTicker(stock.getId()));
+        }
+        stock.setTicker(UtilHelper.canonicalTicker(stock.getTicker()));
+    }
+}
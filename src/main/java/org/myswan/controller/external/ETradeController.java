@@ -1,8 +1,11 @@
 package org.myswan.controller.external;
 
 import lombok.extern.slf4j.Slf4j;
+import org.myswan.controller.internal.JobController;
 import org.myswan.model.collection.Pattern;
 import org.myswan.service.external.EtradeClient;
+import org.myswan.service.internal.job.JobService;
+import org.myswan.service.internal.job.JobType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,9 +18,11 @@ import java.util.List;
 public class ETradeController {
 
     private final EtradeClient etradeClient;
+    private final JobService jobService;
 
-    public ETradeController(EtradeClient etradeClient) {
+    public ETradeController(EtradeClient etradeClient, JobService jobService) {
         this.etradeClient = etradeClient;
+        this.jobService = jobService;
     }
 
     @GetMapping("/pattern/fetch-etrade-pattern/{ticker}")
@@ -33,7 +38,19 @@ public class ETradeController {
     }
 
     @PostMapping("/pattern/fetch-etrade")
-    public ResponseEntity<String> fetchETradePatterns(@RequestParam(required = false, defaultValue = "N") String onlyMyFav) {
+    public ResponseEntity<?> fetchETradePatterns(@RequestParam(required = false, defaultValue = "N") String onlyMyFav,
+                                                 @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return JobController.accepted(jobService.submit(JobType.FETCH_ETRADE_PATTERNS, "onlyMyFav=" + onlyMyFav,
+                    () -> {
+                        try {
+                            return etradeClient.fetchAndSaveAllPatterns(onlyMyFav);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RuntimeException("eTrade pattern fetch interrupted", e);
+                        }
+                    }));
+        }
         try {
             String result = etradeClient.fetchAndSaveAllPatterns(onlyMyFav);
             return ResponseEntity.ok(result);
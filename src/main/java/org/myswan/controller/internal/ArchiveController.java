@@ -0,0 +1,35 @@
+package org.myswan.controller.internal;
+
+import org.myswan.service.internal.archive.HistoryArchiveService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class ArchiveController {
+
+    private final HistoryArchiveService historyArchiveService;
+
+    public ArchiveController(HistoryArchiveService historyArchiveService) {
+        this.historyArchiveService = historyArchiveService;
+    }
+
+    @GetMapping("/archive/status")
+    public ResponseEntity<Map<String, Object>> getArchiveStatus() {
+        return ResponseEntity.ok(historyArchiveService.status());
+    }
+
+    @PostMapping("/archive/run")
+    public ResponseEntity<List<Map<String, Object>>> runArchive(@RequestParam(required = false) String collection) {
+        if (collection == null || collection.isBlank()) {
+            return ResponseEntity.ok(historyArchiveService.archiveAll());
+        }
+        if (!HistoryArchiveService.COLLECTIONS.contains(collection)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(List.of(historyArchiveService.archiveCollection(collection)));
+    }
+}
@@ -1,15 +1,17 @@
 package org.myswan.controller.internal;
 
 import org.myswan.model.dto.PredictionAnalysisResponse;
+import org.myswan.service.internal.AnalysisResultCache;
 import org.myswan.service.internal.ComputeService;
 import org.myswan.service.internal.PredictionAnalysisService;
+import org.myswan.service.internal.job.JobService;
+import org.myswan.service.internal.job.JobType;
 import org.myswan.service.internal.onetime.DayChange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,24 +23,43 @@ public class ComputeController {
     private final ComputeService computeService;
     private final DayChange dayChange;
     private final PredictionAnalysisService predictionAnalysisService;
+    private final AnalysisResultCache analysisCache;
+    private final JobService jobService;
 
     public ComputeController(ComputeService computeService, DayChange dayChange,
-                            PredictionAnalysisService predictionAnalysisService) {
+                            PredictionAnalysisService predictionAnalysisService,
+                            AnalysisResultCache analysisCache, JobService jobService) {
         this.computeService = computeService;
         this.dayChange = dayChange;
         this.predictionAnalysisService = predictionAnalysisService;
+        this.analysisCache = analysisCache;
+        this.jobService = jobService;
     }
 
     @PostMapping("/compute/process")
-    public ResponseEntity<String> compute() {
+    public ResponseEntity<?> compute(@RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return JobController.accepted(jobService.submit(JobType.COMPUTE, null, computeService::compute));
+        }
         return ResponseEntity.ok(computeService.compute());
     }
 
+    /**
+     * Recomputes every row and resets the watermarks, as this endpoint always has. full=false only
+     * recomputes rows after each ticker's watermark.
+     */
     @PostMapping("/compute/day-change-metrics")
-    public ResponseEntity<String> computeDayChangeMetrics() {
+    public ResponseEntity<?> computeDayChangeMetrics(@RequestParam(defaultValue = "true") boolean full,
+                                                     @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return JobController.accepted(jobService.submit(JobType.DAY_CHANGE_METRICS, "full=" + full, () -> {
+                computeDayChange(full);
+                return "Day Change metrics computation completed successfully!";
+            }));
+        }
         try {
-            log.info("Starting Day Change metrics computation for all stock history...");
-            dayChange.computeDayChangeForAllHistory();
+            log.info("Starting {} Day Change metrics computation for stock history...", full ? "full" : "incremental");
+            computeDayChange(full);
             return ResponseEntity.ok("Day Change metrics computation completed successfully!");
         } catch (Exception e) {
             log.error("Failed to compute Day Change metrics", e);
@@ -47,12 +68,19 @@ public class ComputeController {
     }
 
     @GetMapping("/compute/analyze-predictions")
-    public ResponseEntity<PredictionAnalysisResponse> analyzePredictions(
-            @RequestParam(defaultValue = "5") double threshold) {
+    public ResponseEntity<?> analyzePredictions(
+            @RequestParam(defaultValue = "5") double threshold,
+            @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            // The job waits for a result against the current history and fills the analysis cache,
+            // so the next synchronous call is served from it
+            return JobController.accepted(jobService.submit(JobType.ANALYZE_PREDICTIONS, "threshold=" + threshold,
+                    () -> analysisCache.getFresh(analyzePredictionsKey(threshold),
+                            () -> predictionAnalysisService.analyzeMetrics(threshold)).value()));
+        }
         try {
             log.info("Starting prediction analysis with threshold: {}%...", threshold);
-            PredictionAnalysisResponse response = predictionAnalysisService.analyzeMetrics(threshold);
-            return ResponseEntity.ok(response);
+            return cached(analyzePredictionsCached(threshold));
         } catch (Exception e) {
             log.error("Failed to analyze predictions", e);
             return ResponseEntity.status(500).body(null);
@@ -64,8 +92,8 @@ public class ComputeController {
             @RequestParam(defaultValue = "20") double threshold) {
         try {
             log.info("Starting ticker performance analysis with threshold: {}%...", threshold);
-            List<?> response = predictionAnalysisService.analyzeTickerPerformance(threshold);
-            return ResponseEntity.ok(response);
+            return cached(analysisCache.get("analyze-tickers|" + threshold,
+                    () -> predictionAnalysisService.analyzeTickerPerformance(threshold)));
         } catch (Exception e) {
             log.error("Failed to analyze ticker performance", e);
             return ResponseEntity.status(500).body("Failed: " + e.getMessage());
@@ -78,12 +106,50 @@ public class ComputeController {
             @RequestParam(defaultValue = "20") double threshold) {
         try {
             log.info("Getting stats for ticker: {} with threshold: {}%", ticker, threshold);
-            Map<String, Object> response = predictionAnalysisService.getTickerStats(ticker.toUpperCase(), threshold);
-            return ResponseEntity.ok(response);
+            String symbol = ticker.toUpperCase();
+            return cached(analysisCache.get("ticker-stats|" + symbol + "|" + threshold,
+                    () -> predictionAnalysisService.getTickerStats(symbol, threshold)));
         } catch (Exception e) {
             log.error("Failed to get ticker stats for: {}", ticker, e);
             return ResponseEntity.status(500).body("Failed: " + e.getMessage());
         }
     }
 
+    @GetMapping("/compute/analysis-cache/stats")
+    public ResponseEntity<Map<String, Object>> getAnalysisCacheStats() {
+        return ResponseEntity.ok(analysisCache.stats());
+    }
+
+    @PostMapping("/compute/analysis-cache/clear")
+    public ResponseEntity<Void> clearAnalysisCache() {
+        analysisCache.clear();
+        return ResponseEntity.noContent().build();
+    }
+
+    private void computeDayChange(boolean full) {
+        if (full) {
+            dayChange.computeDayChangeForAllHistory();
+        } else {
+            dayChange.computeDayChangeIncremental();
+        }
+    }
+
+    private AnalysisResultCache.Cached<PredictionAnalysisResponse> analyzePredictionsCached(double threshold) {
+        return analysisCache.get(analyzePredictionsKey(threshold),
+                () -> predictionAnalysisService.analyzeMetrics(threshold));
+    }
+
+    private static String analyzePredictionsKey(double threshold) {
+        return "analyze-predictions|" + threshold;
+    }
+
+    /**
+     * Cached analysis result; X-Analysis-Stale tells the page a refresh against newer history is running.
+     */
+    private static <T> ResponseEntity<T> cached(AnalysisResultCache.Cached<T> result) {
+        return ResponseEntity.ok()
+                .header("X-Analysis-Stale", String.valueOf(result.stale()))
+                .header("X-Analysis-Computed-At", result.computedAt().toString())
+                .body(result.value());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package org.myswan.controller.internal;
+
+import org.bson.Document;
+import org.myswan.config.CompactSchema;
+import org.myswan.config.IndexPlan;
+import org.myswan.model.dto.IndexAdvisorReport;
+import org.myswan.service.internal.IndexAdvisorService;
+import org.myswan.service.internal.MongoCommandMonitor;
+import org.myswan.service.internal.migration.CompactHistoryMigration;
+import org.myswan.service.internal.migration.FactorCodeMigration;
+import org.myswan.service.internal.migration.MigrationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class DatabaseAdminController {
+
+    private final IndexAdvisorService indexAdvisorService;
+    private final MigrationRunner migrationRunner;
+    private final MongoTemplate mongoTemplate;
+    private final MongoCommandMonitor commandMonitor;
+    private final CompactHistoryMigration compactHistoryMigration;
+    private final FactorCodeMigration factorCodeMigration;
+
+    public DatabaseAdminController(IndexAdvisorService indexAdvisorService,
+                                   MigrationRunner migrationRunner,
+                                   MongoTemplate mongoTemplate,
+                                   MongoCommandMonitor commandMonitor,
+                                   CompactHistoryMigration compactHistoryMigration,
+                                   FactorCodeMigration factorCodeMigration) {
+        this.indexAdvisorService = indexAdvisorService;
+        this.migrationRunner = migrationRunner;
+        this.mongoTemplate = mongoTemplate;
+        this.commandMonitor = commandMonitor;
+        this.compactHistoryMigration = compactHistoryMigration;
+        this.factorCodeMigration = factorCodeMigration;
+    }
+
+    @GetMapping("/admin/db/index-advisor")
+    public ResponseEntity<IndexAdvisorReport> getIndexAdvisor(@RequestParam(defaultValue = "5000") int limit) {
+        return ResponseEntity.ok(indexAdvisorService.report(limit));
+    }
+
+    @PostMapping("/admin/db/profiler")
+    public ResponseEntity<Document> setProfiler(@RequestParam(defaultValue = "1") int level,
+                                                @RequestParam(defaultValue = "100") int slowMs) {
+        if (level < 0 || level > 2) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(indexAdvisorService.setProfiling(level, slowMs));
+    }
+
+    @GetMapping("/admin/db/migrations")
+    public ResponseEntity<Map<String, Object>> getMigrationStatus() {
+        return ResponseEntity.ok(migrationRunner.status());
+    }
+
+    @PostMapping("/admin/db/migrations/run")
+    public ResponseEntity<List<Map<String, Object>>> runPendingMigrations() {
+        return ResponseEntity.ok(migrationRunner.runPending());
+    }
+
+    @PostMapping("/admin/db/migrations/{version}/rerun")
+    public ResponseEntity<Map<String, Object>> rerunMigration(@PathVariable int version) {
+        try {
+            return ResponseEntity.ok(migrationRunner.rerun(version));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/admin/db/indexes/apply")
+    public ResponseEntity<Map<String, Object>> applyIndexPlan() {
+        int ensured = IndexPlan.apply(mongoTemplate);
+        return ResponseEntity.ok(Map.of("declared", IndexPlan.specs().size(), "ensured", ensured));
+    }
+
+    @GetMapping("/admin/db/commands")
+    public ResponseEntity<Map<String, Object>> getCommandStats(@RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(commandMonitor.report(limit));
+    }
+
+    @PostMapping("/admin/db/commands/reset")
+    public ResponseEntity<Void> resetCommandStats() {
+        commandMonitor.reset();
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/admin/db/compact-schema")
+    public ResponseEntity<List<Map<String, Object>>> getCompactSchemaEstimate(@RequestParam(defaultValue = "1000") int sample) {
+        List<Map<String, Object>> estimates = new ArrayList<>();
+        for (String collection : CompactSchema.COLLECTIONS) {
+            estimates.add(compactHistoryMigration.estimate(collection, sample));
+        }
+        return ResponseEntity.ok(estimates);
+    }
+
+    @GetMapping("/admin/db/factor-code")
+    public ResponseEntity<Map<String, Object>> getFactorCodeBenchmark(@RequestParam(defaultValue = "1000") int sample) {
+        return ResponseEntity.ok(factorCodeMigration.benchmark(sample));
+    }
+}
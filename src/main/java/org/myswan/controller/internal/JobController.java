@@ -0,0 +1,65 @@
+package org.myswan.controller.internal;
+
+import org.myswan.model.dto.JobStatus;
+import org.myswan.service.internal.job.JobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Background jobs started with ?async=true on the long-running endpoints: poll the status, follow it
+ * as server-sent events, and fetch the result once it has succeeded.
+ */
+@RestController
+@RequestMapping("/api")
+public class JobController {
+
+    private final JobService jobService;
+
+    public JobController(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @GetMapping("/jobs")
+    public ResponseEntity<List<JobStatus>> listJobs() {
+        return ResponseEntity.ok(jobService.list());
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<JobStatus> getJob(@PathVariable String id) {
+        return jobService.status(id).map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJob(@PathVariable String id) {
+        return jobService.subscribe(id).map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * 200 with the result once succeeded, 202 with the status while queued or running, 500 with the
+     * status when it failed.
+     */
+    @GetMapping("/jobs/{id}/result")
+    public ResponseEntity<?> getJobResult(@PathVariable String id) {
+        Optional<JobStatus> status = jobService.status(id);
+        if (status.isEmpty()) return ResponseEntity.notFound().build();
+        return switch (status.get().getState()) {
+            case "SUCCEEDED" -> ResponseEntity.ok(jobService.result(id).orElse(null));
+            case "FAILED" -> ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(status.get());
+            default -> ResponseEntity.accepted().body(status.get());
+        };
+    }
+
+    /**
+     * 202 response for an endpoint called with ?async=true, pointing at the job's status.
+     */
+    public static ResponseEntity<JobStatus> accepted(JobStatus status) {
+        return ResponseEntity.accepted().location(URI.create(status.getStatusUrl())).body(status);
+    }
+}
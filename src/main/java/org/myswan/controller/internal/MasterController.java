@@ -1,20 +1,29 @@
 package org.myswan.controller.internal;
 
+import org.myswan.common.UtilHelper;
 import org.myswan.model.collection.Master;
+import org.myswan.model.dto.CascadeDeleteReport;
 import org.myswan.service.internal.MasterService;
+import org.myswan.service.internal.job.JobService;
+import org.myswan.service.internal.job.JobType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
 public class MasterController {
 
     private final MasterService masterService;
+    private final JobService jobService;
 
-    public MasterController(MasterService masterService) {
+    public MasterController(MasterService masterService, JobService jobService) {
         this.masterService = masterService;
+        this.jobService = jobService;
     }
 
     @GetMapping("/master/{ticker:.+}")
@@ -83,40 +92,59 @@ public class MasterController {
      * Expected body: ["AAPL", "TSLA", "MSFT", ...]
      */
     @DeleteMapping("/master/delete-bulk")
-    public ResponseEntity<String> deleteBulkFromAllCollections(@RequestBody List<String> tickers) {
+    public ResponseEntity<?> deleteBulkFromAllCollections(@RequestBody List<String> tickers,
+                                                          @RequestParam(defaultValue = "false") boolean async) {
         if (tickers == null || tickers.isEmpty()) {
             return ResponseEntity.badRequest().body("No tickers provided");
         }
+        if (async) {
+            // The job result is the JSON report of cascade-delete; the same ticker set joins a running job
+            String key = tickers.stream().filter(Objects::nonNull).map(UtilHelper::canonicalTicker)
+                    .sorted().distinct().collect(Collectors.joining(","));
+            return JobController.accepted(jobService.submit(JobType.DELETE_BULK, key, () -> cascadeDelete(tickers)));
+        }
         try {
-            int successCount = 0;
-            int failCount = 0;
-            StringBuilder errors = new StringBuilder();
-
-            for (String ticker : tickers) {
-                try {
-                    if (masterService.exists(ticker)) {
-                        masterService.deleteFromAllCollections(ticker);
-                        successCount++;
-                    } else {
-                        failCount++;
-                        errors.append(ticker).append(" (not found), ");
-                    }
-                } catch (Exception e) {
-                    failCount++;
-                    errors.append(ticker).append(" (error: ").append(e.getMessage()).append("), ");
-                }
-            }
+            CascadeDeleteReport report = cascadeDelete(tickers);
 
-            String message = String.format("Deleted %d ticker(s) successfully", successCount);
-            if (failCount > 0) {
-                message += String.format(", %d failed: %s", failCount, errors);
+            StringBuilder message = new StringBuilder(String.format("Deleted %d ticker(s) successfully in %d ms",
+                    report.getTickers().size(), report.getTotalMillis()));
+            if (!report.getNotFound().isEmpty()) {
+                message.append(String.format(", %d failed: %s (not found)",
+                        report.getNotFound().size(), String.join(", ", report.getNotFound())));
+            }
+            for (CascadeDeleteReport.CollectionResult result : report.getCollections()) {
+                message.append(String.format("%n  %s: %d deleted (%d ms)%s", result.getCollection(),
+                        result.getDeleted() + result.getArchivedDeleted(), result.getMillis(),
+                        result.getError() != null ? " ERROR " + result.getError() : ""));
             }
-            return ResponseEntity.ok(message);
+            return ResponseEntity.ok(message.toString());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Bulk delete failed: " + e.getMessage());
         }
     }
 
+    /**
+     * Same cascade as delete-bulk, returning the per-collection report as JSON
+     * Expected body: ["AAPL", "TSLA", "MSFT", ...]
+     */
+    @PostMapping("/master/cascade-delete")
+    public ResponseEntity<CascadeDeleteReport> cascadeDeleteReport(@RequestBody List<String> tickers) {
+        if (tickers == null || tickers.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(cascadeDelete(tickers));
+    }
+
+    private CascadeDeleteReport cascadeDelete(List<String> tickers) {
+        // Only tickers with a master record are cascaded, as with the single-ticker delete
+        Set<String> existing = masterService.existingTickers(tickers);
+        CascadeDeleteReport report = masterService.deleteTickers(existing, MasterService.CASCADE_COLLECTIONS);
+        tickers.stream()
+                .filter(t -> t == null || !existing.contains(UtilHelper.canonicalTicker(t)))
+                .forEach(t -> report.getNotFound().add(t));
+        return report;
+    }
+
     @PutMapping("/master/{ticker:.+}")
     public ResponseEntity<Master> updateMaster(@PathVariable String ticker, @RequestBody Master master) {
         if (!masterService.exists(ticker)) return ResponseEntity.notFound().build();
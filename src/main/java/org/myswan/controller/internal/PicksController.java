@@ -66,7 +66,7 @@ public class PicksController {
     public ResponseEntity<String> syncPicksWithStockData() {
         log.info("Syncing picks with current stock data...");
         try {
-            picksService.syncWithStockData(stockService.list());
+            picksService.syncWithStockData(stockService.listSnapshot());
             return ResponseEntity.ok("Picks synced successfully with current stock data");
         } catch (Exception e) {
             log.error("Error syncing picks", e);
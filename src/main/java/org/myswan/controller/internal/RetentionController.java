@@ -0,0 +1,36 @@
+package org.myswan.controller.internal;
+
+import org.myswan.service.internal.retention.RetentionService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class RetentionController {
+
+    private final RetentionService retentionService;
+
+    public RetentionController(RetentionService retentionService) {
+        this.retentionService = retentionService;
+    }
+
+    @GetMapping("/retention/status")
+    public ResponseEntity<Map<String, Object>> getRetentionStatus() {
+        return ResponseEntity.ok(retentionService.status());
+    }
+
+    @PostMapping("/retention/run")
+    public ResponseEntity<List<Map<String, Object>>> runRetention(@RequestParam(required = false) String rule,
+                                                                  @RequestParam(defaultValue = "false") boolean dryRun) {
+        if (rule == null || rule.isBlank()) {
+            return ResponseEntity.ok(retentionService.runAll(dryRun));
+        }
+        if (!RetentionService.RULES.contains(rule)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(List.of(retentionService.runRule(rule, dryRun)));
+    }
+}
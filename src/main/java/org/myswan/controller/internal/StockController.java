@@ -3,18 +3,33 @@ package org.myswan.controller.internal;
 import org.myswan.model.dto.MLTrainingData;
 import org.myswan.model.collection.Stock;
 import org.myswan.model.dto.TickerGroupDTO;
+import org.myswan.service.internal.HistoryRangeCache;
+import org.myswan.service.internal.MLColumnarExportService;
+import org.myswan.service.internal.MLExportService;
 import org.myswan.service.internal.StockService;
+import org.myswan.service.internal.StockSnapshotService;
+import org.myswan.service.internal.job.JobService;
+import org.myswan.service.internal.job.JobType;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
@@ -22,9 +37,27 @@ import java.util.List;
 public class StockController {
 
     private final StockService stockService;
+    private final HistoryRangeCache historyCache;
+    private final MLExportService mlExportService;
+    private final MLColumnarExportService mlColumnarExportService;
+    private final JobService jobService;
 
-    public StockController(StockService stockService) {
+    /** Longest range /stock/ml-export/stream accepts, in days */
+    @Value("${ml.export.max-days:3650}")
+    private int maxExportDays;
+
+    /** How long one streamed export may run before the request is timed out */
+    @Value("${ml.export.stream-timeout-minutes:30}")
+    private long streamTimeoutMinutes;
+
+    public StockController(StockService stockService, HistoryRangeCache historyCache,
+                           MLExportService mlExportService, MLColumnarExportService mlColumnarExportService,
+                           JobService jobService) {
         this.stockService = stockService;
+        this.historyCache = historyCache;
+        this.mlExportService = mlExportService;
+        this.mlColumnarExportService = mlColumnarExportService;
+        this.jobService = jobService;
     }
 
 
@@ -35,7 +68,7 @@ public class StockController {
     @ApiResponse(responseCode = "200", description = "Successfully retrieved list of stocks")
     @GetMapping("/stock/list")
     public ResponseEntity<List<Stock>> getAllStocks() {
-        return ResponseEntity.ok(stockService.list());
+        return ResponseEntity.ok(stockService.listSnapshot());
     }
 
     @Operation(
@@ -45,11 +78,42 @@ public class StockController {
     @ApiResponse(responseCode = "200", description = "Successfully retrieved stocks with patterns")
     @GetMapping("/stock/list-with-patterns")
     public ResponseEntity<List<Stock>> getAllStocksWithPatterns() {
-        List<Stock> stocks = stockService.list();
+        // Enrichment sets the transient patterns field, so work on copies of the shared snapshot entries
+        List<Stock> stocks = stockService.listSnapshot().stream()
+                .map(StockSnapshotService::copyOf)
+                .collect(Collectors.toList());
         stocks = stockService.enrichWithPatterns(stocks);
         return ResponseEntity.ok(stocks);
     }
 
+    @Operation(
+        summary = "Get stock snapshot statistics",
+        description = "Returns the generation, age, staleness bound and hit/miss counters of the in-memory stock snapshot"
+    )
+    @GetMapping("/stock/snapshot/stats")
+    public ResponseEntity<Map<String, Object>> getSnapshotStats() {
+        return ResponseEntity.ok(stockService.snapshotStats());
+    }
+
+    @Operation(
+        summary = "Get history cache statistics",
+        description = "Returns entries, resident bytes and hit/miss/eviction counters per collection of the past-session history cache"
+    )
+    @GetMapping("/stock/history-cache/stats")
+    public ResponseEntity<Map<String, Object>> getHistoryCacheStats() {
+        return ResponseEntity.ok(historyCache.stats());
+    }
+
+    @Operation(
+        summary = "Clear the history cache",
+        description = "Drops all cached past-session history; the next view of each history page reloads it"
+    )
+    @PostMapping("/stock/history-cache/clear")
+    public ResponseEntity<Void> clearHistoryCache() {
+        historyCache.clear();
+        return ResponseEntity.noContent().build();
+    }
+
     @Operation(
         summary = "Get stock by ticker",
         description = "Returns details for a specific stock identified by ticker symbol"
@@ -100,7 +164,7 @@ public class StockController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
     ) {
-        List<Stock> history = stockService.getStockHistory(ticker, from, to);
+        List<Stock> history = stockService.getStockHistorySnapshot(ticker, from, to);
         return ResponseEntity.ok(history);
     }
 
@@ -143,4 +207,71 @@ public class StockController {
         List<MLTrainingData> mlData = stockService.convertToMLFormat(historicalData);
         return ResponseEntity.ok(mlData);
     }
-}
\ No newline at end of file
+
+    @Operation(
+            summary = "Stream ML training data",
+            description = "Same rows as /stock/ml-export, written as NDJSON (one JSON object per line) or CSV while " +
+                    "the history is read, so multi-year exports run in constant memory. Rows are ordered by ticker, then date."
+    )
+    @ApiResponse(responseCode = "200", description = "Training data streamed")
+    @GetMapping("/stock/ml-export/stream")
+    public WebAsyncTask<Void> streamMLTrainingData(
+            @Parameter(description = "Number of days to export (default: 35, at most ml.export.max-days)")
+            @RequestParam(defaultValue = "35") int days,
+            @Parameter(description = "Specific tickers to export (optional, exports all if not provided)")
+            @RequestParam(required = false) List<String> tickers,
+            @Parameter(description = "ndjson (default) or csv")
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletResponse response
+    ) {
+        MLExportService.Format exportFormat = MLExportService.Format.of(format);
+        if (exportFormat == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be ndjson or csv");
+        }
+        if (days <= 0 || days > maxExportDays) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "days must be between 1 and " + maxExportDays);
+        }
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(days);
+        List<String> selected = tickers != null && !tickers.isEmpty() ? tickers : null;
+        response.setContentType(exportFormat.contentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"ml-export-" + from + "-" + to + "." + exportFormat.extension() + "\"");
+        // The timeout applies to this export only; other async handlers keep the container default
+        return new WebAsyncTask<>(Duration.ofMinutes(streamTimeoutMinutes).toMillis(), () -> {
+            mlExportService.export(selected, from, to, exportFormat, response.getOutputStream());
+            return null;
+        });
+    }
+
+    @Operation(
+            summary = "Append ML training data to the columnar export",
+            description = "Writes the /stock/ml-export rows of every session completed since the last append to the " +
+                    "local columnar export directory, one part per month. Only sessions with all their target " +
+                    "sessions are written; full=true deletes the export and writes the whole history again."
+    )
+    @ApiResponse(responseCode = "200", description = "Append report")
+    @PostMapping("/stock/ml-export/columnar")
+    public ResponseEntity<?> appendMLColumnarExport(
+            @Parameter(description = "Delete the existing export and rebuild it")
+            @RequestParam(defaultValue = "false") boolean full,
+            @Parameter(description = "Run as a background job and return its status")
+            @RequestParam(defaultValue = "false") boolean async
+    ) {
+        if (async) {
+            return JobController.accepted(jobService.submit(JobType.ML_COLUMNAR_EXPORT, "full=" + full,
+                    () -> mlColumnarExportService.append(full)));
+        }
+        return ResponseEntity.ok(mlColumnarExportService.append(full));
+    }
+
+    @Operation(
+            summary = "Columnar ML export manifest",
+            description = "Schema, month parts and last exported session of the local columnar export"
+    )
+    @ApiResponse(responseCode = "200", description = "Manifest")
+    @GetMapping("/stock/ml-export/columnar")
+    public ResponseEntity<Map<String, Object>> getMLColumnarExportManifest() {
+        return ResponseEntity.ok(mlColumnarExportService.manifest());
+    }
+}
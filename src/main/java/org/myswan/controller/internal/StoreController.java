@@ -0,0 +1,80 @@
+package org.myswan.controller.internal;
+
+import org.myswan.service.internal.HistoryRangeCache;
+import org.myswan.service.internal.PredictionAnalysisService;
+import org.myswan.service.internal.StockSnapshotService;
+import org.myswan.service.internal.onetime.DayChange;
+import org.myswan.service.internal.store.InMemoryMarketDataStore;
+import org.myswan.service.internal.store.MarketDataStore;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class StoreController {
+
+    private final MarketDataStore store;
+    private final StockSnapshotService stockSnapshot;
+    private final DayChange dayChange;
+    private final PredictionAnalysisService predictionAnalysisService;
+    private final HistoryRangeCache historyCache;
+
+    public StoreController(MarketDataStore store, StockSnapshotService stockSnapshot, DayChange dayChange,
+                           PredictionAnalysisService predictionAnalysisService, HistoryRangeCache historyCache) {
+        this.store = store;
+        this.stockSnapshot = stockSnapshot;
+        this.dayChange = dayChange;
+        this.predictionAnalysisService = predictionAnalysisService;
+        this.historyCache = historyCache;
+    }
+
+    @GetMapping("/admin/store")
+    public ResponseEntity<Map<String, Object>> getStoreStats() {
+        return ResponseEntity.ok(store.stats());
+    }
+
+    /**
+     * Fill the in-memory store with synthetic history (inmemory profile only).
+     */
+    @PostMapping("/admin/store/seed")
+    public ResponseEntity<Map<String, Object>> seed(@RequestParam(defaultValue = "500") int tickers,
+                                                    @RequestParam(defaultValue = "250") int days,
+                                                    @RequestParam(defaultValue = "42") long seed) {
+        if (!(store instanceof InMemoryMarketDataStore inMemory)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Seeding needs the inmemory profile"));
+        }
+        if (tickers <= 0 || days <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        Map<String, Object> report = inMemory.seed(tickers, days, seed);
+        stockSnapshot.invalidate();
+        historyCache.clear();
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Time the metrics computation and the prediction analysis against whatever the store holds
+     * (inmemory profile only, since the metrics computation rewrites history).
+     */
+    @PostMapping("/admin/store/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmark(@RequestParam(defaultValue = "20.0") double threshold) {
+        if (!(store instanceof InMemoryMarketDataStore)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Benchmarks need the inmemory profile"));
+        }
+        Map<String, Object> report = new LinkedHashMap<>(store.stats());
+        long start = System.currentTimeMillis();
+        dayChange.computeDayChangeForAllHistory();
+        report.put("dayChangeMillis", System.currentTimeMillis() - start);
+        start = System.currentTimeMillis();
+        int analyzed = predictionAnalysisService.analyzeMetrics(threshold).getTotalRecordsAnalyzed();
+        report.put("analysisMillis", System.currentTimeMillis() - start);
+        report.put("analysisRecords", analyzed);
+        return ResponseEntity.ok(report);
+    }
+}
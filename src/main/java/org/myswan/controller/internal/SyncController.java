@@ -1,9 +1,12 @@
 package org.myswan.controller.internal;
 
 import org.myswan.service.internal.SyncService;
+import org.myswan.service.internal.job.JobService;
+import org.myswan.service.internal.job.JobType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -11,13 +14,18 @@ import org.springframework.web.bind.annotation.RestController;
 public class SyncController {
 
     private final SyncService syncService;
+    private final JobService jobService;
 
-    public SyncController(SyncService syncService) {
+    public SyncController(SyncService syncService, JobService jobService) {
         this.syncService = syncService;
+        this.jobService = jobService;
     }
 
     @PostMapping("/syncup/history/all")
-    public ResponseEntity<String> syncAllHistory() {
+    public ResponseEntity<?> syncAllHistory(@RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            return JobController.accepted(jobService.submit(JobType.SYNC_HISTORY, null, syncService::syncAllHistory));
+        }
         return ResponseEntity.ok(syncService.syncAllHistory());
     }
 
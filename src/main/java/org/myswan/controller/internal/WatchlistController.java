@@ -3,10 +3,9 @@ package org.myswan.controller.internal;
 import lombok.extern.slf4j.Slf4j;
 import org.myswan.model.collection.Stock;
 import org.myswan.model.collection.Watchlist;
+import org.myswan.service.internal.StockService;
+import org.myswan.service.internal.StockSnapshotService;
 import org.myswan.service.internal.WatchlistService;
-import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -21,12 +20,12 @@ import java.util.Map;
 public class WatchlistController {
 
     private final WatchlistService watchlistService;
-    private final MongoTemplate mongoTemplate;
+    private final StockService stockService;
 
     public WatchlistController(WatchlistService watchlistService,
-                               MongoTemplate mongoTemplate) {
+                               StockService stockService) {
         this.watchlistService = watchlistService;
-        this.mongoTemplate = mongoTemplate;
+        this.stockService = stockService;
     }
 
     @GetMapping("/watchlist/list")
@@ -48,16 +47,19 @@ public class WatchlistController {
                 return ResponseEntity.ok(new ArrayList<>());
             }
 
-            // Fetch stocks for watchlist tickers using case-insensitive regex
+            // Look up watchlist tickers in the resident stock snapshot
+            Map<String, Stock> stocksByTicker = stockService.snapshotByTicker();
             List<Stock> stocks = new ArrayList<>();
             List<String> optionList = Arrays.asList("TSLA", "NVDA", "AMZN", "SPY", "QQQ", "PLTR");
             for (String ticker : tickers) {
-                Query query = new Query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                List<Stock> found = mongoTemplate.find(query, Stock.class);
-                if (!found.isEmpty()) {
-                    if(optionList.contains(ticker))
-                        found.getFirst().setOptionPref("Y");
-                    stocks.add(found.getFirst());
+                Stock found = stocksByTicker.get(ticker.toUpperCase());
+                if (found != null) {
+                    if(optionList.contains(ticker)) {
+                        // Snapshot entries are shared, so flag a copy
+                        found = StockSnapshotService.copyOf(found);
+                        found.setOptionPref("Y");
+                    }
+                    stocks.add(found);
                 } else {
                     log.warn("Stock not found for watchlist ticker: {}", ticker);
                 }
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -24,7 +25,8 @@ public class Options {
     private String type;
     private double priceOnAdd;
     private double stockPriceOnAdd;
-    private double stockPriceCurrent;
+    private double stockPriceCurrent;     // Underlying price as of the last compute
+    private double underlyingChange;      // Underlying daily change as of the last compute
     private double change;
     private double changeSinceAdded;
     private double price;
@@ -38,5 +40,9 @@ public class Options {
     private double iv;
     private double vega;
     private int daysUpDown;
+
+    // Transient field - not persisted to DB, joined by ticker at read time
+    // (current stock snapshot for options, same-day stockHistory row for optionsHistory)
+    @Transient
     private Stock stock;
 }
\ No newline at end of file
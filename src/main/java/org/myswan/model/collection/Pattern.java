@@ -1,11 +1,15 @@
 package org.myswan.model.collection;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.LocalDate;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -15,15 +19,20 @@ public class Pattern {
     private String id;
     private String eventId;
     private String ticker;
-    private String histDate;
-    private String entry;
-    private String minPT;
-    private String maxPT;
-    private String stop;
-    private String targetDate;
-    private String patternEmergenceDate;
-    private String eventBeginDate;
-    private String eventEndDate;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate histDate;
+    private Double entry;
+    private Double minPT;
+    private Double maxPT;
+    private Double stop;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate targetDate;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate patternEmergenceDate;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate eventBeginDate;
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate eventEndDate;
     private String name;
     private String trend;
     private String status;
@@ -31,6 +40,8 @@ public class Pattern {
     private int noOfShortPatterns;
     private boolean patternMet = false;
 
-    // Stock snapshot (only populated in patternHistory collection)
+    // Transient field - not persisted to DB, joined by ticker at read time
+    // (current stock snapshot for pattern, same-day stockHistory row for patternHistory)
+    @Transient
     private Stock stock;
 }
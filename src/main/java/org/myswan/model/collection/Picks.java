@@ -37,5 +37,11 @@ public class Picks {
     private String status;// e.g., "OPEN", "CLOSED"
     private double max;
     private double min;
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "UTC")
+    private LocalDate maxDate;          // First session the running max was reached
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "UTC")
+    private LocalDate minDate;          // First session the running min was reached
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "UTC")
+    private LocalDate rollupDate;       // Last session folded into min/max (null until backfilled)
     private String monitor = "N";
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package org.myswan.model.collection;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+
+/**
+ * One validity range of a ticker's slow-moving fields (ratings and earnings date): the values hold
+ * for history rows dated from validFrom (inclusive) to validTo (exclusive, null while current).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "ratingDimension")
+public class RatingVersion {
+    /** ticker|validFrom */
+    @Id
+    private String id;
+    private String ticker;
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "UTC")
+    private LocalDate validFrom;
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "UTC")
+    private LocalDate validTo;
+    private Rating rating;
+    @JsonFormat(pattern = "yyyy-MM-dd", timezone = "UTC")
+    private LocalDate earningsDate;
+}
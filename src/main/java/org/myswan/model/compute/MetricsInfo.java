@@ -12,6 +12,8 @@ import java.util.List;
 public class MetricsInfo {
     private String ticker;
     private List<String> day0Factors;
+    /** day0Factors packed into fixed-width fields (see FactorCode); 0 on rows written before it existed */
+    private long day0Code;
     private MetricsDay d1;
     private MetricsDay d2;
     private MetricsDay d3;
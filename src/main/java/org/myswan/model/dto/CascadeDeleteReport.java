@@ -0,0 +1,38 @@
+package org.myswan.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of deleting a set of tickers from several collections in one cascade
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CascadeDeleteReport {
+
+    private List<String> tickers = new ArrayList<>();        // Canonical tickers deleted
+    private List<String> notFound = new ArrayList<>();       // Requested tickers with no master record
+    private List<CollectionResult> collections = new ArrayList<>();
+    private long totalDeleted;
+    private long totalMillis;                                // Wall time; collections run concurrently
+
+    public boolean hasErrors() {
+        return collections.stream().anyMatch(c -> c.getError() != null);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CollectionResult {
+        private String collection;
+        private long deleted;              // Documents removed from Mongo
+        private long archivedDeleted;      // Rows removed from the history archive
+        private long millis;
+        private String error;
+    }
+}
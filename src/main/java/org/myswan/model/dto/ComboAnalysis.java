@@ -22,6 +22,9 @@ public class ComboAnalysis {
     private double maxReturn;              // Best trade
     private double minReturn;              // Worst trade
     private double profitFactor;           // Total wins / Total losses
+    private double medianReturn;           // Median return (within 1%)
+    private double p25Return;              // Lower quartile
+    private double p75Return;              // Upper quartile
     private String factors;                // Detailed factor list
 
     // Constructor for summary
@@ -0,0 +1,73 @@
+package org.myswan.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index advisor report built from the Mongo profiler output and $indexStats
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexAdvisorReport {
+
+    private String generatedAt;
+    private int profilerLevel;             // 0 = off, 1 = slow ops, 2 = all ops
+    private int slowMs;                    // Profiler slow-operation threshold
+    private int profileEntriesRead;        // Entries read from system.profile
+
+    // Query shapes seen by the profiler, slowest total time first
+    private List<QueryShape> slowQueryShapes = new ArrayList<>();
+
+    // Indexes suggested for shapes that scan far more than they return
+    private List<IndexSuggestion> missingIndexes = new ArrayList<>();
+
+    // Existing indexes with no recorded use, or made redundant by a longer index
+    private List<IndexUsage> unusedIndexes = new ArrayList<>();
+
+    // Indexes in the declared plan that do not exist yet
+    private List<IndexSuggestion> planNotApplied = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class QueryShape {
+        private String collection;
+        private String operation;          // find, aggregate, update, remove, count, ...
+        private String shape;              // e.g. "filter{ticker:eq, histDate:range} sort{histDate:-1}"
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+        private double avgMillis;
+        private long docsExamined;
+        private long keysExamined;
+        private long docsReturned;
+        private long collectionScans;
+        private List<String> plans = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class IndexSuggestion {
+        private String collection;
+        private String keys;               // e.g. "{ticker: 1, histDate: -1}"
+        private String reason;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class IndexUsage {
+        private String collection;
+        private String name;
+        private String keys;
+        private long ops;                  // Accesses since the stats were last reset (server restart)
+        private String since;
+        private String reason;
+    }
+}
@@ -0,0 +1,30 @@
+package org.myswan.model.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of a background job, as returned on submit and by the job polling and event endpoints
+ */
+@Data
+@NoArgsConstructor
+public class JobStatus {
+
+    private String id;
+    private String type;
+    private String state;               // QUEUED, RUNNING, SUCCEEDED, FAILED
+    private String params;
+    private String submittedAt;
+    private String startedAt;
+    private String finishedAt;
+    private long total;                 // Work units announced by the job; 0 while unknown
+    private long done;
+    private Double percent;             // Null while the total is unknown
+    private String message;             // Current stage, e.g. "Scoring"
+    private String error;
+    private boolean resultAvailable;
+    private boolean coalesced;          // Submit joined an identical job already queued or running
+    private String statusUrl;
+    private String eventsUrl;
+    private String resultUrl;
+}
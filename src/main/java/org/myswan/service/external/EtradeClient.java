@@ -12,6 +12,7 @@ import org.myswan.service.internal.AppCacheService;
 import org.myswan.service.internal.MasterService;
 import org.myswan.service.internal.PatternService;
 import org.myswan.service.internal.StockService;
+import org.myswan.service.internal.job.JobProgress;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -117,10 +118,12 @@ public class EtradeClient {
         AtomicInteger successCount = new AtomicInteger(0);
         AtomicInteger failureCount = new AtomicInteger(0);
         AtomicInteger notFoundCount = new AtomicInteger(0);
-        String today = UtilHelper.formatLocalDateToString(LocalDate.now());
-        //String today = UtilHelper.formatLocalDateToString(LocalDate.now().minusDays(1));
+        LocalDate today = LocalDate.now();
+        //LocalDate today = LocalDate.now().minusDays(1);
 
         log.info("Starting pattern fetch for {} enabled tickers", enabledMasters.size());
+        JobProgress progress = JobProgress.current();
+        progress.total(enabledMasters.size());
 
         try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
             int batchSize = 50;
@@ -165,6 +168,8 @@ public class EtradeClient {
                             failureCount.incrementAndGet();
                             failedTickers.add(master.getTicker() + ": " + e.getMessage());
                             log.error("✗ {} - ERROR: {}", master.getTicker(), e.getMessage());
+                        } finally {
+                            progress.step();
                         }
                     }, executor);
 
@@ -183,13 +188,9 @@ public class EtradeClient {
         log.info("Fetched total {} patterns from eTrade. Success: {}, Failed: {}",
                  allPatterns.size(), successCount.get(), failureCount.get());
 
-        enrichPatternsWithStockData(allPatterns);
-        log.info("Enriched patterns with stock price data");
-
-        patternService.deleteAll();
-        log.info("Deleted existing patterns");
-
-        patternService.saveAll(allPatterns);
+        // Bulk upsert by eventId; the stock is joined from the snapshot when patterns are read
+        progress.message("Saving " + allPatterns.size() + " patterns");
+        patternService.replaceAll(allPatterns);
         log.info("Saved {} new patterns", allPatterns.size());
 
         // Delete history for today
@@ -221,38 +222,9 @@ public class EtradeClient {
         return result.toString();
     }
 
-    public void enrichPatternsWithStockData(List<Pattern> patterns) {
-        try {
-            Map<String, List<Pattern>> patternsByTicker = patterns.stream()
-                .collect(Collectors.groupingBy(Pattern::getTicker));
-
-            List<String> tickers = new ArrayList<>(patternsByTicker.keySet());
-            Query query = new Query(Criteria.where("ticker").in(tickers));
-            List<Stock> stocks = mongoTemplate.find(query, Stock.class);
-
-            Map<String, Stock> stockMap = stocks.stream()
-                .collect(Collectors.toMap(Stock::getTicker, stock -> stock));
-
-            patterns.forEach(pattern -> {
-                Stock stock = stockMap.get(pattern.getTicker());
-                if (stock != null) {
-                    pattern.setStock(stock);
-                    log.debug("Enriched pattern for {} with stock data: Price={}, Change={}, High={}, Low={}",
-                            pattern.getTicker(), stock.getPrice(), stock.getChange(), stock.getHigh(), stock.getLow());
-                } else {
-                    log.warn("No stock data found for ticker: {}", pattern.getTicker());
-                }
-            });
-
-            log.info("Enriched {} patterns with stock data from {} stocks", patterns.size(), stocks.size());
-        } catch (Exception e) {
-            log.error("Error enriching patterns with stock data", e);
-        }
-    }
-
     public void disableTickerInMaster(String ticker) {
         try {
-            Query query = new Query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
+            Query query = new Query(Criteria.where("ticker").is(UtilHelper.canonicalTicker(ticker)));
             Update update = new Update().set("etradePatternLookup", false);
 
             long updated = mongoTemplate.updateFirst(query, update, "master").getModifiedCount();
@@ -373,59 +345,42 @@ public class EtradeClient {
                     if ("true".equals(UtilHelper.checkForPresence(event, "active"))) {
                         Pattern pattern = new Pattern();
                         pattern.setTicker(ticker);
-                        pattern.setHistDate(UtilHelper.formatLocalDateToString(LocalDate.now()));
-                        //pattern.setHistDate(UtilHelper.formatLocalDateToString(LocalDate.now().minusDays(1)));
-                        pattern.setStop(UtilHelper.stripStringToTwoDecimals(
-                            UtilHelper.checkForPresence(event, "deactivationPrice"), false));
+                        pattern.setHistDate(today);
+                        //pattern.setHistDate(today.minusDays(1));
+                        pattern.setStop(parsePrice(UtilHelper.checkForPresence(event, "deactivationPrice")));
                         pattern.setId(UtilHelper.checkForPresence(event, "eventId"));
                         pattern.setEventId(UtilHelper.checkForPresence(event, "eventId"));
                         pattern.setName(UtilHelper.checkForPresence(event, "eventLabel"));
 
                         // Parse dates from the event
                         JSONObject dates = event.optJSONObject("dates");
-                        String eventBeginDate = null;
-                        String eventEndDate = null;
+                        LocalDate eventBeginDate = null;
+                        LocalDate eventEndDate = null;
                         if (dates != null) {
                             String eventBegin = UtilHelper.checkForPresence(dates, "eventBegin");
                             String eventEnd = UtilHelper.checkForPresence(dates, "eventEnd");
 
                             // Extract YYYY-MM-DD from ISO timestamp
-                            if (StringUtils.hasText(eventBegin) && eventBegin.length() >= 10) {
-                                eventBeginDate = eventBegin.substring(0, 10);
-                            }
-                            if (StringUtils.hasText(eventEnd) && eventEnd.length() >= 10) {
-                                eventEndDate = eventEnd.substring(0, 10);
-                            }
+                            eventBeginDate = parseDate(eventBegin, ticker);
+                            eventEndDate = parseDate(eventEnd, ticker);
                         }
                         pattern.setEventBeginDate(eventBeginDate);
                         pattern.setEventEndDate(eventEndDate);
                         // Pattern emergence date is when it was confirmed (eventEnd)
                         pattern.setPatternEmergenceDate(eventEndDate);
 
-                        String targetDate = UtilHelper.checkForPresence(event, "lastPossibleActive");
-                        if (StringUtils.hasText(targetDate) && targetDate.length() > 10) {
-                            targetDate = targetDate.substring(0, 10);
-                        }
-                        LocalDate parsedTargetDate = null;
-                        if (StringUtils.hasText(targetDate)) {
-                            try {
-                                parsedTargetDate = LocalDate.parse(targetDate);
-                            } catch (DateTimeParseException ex) {
-                                log.debug("Unable to parse target date '{}' for ticker {}", targetDate, ticker, ex);
-                            }
-                        }
-                        if (parsedTargetDate != null && parsedTargetDate.isBefore(today)) {
+                        LocalDate targetDate = parseDate(UtilHelper.checkForPresence(event, "lastPossibleActive"), ticker);
+                        if (targetDate != null && targetDate.isBefore(today)) {
                             continue;
                         }
                         pattern.setTargetDate(targetDate);
                         pattern.setStatus("Y");
 
                         // Parse endPrices and get entry price
-                        String entryPrice = "";
+                        Double entryPrice = null;
                         if (event.has("endPrices") && !event.isNull("endPrices")) {
                             JSONObject endPrices = event.getJSONObject("endPrices");
-                            entryPrice = UtilHelper.stripStringToTwoDecimals(
-                                UtilHelper.checkForPresence(endPrices, "breakout"), false);
+                            entryPrice = parsePrice(UtilHelper.checkForPresence(endPrices, "breakout"));
                             pattern.setEntry(entryPrice);
                         }
 
@@ -438,14 +393,12 @@ public class EtradeClient {
                         // Parse targetPrice
                         if (event.has("targetPrice") && !event.isNull("targetPrice")) {
                             JSONObject targetPrice = event.getJSONObject("targetPrice");
-                            pattern.setMinPT(UtilHelper.stripStringToTwoDecimals(
-                                UtilHelper.checkForPresence(targetPrice, "lower"), false));
-                            pattern.setMaxPT(UtilHelper.stripStringToTwoDecimals(
-                                UtilHelper.checkForPresence(targetPrice, "upper"), false));
+                            pattern.setMinPT(parsePrice(UtilHelper.checkForPresence(targetPrice, "lower")));
+                            pattern.setMaxPT(parsePrice(UtilHelper.checkForPresence(targetPrice, "upper")));
                         }
 
                         // Only add pattern if it has a valid entry price
-                        if (StringUtils.hasText(entryPrice)) {
+                        if (entryPrice != null) {
                             // Set pattern counts
                             pattern.setNoOfLongPatterns(longCount);
                             pattern.setNoOfShortPatterns(shortCount);
@@ -466,4 +419,27 @@ public class EtradeClient {
                  patterns.size(), ticker, longCount, shortCount);
         return patterns;
     }
+
+    /**
+     * Price rounded to two decimals, or null when absent or not numeric
+     */
+    private static Double parsePrice(String value) {
+        String rounded = UtilHelper.stripStringToTwoDecimals(value, false);
+        return StringUtils.hasText(rounded) ? Double.valueOf(rounded) : null;
+    }
+
+    /**
+     * Date part (yyyy-MM-dd) of an ISO timestamp, or null when absent or unparseable
+     */
+    private LocalDate parseDate(String value, String ticker) {
+        if (!StringUtils.hasText(value) || value.length() < 10) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value.substring(0, 10));
+        } catch (DateTimeParseException ex) {
+            log.debug("Unable to parse date '{}' for ticker {}", value, ticker, ex);
+            return null;
+        }
+    }
 }
@@ -2,11 +2,17 @@ package org.myswan.service.external;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.myswan.common.UtilHelper;
 import org.myswan.model.collection.Options;
-import org.myswan.repository.OptionsRepository;
 import org.myswan.service.internal.AppCacheService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -17,8 +23,9 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Service
 public class RobinHoodClient {
@@ -28,19 +35,20 @@ public class RobinHoodClient {
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
     private final AppCacheService appCacheService;
-    private final OptionsRepository optionsRepository;
     private final MongoTemplate mongoTemplate;
 
+    /** Upper bound on pages followed through the Robinhood 'next' cursor */
+    @Value("${robinhood.options.max-pages:100}")
+    private int maxPages;
+
     public RobinHoodClient(
             ObjectMapper objectMapper,
             AppCacheService appCacheService,
-            OptionsRepository optionsRepository,
             MongoTemplate mongoTemplate
     ) {
         this.httpClient = HttpClient.newHttpClient();
         this.objectMapper = objectMapper;
         this.appCacheService = appCacheService;
-        this.optionsRepository = optionsRepository;
         this.mongoTemplate = mongoTemplate;
     }
 
@@ -49,8 +57,10 @@ public class RobinHoodClient {
     }
 
     /**
-     * Calls the Robinhood options URL stored in AppCache, parses the response,
-     * upserts each option into the options collection, and returns the count saved.
+     * Calls the Robinhood options URL stored in AppCache and follows the {@code next} cursor through every
+     * page. Each page is mapped on its own virtual thread while the next one is requested, and the existing
+     * optionId -> priceOnAdd pairs are loaded in one projected query alongside. All contracts are then
+     * written with a single unordered bulk upsert keyed on optionId. Returns the count saved.
      */
     public int fetchAndSaveOptions(LocalDate histDate) {
         var cache = appCacheService.getAppCache();
@@ -71,58 +81,45 @@ public class RobinHoodClient {
         }
 
         LocalDate effectiveDate = histDate != null ? histDate : LocalDate.now();
+        long start = System.currentTimeMillis();
 
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(robinhoodUrl))
-                    .header("Authorization", "Bearer " + robinhoodToken)
-                    .header("Accept", "application/json")
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() < 200 || response.statusCode() >= 300) {
-                log.error("fetchAndSaveOptions: Robinhood returned HTTP {}: {}", response.statusCode(), response.body());
-                return 0;
-            }
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Map<String, Double>> priceOnAddFuture = executor.submit(this::loadPriceOnAdd);
 
-            JsonNode root = objectMapper.readTree(response.body());
-            JsonNode results = root.get("results");
-            if (results == null || !results.isArray()) {
-                log.warn("fetchAndSaveOptions: no 'results' array in Robinhood response");
-                return 0;
+            // The cursor only comes with the previous page, so requests are sequential; mapping is not
+            List<Future<List<Options>>> pages = new ArrayList<>();
+            String next = robinhoodUrl;
+            while (next != null && !next.isBlank() && pages.size() < maxPages) {
+                JsonNode root = fetchPage(next, robinhoodToken);
+                if (root == null) break;
+                JsonNode results = root.get("results");
+                if (results == null || !results.isArray()) {
+                    log.warn("fetchAndSaveOptions: no 'results' array in Robinhood response page {}", pages.size() + 1);
+                    break;
+                }
+                pages.add(executor.submit(() -> mapPage(results, effectiveDate)));
+                next = getStringValue(root.get("next"));
+            }
+            if (next != null && !next.isBlank()) {
+                log.warn("fetchAndSaveOptions: stopped after {} pages (robinhood.options.max-pages)", maxPages);
             }
 
-            int saved = 0;
-            for (JsonNode node : results) {
-                Options opt = mapNodeToOptions(node, effectiveDate);
-                if (opt == null) continue;
-                // Upsert by optionId
-                if (opt.getOptionId() != null && !opt.getOptionId().isBlank()) {
-                    Query q = Query.query(Criteria.where("optionId").is(opt.getOptionId()));
-                    List<Options> existing = mongoTemplate.find(q, Options.class, "options");
-                    if (!existing.isEmpty()) {
-                        Options prev = existing.getFirst();
-                        opt.setId(prev.getId());
-                        // preserve priceOnAdd from the first time it was saved
-                        double priceOnAdd = prev.getPriceOnAdd() > 0 ? prev.getPriceOnAdd() : prev.getPrice();
-                        opt.setPriceOnAdd(priceOnAdd);
-                        // changeSinceAdded = current price - priceOnAdd
-                        double changeSinceAdded = priceOnAdd > 0
-                                ? Math.round((opt.getPrice() - priceOnAdd) * 10000.0) / 10000.0
-                                : 0.0;
-                        opt.setChangeSinceAdded(changeSinceAdded);
+            // Last occurrence of an optionId wins
+            Map<String, Options> byOptionId = new LinkedHashMap<>();
+            List<Options> withoutId = new ArrayList<>();
+            for (Future<List<Options>> page : pages) {
+                for (Options opt : page.get()) {
+                    if (opt.getOptionId() != null && !opt.getOptionId().isBlank()) {
+                        byOptionId.put(opt.getOptionId(), opt);
                     } else {
-                        // first time saving — priceOnAdd = current price
-                        opt.setPriceOnAdd(opt.getPrice());
-                        opt.setChangeSinceAdded(0.0);
+                        withoutId.add(opt);
                     }
                 }
-                optionsRepository.save(opt);
-                saved++;
             }
-            log.info("fetchAndSaveOptions: saved/updated {} options from Robinhood", saved);
+
+            int saved = bulkUpsert(byOptionId.values(), withoutId, priceOnAddFuture.get());
+            log.info("fetchAndSaveOptions: saved/updated {} options from {} Robinhood pages in {} ms",
+                    saved, pages.size(), System.currentTimeMillis() - start);
             return saved;
 
         } catch (Exception ex) {
@@ -131,6 +128,82 @@ public class RobinHoodClient {
         }
     }
 
+    private JsonNode fetchPage(String url, String token) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            log.error("fetchAndSaveOptions: Robinhood returned HTTP {}: {}", response.statusCode(), response.body());
+            return null;
+        }
+        return objectMapper.readTree(response.body());
+    }
+
+    private List<Options> mapPage(JsonNode results, LocalDate histDate) {
+        List<Options> options = new ArrayList<>(results.size());
+        for (JsonNode node : results) {
+            Options opt = mapNodeToOptions(node, histDate);
+            if (opt != null) options.add(opt);
+        }
+        return options;
+    }
+
+    /**
+     * optionId -> priceOnAdd for every stored option (falling back to the stored price when
+     * priceOnAdd was never set), read with a single projected query.
+     */
+    private Map<String, Double> loadPriceOnAdd() {
+        Map<String, Double> priceOnAdd = new HashMap<>();
+        mongoTemplate.getCollection("options")
+                .find(Filters.exists("optionId"))
+                .projection(Projections.include("optionId", "priceOnAdd", "price"))
+                .forEach(doc -> {
+                    String optionId = doc.getString("optionId");
+                    if (optionId == null) return;
+                    double onAdd = doc.get("priceOnAdd") instanceof Number n ? n.doubleValue() : 0.0;
+                    double price = doc.get("price") instanceof Number n ? n.doubleValue() : 0.0;
+                    priceOnAdd.putIfAbsent(optionId, onAdd > 0 ? onAdd : price);
+                });
+        return priceOnAdd;
+    }
+
+    private int bulkUpsert(Collection<Options> options, List<Options> withoutId, Map<String, Double> priceOnAddById) {
+        if (options.isEmpty() && withoutId.isEmpty()) return 0;
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Options.class);
+        for (Options opt : options) {
+            Double prevPriceOnAdd = priceOnAddById.get(opt.getOptionId());
+            if (prevPriceOnAdd != null) {
+                // preserve priceOnAdd from the first time it was saved
+                opt.setPriceOnAdd(prevPriceOnAdd);
+                // changeSinceAdded = current price - priceOnAdd
+                double changeSinceAdded = prevPriceOnAdd > 0
+                        ? Math.round((opt.getPrice() - prevPriceOnAdd) * 10000.0) / 10000.0
+                        : 0.0;
+                opt.setChangeSinceAdded(changeSinceAdded);
+            } else {
+                // first time saving — priceOnAdd = current price
+                opt.setPriceOnAdd(opt.getPrice());
+                opt.setChangeSinceAdded(0.0);
+            }
+            // No id on the replacement, so an existing document keeps its _id
+            bulk.replaceOne(Query.query(Criteria.where("optionId").is(opt.getOptionId())), opt,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        withoutId.forEach(bulk::insert);
+
+        BulkWriteResult result = bulk.execute();
+        log.debug("fetchAndSaveOptions: bulk upsert matched {}, upserted {}, inserted {}",
+                result.getMatchedCount(), result.getUpserts().size(), result.getInsertedCount());
+        return options.size() + withoutId.size();
+    }
+
     private Options mapNodeToOptions(JsonNode node, LocalDate histDate) {
         try {
             Options opt = new Options();
@@ -145,7 +218,7 @@ public class RobinHoodClient {
                 }
             }
 
-            opt.setTicker(getStringValue(node.get("symbol")));
+            opt.setTicker(UtilHelper.canonicalTicker(getStringValue(node.get("symbol"))));
 
             // occ_symbol format: "SPY   260320C00685000" — ticker padded to 6 chars, rest is the option name
             String occSymbol = getStringValue(node.get("occ_symbol"));
@@ -0,0 +1,201 @@
+package org.myswan.service.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Results of the history analyses (prediction combos, ticker performance, ticker stats), keyed by
+ * endpoint and parameters and stamped with the stockHistory write generation they were computed at.
+ *
+ * A result is fresh while the generation has not moved. Once it has, the stale result is served at
+ * once and recomputed in the background (stale-while-revalidate), so pages load instantly after the
+ * first computation. Concurrent requests for the same key and generation share one computation.
+ */
+@Service
+public class AnalysisResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisResultCache.class);
+
+    private static final String HISTORY = "stockHistory";
+
+    private final HistoryRangeCache historyCache;
+
+    /** Access-ordered, least recently used first. Guarded by this. */
+    private final LinkedHashMap<String, Result> results = new LinkedHashMap<>(64, 0.75f, true);
+    /** key@generation -> computation in progress */
+    private final Map<String, CompletableFuture<Object>> inflight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+
+    /** Cache analysis results until stockHistory changes */
+    @Value("${analysis.cache.enabled:true}")
+    private boolean enabled;
+
+    /** Serve the previous result while a changed history is re-analyzed in the background */
+    @Value("${analysis.cache.stale-while-revalidate:true}")
+    private boolean staleWhileRevalidate;
+
+    /** Results kept (one per endpoint and parameter set), least recently used dropped first */
+    @Value("${analysis.cache.max-entries:32}")
+    private int maxEntries;
+
+    public AnalysisResultCache(HistoryRangeCache historyCache) {
+        this.historyCache = historyCache;
+    }
+
+    /**
+     * Result for the key, computing it when missing. A result older than the current history comes
+     * back marked stale while a background refresh runs.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Cached<T> get(String key, Supplier<T> compute) {
+        if (!enabled) {
+            return new Cached<>(compute.get(), false, Instant.now());
+        }
+        long generation = historyCache.writeGeneration(HISTORY);
+        Result result;
+        synchronized (this) {
+            result = results.get(key);
+        }
+        if (result != null && result.generation == generation) {
+            hits.increment();
+            return new Cached<>((T) result.value, false, result.computedAt);
+        }
+        if (result != null && staleWhileRevalidate) {
+            staleHits.increment();
+            refreshInBackground(key, generation, compute);
+            return new Cached<>((T) result.value, true, result.computedAt);
+        }
+        misses.increment();
+        Result computed = compute(key, generation, compute);
+        return new Cached<>((T) computed.value, false, computed.computedAt);
+    }
+
+    /**
+     * Result computed against the current history. A stale result is never returned: the caller
+     * computes it, or waits for the background refresh already running for this generation.
+     * Used by background jobs, which can afford to wait.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Cached<T> getFresh(String key, Supplier<T> compute) {
+        if (!enabled) {
+            return new Cached<>(compute.get(), false, Instant.now());
+        }
+        long generation = historyCache.writeGeneration(HISTORY);
+        Result result;
+        synchronized (this) {
+            result = results.get(key);
+        }
+        if (result != null && result.generation == generation) {
+            hits.increment();
+            return new Cached<>((T) result.value, false, result.computedAt);
+        }
+        misses.increment();
+        Result computed = compute(key, generation, compute);
+        return new Cached<>((T) computed.value, false, computed.computedAt);
+    }
+
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("staleWhileRevalidate", staleWhileRevalidate);
+        stats.put("generation", historyCache.writeGeneration(HISTORY));
+        synchronized (this) {
+            List<Map<String, Object>> entries = new ArrayList<>();
+            results.forEach((key, result) -> {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("key", key);
+                entry.put("generation", result.generation);
+                entry.put("computedAt", result.computedAt.toString());
+                entry.put("computeMillis", result.computeMillis);
+                entries.add(entry);
+            });
+            stats.put("entries", entries);
+        }
+        stats.put("inflight", inflight.size());
+        stats.put("hits", hits.sum());
+        stats.put("staleHits", staleHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("joinedInflight", joined.sum());
+        return stats;
+    }
+
+    /**
+     * Compute in the calling thread, or wait for the identical computation already running.
+     */
+    private Result compute(String key, long generation, Supplier<?> compute) {
+        String flight = key + "@" + generation;
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> running = inflight.putIfAbsent(flight, created);
+        if (running != null) {
+            joined.increment();
+            try {
+                return (Result) running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Object value = compute.get();
+            Result result = new Result(value, generation, Instant.now(), System.currentTimeMillis() - start);
+            store(key, result);
+            created.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(flight, created);
+        }
+    }
+
+    private void refreshInBackground(String key, long generation, Supplier<?> compute) {
+        if (inflight.containsKey(key + "@" + generation)) return;
+        Thread.ofVirtual().name("analysis-refresh").start(() -> {
+            try {
+                compute(key, generation, compute);
+                log.info("Refreshed analysis result {} for history generation {}", key, generation);
+            } catch (Exception e) {
+                log.error("Background refresh of analysis result {} failed, keeping the previous one", key, e);
+            }
+        });
+    }
+
+    private synchronized void store(String key, Result result) {
+        Result previous = results.get(key);
+        // A slower refresh of an older generation must not replace a newer result
+        if (previous != null && previous.generation > result.generation) return;
+        results.put(key, result);
+        Iterator<String> eldest = results.keySet().iterator();
+        while (results.size() > Math.max(1, maxEntries) && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * A result and whether it predates the current history.
+     */
+    public record Cached<T>(T value, boolean stale, Instant computedAt) {
+    }
+
+    private record Result(Object value, long generation, Instant computedAt, long computeMillis) {
+    }
+}
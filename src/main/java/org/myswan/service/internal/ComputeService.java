@@ -4,6 +4,7 @@ import org.myswan.helpers.scoring.*;
 import org.myswan.helpers.scoring.ConsecutiveDaysCalculator;
 import org.myswan.model.compute.Score;
 import org.myswan.model.collection.Stock;
+import org.myswan.service.internal.job.JobProgress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -17,6 +18,9 @@ import java.util.stream.Collectors;
 public class ComputeService {
 
     private static final Logger log = LoggerFactory.getLogger(ComputeService.class);
+
+    /** Stages of calculateScore reported to a running job */
+    private static final int SCORING_STAGES = 22;
     private final StockService stockService;
     private final PatternService patternService;
     private final DayTrading dayTrading;
@@ -69,11 +73,13 @@ public class ComputeService {
     public String compute() {
 
         try {
+            JobProgress.current().message("Pattern and stock counts");
             List<Stock> allList = stockService.list();
             List<org.myswan.model.collection.Pattern> allPatterns = updatePatternAndStockCounts(allList);
             calculateScore(allList, allPatterns);
             return "Compute and Scoring calculation complete: " + allList.size() + " stocks processed";
         } catch (Exception e) {
+            JobProgress.current().failed(e);
             return "Error during Compute and Scoring calculation: " + e.getMessage();
         }
     }
@@ -143,10 +149,8 @@ public class ComputeService {
                 continue;
             }
 
-            pat.setStock(stock);
-
             if ("long".equalsIgnoreCase(pat.getTrend())) {
-                Double target = parseDoubleSafe(pat.getMinPT());
+                Double target = pat.getMinPT();
                 if (target != null && (
                         isGreaterOrEqual(stock.getLow(), target) ||
                         isGreaterOrEqual(stock.getPrice(), target) ||
@@ -155,7 +159,7 @@ public class ComputeService {
                     pat.setPatternMet(true);
                 }
             } else if ("short".equalsIgnoreCase(pat.getTrend())) {
-                Double target = parseDoubleSafe(pat.getMaxPT());
+                Double target = pat.getMaxPT();
                 if (target != null && (
                         isLessOrEqual(stock.getHigh(), target) ||
                         isLessOrEqual(stock.getPrice(), target) ||
@@ -171,6 +175,8 @@ public class ComputeService {
 
     public String calculateScore(List<Stock> allList, List<org.myswan.model.collection.Pattern> allPatterns) {
         try {
+            JobProgress progress = JobProgress.current();
+            progress.total(SCORING_STAGES);
 
             List<Stock> historyList = stockService.getHistoryByDate(LocalDate.now().minusDays(1));
             if(historyList == null || historyList.isEmpty())
@@ -199,96 +205,101 @@ public class ComputeService {
 
             // Calculate consecutive up/down days first (before scoring)
             allList.parallelStream().forEach(consecutiveDaysCalculator::calculateConsecutiveDays);
-            log.info("calculateConsecutiveDays completed");
+            completed(progress, "calculateConsecutiveDays");
             allList.parallelStream().forEach(dayTrading::calculateScore);//DayTrading Setup
-            log.info("dayTrading::calculateScore completed");
+            completed(progress, "dayTrading::calculateScore");
             allList.parallelStream().forEach(swingTrading::calculateScore);//SwingTrading Setup
-            log.info("swingTrading::calculateScore completed");
+            completed(progress, "swingTrading::calculateScore");
             allList.parallelStream().forEach(reversal::calculateScore);// Reversal Setup
-            log.info("reversal::calculateScore completed");
+            completed(progress, "reversal::calculateScore");
             allList.parallelStream().forEach(breakout::calculateScore);//Breakout Setup
-            log.info("breakout::calculateScore completed");
+            completed(progress, "breakout::calculateScore");
             allList.parallelStream().forEach(pattern::calculateScore);//Pattern Setup
-            log.info("pattern::calculateScore completed");
+            completed(progress, "pattern::calculateScore");
             allList.parallelStream().forEach(this::calculateOverAllScore);//Overall Score
-            log.info("calculateOverAllScore completed");
+            completed(progress, "calculateOverAllScore");
             allList.parallelStream().forEach(this::calculateSignal);//Overall Signal
-            log.info("calculateSignal completed");
+            completed(progress, "calculateSignal");
 
             //Detecting Bottomed stocks
             allList.parallelStream().forEach(stock -> {
                 Stock previousDayStock = historyMap.get(stock.getTicker());
                 bottomDetect.detectBottomSignal(stock, previousDayStock);
             });
-            log.info("detectBottomSignal completed");
+            completed(progress, "detectBottomSignal");
 
             //Detecting Spike probables
             allList.parallelStream().forEach(stock -> {
                 Stock previousDayStock = historyMap.get(stock.getTicker());
                 spikeDetect.detectSpikeSignal(stock, previousDayStock);
             });
-            log.info("detectSpikeSignal completed");
+            completed(progress, "detectSpikeSignal");
 
             //Detecting OverSold Bounces
             allList.parallelStream().forEach(stock -> {
                 Stock previousDayStock = historyMap.get(stock.getTicker());
                 oversoldBounceDetect.detectOversoldBounce(stock, previousDayStock);
             });
-            log.info("detectOversoldBounce completed");
+            completed(progress, "detectOversoldBounce");
 
             //Detecting Momentum Pops
             allList.parallelStream().forEach(stock -> {
                 Stock previousDayStock = historyMap.get(stock.getTicker());
                 momentumPopDetect.detectMomentumPop(stock, previousDayStock);
             });
-            log.info("detectMomentumPop completed");
+            completed(progress, "detectMomentumPop");
 
             //Categorize and assign filter category each stock daily
             allList.parallelStream().forEach(stock -> {
                 Stock previousDayStock = historyMap.get(stock.getTicker());
                 filterCategoryDetect.filterCategory(stock, previousDayStock);
             });
-            log.info("filterCategory completed");
+            completed(progress, "filterCategory");
 
             //Layer 1: Gate Signal Detection (GPT-4 Hybrid System)
             allList.parallelStream().forEach(stock -> {
                 Stock previousDayStock = historyMap.get(stock.getTicker());
                 gateSignalDetect.detectGateSignal(stock, previousDayStock);
             });
-            log.info("detectGateSignal completed");
+            completed(progress, "detectGateSignal");
 
             //Layer 2: Confidence Tier Detection (Only after other signals calculated)
             allList.parallelStream().forEach(confidenceTierDetect::detectConfidenceTier);
-            log.info("detectConfidenceTier completed");
+            completed(progress, "detectConfidenceTier");
 
             allList.parallelStream().forEach(dailyRanking::dailyRanking);//DailyRanking Setup
-            log.info("dailyRanking completed");
+            completed(progress, "dailyRanking");
             stockService.replaceStocks(allList);
-            log.info("replaceStocks completed");
+            completed(progress, "replaceStocks");
 
-            allPatterns.parallelStream().forEach(pattern -> {
-                String ticker = pattern.getTicker() != null ? pattern.getTicker().toUpperCase() : "";
-                allList.stream()
-                        .filter(s -> ticker.equalsIgnoreCase(s.getTicker()))
-                        .findFirst().ifPresent(pattern::setStock);
-            });
-            patternService.deleteAll();
-            patternService.saveAll(allPatterns);
+            // Patterns carry only the ticker; the stock is joined from the snapshot on read
+            patternService.replaceAll(allPatterns);
+            completed(progress, "pattern replaceAll");
 
             picksService.syncWithStockData(allList);
-            log.info("syncWithStockData completed");
+            completed(progress, "syncWithStockData");
             optionsService.syncWithStockData(allList);
-            log.info("options syncWithStockData completed");
+            completed(progress, "options syncWithStockData");
             optionsService.calculateAllDaysUpDown();
-            log.info("options calculateAllDaysUpDown completed");
+            completed(progress, "options calculateAllDaysUpDown");
             syncService.syncAllHistory();
-            log.info("syncAllHistory completed");
+            completed(progress, "syncAllHistory");
             return "Scoring calculation complete: " + allList.size() + " stocks processed";
         } catch (Exception e) {
+            JobProgress.current().failed(e);
             return "Error during scoring calculation: " + e.getMessage();
         }
     }
 
+    /**
+     * Log a finished scoring stage and count it towards the running job, if any.
+     */
+    private static void completed(JobProgress progress, String stage) {
+        log.info("{} completed", stage);
+        progress.message(stage);
+        progress.step();
+    }
+
     private void calculateOverAllScore(Stock stock) {
 
         if(stock.getScore() == null)
@@ -391,18 +402,6 @@ public class ComputeService {
         }
     }
 
-    private Double parseDoubleSafe(String value) {
-        if (value == null || value.isBlank()) {
-            return null;
-        }
-        try {
-            return Double.parseDouble(value.trim());
-        } catch (NumberFormatException ex) {
-            log.warn("Unable to parse double from '{}': {}", value, ex.getMessage());
-            return null;
-        }
-    }
-
     private boolean isGreaterOrEqual(Double actual, Double target) {
         if (actual == null || target == null) {
             return false;
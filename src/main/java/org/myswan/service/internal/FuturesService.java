@@ -21,13 +21,24 @@ public class FuturesService {
     private static final Logger log = LoggerFactory.getLogger(FuturesService.class);
     private final FuturesRepository repository;
     private final MongoTemplate mongoTemplate;
+    private final HistoryRangeCache historyCache;
 
-    public FuturesService(FuturesRepository repository, MongoTemplate mongoTemplate) {
+    public FuturesService(FuturesRepository repository, MongoTemplate mongoTemplate, HistoryRangeCache historyCache) {
         this.repository = repository;
         this.mongoTemplate = mongoTemplate;
+        this.historyCache = historyCache;
     }
 
+    /**
+     * Contract history, newest first. Past sessions are served from the {@link HistoryRangeCache}.
+     */
     public List<Futures> getFuturesHistory(String ticker, LocalDate from, LocalDate to) {
+        return historyCache.get("futuresHistory", ticker, from, to, Futures::getHistDate,
+                session -> findHistory(ticker, null, session.minusDays(1)),
+                session -> findHistory(ticker, session, null));
+    }
+
+    private List<Futures> findHistory(String ticker, LocalDate from, LocalDate to) {
         Query query = Query.query(Criteria.where("ticker").is(ticker));
         if (from != null) query.addCriteria(Criteria.where("histDate").gte(from));
         if (to != null) query.addCriteria(Criteria.where("histDate").lte(to));
@@ -132,11 +143,15 @@ public class FuturesService {
         } catch (Exception e) {
             log.error("Failed to sync futures history", e);
         }
+        // Rows are upserted on their own histDate, which is not always the first row's
+        futuresList.stream().map(Futures::getHistDate).filter(Objects::nonNull).distinct()
+                .forEach(date -> historyCache.invalidate("futuresHistory", date));
     }
 
     public void deleteHistoryByDate(LocalDate histDate) {
         Query query = Query.query(Criteria.where("histDate").is(histDate));
         mongoTemplate.remove(query, "futuresHistory");
+        historyCache.invalidate("futuresHistory", histDate);
     }
 
     /*public Optional<Futures> getByTicker(String ticker) {
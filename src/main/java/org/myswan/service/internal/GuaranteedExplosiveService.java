@@ -78,7 +78,7 @@ public class GuaranteedExplosiveService {
      * No fallback threshold — quality over forced top-3.
      */
     public List<GuaranteedCandidateDTO> findTop3Guaranteed() {
-        List<Stock> allStocks = stockService.list();
+        List<Stock> allStocks = stockService.listSnapshot();
         log.info("=== Guaranteed Explosive Analysis: {} total stocks ===", allStocks.size());
 
         // Stage 1: Hard pre-filters
@@ -465,14 +465,11 @@ public class GuaranteedExplosiveService {
      * Get repository (for performance tracking service)
      */
     public List<GuaranteedPick> getGuaranteedPicks() {
-        List<Stock> stocks = stockService.list();
+        Map<String, Stock> stocks = stockService.snapshotByTicker();
         List<GuaranteedPick> list = guaranteedPickRepository.findAll();
         for (GuaranteedPick pick : list) {
-            for (Stock stock : stocks) {
-                if (pick.getTicker().equals(stock.getTicker())) {
-                    pick.setStock(stock);
-                    break;
-                }
+            if (pick.getTicker() != null) {
+                pick.setStock(stocks.get(pick.getTicker().toUpperCase()));
             }
         }
         return list;
@@ -486,7 +483,7 @@ public class GuaranteedExplosiveService {
      * Get ALL stocks with explosive scores for grid display
      */
     public List<ExplosiveScoreDTO> getAllExplosiveScores() {
-        List<Stock> allStocks = stockService.list();
+        List<Stock> allStocks = stockService.listSnapshot();
         log.info("Calculating explosive scores for {} stocks", allStocks.size());
 
         List<ExplosiveScoreDTO> scores = allStocks.parallelStream()
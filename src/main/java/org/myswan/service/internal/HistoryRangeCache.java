@@ -0,0 +1,248 @@
+package org.myswan.service.internal;
+
+import org.myswan.service.internal.migration.StorageStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bounded, size-aware LRU cache of past-session history per ticker, behind the history pages.
+ *
+ * Rows dated before the current session (today) do not change once the session has been synced, so
+ * each entry holds a ticker's full past history (hot rows merged with the archive) and every request
+ * only queries the current session's live rows on top of it. Entries are weighed by row count times
+ * the collection's average document size and evicted least-recently-used once the budget is exceeded.
+ *
+ * Writers call {@link #invalidate(String, LocalDate)} (whole date) or {@link #invalidateTicker(String, String)};
+ * writes to the current session drop nothing but still count as a write. Every write bumps the
+ * collection's {@link #writeGeneration}, which other caches of derived results key on.
+ * Rows handed out are shared between readers and must be treated as read-only.
+ */
+@Service
+public class HistoryRangeCache {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryRangeCache.class);
+
+    /** Decoded rows take roughly this many times their BSON size on the heap */
+    private static final int HEAP_FACTOR = 3;
+    private static final long DEFAULT_ROW_BYTES = 1024;
+    private static final long ROW_SIZE_REFRESH_MS = 10 * 60 * 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    /** Access-ordered: iteration starts at the least recently used entry. Guarded by this. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Map<String, RowSize> rowSizes = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private long residentBytes;
+
+    /** Serve past sessions of the history pages from memory */
+    @Value("${history.cache.enabled:true}")
+    private boolean enabled;
+
+    /** Memory budget for cached past-session history */
+    @Value("${history.cache.max-mb:64}")
+    private long maxMb;
+
+    public HistoryRangeCache(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * History of one key (normally the ticker), newest first, limited to [from, to] when given.
+     *
+     * @param past rows dated before the given session date, newest first; only called on a miss
+     * @param live rows dated on or after the given session date, newest first; called per request
+     *             unless {@code to} ends before the current session
+     */
+    public <T> List<T> get(String collection, String key, LocalDate from, LocalDate to,
+                           Function<T, LocalDate> dateOf,
+                           Function<LocalDate, List<T>> past, Function<LocalDate, List<T>> live) {
+        LocalDate session = LocalDate.now();
+        List<T> rows = new ArrayList<>();
+        if (to == null || !to.isBefore(session)) {
+            rows.addAll(live.apply(session));
+        }
+        rows.addAll(pastRows(collection, key, session, past));
+        if (from == null && to == null) return rows;
+        rows.removeIf(row -> {
+            LocalDate date = dateOf.apply(row);
+            return date == null || (from != null && date.isBefore(from)) || (to != null && date.isAfter(to));
+        });
+        return rows;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> pastRows(String collection, String key, LocalDate session, Function<LocalDate, List<T>> past) {
+        Counters counter = counters.computeIfAbsent(collection, c -> new Counters());
+        if (!enabled) {
+            counter.misses.increment();
+            return past.apply(session);
+        }
+        String cacheKey = collection + "|" + key;
+        synchronized (this) {
+            Entry entry = entries.get(cacheKey);
+            if (entry != null && entry.session.equals(session)) {
+                counter.hits.increment();
+                return (List<T>) entry.rows;
+            }
+        }
+        counter.misses.increment();
+
+        // Load outside the lock; a write to the collection meanwhile bumps the generation and the result is not kept
+        long generation = generation(collection).get();
+        List<T> rows = List.copyOf(past.apply(session));
+        long bytes = rows.size() * rowBytes(collection);
+        long budget = maxMb * 1024 * 1024;
+        synchronized (this) {
+            if (generation(collection).get() != generation || bytes > budget / 4) {
+                return rows;
+            }
+            Entry previous = entries.put(cacheKey, new Entry(collection, key, session, rows, bytes, Instant.now()));
+            residentBytes += bytes - (previous != null ? previous.bytes : 0);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (residentBytes > budget && eldest.hasNext()) {
+                Entry evicted = eldest.next();
+                eldest.remove();
+                residentBytes -= evicted.bytes;
+                counters.computeIfAbsent(evicted.collection, c -> new Counters()).evictions.increment();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * A whole session of the collection was written or removed. Past dates drop the collection's entries
+     * (a rewritten date can add or remove rows for any ticker); the current session is read live anyway.
+     * A null date drops everything cached for the collection.
+     */
+    public void invalidate(String collection, LocalDate histDate) {
+        generation(collection).incrementAndGet();
+        if (histDate != null && !histDate.isBefore(LocalDate.now())) return;
+        int dropped = removeIf(entry -> entry.collection.equals(collection));
+        counters.computeIfAbsent(collection, c -> new Counters()).invalidations.add(dropped);
+        log.debug("History cache: dropped {} {} entries for {}", dropped, collection, histDate == null ? "all dates" : histDate);
+    }
+
+    /**
+     * Rows of one ticker were written or removed. Entries under a secondary key (such as
+     * {@code optionId:...}) cannot be mapped back to a ticker, so they are dropped too.
+     */
+    public void invalidateTicker(String collection, String ticker) {
+        generation(collection).incrementAndGet();
+        int dropped = removeIf(entry -> entry.collection.equals(collection)
+                && (entry.key.equals(ticker) || entry.key.indexOf(':') > 0));
+        counters.computeIfAbsent(collection, c -> new Counters()).invalidations.add(dropped);
+    }
+
+    /**
+     * Number of writes to the collection seen so far; a result computed from the collection is current
+     * as long as this has not moved.
+     */
+    public long writeGeneration(String collection) {
+        return generation(collection).get();
+    }
+
+    public synchronized void clear() {
+        generations.values().forEach(AtomicLong::incrementAndGet);
+        entries.clear();
+        residentBytes = 0;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hits = 0;
+        long misses = 0;
+        Map<String, Object> byCollection = new TreeMap<>();
+        for (Map.Entry<String, Counters> e : counters.entrySet()) {
+            Counters c = e.getValue();
+            hits += c.hits.sum();
+            misses += c.misses.sum();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("hits", c.hits.sum());
+            entry.put("misses", c.misses.sum());
+            entry.put("hitRate", hitRate(c.hits.sum(), c.misses.sum()));
+            entry.put("evictions", c.evictions.sum());
+            entry.put("invalidations", c.invalidations.sum());
+            RowSize rowSize = rowSizes.get(e.getKey());
+            entry.put("rowBytes", rowSize != null ? rowSize.bytes : null);
+            byCollection.put(e.getKey(), entry);
+        }
+        synchronized (this) {
+            stats.put("enabled", enabled);
+            stats.put("entries", entries.size());
+            stats.put("residentBytes", residentBytes);
+            stats.put("maxBytes", maxMb * 1024 * 1024);
+        }
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hitRate(hits, misses));
+        stats.put("collections", byCollection);
+        return stats;
+    }
+
+    private synchronized int removeIf(Predicate<Entry> predicate) {
+        int dropped = 0;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (predicate.test(entry)) {
+                residentBytes -= entry.bytes;
+                it.remove();
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private AtomicLong generation(String collection) {
+        return generations.computeIfAbsent(collection, c -> new AtomicLong());
+    }
+
+    /**
+     * Estimated heap bytes per row: collStats avgObjSize, refreshed every ten minutes.
+     */
+    private long rowBytes(String collection) {
+        RowSize cached = rowSizes.get(collection);
+        if (cached != null && System.currentTimeMillis() - cached.measuredAt < ROW_SIZE_REFRESH_MS) {
+            return cached.bytes;
+        }
+        long bytes = DEFAULT_ROW_BYTES;
+        Object avg = StorageStats.of(mongoTemplate, collection).get("avgObjSize");
+        if (avg instanceof Number n && n.longValue() > 0) {
+            bytes = n.longValue() * HEAP_FACTOR;
+        }
+        rowSizes.put(collection, new RowSize(bytes, System.currentTimeMillis()));
+        return bytes;
+    }
+
+    private static double hitRate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : Math.round(hits * 10000.0 / total) / 100.0;
+    }
+
+    private record Entry(String collection, String key, LocalDate session, List<?> rows, long bytes, Instant loadedAt) {
+    }
+
+    private record RowSize(long bytes, long measuredAt) {
+    }
+
+    private static final class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LongAdder invalidations = new LongAdder();
+    }
+}
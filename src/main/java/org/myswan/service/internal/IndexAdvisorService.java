@@ -0,0 +1,335 @@
+package org.myswan.service.internal;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Sorts;
+import org.bson.BsonRegularExpression;
+import org.bson.Document;
+import org.myswan.config.IndexPlan;
+import org.myswan.model.dto.IndexAdvisorReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Builds an index advisor report on demand from the Mongo profiler (system.profile) and $indexStats.
+ * Independent of application startup: the profiler is switched on with {@link #setProfiling} and the
+ * report reflects whatever traffic was recorded since.
+ */
+@Service
+public class IndexAdvisorService {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexAdvisorService.class);
+
+    /** A shape is worth an index when it examines this many documents per document returned */
+    private static final double EXAMINED_PER_RETURNED = 20.0;
+
+    private final MongoTemplate mongoTemplate;
+
+    public IndexAdvisorService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Set the database profiler level (0 off, 1 slow operations, 2 everything) and slow threshold.
+     */
+    public Document setProfiling(int level, int slowMs) {
+        Document result = mongoTemplate.getDb().runCommand(new Document("profile", level).append("slowms", slowMs));
+        log.info("Mongo profiler set to level {} (slowms {}), previous level {}", level, slowMs, result.get("was"));
+        return result;
+    }
+
+    public IndexAdvisorReport report(int limit) {
+        IndexAdvisorReport report = new IndexAdvisorReport();
+        report.setGeneratedAt(Instant.now().toString());
+
+        Document status = mongoTemplate.getDb().runCommand(new Document("profile", -1));
+        report.setProfilerLevel(((Number) status.getOrDefault("was", 0)).intValue());
+        report.setSlowMs(((Number) status.getOrDefault("slowms", 100)).intValue());
+
+        // 1. Query shapes from the profiler
+        Map<String, IndexAdvisorReport.QueryShape> shapes = new LinkedHashMap<>();
+        Map<String, ShapeKeys> shapeKeys = new HashMap<>();
+        int read = 0;
+        MongoCollection<Document> profile = mongoTemplate.getDb().getCollection("system.profile");
+        for (Document entry : profile.find().sort(Sorts.descending("ts")).limit(limit)) {
+            read++;
+            String ns = entry.getString("ns");
+            String op = entry.getString("op");
+            if (ns == null || op == null || "insert".equals(op)) continue;
+            String collection = ns.substring(ns.indexOf('.') + 1);
+            if (collection.startsWith("system.")) continue;
+
+            Document command = entry.get("originatingCommand") instanceof Document origin ? origin
+                    : entry.get("command") instanceof Document cmd ? cmd : new Document();
+            String operation = operationName(op, command);
+            ShapeKeys keys = ShapeKeys.of(filterOf(command), sortOf(command));
+
+            String id = collection + "|" + operation + "|" + keys.describe();
+            IndexAdvisorReport.QueryShape shape = shapes.computeIfAbsent(id, k -> {
+                IndexAdvisorReport.QueryShape s = new IndexAdvisorReport.QueryShape();
+                s.setCollection(collection);
+                s.setOperation(operation);
+                s.setShape(keys.describe());
+                return s;
+            });
+            shapeKeys.put(id, keys);
+
+            long millis = number(entry.get("millis"));
+            shape.setCount(shape.getCount() + 1);
+            shape.setTotalMillis(shape.getTotalMillis() + millis);
+            shape.setMaxMillis(Math.max(shape.getMaxMillis(), millis));
+            shape.setDocsExamined(shape.getDocsExamined() + number(entry.get("docsExamined")));
+            shape.setKeysExamined(shape.getKeysExamined() + number(entry.get("keysExamined")));
+            shape.setDocsReturned(shape.getDocsReturned() + number(entry.get("nreturned")));
+            String plan = entry.getString("planSummary");
+            if (plan != null) {
+                if (plan.startsWith("COLLSCAN")) shape.setCollectionScans(shape.getCollectionScans() + 1);
+                if (!shape.getPlans().contains(plan)) shape.getPlans().add(plan);
+            }
+        }
+        report.setProfileEntriesRead(read);
+        shapes.values().forEach(s -> s.setAvgMillis(Math.round(s.getTotalMillis() * 100.0 / s.getCount()) / 100.0));
+        report.setSlowQueryShapes(shapes.values().stream()
+                .sorted(Comparator.comparingLong(IndexAdvisorReport.QueryShape::getTotalMillis).reversed())
+                .collect(Collectors.toList()));
+
+        // 2. Existing indexes for every collection that is profiled or planned
+        Set<String> collections = new TreeSet<>();
+        IndexPlan.specs().forEach(spec -> collections.add(spec.getCollection()));
+        shapes.values().forEach(s -> collections.add(s.getCollection()));
+        Map<String, List<Document>> existing = new HashMap<>();
+        for (String collection : collections) {
+            existing.put(collection, listIndexes(collection));
+        }
+
+        // 3. Missing indexes: shapes that scan collections or examine far more than they return
+        Set<String> suggested = new HashSet<>();
+        for (Map.Entry<String, IndexAdvisorReport.QueryShape> e : shapes.entrySet()) {
+            IndexAdvisorReport.QueryShape shape = e.getValue();
+            ShapeKeys keys = shapeKeys.get(e.getKey());
+            boolean scans = shape.getCollectionScans() > 0;
+            boolean wasteful = shape.getDocsExamined() > EXAMINED_PER_RETURNED * Math.max(1, shape.getDocsReturned());
+            if (!scans && !wasteful) continue;
+
+            LinkedHashMap<String, Integer> candidate = keys.suggestedIndex();
+            if (candidate.isEmpty()) continue;
+            if (isLeadingFieldIndexed(existing.get(shape.getCollection()), candidate)) continue;
+            String describe = describeKeys(candidate);
+            if (!suggested.add(shape.getCollection() + describe)) continue;
+
+            report.getMissingIndexes().add(new IndexAdvisorReport.IndexSuggestion(shape.getCollection(), describe,
+                    (scans ? "collection scan" : "examined " + shape.getDocsExamined() + " for " + shape.getDocsReturned() + " returned")
+                            + " on " + shape.getOperation() + " " + shape.getShape()));
+        }
+
+        // 4. Unused and redundant indexes
+        for (String collection : collections) {
+            List<Document> indexes = existing.get(collection);
+            Map<String, Document> stats = indexStats(collection);
+            for (Document index : indexes) {
+                String name = index.getString("name");
+                if ("_id_".equals(name)) continue;
+                LinkedHashMap<String, Integer> key = keyOf(index);
+
+                String redundantWith = indexes.stream()
+                        .filter(other -> other != index)
+                        .filter(other -> isStrictPrefix(key, keyOf(other)))
+                        .map(other -> other.getString("name"))
+                        .findFirst().orElse(null);
+                boolean unique = Boolean.TRUE.equals(index.get("unique"));
+
+                Document stat = stats.get(name);
+                Document accesses = stat != null && stat.get("accesses") instanceof Document a ? a : null;
+                long ops = accesses != null ? number(accesses.get("ops")) : -1;
+                String since = accesses != null && accesses.get("since") != null ? accesses.get("since").toString() : null;
+
+                String reason = null;
+                if (redundantWith != null && !unique) {
+                    reason = "redundant: prefix of " + redundantWith;
+                } else if (ops == 0) {
+                    reason = "no recorded use since " + since;
+                }
+                if (reason != null) {
+                    report.getUnusedIndexes().add(new IndexAdvisorReport.IndexUsage(collection, name,
+                            describeKeys(key), ops, since, reason));
+                }
+            }
+        }
+
+        // 5. Declared plan entries that are not in the database
+        for (IndexPlan.Spec spec : IndexPlan.specs()) {
+            LinkedHashMap<String, Integer> planned = new LinkedHashMap<>(spec.getKeys());
+            boolean present = existing.getOrDefault(spec.getCollection(), List.of()).stream()
+                    .anyMatch(index -> keyOf(index).equals(planned));
+            if (!present) {
+                report.getPlanNotApplied().add(new IndexAdvisorReport.IndexSuggestion(spec.getCollection(),
+                        describeKeys(planned), spec.getPurpose()));
+            }
+        }
+        return report;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Profile entry parsing
+    // ---------------------------------------------------------------------------------------------
+
+    private static String operationName(String op, Document command) {
+        if (!"command".equals(op) && !"getmore".equals(op)) return op;
+        // First key of a command document is the command name (aggregate, count, distinct, findAndModify, find)
+        return command.isEmpty() ? op : command.keySet().iterator().next();
+    }
+
+    static Document filterOf(Document command) {
+        for (String key : List.of("filter", "q", "query")) {
+            if (command.get(key) instanceof Document filter) return filter;
+        }
+        if (command.get("pipeline") instanceof List<?> pipeline && !pipeline.isEmpty()
+                && pipeline.getFirst() instanceof Document first && first.get("$match") instanceof Document match) {
+            return match;
+        }
+        return new Document();
+    }
+
+    static Document sortOf(Document command) {
+        if (command.get("sort") instanceof Document sort) return sort;
+        if (command.get("pipeline") instanceof List<?> pipeline) {
+            for (Object stage : pipeline) {
+                if (stage instanceof Document doc && doc.get("$sort") instanceof Document sort) return sort;
+            }
+        }
+        return new Document();
+    }
+
+    /**
+     * Normalised filter and sort keys of one query: field names with the kind of predicate, values dropped.
+     */
+    static final class ShapeKeys {
+        final SortedMap<String, String> predicates = new TreeMap<>();
+        final LinkedHashMap<String, Integer> sort = new LinkedHashMap<>();
+
+        static ShapeKeys of(Document filter, Document sortDoc) {
+            ShapeKeys keys = new ShapeKeys();
+            keys.collect(filter);
+            sortDoc.forEach((field, direction) -> keys.sort.put(field, number(direction) < 0 ? -1 : 1));
+            return keys;
+        }
+
+        private void collect(Document filter) {
+            for (Map.Entry<String, Object> entry : filter.entrySet()) {
+                String field = entry.getKey();
+                Object value = entry.getValue();
+                if (field.equals("$and") || field.equals("$or") || field.equals("$nor")) {
+                    if (value instanceof List<?> clauses) {
+                        clauses.stream().filter(Document.class::isInstance).forEach(c -> collect((Document) c));
+                    }
+                } else if (field.startsWith("$")) {
+                    predicates.put(field, "expr");
+                } else if (value instanceof Document ops && !ops.isEmpty() && ops.keySet().iterator().next().startsWith("$")) {
+                    predicates.merge(field, kind(ops), (a, b) -> a.equals(b) ? a : a + "+" + b);
+                } else if (value instanceof Pattern || value instanceof BsonRegularExpression) {
+                    predicates.put(field, "regex");
+                } else {
+                    predicates.put(field, "eq");
+                }
+            }
+        }
+
+        private static String kind(Document ops) {
+            Set<String> names = ops.keySet();
+            if (names.contains("$regex")) return "regex";
+            if (names.contains("$eq")) return "eq";
+            if (names.contains("$in")) return "in";
+            if (names.contains("$exists")) return "exists";
+            if (names.stream().anyMatch(n -> n.startsWith("$gt") || n.startsWith("$lt"))) return "range";
+            return String.join("", names);
+        }
+
+        String describe() {
+            String filter = predicates.entrySet().stream()
+                    .map(e -> e.getKey() + ":" + e.getValue())
+                    .collect(Collectors.joining(", ", "filter{", "}"));
+            return sort.isEmpty() ? filter : filter + " sort" + describeKeys(sort);
+        }
+
+        /**
+         * Equality, then sort, then range fields (the ESR rule).
+         */
+        LinkedHashMap<String, Integer> suggestedIndex() {
+            LinkedHashMap<String, Integer> index = new LinkedHashMap<>();
+            predicates.forEach((field, kind) -> {
+                if (!field.startsWith("$") && (kind.equals("eq") || kind.equals("in"))) index.put(field, 1);
+            });
+            sort.forEach(index::putIfAbsent);
+            predicates.forEach((field, kind) -> {
+                if (!field.startsWith("$") && (kind.equals("range") || kind.equals("regex"))) index.putIfAbsent(field, 1);
+            });
+            return index;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Index metadata
+    // ---------------------------------------------------------------------------------------------
+
+    private List<Document> listIndexes(String collection) {
+        try {
+            return mongoTemplate.getCollection(collection).listIndexes().into(new ArrayList<>());
+        } catch (Exception e) {
+            log.warn("Failed to list indexes for {}: {}", collection, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    private Map<String, Document> indexStats(String collection) {
+        Map<String, Document> stats = new HashMap<>();
+        try {
+            mongoTemplate.getCollection(collection)
+                    .aggregate(List.of(new Document("$indexStats", new Document())))
+                    .forEach(doc -> stats.put(doc.getString("name"), doc));
+        } catch (Exception e) {
+            log.warn("Failed to read $indexStats for {}: {}", collection, e.getMessage());
+        }
+        return stats;
+    }
+
+    private static boolean isLeadingFieldIndexed(List<Document> indexes, LinkedHashMap<String, Integer> candidate) {
+        String leading = candidate.keySet().iterator().next();
+        return indexes != null && indexes.stream()
+                .map(IndexAdvisorService::keyOf)
+                .anyMatch(key -> !key.isEmpty() && key.keySet().iterator().next().equals(leading));
+    }
+
+    private static boolean isStrictPrefix(LinkedHashMap<String, Integer> shorter, LinkedHashMap<String, Integer> longer) {
+        if (shorter.size() >= longer.size()) return false;
+        Iterator<Map.Entry<String, Integer>> a = shorter.entrySet().iterator();
+        Iterator<Map.Entry<String, Integer>> b = longer.entrySet().iterator();
+        while (a.hasNext()) {
+            if (!a.next().equals(b.next())) return false;
+        }
+        return true;
+    }
+
+    private static LinkedHashMap<String, Integer> keyOf(Document index) {
+        LinkedHashMap<String, Integer> key = new LinkedHashMap<>();
+        if (index.get("key") instanceof Document doc) {
+            doc.forEach((field, direction) -> key.put(field, direction instanceof Number n && n.doubleValue() < 0 ? -1 : 1));
+        }
+        return key;
+    }
+
+    private static String describeKeys(Map<String, Integer> keys) {
+        return keys.entrySet().stream()
+                .map(e -> e.getKey() + ": " + e.getValue())
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    private static long number(Object value) {
+        return value instanceof Number n ? n.longValue() : 0;
+    }
+}
@@ -0,0 +1,368 @@
+package org.myswan.service.internal;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.bson.Document;
+import org.myswan.model.dto.MLTrainingData;
+import org.myswan.service.internal.archive.ColumnarFile;
+import org.myswan.service.internal.job.JobProgress;
+import org.myswan.service.internal.store.MarketDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * ML training rows kept as local columnar files for training jobs that read the disk, not the API.
+ *
+ * Rows are written in the {@link ColumnarFile} format, one directory per month of sessions and one
+ * part per append: {@code <dir>/<yyyy-MM>/part-NNNN.mscol}, sorted by ticker then date. Every feature
+ * is a primitive column (INT, DOUBLE, BOOL) and string columns are dictionary encoded; the date is an
+ * INT epoch day, so it reads the same in every time zone. Parts are left uncompressed by default so a
+ * reader can map them and use the column blocks in place. A column whose values are all null in a
+ * row group is left out of that group.
+ *
+ * Only sessions with {@value StockService#ML_LOOKAHEAD} sessions after them are exported, so every
+ * written row carries final targets and is never rewritten. {@code manifest.json} records the schema,
+ * the parts and the last exported session; each append starts after it. A part is moved into place
+ * before the manifest lists it, so each append first deletes parts the manifest does not list (the
+ * leftovers of an interrupted run) and numbers new parts from the manifest.
+ *
+ * The layout is specified in {@code mscol_reader.py}, a reference Python reader (numpy and pandas
+ * optional) that every append copies next to the manifest.
+ */
+@Service
+public class MLColumnarExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(MLColumnarExportService.class);
+
+    private static final String MANIFEST = "manifest.json";
+    private static final String READER = "mscol_reader.py";
+    private static final String PART_SUFFIX = ".mscol";
+    private static final String DATE_COLUMN = "date";
+    private static final String KEY_COLUMN = "ticker";
+    /** Calendar days read past a month so its last sessions have their lookahead sessions */
+    private static final int LOOKAHEAD_DAYS = 21;
+    private static final TypeReference<Map<String, Object>> ROW = new TypeReference<>() {
+    };
+
+    private final MarketDataStore store;
+    private final ObjectMapper objectMapper;
+    private final List<Map<String, Object>> schema;
+
+    /** Append the sessions completed since the last run on the cron below */
+    @Value("${ml.export.columnar.enabled:false}")
+    private boolean enabled;
+
+    /** Root directory of the month partitions and the manifest */
+    @Value("${ml.export.columnar.dir:./data/ml-export}")
+    private String exportDir;
+
+    /** Rows per row group; bounds memory while writing */
+    @Value("${ml.export.columnar.row-group-size:20000}")
+    private int rowGroupSize;
+
+    /** Deflate each column block; smaller files, but readers can no longer map them */
+    @Value("${ml.export.columnar.compress:false}")
+    private boolean compress;
+
+    public MLColumnarExportService(MarketDataStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.schema = objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(MLTrainingData.class))
+                .findProperties().stream()
+                .map(property -> {
+                    Map<String, Object> column = new LinkedHashMap<>();
+                    column.put("name", property.getName());
+                    column.put("type", columnType(property).name());
+                    return column;
+                })
+                .toList();
+    }
+
+    @Scheduled(cron = "${ml.export.columnar.cron:0 0 22 * * MON-FRI}")
+    public void scheduledAppend() {
+        if (!enabled) return;
+        log.info("=== Scheduled ML columnar export ===");
+        append(false);
+    }
+
+    /**
+     * Write the rows of every session completed since the last append, one part per month touched.
+     * full=true deletes the existing parts and exports the whole history again.
+     */
+    public synchronized Map<String, Object> append(boolean full) {
+        Path root = Paths.get(exportDir);
+        JobProgress progress = JobProgress.current();
+        Map<String, Object> report = new LinkedHashMap<>();
+        try {
+            if (full) deleteExport(root);
+            Files.createDirectories(root);
+            Map<String, Object> manifest = readManifest(root);
+            int orphans = deleteUnlisted(root, manifest);
+            if (orphans > 0) log.warn("ML columnar export: deleted {} parts left by an interrupted append", orphans);
+            copyReader(root);
+            LocalDate lastSession = manifest.get("lastSession") instanceof String text ? LocalDate.parse(text) : null;
+
+            // The oldest of the newest ML_LOOKAHEAD + 1 sessions is the last with all its targets known
+            List<LocalDate> recent = store.recentSessions(StockService.ML_LOOKAHEAD + 1);
+            if (recent.size() <= StockService.ML_LOOKAHEAD) {
+                report.put("status", "Not enough sessions");
+                return report;
+            }
+            LocalDate completeThrough = recent.get(0);
+            List<YearMonth> months = store.historyMonths().stream()
+                    .filter(month -> lastSession == null || !month.isBefore(YearMonth.from(lastSession)))
+                    .filter(month -> !month.isAfter(YearMonth.from(completeThrough)))
+                    .toList();
+            if (lastSession != null && !lastSession.isBefore(completeThrough)) months = List.of();
+
+            progress.total(months.size());
+            List<Map<String, Object>> written = new ArrayList<>();
+            long rows = 0;
+            for (YearMonth month : months) {
+                LocalDate from = month.atDay(1);
+                if (lastSession != null && !lastSession.isBefore(from)) from = lastSession.plusDays(1);
+                LocalDate to = month.atEndOfMonth().isBefore(completeThrough) ? month.atEndOfMonth() : completeThrough;
+                if (from.isAfter(to)) {
+                    progress.step();
+                    continue;
+                }
+                progress.message("Exporting " + month);
+                Map<String, Object> part = writeMonth(root, month, from, to, nextPart(root, manifest, month));
+                if (part != null) {
+                    written.add(part);
+                    rows += (long) part.get("rows");
+                    parts(manifest).add(part);
+                }
+                // Recorded per month, so a failed run resumes after the last month it finished
+                manifest.put("lastSession", to.toString());
+                writeManifest(root, manifest);
+                progress.step();
+            }
+
+            report.put("status", written.isEmpty() ? "Up to date" : "Appended");
+            report.put("lastSession", manifest.get("lastSession"));
+            report.put("rows", rows);
+            report.put("parts", written);
+            log.info("ML columnar export: {} rows in {} parts, complete through {}", rows, written.size(),
+                    manifest.get("lastSession"));
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException("ML columnar export to " + root + " failed", e);
+        }
+    }
+
+    /** The manifest as written by the last append, or an empty one */
+    public Map<String, Object> manifest() {
+        try {
+            return readManifest(Paths.get(exportDir));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the rows of [from, to] within one month as a new part; null when there are none. The part
+     * is written under a temporary name and moved into place once complete.
+     */
+    private Map<String, Object> writeMonth(Path root, YearMonth month, LocalDate from, LocalDate to, Path part)
+            throws IOException {
+        Files.createDirectories(part.getParent());
+        Path temp = part.resolveSibling(part.getFileName() + ".tmp");
+        List<Document> group = new ArrayList<>(Math.max(1, Math.min(rowGroupSize, 1 << 16)));
+        long[] rows = {0};
+        try (ColumnarFile.Writer writer = new ColumnarFile.Writer(temp, DATE_COLUMN, KEY_COLUMN, compress)) {
+            MLExportService.Lookahead lookahead = new MLExportService.Lookahead(data -> {
+                // Rows past the month only serve as lookahead for the month's last sessions
+                if (data.getDate().isBefore(from) || data.getDate().isAfter(to)) return;
+                group.add(toDocument(data));
+                rows[0]++;
+                if (group.size() >= Math.max(1, rowGroupSize)) flush(writer, group);
+            });
+            store.forEachHistorySorted(null, from, to.plusDays(LOOKAHEAD_DAYS), lookahead::add);
+            lookahead.drain();
+            flush(writer, group);
+        } catch (UncheckedIOException | IOException e) {
+            Files.deleteIfExists(temp);
+            throw e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e;
+        }
+        if (rows[0] == 0) {
+            Files.deleteIfExists(temp);
+            return null;
+        }
+        Files.move(temp, part, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("file", root.relativize(part).toString().replace('\\', '/'));
+        entry.put("month", month.toString());
+        entry.put("from", from.toString());
+        entry.put("to", to.toString());
+        entry.put("rows", rows[0]);
+        entry.put("bytes", Files.size(part));
+        entry.put("writtenAt", Instant.now().toString());
+        log.info("ML columnar export: {} rows of {} to {} written to {}", rows[0], from, to, part);
+        return entry;
+    }
+
+    private static void flush(ColumnarFile.Writer writer, List<Document> group) {
+        if (group.isEmpty()) return;
+        try {
+            writer.writeRowGroup(group);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        group.clear();
+    }
+
+    /** Features as boxed primitives and strings; the date as an INT epoch day, free of any time zone */
+    private Document toDocument(MLTrainingData data) {
+        Document doc = new Document(objectMapper.convertValue(data, ROW));
+        doc.put(DATE_COLUMN, Math.toIntExact(data.getDate().toEpochDay()));
+        return doc;
+    }
+
+    /** Next part of the month, numbered after the highest one the manifest lists */
+    private static Path nextPart(Path root, Map<String, Object> manifest, YearMonth month) {
+        int highest = 0;
+        for (Map<String, Object> part : parts(manifest)) {
+            if (!month.toString().equals(part.get("month")) || !(part.get("file") instanceof String file)) continue;
+            String name = Paths.get(file).getFileName().toString();
+            try {
+                highest = Math.max(highest, Integer.parseInt(name.substring("part-".length(), name.length() - PART_SUFFIX.length())));
+            } catch (RuntimeException e) {
+                // Not a name this service wrote; it does not take part in the numbering
+            }
+        }
+        return root.resolve(month.toString()).resolve(String.format("part-%04d%s", highest + 1, PART_SUFFIX));
+    }
+
+    /**
+     * Delete part files (and temporary ones) in the month directories that the manifest does not
+     * list. Returns the number of parts deleted.
+     */
+    private static int deleteUnlisted(Path root, Map<String, Object> manifest) throws IOException {
+        Set<Path> listed = new HashSet<>();
+        for (Map<String, Object> part : parts(manifest)) {
+            if (part.get("file") instanceof String file) listed.add(root.resolve(file).normalize());
+        }
+        int deleted = 0;
+        for (Path dir : monthDirs(root)) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.filter(p -> p.getFileName().toString().contains(PART_SUFFIX)).toList()) {
+                    if (listed.contains(file.normalize())) continue;
+                    Files.delete(file);
+                    if (file.getFileName().toString().endsWith(PART_SUFFIX)) deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /** Ship the reference reader with the manifest, refreshed on every append */
+    private void copyReader(Path root) throws IOException {
+        try (InputStream reader = getClass().getResourceAsStream("/ml-export/" + READER)) {
+            if (reader == null) {
+                log.warn("ML columnar export: {} missing from the classpath", READER);
+                return;
+            }
+            Files.copy(reader, root.resolve(READER), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Manifest
+    // ---------------------------------------------------------------------------------------------
+
+    private Map<String, Object> readManifest(Path root) throws IOException {
+        Path file = root.resolve(MANIFEST);
+        Map<String, Object> manifest = Files.exists(file)
+                ? objectMapper.readValue(file.toFile(), ROW)
+                : new LinkedHashMap<>();
+        // Describe the current layout whatever an older manifest said
+        manifest.put("format", "MSCOL");
+        manifest.put("byteOrder", "big-endian");
+        manifest.put("compressed", compress);
+        manifest.put("dateColumn", DATE_COLUMN);
+        manifest.put("dateEncoding", "INT days since 1970-01-01 (calendar date, no time zone)");
+        manifest.put("keyColumn", KEY_COLUMN);
+        manifest.put("reader", READER);
+        manifest.put("columns", schema);
+        manifest.putIfAbsent("lastSession", null);
+        manifest.putIfAbsent("parts", new ArrayList<>());
+        return manifest;
+    }
+
+    /** Replace the manifest in one move, so readers never see a partial one */
+    private void writeManifest(Path root, Map<String, Object> manifest) throws IOException {
+        Path file = root.resolve(MANIFEST);
+        Path temp = root.resolve(MANIFEST + ".tmp");
+        objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValue(temp.toFile(), manifest);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> parts(Map<String, Object> manifest) {
+        return (List<Map<String, Object>>) manifest.get("parts");
+    }
+
+    /** Remove the manifest and the month partitions; other files in the directory are left alone */
+    private static void deleteExport(Path root) throws IOException {
+        if (!Files.isDirectory(root)) return;
+        Files.deleteIfExists(root.resolve(MANIFEST));
+        for (Path dir : monthDirs(root)) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.filter(p -> p.getFileName().toString().contains(PART_SUFFIX)).toList()) {
+                    Files.delete(file);
+                }
+            }
+            try (Stream<Path> rest = Files.list(dir)) {
+                if (rest.findAny().isEmpty()) Files.delete(dir);
+            }
+        }
+    }
+
+    /** The yyyy-MM directories under the export root */
+    private static List<Path> monthDirs(Path root) throws IOException {
+        if (!Files.isDirectory(root)) return List.of();
+        try (Stream<Path> dirs = Files.list(root)) {
+            return dirs.filter(Files::isDirectory).filter(dir -> {
+                try {
+                    YearMonth.parse(dir.getFileName().toString());
+                    return true;
+                } catch (Exception e) {
+                    return false;
+                }
+            }).toList();
+        }
+    }
+
+    /** Column type a property's values are written as */
+    private static ColumnarFile.ColumnType columnType(BeanPropertyDefinition property) {
+        Class<?> type = property.getRawPrimaryType();
+        if (type == int.class || type == Integer.class) return ColumnarFile.ColumnType.INT;
+        if (type == long.class || type == Long.class) return ColumnarFile.ColumnType.LONG;
+        if (type == double.class || type == Double.class) return ColumnarFile.ColumnType.DOUBLE;
+        if (type == boolean.class || type == Boolean.class) return ColumnarFile.ColumnType.BOOL;
+        if (type == LocalDate.class) return ColumnarFile.ColumnType.INT;
+        if (type == String.class) return ColumnarFile.ColumnType.STRING;
+        return ColumnarFile.ColumnType.BSON;
+    }
+}
@@ -0,0 +1,197 @@
+package org.myswan.service.internal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.myswan.model.collection.Stock;
+import org.myswan.model.dto.MLTrainingData;
+import org.myswan.service.internal.store.MarketDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * ML training export written while the history is read: rows come through one cursor sorted by ticker
+ * and date, each waits in a lookahead of the next {@value StockService#ML_LOOKAHEAD} sessions of its
+ * ticker until its targets are known, and goes out at once as an NDJSON line or CSV record. Memory
+ * stays constant however long the range; the rows are those of /api/stock/ml-export.
+ */
+@Service
+public class MLExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(MLExportService.class);
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        /** Format by name, case-insensitive; null when unknown */
+        public static Format of(String name) {
+            try {
+                return name == null ? null : valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private final MarketDataStore store;
+    private final ObjectMapper objectMapper;
+    private final List<String> csvColumns;
+
+    /** Rows written between flushes, so the client receives the export as it is produced */
+    @Value("${ml.export.flush-rows:1000}")
+    private int flushRows;
+
+    public MLExportService(MarketDataStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        // Same property names and order as the JSON rows
+        this.csvColumns = objectMapper.getSerializationConfig()
+                .introspect(objectMapper.constructType(MLTrainingData.class))
+                .findProperties().stream()
+                .map(BeanPropertyDefinition::getName)
+                .toList();
+    }
+
+    /**
+     * Write the export of the given tickers (all when null) between two dates to the stream.
+     * @return rows written
+     */
+    public long export(Collection<String> tickers, LocalDate from, LocalDate to, Format format, OutputStream out)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+        RowWriter writer = new RowWriter(buffered, format);
+        Lookahead lookahead = new Lookahead(writer::write);
+        try {
+            writer.header();
+            store.forEachHistorySorted(tickers, from, to, lookahead::add);
+            lookahead.drain();
+        } catch (UncheckedIOException e) {
+            // Usually the client going away; nothing more can be written
+            throw e.getCause();
+        }
+        buffered.flush();
+        log.info("ML export ({}) of {} to {}: {} rows in {} ms", format, from, to, writer.rows,
+                System.currentTimeMillis() - start);
+        return writer.rows;
+    }
+
+    /**
+     * The current ticker's rows still waiting for their following sessions, oldest first. Fed rows
+     * sorted by ticker then date, it hands each training row to the sink once its targets are known.
+     */
+    static final class Lookahead {
+        private final ArrayDeque<Stock> pending = new ArrayDeque<>(StockService.ML_LOOKAHEAD + 1);
+        private final Consumer<MLTrainingData> sink;
+        private String ticker;
+
+        Lookahead(Consumer<MLTrainingData> sink) {
+            this.sink = sink;
+        }
+
+        void add(Stock row) {
+            if (row.getTicker() == null || row.getHistDate() == null) return;
+            if (!row.getTicker().equals(ticker)) {
+                drain();
+                ticker = row.getTicker();
+            }
+            pending.addLast(row);
+            if (pending.size() > StockService.ML_LOOKAHEAD) {
+                emit(pending.pollFirst());
+            }
+        }
+
+        /** Emit the rows left at the end of a ticker, with whatever sessions follow them */
+        void drain() {
+            while (!pending.isEmpty()) {
+                emit(pending.pollFirst());
+            }
+        }
+
+        private void emit(Stock current) {
+            // Skip if missing critical data
+            if (current.getPrice() == 0) return;
+            sink.accept(StockService.toMLTrainingData(current, new ArrayList<>(pending)));
+        }
+    }
+
+    private final class RowWriter {
+        private final OutputStream out;
+        private final Format format;
+        long rows;
+
+        RowWriter(OutputStream out, Format format) {
+            this.out = out;
+            this.format = format;
+        }
+
+        void header() throws IOException {
+            if (format == Format.CSV) {
+                out.write((String.join(",", csvColumns) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        void write(MLTrainingData data) {
+            try {
+                if (format == Format.CSV) {
+                    out.write(csvRecord(objectMapper.valueToTree(data)).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    out.write(objectMapper.writeValueAsBytes(data));
+                    out.write('\n');
+                }
+                if (++rows % Math.max(1, flushRows) == 0) out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private String csvRecord(JsonNode row) {
+            StringBuilder record = new StringBuilder(512);
+            for (int i = 0; i < csvColumns.size(); i++) {
+                if (i > 0) record.append(',');
+                JsonNode value = row.get(csvColumns.get(i));
+                if (value == null || value.isNull()) continue;
+                String text = value.asText();
+                if (value.isTextual() && (text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                        || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0)) {
+                    record.append('"').append(text.replace("\"", "\"\"")).append('"');
+                } else {
+                    record.append(text);
+                }
+            }
+            return record.append('\n').toString();
+        }
+    }
+}
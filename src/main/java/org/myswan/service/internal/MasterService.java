@@ -1,28 +1,42 @@
 package org.myswan.service.internal;
 
 import lombok.extern.slf4j.Slf4j;
+import org.myswan.common.UtilHelper;
 import org.myswan.model.collection.Master;
 import org.myswan.model.collection.Stock;
+import org.myswan.model.dto.CascadeDeleteReport;
 import org.myswan.repository.MasterRepository;
+import org.myswan.service.internal.archive.HistoryArchiveService;
+import org.myswan.service.internal.job.JobProgress;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class MasterService {
     private final MasterRepository repository;
     private final MongoTemplate mongoTemplate;
+    private final StockSnapshotService stockSnapshot;
+    private final HistoryArchiveService historyArchive;
+    private final HistoryRangeCache historyCache;
 
-    public MasterService(MasterRepository repository, MongoTemplate mongoTemplate) {
+    public MasterService(MasterRepository repository, MongoTemplate mongoTemplate,
+                         StockSnapshotService stockSnapshot, HistoryArchiveService historyArchive,
+                         HistoryRangeCache historyCache) {
         this.repository = repository;
         this.mongoTemplate = mongoTemplate;
+        this.stockSnapshot = stockSnapshot;
+        this.historyArchive = historyArchive;
+        this.historyCache = historyCache;
     }
 
     public Optional<Master> getByTicker(String ticker) {
@@ -72,22 +86,14 @@ public class MasterService {
     public List<Master> listWithCurrentPrice() {
         List<Master> masters = list();
 
-        // Fetch all stocks from stock collection
-        List<Stock> stocks = mongoTemplate.findAll(Stock.class, "stock");
-
-        // Create a map for O(1) lookup
-        java.util.Map<String, Double> stockPriceMap = new java.util.HashMap<>();
-        for (Stock stock : stocks) {
-            if (stock.getTicker() != null) {
-                stockPriceMap.put(stock.getTicker().toUpperCase(), stock.getPrice());
-            }
-        }
+        // Current stocks keyed by upper-case ticker, served from the resident snapshot
+        java.util.Map<String, Stock> stocksByTicker = stockSnapshot.current().getByTicker();
 
         // Populate current price for each master
         for (Master master : masters) {
             if (master.getTicker() != null) {
-                Double currentPrice = stockPriceMap.get(master.getTicker().toUpperCase());
-                master.setCurrentPrice(currentPrice);
+                Stock stock = stocksByTicker.get(master.getTicker().toUpperCase());
+                master.setCurrentPrice(stock != null ? stock.getPrice() : null);
             }
         }
 
@@ -95,71 +101,19 @@ public class MasterService {
         return masters;
     }
 
+    /** Collections a master ticker cascades to, in report order */
+    public static final List<String> CASCADE_COLLECTIONS = List.of(
+            "master", "stock", "stockHistory", "picks", "picksHistory", "pattern", "patternHistory",
+            "watchlist", "guaranteedPicks", "options", "optionsHistory");
+
     /**
-     * Delete a ticker from all collections: master, stock, stockHistory, picks, picksHistory, pattern, patternHistory, watchlist, guaranteedPicks
+     * Delete a ticker from all collections: master, stock, stockHistory, picks, picksHistory, pattern,
+     * patternHistory, watchlist, guaranteedPicks, options, optionsHistory
      */
     public void deleteFromAllCollections(String ticker) {
-        log.info("Starting deletion of ticker {} from all collections", ticker);
-
-        try {
-            // 1. Delete from master collection
-            repository.deleteById(ticker);
-            log.info("Deleted {} from master collection", ticker);
-
-            // 2. Delete from stock collection
-            Query stockQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-            long stockDeleted = mongoTemplate.remove(stockQuery, "stock").getDeletedCount();
-            log.info("Deleted {} records from stock collection", stockDeleted);
-
-            // 3. Delete from stockHistory collection
-            Query stockHistoryQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-            long stockHistoryDeleted = mongoTemplate.remove(stockHistoryQuery, "stockHistory").getDeletedCount();
-            log.info("Deleted {} records from stockHistory collection", stockHistoryDeleted);
-
-            // 4. Delete from picks collection
-            Query picksQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-            long picksDeleted = mongoTemplate.remove(picksQuery, "picks").getDeletedCount();
-            log.info("Deleted {} records from picks collection", picksDeleted);
-
-            // 5. Delete from picksHistory collection
-            Query picksHistoryQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-            long picksHistoryDeleted = mongoTemplate.remove(picksHistoryQuery, "picksHistory").getDeletedCount();
-            log.info("Deleted {} records from picksHistory collection", picksHistoryDeleted);
-
-            // 6. Delete from pattern collection
-            Query patternQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-            long patternDeleted = mongoTemplate.remove(patternQuery, "pattern").getDeletedCount();
-            log.info("Deleted {} records from pattern collection", patternDeleted);
-
-            // 7. Delete from patternHistory collection
-            Query patternHistoryQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-            long patternHistoryDeleted = mongoTemplate.remove(patternHistoryQuery, "patternHistory").getDeletedCount();
-            log.info("Deleted {} records from patternHistory collection", patternHistoryDeleted);
-
-            // 8. Delete from watchlist collection
-            Query watchlistQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-            long watchlistDeleted = mongoTemplate.remove(watchlistQuery, "watchlist").getDeletedCount();
-            log.info("Deleted {} records from watchlist collection", watchlistDeleted);
-
-            // 9. Delete from guaranteedPicks collection
-            Query guaranteedPicksQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-            long guaranteedPicksDeleted = mongoTemplate.remove(guaranteedPicksQuery, "guaranteedPicks").getDeletedCount();
-            log.info("Deleted {} records from guaranteedPicks collection", guaranteedPicksDeleted);
-
-            // 10. Delete from options collection
-            Query optionsQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-            long optionsDeleted = mongoTemplate.remove(optionsQuery, "options").getDeletedCount();
-            log.info("Deleted {} records from options collection", optionsDeleted);
-
-            // 11. Delete from optionsHistory collection
-            Query optionsHistoryQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-            long optionsHistoryDeleted = mongoTemplate.remove(optionsHistoryQuery, "optionsHistory").getDeletedCount();
-            log.info("Deleted {} records from optionsHistory collection", optionsHistoryDeleted);
-
-            log.info("Successfully deleted ticker {} from all collections", ticker);
-        } catch (Exception e) {
-            log.error("Error deleting ticker {} from collections: {}", ticker, e.getMessage(), e);
-            throw new RuntimeException("Failed to delete ticker from all collections: " + e.getMessage());
+        CascadeDeleteReport report = deleteTickers(List.of(ticker), CASCADE_COLLECTIONS);
+        if (report.hasErrors()) {
+            throw new RuntimeException("Failed to delete ticker from all collections: " + errors(report));
         }
     }
 
@@ -169,101 +123,135 @@ public class MasterService {
      * @param collections List of collection names to delete from (e.g., ["master", "stock", "stockHistory"])
      */
     public void deleteFromSpecificCollections(String ticker, List<String> collections) {
-        log.info("Starting deletion of ticker {} from {} specific collections", ticker, collections.size());
-
-        try {
-            int deletedFrom = 0;
-
-            for (String collection : collections) {
-                switch (collection.toLowerCase()) {
-                    case "master":
-                    case "masters":
-                        repository.deleteById(ticker);
-                        log.info("Deleted {} from master collection", ticker);
-                        deletedFrom++;
-                        break;
-
-                    case "stock":
-                    case "stocks":
-                        Query stockQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                        long stockDeleted = mongoTemplate.remove(stockQuery, "stock").getDeletedCount();
-                        log.info("Deleted {} records from stock collection", stockDeleted);
-                        deletedFrom++;
-                        break;
-
-                    case "stockhistory":
-                        Query stockHistoryQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                        long stockHistoryDeleted = mongoTemplate.remove(stockHistoryQuery, "stockHistory").getDeletedCount();
-                        log.info("Deleted {} records from stockHistory collection", stockHistoryDeleted);
-                        deletedFrom++;
-                        break;
-
-                    case "picks":
-                        Query picksQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                        long picksDeleted = mongoTemplate.remove(picksQuery, "picks").getDeletedCount();
-                        log.info("Deleted {} records from picks collection", picksDeleted);
-                        deletedFrom++;
-                        break;
-
-                    case "pickshistory":
-                        Query picksHistoryQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                        long picksHistoryDeleted = mongoTemplate.remove(picksHistoryQuery, "picksHistory").getDeletedCount();
-                        log.info("Deleted {} records from picksHistory collection", picksHistoryDeleted);
-                        deletedFrom++;
-                        break;
-
-                    case "options":
-                        Query optionsQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                        long optionsDeleted = mongoTemplate.remove(optionsQuery, "options").getDeletedCount();
-                        log.info("Deleted {} records from options collection", optionsDeleted);
-                        deletedFrom++;
-                        break;
-
-                    case "optionshistory":
-                        Query optionsHistoryQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                        long optionsHistoryDeleted = mongoTemplate.remove(optionsHistoryQuery, "optionsHistory").getDeletedCount();
-                        log.info("Deleted {} records from optionsHistory collection", optionsHistoryDeleted);
-                        deletedFrom++;
-                        break;
-
-                    case "pattern":
-                        Query patternQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                        long patternDeleted = mongoTemplate.remove(patternQuery, "pattern").getDeletedCount();
-                        log.info("Deleted {} records from pattern collection", patternDeleted);
-                        deletedFrom++;
-                        break;
+        List<String> resolved = new ArrayList<>();
+        for (String collection : collections) {
+            String name = resolveCollection(collection);
+            if (name == null) {
+                log.warn("Unknown collection: {}", collection);
+            } else if (!resolved.contains(name)) {
+                resolved.add(name);
+            }
+        }
+        CascadeDeleteReport report = deleteTickers(List.of(ticker), resolved);
+        if (report.hasErrors()) {
+            throw new RuntimeException("Failed to delete ticker from specific collections: " + errors(report));
+        }
+    }
 
-                    case "patternhistory":
-                        Query patternHistoryQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                        long patternHistoryDeleted = mongoTemplate.remove(patternHistoryQuery, "patternHistory").getDeletedCount();
-                        log.info("Deleted {} records from patternHistory collection", patternHistoryDeleted);
-                        deletedFrom++;
-                        break;
+    /**
+     * Masters that exist for the given tickers, in one query.
+     */
+    public Set<String> existingTickers(Collection<String> tickers) {
+        List<String> canonical = tickers.stream().map(UtilHelper::canonicalTicker).filter(Objects::nonNull).toList();
+        Set<String> found = new HashSet<>();
+        mongoTemplate.find(Query.query(Criteria.where("_id").in(canonical)), Master.class)
+                .forEach(m -> found.add(UtilHelper.canonicalTicker(m.getId())));
+        return found;
+    }
 
-                    case "watchlist":
-                        Query watchlistQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                        long watchlistDeleted = mongoTemplate.remove(watchlistQuery, "watchlist").getDeletedCount();
-                        log.info("Deleted {} records from watchlist collection", watchlistDeleted);
-                        deletedFrom++;
-                        break;
+    /**
+     * Cascade delete a ticker set: one {@code $in} delete per collection, all collections concurrently
+     * on virtual threads. History collections also drop the tickers from the archive. Per-collection
+     * failures are reported rather than thrown so the other collections still complete.
+     */
+    public CascadeDeleteReport deleteTickers(Collection<String> tickers, List<String> collections) {
+        long start = System.currentTimeMillis();
+        List<String> canonical = tickers.stream()
+                .map(UtilHelper::canonicalTicker)
+                .filter(t -> t != null && !t.isEmpty())
+                .distinct()
+                .toList();
+
+        CascadeDeleteReport report = new CascadeDeleteReport();
+        report.setTickers(canonical);
+        if (canonical.isEmpty() || collections.isEmpty()) {
+            return report;
+        }
+        log.info("Starting cascade delete of {} tickers from {} collections", canonical.size(), collections.size());
 
-                    case "guaranteedpicks":
-                        Query guaranteedPicksQuery = Query.query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-                        long guaranteedPicksDeleted = mongoTemplate.remove(guaranteedPicksQuery, "guaranteedPicks").getDeletedCount();
-                        log.info("Deleted {} records from guaranteedPicks collection", guaranteedPicksDeleted);
-                        deletedFrom++;
-                        break;
+        JobProgress progress = JobProgress.current();
+        progress.total(collections.size());
+        List<Future<CascadeDeleteReport.CollectionResult>> futures = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String collection : collections) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        return deleteFromCollection(collection, canonical);
+                    } finally {
+                        progress.step();
+                    }
+                }));
+            }
+        }
+        for (Future<CascadeDeleteReport.CollectionResult> future : futures) {
+            try {
+                CascadeDeleteReport.CollectionResult result = future.get();
+                report.getCollections().add(result);
+                report.setTotalDeleted(report.getTotalDeleted() + result.getDeleted() + result.getArchivedDeleted());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                log.error("Cascade delete task failed", e.getCause());
+            }
+        }
 
-                    default:
-                        log.warn("Unknown collection: {}", collection);
-                        break;
-                }
+        if (collections.contains("stock")) {
+            stockSnapshot.invalidate();
+        }
+        for (String collection : collections) {
+            if (collection.endsWith("History")) {
+                canonical.forEach(ticker -> historyCache.invalidateTicker(collection, ticker));
             }
+        }
+        report.setTotalMillis(System.currentTimeMillis() - start);
+        log.info("Cascade delete of {} tickers removed {} documents in {} ms",
+                canonical.size(), report.getTotalDeleted(), report.getTotalMillis());
+        return report;
+    }
 
-            log.info("Successfully deleted ticker {} from {} collections", ticker, deletedFrom);
+    private CascadeDeleteReport.CollectionResult deleteFromCollection(String collection, List<String> tickers) {
+        long start = System.currentTimeMillis();
+        CascadeDeleteReport.CollectionResult result = new CascadeDeleteReport.CollectionResult();
+        result.setCollection(collection);
+        try {
+            // master is keyed by ticker
+            Criteria criteria = "master".equals(collection)
+                    ? Criteria.where("_id").in(tickers)
+                    : Criteria.where("ticker").in(tickers);
+            result.setDeleted(mongoTemplate.remove(Query.query(criteria), collection).getDeletedCount());
+            if (HistoryArchiveService.COLLECTIONS.contains(collection)) {
+                result.setArchivedDeleted(historyArchive.deleteTickers(collection, tickers));
+            }
+            log.info("Deleted {} records from {} collection", result.getDeleted() + result.getArchivedDeleted(), collection);
         } catch (Exception e) {
-            log.error("Error deleting ticker {} from specific collections: {}", ticker, e.getMessage(), e);
-            throw new RuntimeException("Failed to delete ticker from specific collections: " + e.getMessage());
+            log.error("Error deleting tickers from {}: {}", collection, e.getMessage(), e);
+            result.setError(e.getMessage());
         }
+        result.setMillis(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private static String resolveCollection(String name) {
+        return switch (name.toLowerCase()) {
+            case "master", "masters" -> "master";
+            case "stock", "stocks" -> "stock";
+            case "stockhistory" -> "stockHistory";
+            case "picks" -> "picks";
+            case "pickshistory" -> "picksHistory";
+            case "options" -> "options";
+            case "optionshistory" -> "optionsHistory";
+            case "pattern" -> "pattern";
+            case "patternhistory" -> "patternHistory";
+            case "watchlist" -> "watchlist";
+            case "guaranteedpicks" -> "guaranteedPicks";
+            default -> null;
+        };
+    }
+
+    private static String errors(CascadeDeleteReport report) {
+        return report.getCollections().stream()
+                .filter(c -> c.getError() != null)
+                .map(c -> c.getCollection() + ": " + c.getError())
+                .collect(Collectors.joining("; "));
     }
 }
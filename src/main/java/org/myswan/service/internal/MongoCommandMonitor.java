@@ -0,0 +1,367 @@
+package org.myswan.service.internal;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.*;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Driver {@link CommandListener} that aggregates every command by (collection, command, query shape):
+ * count, failures, latency histogram, documents returned and reply bytes. Commands at or above
+ * {@code mongo.monitor.slow-ms} are logged with the application method that issued them and kept
+ * in a bounded slow-query log.
+ *
+ * Shapes use the same normalisation as the index advisor (field names and predicate kinds, values
+ * dropped), so the two reports line up. A getMore is recorded under the shape of the find or aggregate
+ * that opened its cursor. The calling method is resolved on the completion callback, which the
+ * synchronous driver runs on the calling thread.
+ */
+@Component
+public class MongoCommandMonitor implements CommandListener {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoCommandMonitor.class);
+
+    /** Upper bounds (ms) of the latency histogram buckets; the last bucket is unbounded */
+    static final long[] BUCKETS_MS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000};
+
+    private static final String OTHER_SHAPE = "(other)";
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+    private static final BsonDocumentCodec BSON_CODEC = new BsonDocumentCodec();
+    private static final Set<String> SHAPED = Set.of("find", "count", "distinct", "aggregate", "findAndModify");
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    /** Open cursors remembered for getMore attribution; cursors leaked without a killCursors are dropped past this */
+    private static final int MAX_OPEN_CURSORS = 10_000;
+
+    private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+    /** cursor id -> shape of the find or aggregate that opened it */
+    private final Map<Long, String> cursorShapes = new ConcurrentHashMap<>();
+    private final Map<String, CommandStats> stats = new ConcurrentHashMap<>();
+    private final Deque<Map<String, Object>> slowQueries = new ArrayDeque<>();
+    private volatile Instant since = Instant.now();
+
+    /** Record command statistics */
+    @Value("${mongo.monitor.enabled:true}")
+    private boolean enabled;
+
+    /** Commands taking at least this long are logged with their caller */
+    @Value("${mongo.monitor.slow-ms:200}")
+    private long slowMs;
+
+    /** Measure reply sizes by re-encoding each reply; off by default since it copies every reply */
+    @Value("${mongo.monitor.measure-bytes:false}")
+    private boolean measureBytes;
+
+    /** Slow queries kept for the endpoint */
+    @Value("${mongo.monitor.slow-log-size:100}")
+    private int slowLogSize;
+
+    /** Distinct (collection, command, shape) keys tracked before new shapes are folded into "(other)" */
+    @Value("${mongo.monitor.max-shapes:2000}")
+    private int maxShapes;
+
+    // ---------------------------------------------------------------------------------------------
+    // CommandListener
+    // ---------------------------------------------------------------------------------------------
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (!enabled) return;
+        try {
+            String commandName = event.getCommandName();
+            BsonDocument command = event.getCommand();
+            if ("killCursors".equals(commandName) && command.get("cursors") instanceof BsonArray cursors) {
+                cursors.forEach(id -> {
+                    if (id instanceof BsonNumber number) cursorShapes.remove(number.longValue());
+                });
+            }
+            String collection = collectionOf(commandName, command);
+            if (collection == null) return;
+            // The command document is only valid during this callback, so the key is built now
+            long cursorId = "getMore".equals(commandName) && command.get("getMore") instanceof BsonNumber id ? id.longValue() : 0;
+            String shape = cursorId != 0 ? cursorShapes.getOrDefault(cursorId, "-") : shapeOf(commandName, command);
+            pending.put(event.getRequestId(), new Pending(key(collection, commandName, shape), shape, cursorId));
+        } catch (Exception e) {
+            log.debug("Could not classify Mongo command {}: {}", event.getCommandName(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        Pending started = pending.remove(event.getRequestId());
+        if (started == null) return;
+        String key = started.key();
+        long nanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        BsonDocument response = event.getResponse();
+        trackCursor(started, response);
+        long docs = documentsOf(response);
+        long bytes = measureBytes ? bytesOf(response) : 0;
+        stats(key).record(nanos, docs, bytes, false);
+        if (TimeUnit.NANOSECONDS.toMillis(nanos) >= slowMs) {
+            slow(key, nanos, docs, null);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        Pending started = pending.remove(event.getRequestId());
+        if (started == null) return;
+        String key = started.key();
+        if (started.cursorId() != 0) cursorShapes.remove(started.cursorId());
+        long nanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        stats(key).record(nanos, 0, 0, true);
+        if (TimeUnit.NANOSECONDS.toMillis(nanos) >= slowMs) {
+            slow(key, nanos, 0, event.getThrowable().getMessage());
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Report
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Actuator-style report: totals, per-key measurements ordered by total time, and the slow-query log.
+     */
+    public Map<String, Object> report(int limit) {
+        List<Map<String, Object>> commands = stats.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, CommandStats> e) -> e.getValue().totalNanos.sum()).reversed())
+                .limit(Math.max(1, limit))
+                .map(e -> e.getValue().describe(e.getKey()))
+                .toList();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("name", "mongo.commands");
+        report.put("since", since.toString());
+        report.put("enabled", enabled);
+        report.put("slowMs", slowMs);
+        report.put("trackedShapes", stats.size());
+        report.put("totalCommands", stats.values().stream().mapToLong(s -> s.count.sum()).sum());
+        report.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(stats.values().stream().mapToLong(s -> s.totalNanos.sum()).sum()));
+        report.put("bucketsMs", BUCKETS_MS);
+        report.put("commands", commands);
+        synchronized (slowQueries) {
+            report.put("slowQueries", new ArrayList<>(slowQueries));
+        }
+        return report;
+    }
+
+    public void reset() {
+        stats.clear();
+        cursorShapes.clear();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+        since = Instant.now();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Helpers
+    // ---------------------------------------------------------------------------------------------
+
+    private CommandStats stats(String key) {
+        CommandStats existing = stats.get(key);
+        if (existing != null) return existing;
+        if (stats.size() >= maxShapes) {
+            String[] parts = key.split("\\|", 3);
+            return stats.computeIfAbsent(key(parts[0], parts[1], OTHER_SHAPE), k -> new CommandStats());
+        }
+        return stats.computeIfAbsent(key, k -> new CommandStats());
+    }
+
+    /**
+     * Remember the shape of a cursor left open by a find or aggregate, and forget it once a getMore exhausts it.
+     */
+    private void trackCursor(Pending started, BsonDocument response) {
+        if (!(response.get("cursor") instanceof BsonDocument cursor) || !(cursor.get("id") instanceof BsonNumber id)) return;
+        long cursorId = id.longValue();
+        if (started.cursorId() != 0) {
+            if (cursorId == 0) cursorShapes.remove(started.cursorId());
+            return;
+        }
+        if (cursorId != 0) {
+            if (cursorShapes.size() >= MAX_OPEN_CURSORS) cursorShapes.clear();
+            cursorShapes.put(cursorId, started.shape());
+        }
+    }
+
+    private void slow(String key, long nanos, long docs, String error) {
+        String caller = caller();
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        String[] parts = key.split("\\|", 3);
+        log.warn("Slow Mongo {} on {} took {} ms ({} docs) from {}: {}", parts[1], parts[0], millis, docs, caller, parts[2]);
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("at", Instant.now().toString());
+        entry.put("collection", parts[0]);
+        entry.put("command", parts[1]);
+        entry.put("shape", parts[2]);
+        entry.put("millis", millis);
+        entry.put("documents", docs);
+        entry.put("caller", caller);
+        entry.put("thread", Thread.currentThread().getName());
+        if (error != null) entry.put("error", error);
+        synchronized (slowQueries) {
+            slowQueries.addFirst(entry);
+            while (slowQueries.size() > Math.max(1, slowLogSize)) slowQueries.removeLast();
+        }
+    }
+
+    /**
+     * First application frame below the driver, Spring Data and the storage port,
+     * e.g. "StockService.getStockHistory:252".
+     */
+    private static String caller() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith("org.myswan.")
+                        && !f.getClassName().startsWith("org.myswan.service.internal.store.")
+                        && !f.getClassName().equals(MongoCommandMonitor.class.getName()))
+                .findFirst()
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1)
+                        + "." + f.getMethodName() + ":" + f.getLineNumber())
+                .orElse("unknown"));
+    }
+
+    private static String key(String collection, String command, String shape) {
+        return collection + "|" + command + "|" + shape;
+    }
+
+    private static String collectionOf(String commandName, BsonDocument command) {
+        if ("getMore".equals(commandName)) {
+            return command.get("collection") instanceof BsonString name ? name.getValue() : null;
+        }
+        return command.get(commandName) instanceof BsonString name ? name.getValue() : null;
+    }
+
+    private static String shapeOf(String commandName, BsonDocument command) {
+        if (SHAPED.contains(commandName)) {
+            BsonDocument parts = new BsonDocument();
+            for (String field : List.of("filter", "query", "sort", "pipeline")) {
+                if (command.containsKey(field)) parts.put(field, command.get(field));
+            }
+            Document doc = toDocument(parts);
+            return IndexAdvisorService.ShapeKeys.of(IndexAdvisorService.filterOf(doc), IndexAdvisorService.sortOf(doc)).describe();
+        }
+        String statements = switch (commandName) {
+            case "update" -> "updates";
+            case "delete" -> "deletes";
+            default -> null;
+        };
+        if (statements != null && command.get(statements) instanceof BsonArray array && !array.isEmpty()
+                && array.getFirst() instanceof BsonDocument first && first.get("q") instanceof BsonDocument q) {
+            return IndexAdvisorService.ShapeKeys.of(toDocument(q), new Document()).describe();
+        }
+        return "-";
+    }
+
+    private static Document toDocument(BsonDocument bson) {
+        return DOCUMENT_CODEC.decode(new BsonDocumentReader(bson), DecoderContext.builder().build());
+    }
+
+    private static long documentsOf(BsonDocument response) {
+        if (response.get("cursor") instanceof BsonDocument cursor) {
+            for (String batch : List.of("firstBatch", "nextBatch")) {
+                if (cursor.get(batch) instanceof BsonArray array) return array.size();
+            }
+        }
+        if (response.get("values") instanceof BsonArray values) return values.size();
+        if (response.get("n") instanceof BsonNumber n) return n.longValue();
+        return 0;
+    }
+
+    private static long bytesOf(BsonDocument response) {
+        try {
+            return new RawBsonDocument(response, BSON_CODEC).getByteBuffer().remaining();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Key of a started command, its shape, and the cursor a getMore continues (0 for other commands).
+     */
+    private record Pending(String key, String shape, long cursorId) {
+    }
+
+    /**
+     * Counters for one (collection, command, shape).
+     */
+    static final class CommandStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final LongAdder documents = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder[] buckets = new LongAdder[BUCKETS_MS.length + 1];
+
+        CommandStats() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long nanos, long docs, long replyBytes, boolean failed) {
+            count.increment();
+            if (failed) failures.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            documents.add(docs);
+            bytes.add(replyBytes);
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKETS_MS.length && millis > BUCKETS_MS[bucket]) bucket++;
+            buckets[bucket].increment();
+        }
+
+        Map<String, Object> describe(String key) {
+            String[] parts = key.split("\\|", 3);
+            long n = count.sum();
+            long[] histogram = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) histogram[i] = buckets[i].sum();
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("collection", parts[0]);
+            entry.put("command", parts[1]);
+            entry.put("shape", parts[2]);
+            entry.put("count", n);
+            entry.put("failures", failures.sum());
+            entry.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(totalNanos.sum()));
+            entry.put("avgMillis", n > 0 ? Math.round(totalNanos.sum() / 1e4 / n) / 100.0 : 0.0);
+            entry.put("maxMillis", Math.round(maxNanos.get() / 1e4) / 100.0);
+            entry.put("p50Millis", percentile(histogram, n, 0.50));
+            entry.put("p95Millis", percentile(histogram, n, 0.95));
+            entry.put("p99Millis", percentile(histogram, n, 0.99));
+            entry.put("documents", documents.sum());
+            entry.put("avgDocuments", n > 0 ? documents.sum() / n : 0);
+            entry.put("bytes", bytes.sum());
+            entry.put("histogram", histogram);
+            return entry;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile (-1 when it is in the unbounded bucket).
+         */
+        private static long percentile(long[] histogram, long total, double p) {
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(total * p);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++) {
+                seen += histogram[i];
+                if (seen >= rank) return i < BUCKETS_MS.length ? BUCKETS_MS[i] : -1;
+            }
+            return -1;
+        }
+    }
+}
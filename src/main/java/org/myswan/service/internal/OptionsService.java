@@ -1,21 +1,31 @@
 package org.myswan.service.internal;
 
 import lombok.extern.slf4j.Slf4j;
+import org.myswan.common.UtilHelper;
 import org.myswan.model.collection.Options;
 import org.myswan.model.collection.Stock;
 import org.myswan.repository.OptionsRepository;
+import org.myswan.service.internal.archive.ArchiveQuery;
+import org.myswan.service.internal.archive.HistoryArchiveService;
+import org.myswan.service.internal.migration.OptionsSchemaMigration;
+import org.myswan.service.internal.store.MarketDataStore;
 import org.springframework.beans.BeanUtils;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -23,15 +33,32 @@ public class OptionsService {
 
     private final OptionsRepository optionsRepository;
     private final MongoTemplate mongoTemplate;
+    private final HistoryArchiveService historyArchive;
+    private final StockService stockService;
+    private final MarketDataStore store;
+    private final HistoryRangeCache historyCache;
 
-    public OptionsService(OptionsRepository optionsRepository, MongoTemplate mongoTemplate) {
+    public OptionsService(OptionsRepository optionsRepository, MongoTemplate mongoTemplate,
+                          HistoryArchiveService historyArchive, StockService stockService,
+                          MarketDataStore store, HistoryRangeCache historyCache) {
         this.optionsRepository = optionsRepository;
         this.mongoTemplate = mongoTemplate;
+        this.historyArchive = historyArchive;
+        this.stockService = stockService;
+        this.store = store;
+        this.historyCache = historyCache;
     }
 
+    /**
+     * Current options with the underlying stock joined from the in-memory snapshot.
+     */
     public List<Options> list() {
+        return withCurrentStock(findAll());
+    }
+
+    private List<Options> findAll() {
         try {
-            return optionsRepository.findAll();
+            return store.options();
         } catch (Exception ex) {
             log.error("Failed to load options", ex);
             return Collections.emptyList();
@@ -42,9 +69,7 @@ public class OptionsService {
         if (ticker == null || ticker.isBlank()) {
             return Collections.emptyList();
         }
-        Query query = new Query(Criteria.where("ticker").regex("^" + ticker + "$", "i"))
-                .with(Sort.by(Sort.Direction.DESC, "histDate"));
-        return mongoTemplate.find(query, Options.class, "options");
+        return withCurrentStock(store.options(UtilHelper.canonicalTicker(ticker)));
     }
 
     public Options save(Options option) {
@@ -66,31 +91,39 @@ public class OptionsService {
     public Options findById(String id) {
         if (id == null) return null;
         Optional<Options> option = optionsRepository.findById(id);
-        return option.orElse(null);
+        return option.map(o -> withCurrentStock(List.of(o)).getFirst()).orElse(null);
     }
 
 
+    /**
+     * Stamp the denormalized underlying fields (price, change) on the options of every ticker that has
+     * options, with one bulk $set per ticker. The full stock is joined at read time instead.
+     */
     public void syncWithStockData(List<Stock> allStocks) {
-        List<Options> allOptions = list();
-        if (allOptions.isEmpty()) return;
+        List<String> tickers = mongoTemplate.findDistinct(new Query(), "ticker", "options", String.class);
+        if (tickers.isEmpty()) return;
 
         Map<String, Stock> stockByTicker = allStocks.stream()
                 .filter(s -> s.getTicker() != null && !s.getTicker().isBlank())
-                .collect(java.util.stream.Collectors.toMap(
+                .collect(Collectors.toMap(
                         s -> s.getTicker().toUpperCase(),
                         s -> s,
                         (existing, replacement) -> existing));
 
-        allOptions.parallelStream().forEach(option -> {
-            String ticker = option.getTicker() != null ? option.getTicker().toUpperCase() : "";
-            Stock stock = stockByTicker.get(ticker);
-            if (stock != null) {
-                option.setStock(stock);
-            }
-        });
-
-        optionsRepository.saveAll(allOptions);
-        log.info("syncWithStockData: updated stock reference for {} options", allOptions.size());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "options");
+        int updates = 0;
+        for (String ticker : tickers) {
+            Stock stock = ticker != null ? stockByTicker.get(ticker.toUpperCase()) : null;
+            if (stock == null) continue;
+            bulk.updateMulti(Query.query(Criteria.where("ticker").is(ticker)), new Update()
+                    .set("stockPriceCurrent", stock.getPrice())
+                    .set("underlyingChange", stock.getChange()));
+            updates++;
+        }
+        if (updates > 0) {
+            long modified = bulk.execute().getModifiedCount();
+            log.info("syncWithStockData: updated underlying fields for {} tickers ({} options)", updates, modified);
+        }
     }
 
     /**
@@ -98,11 +131,13 @@ public class OptionsService {
      * from optionsHistory for each, and saves back.
      */
     public void calculateAllDaysUpDown() {
-        List<Options> allOptions = list();
+        List<Options> allOptions = findAll();
         if (allOptions.isEmpty()) return;
         LocalDate today = LocalDate.now();
-        allOptions.forEach(opt -> opt.setDaysUpDown(calculateDaysUpDown(opt.getOptionId(), today)));
-        optionsRepository.saveAll(allOptions);
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Options.class);
+        allOptions.forEach(opt -> bulk.updateOne(Query.query(Criteria.where("_id").is(opt.getId())),
+                Update.update("daysUpDown", calculateDaysUpDown(opt.getOptionId(), today))));
+        bulk.execute();
         log.info("calculateAllDaysUpDown: updated {} options", allOptions.size());
     }
 
@@ -144,7 +179,7 @@ public class OptionsService {
     }
 
     public void syncOptionsHistory() {
-        List<Options> options = list();
+        List<Options> options = findAll();
         if (options.isEmpty()) {
             log.info("Skipping options history sync: no records found");
             return;
@@ -162,26 +197,85 @@ public class OptionsService {
         if (histDate == null) return;
         Query query = Query.query(Criteria.where("histDate").is(histDate));
         mongoTemplate.remove(query, "optionsHistory");
+        historyCache.invalidate("optionsHistory", histDate);
     }
 
+    /**
+     * Option history of a ticker, newest first. Past sessions (hot rows and archive) come from the
+     * {@link HistoryRangeCache}; only the current session is queried per request.
+     */
     public List<Options> getOptionsHistory(String ticker) {
         if (ticker == null || ticker.isBlank()) return Collections.emptyList();
-        Query query = new Query(Criteria.where("ticker").regex("^" + ticker + "$", "i"))
-                .with(Sort.by(Sort.Direction.DESC, "histDate"));
-        return mongoTemplate.find(query, Options.class, "optionsHistory");
+        String key = UtilHelper.canonicalTicker(ticker);
+        return withHistoricalStock(cachedHistory(key, Criteria.where("ticker").is(key),
+                ArchiveQuery.of("optionsHistory").ticker(key)));
     }
 
     public List<Options> getOptionsHistoryByOptionId(String optionId) {
         if (optionId == null || optionId.isBlank()) return Collections.emptyList();
-        Query query = new Query(Criteria.where("optionId").is(optionId))
-                .with(Sort.by(Sort.Direction.DESC, "histDate"));
-        return mongoTemplate.find(query, Options.class, "optionsHistory");
+        return withHistoricalStock(cachedHistory("optionId:" + optionId, Criteria.where("optionId").is(optionId),
+                ArchiveQuery.of("optionsHistory").is("optionId", optionId)));
     }
 
     public void deleteHistoryByTicker(String ticker) {
         if (ticker == null || ticker.isBlank()) return;
-        Query query = new Query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
+        Query query = new Query(Criteria.where("ticker").is(UtilHelper.canonicalTicker(ticker)));
         mongoTemplate.remove(query, "optionsHistory");
+        historyArchive.deleteTickers("optionsHistory", List.of(ticker));
+        historyCache.invalidateTicker("optionsHistory", UtilHelper.canonicalTicker(ticker));
+    }
+
+    private List<Options> cachedHistory(String key, Criteria filter, ArchiveQuery archived) {
+        return historyCache.get("optionsHistory", key, null, null, Options::getHistDate,
+                session -> withArchived(findHistory(new Criteria().andOperator(filter, Criteria.where("histDate").lt(session))),
+                        archived.to(session.minusDays(1))),
+                session -> findHistory(new Criteria().andOperator(filter, Criteria.where("histDate").gte(session))));
+    }
+
+    private List<Options> findHistory(Criteria criteria) {
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "histDate"));
+        return mongoTemplate.find(query, Options.class, "optionsHistory");
+    }
+
+    /**
+     * Append archived rows to the hot history, newest first.
+     */
+    private List<Options> withArchived(List<Options> hot, ArchiveQuery query) {
+        List<Options> cold = historyArchive.find(query, Options.class, OptionsSchemaMigration::upgrade);
+        if (cold.isEmpty()) return hot;
+        List<Options> merged = new ArrayList<>(hot);
+        merged.addAll(cold);
+        merged.sort(Comparator.comparing(Options::getHistDate, Comparator.nullsLast(Comparator.reverseOrder())));
+        return merged;
+    }
+
+    private List<Options> withCurrentStock(List<Options> options) {
+        Map<String, Stock> stocks = stockService.snapshotByTicker();
+        options.forEach(option -> {
+            if (option.getTicker() != null) {
+                option.setStock(stocks.get(option.getTicker().toUpperCase()));
+            }
+        });
+        return options;
+    }
+
+    /**
+     * Join each history row to the stockHistory row of the same ticker and date. Cached rows are shared,
+     * but the join always sets the same stock row for a given ticker and date.
+     */
+    private List<Options> withHistoricalStock(List<Options> history) {
+        Map<String, List<Options>> byTicker = history.stream()
+                .filter(o -> o.getTicker() != null && o.getHistDate() != null)
+                .collect(Collectors.groupingBy(Options::getTicker));
+        byTicker.forEach((ticker, rows) -> {
+            LocalDate from = rows.stream().map(Options::getHistDate).min(Comparator.naturalOrder()).orElseThrow();
+            LocalDate to = rows.stream().map(Options::getHistDate).max(Comparator.naturalOrder()).orElseThrow();
+            Map<LocalDate, Stock> byDate = stockService.getStockHistorySnapshot(ticker, from, to).stream()
+                    .filter(stock -> stock.getHistDate() != null)
+                    .collect(Collectors.toMap(Stock::getHistDate, stock -> stock, (a, b) -> a));
+            rows.forEach(row -> row.setStock(byDate.get(row.getHistDate())));
+        });
+        return history;
     }
 
     private Options copyForHistory(Options source, LocalDate histDate) {
@@ -1,35 +1,52 @@
 package org.myswan.service.internal;
 
 import lombok.extern.slf4j.Slf4j;
+import org.myswan.common.UtilHelper;
 import org.myswan.model.collection.Pattern;
 import org.myswan.model.collection.Stock;
-import org.myswan.repository.PatternRepository;
+import org.myswan.service.internal.archive.ArchiveQuery;
+import org.myswan.service.internal.archive.HistoryArchiveService;
+import org.myswan.service.internal.migration.PatternSchemaMigration;
+import org.myswan.service.internal.store.MarketDataStore;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class PatternService {
 
-    private final PatternRepository patternRepository;
     private final MongoTemplate mongoTemplate;
-
-    public PatternService(PatternRepository patternRepository, MongoTemplate mongoTemplate) {
-        this.patternRepository = patternRepository;
+    private final HistoryArchiveService historyArchive;
+    private final StockService stockService;
+    private final MarketDataStore store;
+    private final HistoryRangeCache historyCache;
+
+    public PatternService(MongoTemplate mongoTemplate,
+                          HistoryArchiveService historyArchive, StockService stockService,
+                          MarketDataStore store, HistoryRangeCache historyCache) {
         this.mongoTemplate = mongoTemplate;
+        this.historyArchive = historyArchive;
+        this.stockService = stockService;
+        this.store = store;
+        this.historyCache = historyCache;
     }
 
+    /**
+     * Current patterns with their stock joined from the in-memory snapshot.
+     */
     public List<Pattern> list() {
-        return patternRepository.findAll();
+        return withCurrentStock(store.patterns());
     }
 
     public void syncPatternHistory() {
-        List<Pattern> patterns = list();
+        List<Pattern> patterns = store.patterns();
         if(patterns != null && !patterns.isEmpty()) {
             deleteHistoryByDate(patterns.getFirst().getHistDate());
             patterns.forEach(stock -> {
@@ -39,69 +56,106 @@ public class PatternService {
         }
     }
 
-    public void deleteHistoryByDate(String histDate) {
+    public void deleteHistoryByDate(LocalDate histDate) {
         Query query = new Query(Criteria.where("histDate").is(histDate));
         mongoTemplate.remove(query, "patternHistory");
+        historyCache.invalidate("patternHistory", histDate);
         log.info("Deleted pattern history for date: {}", histDate);
     }
 
     public List<Pattern> listByTicker(String ticker) {
-        // Use case-insensitive regex to handle ticker case mismatches
-        Query query = new Query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-        List<Pattern> patterns = mongoTemplate.find(query, Pattern.class);
+        // Tickers are stored in canonical upper case, so an exact match can use the ticker index
+        List<Pattern> patterns = withCurrentStock(store.patterns(UtilHelper.canonicalTicker(ticker)));
         log.debug("Found {} patterns for ticker: {}", patterns.size(), ticker);
         return patterns;
     }
 
+    /**
+     * Pattern history of a ticker, newest first. Past sessions (hot rows and archive) come from the
+     * {@link HistoryRangeCache}; only the current session is queried per request.
+     */
     public List<Pattern> listHistoryByTicker(String ticker) {
-        // Use case-insensitive regex to handle ticker case mismatches
-        Query query = new Query(Criteria.where("ticker").regex("^" + ticker + "$", "i"));
-        query.with(org.springframework.data.domain.Sort.by(
-            org.springframework.data.domain.Sort.Direction.DESC, "histDate"));
-        List<Pattern> patterns = mongoTemplate.find(query, Pattern.class, "patternHistory");
+        // Tickers are stored in canonical upper case, so an exact match can use the ticker index
+        String key = UtilHelper.canonicalTicker(ticker);
+        List<Pattern> patterns = historyCache.get("patternHistory", key, null, null, Pattern::getHistDate,
+                session -> pastHistory(key, session),
+                session -> findHistory(Criteria.where("ticker").is(key).and("histDate").gte(session)));
+        withHistoricalStock(ticker, patterns);
         log.debug("Found {} pattern history records for ticker: {}", patterns.size(), ticker);
         return patterns;
     }
 
-    public void deleteAll() {
-        patternRepository.deleteAll();
-        log.info("Deleted all patterns");
-    }
-
-    public void saveAll(List<Pattern> patterns) {
-        if (patterns != null && !patterns.isEmpty()) {
-            patternRepository.saveAll(patterns);
-            log.info("Saved {} patterns", patterns.size());
+    private List<Pattern> pastHistory(String ticker, LocalDate session) {
+        List<Pattern> patterns = findHistory(Criteria.where("ticker").is(ticker).and("histDate").lt(session));
+        List<Pattern> archived = historyArchive.find(ArchiveQuery.of("patternHistory").ticker(ticker).to(session.minusDays(1)),
+                Pattern.class, PatternSchemaMigration::upgrade);
+        if (!archived.isEmpty()) {
+            patterns = new ArrayList<>(patterns);
+            patterns.addAll(archived);
+            patterns.sort(Comparator.comparing(Pattern::getHistDate, Comparator.nullsLast(Comparator.reverseOrder())));
         }
+        return patterns;
     }
 
+    private List<Pattern> findHistory(Criteria criteria) {
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.DESC, "histDate"));
+        return mongoTemplate.find(query, Pattern.class, "patternHistory");
+    }
 
+    /**
+     * Replace the current pattern set: one unordered bulk upsert keyed by eventId (the document id),
+     * then remove the patterns that are no longer active.
+     */
+    public void replaceAll(List<Pattern> patterns) {
+        if (patterns == null) {
+            return;
+        }
+        for (Pattern pattern : patterns) {
+            if (pattern.getId() == null) {
+                pattern.setId(pattern.getEventId());
+            }
+        }
+        long removed = store.replacePatterns(patterns);
+        log.info("Upserted {} patterns, removed {} inactive patterns", patterns.size(), removed);
+    }
 
     public void saveToHistory(List<Pattern> patterns) {
         if (patterns != null && !patterns.isEmpty()) {
-            patterns.forEach(pattern -> {
-                pattern.setId(null);
-
-                // Fetch and attach stock snapshot for this pattern's ticker
-                if (pattern.getTicker() != null && !pattern.getTicker().isEmpty()) {
-                    try {
-                        Query stockQuery = new Query(Criteria.where("ticker").regex("^" + pattern.getTicker() + "$", "i"));
-                        Stock stock = mongoTemplate.findOne(stockQuery, Stock.class, "stock");
-
-                        if (stock != null) {
-                            pattern.setStock(stock);
-                            log.debug("Attached stock snapshot for pattern ticker: {}", pattern.getTicker());
-                        } else {
-                            log.warn("No stock found for pattern ticker: {}", pattern.getTicker());
-                        }
-                    } catch (Exception e) {
-                        log.error("Error fetching stock for pattern ticker {}: {}", pattern.getTicker(), e.getMessage());
-                    }
-                }
-            });
+            patterns.forEach(pattern -> pattern.setId(null));
             mongoTemplate.insert(patterns, "patternHistory");
-            log.info("Saved {} patterns to history with stock snapshots", patterns.size());
+            patterns.stream().map(Pattern::getHistDate).filter(Objects::nonNull).distinct()
+                    .forEach(date -> historyCache.invalidate("patternHistory", date));
+            log.info("Saved {} patterns to history", patterns.size());
         }
     }
-}
 
+    private List<Pattern> withCurrentStock(List<Pattern> patterns) {
+        Map<String, Stock> stocks = stockService.snapshotByTicker();
+        patterns.forEach(pattern -> {
+            if (pattern.getTicker() != null) {
+                pattern.setStock(stocks.get(pattern.getTicker().toUpperCase()));
+            }
+        });
+        return patterns;
+    }
+
+    /**
+     * Join each history row to the stockHistory row of the same ticker and date. Cached rows are shared,
+     * but the join always sets the same stock row for a given ticker and date.
+     */
+    private void withHistoricalStock(String ticker, List<Pattern> patterns) {
+        List<LocalDate> dates = patterns.stream()
+                .map(Pattern::getHistDate)
+                .filter(Objects::nonNull)
+                .sorted()
+                .toList();
+        if (dates.isEmpty()) {
+            return;
+        }
+        Map<LocalDate, Stock> byDate = stockService.getStockHistorySnapshot(UtilHelper.canonicalTicker(ticker),
+                        dates.getFirst(), dates.getLast()).stream()
+                .filter(stock -> stock.getHistDate() != null)
+                .collect(Collectors.toMap(Stock::getHistDate, stock -> stock, (a, b) -> a));
+        patterns.forEach(pattern -> pattern.setStock(byDate.get(pattern.getHistDate())));
+    }
+}
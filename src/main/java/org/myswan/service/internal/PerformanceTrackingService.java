@@ -77,10 +77,7 @@ public class PerformanceTrackingService {
     public boolean trackPickPerformance(GuaranteedPick pick) {
         log.info("Tracking performance for {} (picked on {})", pick.getTicker(), pick.getDate());
 
-        List<Stock> stocks = stockService.list();
-        Optional<Stock> currentStockOpt = stocks.stream()
-            .filter(s -> s.getTicker().equals(pick.getTicker()))
-            .findFirst();
+        Optional<Stock> currentStockOpt = stockService.getByTicker(pick.getTicker());
 
         if (currentStockOpt.isEmpty()) {
             log.warn("Stock {} not found in current data, skipping", pick.getTicker());
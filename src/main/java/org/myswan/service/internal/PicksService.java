@@ -1,20 +1,28 @@
 package org.myswan.service.internal;
 
 import lombok.extern.slf4j.Slf4j;
+import org.myswan.common.UtilHelper;
 import org.myswan.model.collection.Picks;
 import org.myswan.model.collection.Stock;
 import org.myswan.repository.PicksRepository;
+import org.myswan.service.internal.store.MarketDataStore;
+import org.myswan.service.internal.store.RatingDimension;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -22,18 +30,25 @@ public class PicksService {
 
     private final PicksRepository picksRepository;
     private final MongoTemplate mongoTemplate;
+    private final MarketDataStore store;
+    private final HistoryRangeCache historyCache;
+    private final RatingDimension ratings;
 
-    public PicksService(PicksRepository picksRepository, MongoTemplate mongoTemplate) {
+    public PicksService(PicksRepository picksRepository, MongoTemplate mongoTemplate, MarketDataStore store,
+                        HistoryRangeCache historyCache, RatingDimension ratings) {
         this.picksRepository = picksRepository;
         this.mongoTemplate = mongoTemplate;
+        this.store = store;
+        this.historyCache = historyCache;
+        this.ratings = ratings;
     }
 
     public List<Picks> list() {
-        return picksRepository.findAll();
+        return store.picks();
     }
 
     public List<Picks> listByTicker(String ticker) {
-        return picksRepository.findByTickerOrderByAddedDateDesc(ticker);
+        return store.picks(ticker);
     }
 
     public Picks save(Picks pick) {
@@ -50,7 +65,7 @@ public class PicksService {
 
         if (pick.getTicker() != null && !pick.getTicker().isBlank()) {
             try {
-                Query query = new Query(Criteria.where("ticker").regex("^" + pick.getTicker() + "$", "i"));
+                Query query = new Query(Criteria.where("ticker").is(UtilHelper.canonicalTicker(pick.getTicker())));
                 Stock stock = mongoTemplate.findOne(query, Stock.class);
                 if (stock != null) {
                     pick.setStock(stock);
@@ -72,7 +87,7 @@ public class PicksService {
 
         if (pick.getTicker() != null && !pick.getTicker().isBlank()) {
             try {
-                Query query = new Query(Criteria.where("ticker").regex("^" + pick.getTicker() + "$", "i"));
+                Query query = new Query(Criteria.where("ticker").is(UtilHelper.canonicalTicker(pick.getTicker())));
                 Stock stock = mongoTemplate.findOne(query, Stock.class);
                 if (stock != null) {
                     pick.setStock(stock);
@@ -92,116 +107,139 @@ public class PicksService {
         return picksRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Fold the current session into each pick's running extremes and check target/stop hits, then write
+     * every pick back with one unordered bulk update. Running min/max live on the pick itself, so
+     * picksHistory is only read to backfill picks that have never been rolled up.
+     */
     public void syncWithStockData(List<Stock> allStocks) {
         log.info("Starting picks sync with current stock data...");
         try {
             List<Picks> allPicks = list();
-            List<Picks> latestHistoryPicks = getLatestPicksHistoryForAllTickers();
-
-            // Create a map for O(1) lookup of historical picks by ticker
-            Map<String, Picks> historyPicksMap = new HashMap<>();
-            for (Picks histPick : latestHistoryPicks) {
-                historyPicksMap.put(histPick.getTicker().toUpperCase(), histPick);
+            if (allPicks.isEmpty()) {
+                log.info("Picks sync completed. No picks");
+                return;
             }
+            LocalDate today = LocalDate.now();
 
             // Create a map for O(1) lookup of stocks by ticker
             Map<String, Stock> stocksMap = new HashMap<>();
             for (Stock stock : allStocks) {
-                stocksMap.put(stock.getTicker().toUpperCase(), stock);
+                if (stock.getTicker() != null) stocksMap.put(stock.getTicker().toUpperCase(), stock);
             }
 
+            // One-off backfill from history for picks without a rollup yet
+            Set<String> backfillTickers = allPicks.stream()
+                    .filter(p -> p.getRollupDate() == null && p.getTicker() != null)
+                    .map(p -> p.getTicker().toUpperCase())
+                    .collect(Collectors.toSet());
+            Map<String, Picks> historyPicksMap = latestPicksHistory(backfillTickers);
+
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Picks.class);
+            int missingStock = 0;
+            int closed = 0;
             for (Picks pick : allPicks) {
                 try {
-                    pick.setHistoryDate(LocalDate.now().toString());
-
-                    // Find matching stock
-                    Stock stock = stocksMap.get(pick.getTicker().toUpperCase());
+                    pick.setHistoryDate(today.toString());
+                    Stock stock = pick.getTicker() != null ? stocksMap.get(pick.getTicker().toUpperCase()) : null;
                     if (stock != null) {
                         pick.setStock(stock);
-
-                        // Don't update min/max for picks added today - they need at least one day of trading
-                        LocalDate today = LocalDate.now();
-                        boolean isAddedToday = pick.getAddedDate() != null && pick.getAddedDate().equals(today);
-
-                        log.info("Processing pick {}: addedDate={}, today={}, isAddedToday={}",
-                                pick.getTicker(), pick.getAddedDate(), today, isAddedToday);
-
-                        if (!isAddedToday) {
-                            // Initialize min/max if not set (first time)
-                            if (pick.getMin() == 0) {
-                                pick.setMin(stock.getLow());
-                                log.info("Initializing min for {}: {}", pick.getTicker(), stock.getLow());
-                            }
-                            if (pick.getMax() == 0) {
-                                pick.setMax(stock.getHigh());
-                                log.info("Initializing max for {}: {}", pick.getTicker(), stock.getHigh());
-                            }
-
-                            // Update min/max with today's values
-                            double oldMin = pick.getMin();
-                            double oldMax = pick.getMax();
-                            pick.setMin(Math.min(pick.getMin(), stock.getLow()));
-                            pick.setMax(Math.max(pick.getMax(), stock.getHigh()));
-                            log.info("Updated min/max for {}: min {} -> {}, max {} -> {}",
-                                    pick.getTicker(), oldMin, pick.getMin(), oldMax, pick.getMax());
-
-                            // Update min/max with historical values
-                            Picks histPick = historyPicksMap.get(pick.getTicker().toUpperCase());
-                            if (histPick != null) {
-                                if (histPick.getMin() != 0) {
-                                    pick.setMin(Math.min(pick.getMin(), histPick.getMin()));
-                                }
-                                if (histPick.getMax() != 0) {
-                                    pick.setMax(Math.max(pick.getMax(), histPick.getMax()));
-                                }
-                                log.info("After history merge for {}: min={}, max={}",
-                                        pick.getTicker(), pick.getMin(), pick.getMax());
-                            }
-                        } else {
-                            // For picks added today, ensure min/max remain null/zero
-                            pick.setMin(0);
-                            pick.setMax(0);
-                            log.info("Skipping min/max update for today's pick: {} (setting to 0)", pick.getTicker());
-                        }
-                    }
-                    if (pick.getTicker() == null || "CLOSED".equalsIgnoreCase(pick.getStatus())) continue;
-
-                    if (pick.getStock() != null) {
-
-                        // If pick has target/stop values (non-zero), check hits
-                        try {
-                            double price = pick.getStock().getPrice();
-                            if (pick.getTarget() != 0 && price >= pick.getTarget() && !pick.isTargetMet()) {
-                                pick.setTargetMet(true);
-                                pick.setTargetMetDate(LocalDate.now());
-                                pick.setStatus("CLOSED");
-                                log.info("Target hit for {}: {} >= {}", pick.getTicker(), price, pick.getTarget());
-                            }
-
-                            if (pick.getStopLoss() != 0 && price <= pick.getStopLoss() && !pick.isStopLossMet()) {
-                                pick.setStopLossMet(true);
-                                pick.setStopLossMetDate(LocalDate.now());
-                                pick.setStatus("CLOSED");
-                                log.info("Stop loss hit for {}: {} <= {}", pick.getTicker(), price, pick.getStopLoss());
-                            }
-                        } catch (Exception ex) {
-                            log.warn("Error while evaluating target/stop for {}: {}", pick.getTicker(), ex.getMessage());
-                        }
+                        rollup(pick, stock, historyPicksMap.get(pick.getTicker().toUpperCase()), today);
                     } else {
-                        log.warn("Stock not found for pick ticker: {}", pick.getTicker());
+                        missingStock++;
+                        log.debug("Stock not found for pick ticker: {}", pick.getTicker());
+                    }
+
+                    if (stock != null && pick.getTicker() != null && !"CLOSED".equalsIgnoreCase(pick.getStatus())
+                            && checkTargetAndStop(pick, stock.getPrice(), today)) {
+                        closed++;
                     }
                 } catch (Exception e) {
                     log.error("Error syncing pick for ticker: {}", pick.getTicker(), e);
                 }
+                bulk.updateOne(Query.query(Criteria.where("_id").is(pick.getId())), new Update()
+                        .set("historyDate", pick.getHistoryDate())
+                        .set("stock", pick.getStock())
+                        .set("min", pick.getMin())
+                        .set("max", pick.getMax())
+                        .set("minDate", pick.getMinDate())
+                        .set("maxDate", pick.getMaxDate())
+                        .set("rollupDate", pick.getRollupDate())
+                        .set("targetMet", pick.isTargetMet())
+                        .set("targetMetDate", pick.getTargetMetDate())
+                        .set("stopLossMet", pick.isStopLossMet())
+                        .set("stopLossMetDate", pick.getStopLossMetDate())
+                        .set("status", pick.getStatus()));
             }
-            if (!allPicks.isEmpty())
-                picksRepository.saveAll(allPicks);
-            log.info("Picks sync completed. Updated {} picks", allPicks.size());
+            bulk.execute();
+            log.info("Picks sync completed. Updated {} picks ({} backfilled from history, {} closed, {} without stock)",
+                    allPicks.size(), historyPicksMap.size(), closed, missingStock);
         } catch (Exception e) {
             log.error("Error during picks sync: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * Fold one session's low/high into the running extremes, recording the first session each was reached.
+     */
+    private void rollup(Picks pick, Stock stock, Picks histPick, LocalDate today) {
+        // Don't update min/max for picks added today - they need at least one day of trading
+        if (pick.getAddedDate() != null && pick.getAddedDate().equals(today)) {
+            pick.setMin(0);
+            pick.setMax(0);
+            pick.setMinDate(null);
+            pick.setMaxDate(null);
+            return;
+        }
+
+        // Backfill: merge the latest history rollup once, before the first incremental update
+        if (pick.getRollupDate() == null && histPick != null) {
+            if (histPick.getMin() != 0 && (pick.getMin() == 0 || histPick.getMin() < pick.getMin())) {
+                pick.setMin(histPick.getMin());
+                pick.setMinDate(histPick.getMinDate());
+            }
+            if (histPick.getMax() != 0 && histPick.getMax() > pick.getMax()) {
+                pick.setMax(histPick.getMax());
+                pick.setMaxDate(histPick.getMaxDate());
+            }
+        }
+
+        LocalDate session = stock.getHistDate() != null ? stock.getHistDate() : today;
+        if (pick.getMin() == 0 || stock.getLow() < pick.getMin()) {
+            pick.setMin(stock.getLow());
+            pick.setMinDate(session);
+        }
+        if (pick.getMax() == 0 || stock.getHigh() > pick.getMax()) {
+            pick.setMax(stock.getHigh());
+            pick.setMaxDate(session);
+        }
+        pick.setRollupDate(session);
+        log.debug("Rolled up {}: min={} ({}), max={} ({})", pick.getTicker(),
+                pick.getMin(), pick.getMinDate(), pick.getMax(), pick.getMaxDate());
+    }
+
+    /**
+     * If the pick has target/stop values (non-zero), check hits. Returns true when the pick closed.
+     */
+    private boolean checkTargetAndStop(Picks pick, double price, LocalDate today) {
+        boolean closed = false;
+        if (pick.getTarget() != 0 && price >= pick.getTarget() && !pick.isTargetMet()) {
+            pick.setTargetMet(true);
+            pick.setTargetMetDate(today);
+            pick.setStatus("CLOSED");
+            closed = true;
+            log.info("Target hit for {}: {} >= {}", pick.getTicker(), price, pick.getTarget());
+        }
+        if (pick.getStopLoss() != 0 && price <= pick.getStopLoss() && !pick.isStopLossMet()) {
+            pick.setStopLossMet(true);
+            pick.setStopLossMetDate(today);
+            pick.setStatus("CLOSED");
+            closed = true;
+            log.info("Stop loss hit for {}: {} <= {}", pick.getTicker(), price, pick.getStopLoss());
+        }
+        return closed;
+    }
+
     public void syncPicksHistory() {
         log.info("Syncing picks to history...");
         List<Picks> picks = list();
@@ -210,6 +248,10 @@ public class PicksService {
             picks.forEach(stock -> {
                 stock.setId(null);
             });
+            if (ratings.isEnabled()) {
+                // The embedded stock drops ratings the dimension already holds for that date
+                picks.forEach(pick -> ratings.detach(pick.getStock(), historyDate(pick.getHistoryDate())));
+            }
             mongoTemplate.insert(picks, "picksHistory");
         }
         log.info("Synced {} picks to history", picks!= null ? picks.size() : 0);
@@ -218,50 +260,68 @@ public class PicksService {
     public void deleteHistoryByDate(String histDate) {
         Query query = Query.query(Criteria.where("historyDate").is(histDate));
         mongoTemplate.remove(query, "picksHistory");
+        // An unparseable historyDate cannot be placed before or after the session, so drop everything
+        historyCache.invalidate("picksHistory", historyDate(histDate));
     }
 
+    /**
+     * Pick history, newest first. Past sessions are served from the {@link HistoryRangeCache}; historyDate
+     * is an ISO string, so the session split is a string comparison.
+     */
     public List<Picks> getPicksHistory(String ticker) {
-        Query query = new Query(Criteria.where("ticker").regex("^" + ticker + "$", "i"))
+        String key = UtilHelper.canonicalTicker(ticker);
+        return historyCache.get("picksHistory", key, null, null, pick -> historyDate(pick.getHistoryDate()),
+                session -> findHistory(Criteria.where("ticker").is(key).orOperator(
+                        Criteria.where("historyDate").lt(session.toString()), Criteria.where("historyDate").is(null))),
+                session -> findHistory(Criteria.where("ticker").is(key).and("historyDate").gte(session.toString())));
+    }
+
+    private List<Picks> findHistory(Criteria criteria) {
+        Query query = new Query(criteria)
                 .with(org.springframework.data.domain.Sort.by(
                         org.springframework.data.domain.Sort.Direction.DESC, "historyDate"));
-        return mongoTemplate.find(query, Picks.class, "picksHistory");
+        List<Picks> history = mongoTemplate.find(query, Picks.class, "picksHistory");
+        history.forEach(pick -> ratings.fill(pick.getStock(), historyDate(pick.getHistoryDate())));
+        return history;
     }
 
     public void deleteHistoryByDate(LocalDate date) {
         Query query = new Query(Criteria.where("addedDate").is(date));
         mongoTemplate.remove(query, "picksHistory");
+        // Keyed by addedDate, so rows of any historyDate may be gone
+        historyCache.invalidate("picksHistory", null);
         log.info("Deleted picks history for date: {}", date);
     }
 
-    public List<Picks> getLatestPicksHistoryForAllTickers() {
-        log.info("Fetching latest picks history for all tickers using aggregation...");
+    private static LocalDate historyDate(String value) {
+        try {
+            return value == null ? null : LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 
+    /**
+     * Latest picksHistory row per ticker, limited to the given tickers so the (ticker, historyDate)
+     * index serves it. Only used to backfill picks that have no rollup yet.
+     */
+    private Map<String, Picks> latestPicksHistory(Set<String> tickers) {
+        Map<String, Picks> latest = new HashMap<>();
+        if (tickers.isEmpty()) return latest;
         try {
-            // MongoDB aggregation pipeline optimized for performance:
-            // 1. Sort by historyDate DESC (YYYY-MM-DD format sorts correctly as strings)
-            //    Uses index on historyDate for fast sorting
-            // 2. Group by ticker and take the first (latest) document using $first with $$ROOT
-            //    This preserves the entire document structure
-            // 3. Replace root with the full document to return proper Picks objects
             Aggregation aggregation = Aggregation.newAggregation(
+                    Aggregation.match(Criteria.where("ticker").in(tickers)),
                     Aggregation.sort(Sort.Direction.DESC, "historyDate"),
                     Aggregation.group("ticker")
                             .first("$$ROOT").as("latestPick"),
                     Aggregation.replaceRoot("latestPick")
             );
-
-            List<Picks> latestPicks = mongoTemplate.aggregate(
-                    aggregation,
-                    "picksHistory",
-                    Picks.class
-            ).getMappedResults();
-
-            log.info("Found {} latest picks from history (optimized query)", latestPicks.size());
-            return latestPicks;
+            mongoTemplate.aggregate(aggregation, "picksHistory", Picks.class).getMappedResults()
+                    .forEach(p -> latest.put(p.getTicker().toUpperCase(), p));
         } catch (Exception e) {
             log.error("Error fetching latest picks history: {}", e.getMessage(), e);
-            return List.of();
         }
+        return latest;
     }
 
     public int fixAllPickDates() {
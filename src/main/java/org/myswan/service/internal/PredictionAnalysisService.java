@@ -5,15 +5,23 @@ import org.myswan.model.compute.MetricsInfo;
 import org.myswan.model.dto.ComboAnalysis;
 import org.myswan.model.dto.PredictionAnalysisResponse;
 import org.myswan.model.dto.TimeHorizonAnalysis;
+import org.myswan.service.internal.analysis.ComboStats;
+import org.myswan.service.internal.analysis.FactorCode;
+import org.myswan.service.internal.analysis.MetricsScan;
+import org.myswan.service.internal.job.JobProgress;
+import org.myswan.service.internal.store.HistorySlice;
+import org.myswan.service.internal.store.MarketDataStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -24,10 +32,20 @@ import java.util.stream.Collectors;
 public class PredictionAnalysisService {
 
     private static final Logger log = LoggerFactory.getLogger(PredictionAnalysisService.class);
-    private final MongoTemplate mongoTemplate;
+    private final MarketDataStore store;
+    private final AnalysisResultCache analysisCache;
 
-    public PredictionAnalysisService(MongoTemplate mongoTemplate) {
-        this.mongoTemplate = mongoTemplate;
+    /** Ticker groups the live history is split into; results depend on this, not on the thread count */
+    @Value("${analysis.partitions:16}")
+    private int partitions;
+
+    /** Threads scanning history slices in parallel; 0 uses every available core */
+    @Value("${analysis.parallelism:0}")
+    private int parallelism;
+
+    public PredictionAnalysisService(MarketDataStore store, AnalysisResultCache analysisCache) {
+        this.store = store;
+        this.analysisCache = analysisCache;
     }
 
     /**
@@ -44,17 +62,21 @@ public class PredictionAnalysisService {
         PredictionAnalysisResponse response = new PredictionAnalysisResponse();
         response.setAnalysisDate(LocalDate.now().toString());
 
-        // Fetch all stock history with metricsInfo
-        Query query = Query.query(Criteria.where("metricsInfo").exists(true));
-        List<Stock> stocks = mongoTemplate.find(query, Stock.class, "stockHistory");
+        // One pass over the history with metricsInfo feeds every horizon and the peak counts,
+        // each slice scanned on its own thread and the partial scans merged in slice order
+        MetricsScan scan = new MetricsScan(threshold);
+        for (MetricsScan partial : scanSlices(() -> new MetricsScan(threshold))) {
+            scan.merge(partial);
+        }
 
-        if (stocks.isEmpty()) {
+        if (scan.rows() == 0) {
             log.warn("No stock history found with metricsInfo. Run DayChange computation first.");
             return response;
         }
 
-        response.setTotalRecordsAnalyzed(stocks.size());
-        log.info("Analyzing {} stock records with metrics", stocks.size());
+        response.setTotalRecordsAnalyzed((int) scan.rows());
+        log.info("Analyzed {} stock records with metrics", scan.rows());
+        logSample(scan);
 
         // Analyze each time horizon (D1-D10)
         double bestOverallWinRate = 0;
@@ -65,12 +87,12 @@ public class PredictionAnalysisService {
         for (int day = 1; day <= 10; day++) {
             log.info("Analyzing Day +{}", day);
 
-            TimeHorizonAnalysis horizonAnalysis = analyzeTimeHorizon(stocks, day);
+            TimeHorizonAnalysis horizonAnalysis = analyzeTimeHorizon(scan.horizon(day), day);
             response.getTimeHorizonResults().add(horizonAnalysis);
 
             // Find top combos for this horizon
             PredictionAnalysisResponse.DetailedComboAnalysis detailedAnalysis =
-                analyzeDetailedCombos(stocks, day);
+                analyzeDetailedCombos(scan.horizon(day), day);
             response.getDetailedResults().add(detailedAnalysis);
 
             // Track best overall
@@ -94,7 +116,7 @@ public class PredictionAnalysisService {
 
         // NEW: Analyze peak returns (highest return achieved on ANY day D1-D10)
         log.info("Analyzing peak returns (max return on any day D1-D10)...");
-        List<PredictionAnalysisResponse.PeakAnalysis> peakAnalysis = analyzePeakReturns(stocks, threshold);
+        List<PredictionAnalysisResponse.PeakAnalysis> peakAnalysis = analyzePeakReturns(scan);
         response.setPeakAnalysisResults(peakAnalysis);
 
         if (!peakAnalysis.isEmpty()) {
@@ -116,40 +138,20 @@ public class PredictionAnalysisService {
         log.info("Starting ticker performance analysis with threshold: {}%...", threshold);
         log.info("========================================");
 
-        // Fetch all stocks with metrics
-        Query query = new Query();
-        query.addCriteria(Criteria.where("metricsInfo").exists(true));
-        List<Stock> stocks = mongoTemplate.find(query, Stock.class, "stockHistory");
-
-        log.info("Total stocks with metrics: {}", stocks.size());
-
-        // Map: ticker -> [total occurrences, 20%+ wins]
-        Map<String, int[]> tickerStats = new HashMap<>();
-
-        for (Stock stock : stocks) {
-            MetricsInfo metrics = stock.getMetricsInfo();
-            if (metrics == null || stock.getTicker() == null) continue;
-
-            String ticker = stock.getTicker();
-
-            // Check if this stock achieved threshold%+ on any day (D1-D10)
-            boolean achievedPlus = false;
-            for (int day = 1; day <= 10; day++) {
-                Double dayReturn = getDayReturn(metrics, day);
-                if (dayReturn != null && dayReturn >= threshold) {
-                    achievedPlus = true;
-                    break;
-                }
-            }
-
-            // Track stats: [0]=total, [1]=wins
-            tickerStats.putIfAbsent(ticker, new int[]{0, 0});
-            tickerStats.get(ticker)[0]++; // Increment total
-            if (achievedPlus) {
-                tickerStats.get(ticker)[1]++; // Increment wins
-            }
+        // Map: ticker -> [total occurrences, 20%+ wins], merged from the per-slice counters
+        Map<String, int[]> tickerStats = new TreeMap<>();
+        long seen = 0;
+        for (TickerHits partial : scanSlices(() -> new TickerHits(threshold))) {
+            seen += partial.rows;
+            partial.counts.forEach((ticker, counts) -> {
+                int[] merged = tickerStats.computeIfAbsent(ticker, t -> new int[]{0, 0});
+                merged[0] += counts[0];
+                merged[1] += counts[1];
+            });
         }
 
+        log.info("Total stocks with metrics: {}", seen);
+
         // Build results list
         List<Map<String, Object>> results = new ArrayList<>();
         for (Map.Entry<String, int[]> entry : tickerStats.entrySet()) {
@@ -194,10 +196,7 @@ public class PredictionAnalysisService {
         log.info("Fetching stats for ticker: {} with threshold: {}%", ticker, threshold);
 
         // Fetch all history for this ticker
-        Query query = new Query();
-        query.addCriteria(Criteria.where("ticker").is(ticker));
-        query.addCriteria(Criteria.where("metricsInfo").exists(true));
-        List<Stock> stocks = mongoTemplate.find(query, Stock.class, "stockHistory");
+        List<Stock> stocks = store.historyWithMetrics(ticker);
 
         if (stocks == null || stocks.isEmpty()) {
             Map<String, Object> result = new HashMap<>();
@@ -213,7 +212,7 @@ public class PredictionAnalysisService {
         int achievedThreshold = 0;
 
         // Track combo performance for this ticker
-        Map<String, int[]> comboStats = new HashMap<>(); // [total, wins]
+        Map<Long, int[]> comboStats = new HashMap<>(); // [total, wins]
 
         for (Stock stock : stocks) {
             MetricsInfo metrics = stock.getMetricsInfo();
@@ -231,8 +230,7 @@ public class PredictionAnalysisService {
             }
 
             // Track combo performance
-            List<String> comboKeys = createComboVariations(metrics.getDay0Factors());
-            for (String combo : comboKeys) {
+            for (long combo : FactorCode.combos(FactorCode.of(metrics))) {
                 comboStats.putIfAbsent(combo, new int[]{0, 0});
                 comboStats.get(combo)[0]++; // Total
                 if (hitThreshold) {
@@ -243,7 +241,7 @@ public class PredictionAnalysisService {
 
         // Build combo performance list
         List<Map<String, Object>> combos = new ArrayList<>();
-        for (Map.Entry<String, int[]> entry : comboStats.entrySet()) {
+        for (Map.Entry<Long, int[]> entry : comboStats.entrySet()) {
             if (entry.getValue()[0] < 3) continue; // Minimum 3 occurrences
 
             Map<String, Object> combo = new HashMap<>();
@@ -255,7 +253,7 @@ public class PredictionAnalysisService {
             double sampleSizeFactor = Math.log10(Math.max(total, 10));
             double reliabilityScore = successRate * sampleSizeFactor;
 
-            combo.put("combo", entry.getKey());
+            combo.put("combo", FactorCode.label(entry.getKey()));
             combo.put("totalAppeared", total);
             combo.put("achievedThreshold", wins);
             combo.put("successRate", Math.round(successRate * 100.0) / 100.0);
@@ -282,7 +280,9 @@ public class PredictionAnalysisService {
         result.put("bestCombos", combos.stream().limit(20).collect(Collectors.toList()));
 
         // Calculate rank among all tickers (using 20% for global ranking)
-        List<Map<String, Object>> allTickers = analyzeTickerPerformance(20.0);
+        // Shares the cached /analyze-tickers result at the same threshold
+        List<Map<String, Object>> allTickers = analysisCache.get("analyze-tickers|" + 20.0,
+                () -> analyzeTickerPerformance(20.0)).value();
         int rank = 1;
         for (Map<String, Object> t : allTickers) {
             if (t.get("ticker").equals(ticker)) {
@@ -299,61 +299,33 @@ public class PredictionAnalysisService {
         return result;
     }
 
+    /**
+     * Logs the factors and combo variations of the first row scanned
+     */
+    private void logSample(MetricsScan scan) {
+        List<String> factors = scan.sampleFactors();
+        if (factors == null) return;
+        log.info("========== DEBUG ==========");
+        log.info("Sample stock ALL factors ({}): {}", factors.size(), factors);
+        log.info("Variations created: {}", scan.sampleCombos());
+
+        // Show what was detected, read the way the scan reads it
+        long code = FactorCode.fromFactors(factors);
+        log.info("Detected: SPIKE={}, BOTTOM={}, PATTERN={}", FactorCode.Field.SPIKE.get(code) != 0,
+                 FactorCode.Field.BOTTOM.get(code) != 0, FactorCode.Field.LONG_PATTERNS.get(code) > 0);
+        log.info("==================================");
+    }
+
     /**
      * Analyzes a specific time horizon (D1, D2, etc.)
      */
-    private TimeHorizonAnalysis analyzeTimeHorizon(List<Stock> stocks, int dayNumber) {
+    private TimeHorizonAnalysis analyzeTimeHorizon(Map<Long, ComboStats> comboReturns, int dayNumber) {
         TimeHorizonAnalysis analysis = new TimeHorizonAnalysis();
         analysis.setTimeHorizon("Day +" + dayNumber);
 
-        // Group by factor combinations - use variations for diversity
-        Map<String, List<Double>> comboReturns = new HashMap<>();
-
-        // Debug: Track what combos are being created
-        Set<String> uniqueCombos = new HashSet<>();
-
-        for (Stock stock : stocks) {
-            MetricsInfo metrics = stock.getMetricsInfo();
-            if (metrics == null || metrics.getDay0Factors() == null) continue;
-
-            // Get return for this day
-            Double dayReturn = getDayReturn(metrics, dayNumber);
-            if (dayReturn == null) continue;
-
-            // Create MULTIPLE combo variations for each stock (same as detailed analysis)
-            List<String> comboKeys = createComboVariations(metrics.getDay0Factors());
-
-            // Debug: Log first stock's variations with FULL details
-            if (uniqueCombos.isEmpty()) {
-                log.info("========== Day +{} DEBUG ==========", dayNumber);
-                log.info("Sample stock ALL factors ({}): {}",
-                         metrics.getDay0Factors().size(),
-                         metrics.getDay0Factors());
-                log.info("Variations created: {}", comboKeys);
-
-                // Show what was detected
-                boolean hasSpike = metrics.getDay0Factors().stream().anyMatch(f ->
-                    f.contains("SPIKE-ISSPIKE=true") || f.contains("SPIKE-ISSPIKE-true"));
-                boolean hasBottom = metrics.getDay0Factors().stream().anyMatch(f ->
-                    f.contains("BOTTOM-ISBOTTOM=true") || f.contains("BOTTOM-ISBOTTOM-true"));
-                boolean hasPattern = metrics.getDay0Factors().stream().anyMatch(f ->
-                    (f.contains("PATTERN-LONG=") || f.contains("PATTERN-LONG-")) &&
-                    !f.contains("=0") && !f.contains("-0"));
-
-                log.info("Detected: SPIKE={}, BOTTOM={}, PATTERN={}", hasSpike, hasBottom, hasPattern);
-                log.info("==================================");
-            }
-
-            uniqueCombos.addAll(comboKeys);
-
-            for (String comboKey : comboKeys) {
-                comboReturns.computeIfAbsent(comboKey, k -> new ArrayList<>()).add(dayReturn);
-            }
-        }
-
         log.info("Day +{} - Total unique combos found: {} - Combos: {}",
-                 dayNumber, uniqueCombos.size(),
-                 uniqueCombos.stream().limit(10).collect(Collectors.toList()));
+                 dayNumber, comboReturns.size(),
+                 comboReturns.keySet().stream().limit(10).map(FactorCode::label).collect(Collectors.toList()));
 
         // Find best combo - prefer specific signals over generic patterns
         String bestCombo = "";
@@ -361,16 +333,16 @@ public class PredictionAnalysisService {
         double bestAvgReturn = 0;
         int bestTotalTrades = 0;
 
-        for (Map.Entry<String, List<Double>> entry : comboReturns.entrySet()) {
-            List<Double> returns = entry.getValue();
-            if (returns.size() < 10) continue; // Minimum sample size
+        for (Map.Entry<Long, ComboStats> entry : new TreeMap<>(comboReturns).entrySet()) {
+            ComboStats returns = entry.getValue();
+            if (returns.count() < 10) continue; // Minimum sample size
+            String label = FactorCode.label(entry.getKey());
 
-            long wins = returns.stream().filter(r -> r > 0).count();
-            double winRate = (wins * 100.0) / returns.size();
-            double avgReturn = returns.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+            double winRate = returns.winRate();
+            double avgReturn = returns.mean();
 
             // Skip if it's ONLY "LONG_PATTERN" and we have other candidates
-            boolean isOnlyPattern = entry.getKey().equals("LONG_PATTERN");
+            boolean isOnlyPattern = label.equals("LONG_PATTERN");
             boolean hasOtherCandidates = !bestCombo.isEmpty() && !bestCombo.equals("LONG_PATTERN");
 
             if (isOnlyPattern && hasOtherCandidates) {
@@ -388,17 +360,17 @@ public class PredictionAnalysisService {
                     isBetter = true;
                 } else if (Math.abs(avgReturn - bestAvgReturn) < 0.1) { // Returns within 0.1% are similar
                     // Prefer more specific combos (smaller sample size) if performance is similar
-                    if (returns.size() < bestTotalTrades * 0.5 && !entry.getKey().equals("LONG_PATTERN")) {
+                    if (returns.count() < bestTotalTrades * 0.5 && !label.equals("LONG_PATTERN")) {
                         isBetter = true;
                     }
                 }
             }
 
             if (isBetter) {
-                bestCombo = entry.getKey();
+                bestCombo = label;
                 bestWinRate = winRate;
                 bestAvgReturn = avgReturn;
-                bestTotalTrades = returns.size();
+                bestTotalTrades = returns.count();
             }
         }
 
@@ -414,63 +386,38 @@ public class PredictionAnalysisService {
      * Analyzes detailed combos for a time horizon and returns top 10
      */
     private PredictionAnalysisResponse.DetailedComboAnalysis analyzeDetailedCombos(
-            List<Stock> stocks, int dayNumber) {
+            Map<Long, ComboStats> comboReturns, int dayNumber) {
 
         PredictionAnalysisResponse.DetailedComboAnalysis detailedAnalysis =
             new PredictionAnalysisResponse.DetailedComboAnalysis();
         detailedAnalysis.setTimeHorizon("Day +" + dayNumber);
 
-        // Group by combo - now we'll create multiple combo variations per stock
-        Map<String, List<Double>> comboReturns = new HashMap<>();
-
-        for (Stock stock : stocks) {
-            MetricsInfo metrics = stock.getMetricsInfo();
-            if (metrics == null || metrics.getDay0Factors() == null) continue;
-
-            Double dayReturn = getDayReturn(metrics, dayNumber);
-            if (dayReturn == null) continue;
-
-            // Create MULTIPLE combo variations for each stock
-            List<String> comboKeys = createComboVariations(metrics.getDay0Factors());
-            for (String comboKey : comboKeys) {
-                comboReturns.computeIfAbsent(comboKey, k -> new ArrayList<>()).add(dayReturn);
-            }
-        }
-
         // Calculate stats for each combo
         List<ComboAnalysis> comboAnalyses = new ArrayList<>();
 
-        for (Map.Entry<String, List<Double>> entry : comboReturns.entrySet()) {
-            List<Double> returns = entry.getValue();
-            if (returns.size() < 10) continue;
+        for (Map.Entry<Long, ComboStats> entry : new TreeMap<>(comboReturns).entrySet()) {
+            ComboStats returns = entry.getValue();
+            if (returns.count() < 10) continue;
 
+            String label = FactorCode.label(entry.getKey());
             ComboAnalysis combo = new ComboAnalysis();
-            combo.setCombo(entry.getKey());
-            combo.setTrades(returns.size());
-
-            long wins = returns.stream().filter(r -> r > 0).count();
-            combo.setWinningTrades((int) wins);
-            combo.setLosingTrades(returns.size() - (int) wins);
-            combo.setWinPercentage(Math.round((wins * 100.0 / returns.size()) * 100.0) / 100.0);
-
-            double avgReturn = returns.stream().mapToDouble(Double::doubleValue).average().orElse(0);
-            combo.setExpectedReturn(Math.round(avgReturn * 100.0) / 100.0);
+            combo.setCombo(label);
+            combo.setTrades(returns.count());
 
-            combo.setMaxReturn(returns.stream().mapToDouble(Double::doubleValue).max().orElse(0));
-            combo.setMinReturn(returns.stream().mapToDouble(Double::doubleValue).min().orElse(0));
+            combo.setWinningTrades(returns.wins());
+            combo.setLosingTrades(returns.count() - returns.wins());
+            combo.setWinPercentage(Math.round(returns.winRate() * 100.0) / 100.0);
+            combo.setExpectedReturn(Math.round(returns.mean() * 100.0) / 100.0);
 
-            // Standard deviation
-            double variance = returns.stream()
-                .mapToDouble(r -> Math.pow(r - avgReturn, 2))
-                .average().orElse(0);
-            combo.setStdDeviation(Math.round(Math.sqrt(variance) * 100.0) / 100.0);
+            combo.setMaxReturn(returns.max());
+            combo.setMinReturn(returns.min());
+            combo.setStdDeviation(Math.round(returns.stdDeviation() * 100.0) / 100.0);
+            combo.setProfitFactor(Math.round(returns.profitFactor() * 100.0) / 100.0);
+            combo.setMedianReturn(Math.round(returns.quantile(0.5) * 100.0) / 100.0);
+            combo.setP25Return(Math.round(returns.quantile(0.25) * 100.0) / 100.0);
+            combo.setP75Return(Math.round(returns.quantile(0.75) * 100.0) / 100.0);
 
-            // Profit factor
-            double totalWins = returns.stream().filter(r -> r > 0).mapToDouble(Double::doubleValue).sum();
-            double totalLosses = Math.abs(returns.stream().filter(r -> r < 0).mapToDouble(Double::doubleValue).sum());
-            combo.setProfitFactor(totalLosses > 0 ? Math.round((totalWins / totalLosses) * 100.0) / 100.0 : 0);
-
-            combo.setFactors(entry.getKey());
+            combo.setFactors(label);
 
             comboAnalyses.add(combo);
         }
@@ -490,180 +437,74 @@ public class PredictionAnalysisService {
     }
 
     /**
-     * Creates multiple combo variations from Day 0 factors
-     * This ensures we analyze different combinations separately
-     * NOTE: Excludes LONG_PATTERN-only combos as they're too common and not actionable
+     * Scan every history slice with its own accumulator on a dedicated fork/join pool. The accumulators
+     * come back in slice order, so a left-to-right merge gives the same result for any parallelism.
      */
-    private List<String> createComboVariations(List<String> factors) {
-        List<String> variations = new ArrayList<>();
-
-        if (factors == null || factors.isEmpty()) {
-            variations.add("NO_FACTORS");
-            return variations;
-        }
-
-        // Extract individual scores instead of overall score
-        int dayTradingScore = 0;
-        int swingTradingScore = 0;
-        int breakoutScore = 0;
-        int patternScore = 0;
-        int reversalScore = 0;
-
-        for (String factor : factors) {
-            if (factor.contains("SCORE-DAYTRADE")) {
-                dayTradingScore = extractScore(factor);
-            } else if (factor.contains("SCORE-SWINGTRADE")) {
-                swingTradingScore = extractScore(factor);
-            } else if (factor.contains("SCORE-BREAKOUT")) {
-                breakoutScore = extractScore(factor);
-            } else if (factor.contains("SCORE-PATTERN")) {
-                patternScore = extractScore(factor);
-            } else if (factor.contains("SCORE-REVERSAL")) {
-                reversalScore = extractScore(factor);
-            }
-        }
-
-        // Extract signals - FIX: Use = not - in pattern matching
-        boolean hasSpike = factors.stream().anyMatch(f ->
-            f.contains("SPIKE-ISSPIKE=true") || f.contains("SPIKE-ISSPIKE-true"));
-        boolean hasBottom = factors.stream().anyMatch(f ->
-            f.contains("BOTTOM-ISBOTTOM=true") || f.contains("BOTTOM-ISBOTTOM-true"));
-        boolean hasMomentum = factors.stream().anyMatch(f ->
-            f.contains("MOMENTUMPOP-ISMOMENTUMPOP=true") || f.contains("MOMENTUMPOP-ISMOMENTUMPOP-true"));
-        boolean hasOversold = factors.stream().anyMatch(f ->
-            f.contains("OVERSOLDBOUNCE-ISOVERSOLD=true") || f.contains("OVERSOLDBOUNCE-ISOVERSOLD-true"));
-        boolean hasLongPattern = factors.stream().anyMatch(f ->
-            (f.contains("PATTERN-LONG=") || f.contains("PATTERN-LONG-")) &&
-            !f.contains("PATTERN-LONG=0") && !f.contains("PATTERN-LONG-0"));
-
-        // Generate variations focusing on different aspects
-        List<String> signals = new ArrayList<>();
-        if (hasSpike) signals.add("SPIKE");
-        if (hasBottom) signals.add("BOTTOM");
-        if (hasMomentum) signals.add("MOMENTUM");
-        if (hasOversold) signals.add("OVERSOLD");
-
-        // Create score variations for each score type (only for scores >= 60)
-        List<String> scoreVariations = new ArrayList<>();
-        if (dayTradingScore >= 60) {
-            scoreVariations.add(getScoreRangeWithType("DAYTRADE", dayTradingScore));
-        }
-        if (swingTradingScore >= 60) {
-            scoreVariations.add(getScoreRangeWithType("SWING", swingTradingScore));
-        }
-        if (breakoutScore >= 60) {
-            scoreVariations.add(getScoreRangeWithType("BREAKOUT", breakoutScore));
-        }
-        if (patternScore >= 60) {
-            scoreVariations.add(getScoreRangeWithType("PATTERN", patternScore));
-        }
-        if (reversalScore >= 60) {
-            scoreVariations.add(getScoreRangeWithType("REVERSAL", reversalScore));
+    private <A extends Consumer<Stock>> List<A> scanSlices(Supplier<A> accumulator) {
+        List<HistorySlice> slices = store.metricsSlices(partitions);
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        log.info("Scanning {} history slices on {} threads", slices.size(), threads);
+        // Taken here: the slices run on pool threads, which are not bound to the job
+        JobProgress progress = JobProgress.current();
+        progress.message("Scanning history");
+        progress.total(slices.size());
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> slices.parallelStream()
+                    .map(slice -> {
+                        A partial = accumulator.get();
+                        slice.forEach(partial);
+                        progress.step();
+                        return partial;
+                    })
+                    .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("History scan interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("History scan failed", e.getCause());
+        } finally {
+            pool.shutdown();
         }
+    }
 
-        // Remove any empty strings from variations
-        scoreVariations.removeIf(String::isEmpty);
-
-        boolean hasAnyScore = !scoreVariations.isEmpty();
-
-        // Require at least one signal OR a good score (>=70) to proceed
-        // This filters out generic/weak setups with no meaningful triggers
-        boolean hasGoodScore = scoreVariations.stream()
-            .anyMatch(s -> s.contains(">90") || s.contains(":80-89") || s.contains(":70-79"));
-
-        if (!hasAnyScore && signals.isEmpty()) {
-            // No scores and no signals - skip this stock
-            return variations;
-        }
+    /**
+     * Per-ticker [rows, rows that reached the threshold on any day] of one history slice
+     */
+    private final class TickerHits implements Consumer<Stock> {
+        private final double threshold;
+        private final Map<String, int[]> counts = new HashMap<>();
+        private long rows;
 
-        if (hasAnyScore && signals.isEmpty() && !hasGoodScore) {
-            // Only has score 60-69 with no signals - too weak, skip
-            return variations;
+        TickerHits(double threshold) {
+            this.threshold = threshold;
         }
 
-        // Only create variations if we have meaningful signals or good scores
-        if (hasAnyScore || !signals.isEmpty()) {
-
-            // Variation 1: Individual score types only
-            variations.addAll(scoreVariations);
-
-            // Variation 2: Score + each signal individually (for highest score type)
-            if (!scoreVariations.isEmpty() && !signals.isEmpty()) {
-                // Use the highest score type for combinations
-                String primaryScore = scoreVariations.getFirst();
-                for (String signal : signals) {
-                    variations.add(primaryScore + " + " + signal);
-                }
-            }
-
-            // Variation 3: Signals only (for stocks without good scores)
-            if (!signals.isEmpty()) {
-                variations.addAll(signals);
-            }
+        @Override
+        public void accept(Stock stock) {
+            rows++;
+            MetricsInfo metrics = stock.getMetricsInfo();
+            if (metrics == null || stock.getTicker() == null) return;
 
-            // Variation 4: Multiple signals combined
-            if (signals.size() >= 2) {
-                String multiSignal = String.join(" + ", signals);
-                if (!scoreVariations.isEmpty()) {
-                    variations.add(scoreVariations.getFirst() + " + " + multiSignal);
-                } else {
-                    variations.add(multiSignal);
+            // Check if this stock achieved threshold%+ on any day (D1-D10)
+            boolean achievedPlus = false;
+            for (int day = 1; day <= 10; day++) {
+                Double dayReturn = getDayReturn(metrics, day);
+                if (dayReturn != null && dayReturn >= threshold) {
+                    achievedPlus = true;
+                    break;
                 }
             }
 
-
-            // Variation 5: Pattern-based combinations (ONLY with other signals)
-            if (hasLongPattern && !signals.isEmpty()) {
-                // Only add pattern combos if there are other meaningful signals
-                if (!scoreVariations.isEmpty()) {
-                    variations.add(scoreVariations.getFirst() + " + LONG_PATTERN");
-                }
-                variations.add(String.join(" + ", signals) + " + LONG_PATTERN");
+            // Track stats: [0]=total, [1]=wins
+            int[] tickerCounts = counts.computeIfAbsent(stock.getTicker(), t -> new int[]{0, 0});
+            tickerCounts[0]++;
+            if (achievedPlus) {
+                tickerCounts[1]++;
             }
-        } else if (hasLongPattern && !hasAnyScore) {
-            // ONLY use LONG_PATTERN if there's NO score AND NO signals (absolute last resort)
-            variations.add("LONG_PATTERN");
-        } else if (hasAnyScore) {
-            // If we have a score but no signals, at least use the score
-            variations.addAll(scoreVariations);
         }
-
-        // If no variations created, add default
-        if (variations.isEmpty()) {
-            // DO NOT create "NO_STRONG_SIGNALS" - these are low-quality setups
-            // Skip this stock entirely from analysis
-            return variations; // Return empty list
-        }
-
-        return variations;
     }
 
-    /**
-     * Get score range string
-     */
-    private String getScoreRange(int score) {
-        if (score >= 90) return "SCORE>90";
-        if (score >= 80) return "SCORE:80-89";
-        if (score >= 70) return "SCORE:70-79";
-        if (score >= 60) return "SCORE:60-69";
-        if (score > 0) return "SCORE<60";
-        return "";
-    }
-
-    /**
-     * Get score range string with type prefix (DAYTRADE, SWING, BREAKOUT, PATTERN, REVERSAL)
-     * Only creates ranges for scores >= 60 (reliable signals)
-     */
-    private String getScoreRangeWithType(String scoreType, int score) {
-        if (score >= 90) return scoreType + ">90";
-        if (score >= 80) return scoreType + ":80-89";
-        if (score >= 70) return scoreType + ":70-79";
-        if (score >= 60) return scoreType + ":60-69";
-        // DO NOT create ranges for scores < 60 - they are unreliable
-        return "";
-    }
-
-
     /**
      * Extracts return for specific day (D1-D10)
      */
@@ -687,153 +528,20 @@ public class PredictionAnalysisService {
         }
     }
 
-    /**
-     * Creates a combo key from Day 0 factors
-     * Groups similar patterns together with more granular scoring
-     */
-    private String createComboKey(List<String> factors) {
-        if (factors == null || factors.isEmpty()) return "NO_FACTORS";
-
-        // Extract overall score for more granular grouping
-        int overallScore = 0;
-        for (String factor : factors) {
-            if (factor.contains("SCORE-OVERALL")) {
-                overallScore = extractScore(factor);
-                break;
-            }
-        }
-
-        // Extract key signals
-        boolean hasSpike = factors.stream().anyMatch(f ->
-            f.contains("SPIKE-ISSPIKE-true"));
-        boolean hasBottom = factors.stream().anyMatch(f ->
-            f.contains("BOTTOM-ISBOTTOM-true"));
-        boolean hasMomentum = factors.stream().anyMatch(f ->
-            f.contains("MOMENTUMPOP-ISMOMENTUMPOP-true"));
-        boolean hasOversold = factors.stream().anyMatch(f ->
-            f.contains("OVERSOLDBOUNCE-ISOVERSOLD-true"));
-        boolean hasLongPattern = factors.stream().anyMatch(f ->
-            f.contains("PATTERN-LONG") && !f.contains("PATTERN-LONG-0"));
-
-        // Create list to store combo parts
-        List<String> comboParts = new ArrayList<>();
-
-        // Add score range (more granular)
-        if (overallScore >= 90) {
-            comboParts.add("SCORE>90");
-        } else if (overallScore >= 80) {
-            comboParts.add("SCORE:80-89");
-        } else if (overallScore >= 70) {
-            comboParts.add("SCORE:70-79");
-        } else if (overallScore >= 60) {
-            comboParts.add("SCORE:60-69");
-        } else if (overallScore > 0) {
-            comboParts.add("SCORE<60");
-        }
-
-        // Add signals in priority order
-        if (hasSpike) comboParts.add("SPIKE");
-        if (hasBottom) comboParts.add("BOTTOM");
-        if (hasMomentum) comboParts.add("MOMENTUM");
-        if (hasOversold) comboParts.add("OVERSOLD");
-        if (hasLongPattern) comboParts.add("LONG_PATTERN");
-
-        // Build combo string
-        if (comboParts.isEmpty()) {
-            return "NO_STRONG_SIGNALS";
-        }
-
-        // Join with " + " separator
-        return String.join(" + ", comboParts);
-    }
-
-    /**
-     * Extracts numeric score from factor string
-     * Handles both formats: SCORE-OVERALL=9 and SCORE-OVERALL-9
-     */
-    private int extractScore(String factor) {
-        try {
-            // Try format: SCORE-OVERALL=9
-            if (factor.contains("=")) {
-                String[] parts = factor.split("=");
-                if (parts.length == 2) {
-                    String scoreStr = parts[1].replace(";", "").trim();
-                    return Integer.parseInt(scoreStr);
-                }
-            }
-
-            // Fallback: Try format: SCORE-OVERALL-9
-            String[] parts = factor.split("-");
-            if (parts.length >= 3) {
-                String scoreStr = parts[2].replace(";", "").trim();
-                return Integer.parseInt(scoreStr);
-            }
-        } catch (Exception e) {
-            // Ignore parse errors
-        }
-        return 0;
-    }
-
     /**
      * Count-based analysis with both total occurrences and win count
      * Shows: How many times combo appeared vs how many times it achieved threshold%+
      */
-    private List<PredictionAnalysisResponse.PeakAnalysis> analyzePeakReturns(List<Stock> stocks, double threshold) {
-        // Map: combo -> total occurrences
-        Map<String, Integer> comboTotalCount = new HashMap<>();
-        // Map: combo -> count of times it achieved threshold%+
-        Map<String, Integer> comboWinCount = new HashMap<>();
-
-        int totalProcessed = 0;
-        int outliersFiltered = 0;
-
-        for (Stock stock : stocks) {
-            MetricsInfo metrics = stock.getMetricsInfo();
-            if (metrics == null || metrics.getDay0Factors() == null) continue;
-
-            totalProcessed++;
-
-            // Check if ANY day (D1-D10) achieved threshold%+ gain
-            boolean achievedPercent = false;
-
-            for (int day = 1; day <= 10; day++) {
-                Double dayReturn = getDayReturn(metrics, day);
-                if (dayReturn != null) {
-                    // Filter outliers first
-                    if (dayReturn > 200.0 || dayReturn < -90.0) {
-                        outliersFiltered++;
-                        continue; // Skip this day's data
-                    }
-
-                    // If any day hits threshold%+, mark as success and move on
-                    if (dayReturn >= threshold) {
-                        achievedPercent = true;
-                        break; // Found it! No need to check remaining days
-                    }
-                }
-            }
-
-            // Create combo variations for this stock
-            List<String> comboKeys = createComboVariations(metrics.getDay0Factors());
-
-            // Count total occurrences for each combo
-            for (String comboKey : comboKeys) {
-                comboTotalCount.merge(comboKey, 1, Integer::sum);
-
-                // If it achieved 20%+, also increment win count
-                if (achievedPercent) {
-                    comboWinCount.merge(comboKey, 1, Integer::sum);
-                }
-            }
-        }
+    private List<PredictionAnalysisResponse.PeakAnalysis> analyzePeakReturns(MetricsScan scan) {
+        double threshold = scan.peakThreshold();
 
         // Build results list
         List<PredictionAnalysisResponse.PeakAnalysis> results = new ArrayList<>();
 
-        for (Map.Entry<String, Integer> entry : comboTotalCount.entrySet()) {
-            String combo = entry.getKey();
-            int totalCount = entry.getValue();
-            int winCount = comboWinCount.getOrDefault(combo, 0);
+        for (Map.Entry<Long, int[]> entry : new TreeMap<>(scan.peak()).entrySet()) {
+            String combo = FactorCode.label(entry.getKey());
+            int totalCount = entry.getValue()[0];
+            int winCount = entry.getValue()[1];
 
             if (totalCount < 10) continue; // Minimum 10 occurrences required
 
@@ -884,7 +592,7 @@ public class PredictionAnalysisService {
 
         // Log statistics
         log.info("Peak analysis: Processed {} stocks, filtered {} outliers",
-                 totalProcessed, outliersFiltered);
+                 scan.peakRows(), scan.outliers());
         log.info("Peak analysis: Found {} combos (threshold: {}%), ranked by {}%+ win count",
                  results.size(), threshold, threshold);
 
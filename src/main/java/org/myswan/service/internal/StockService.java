@@ -1,5 +1,6 @@
 package org.myswan.service.internal;
 
+import org.myswan.common.UtilHelper;
 import org.myswan.model.dto.MLTrainingData;
 import org.myswan.model.collection.Master;
 import org.myswan.model.collection.Stock;
@@ -7,9 +8,9 @@ import org.myswan.model.collection.Pattern;
 import org.myswan.model.dto.TickerGroupDTO;
 import org.myswan.repository.StockRepository;
 import org.myswan.service.external.vo.TradingViewVO;
+import org.myswan.service.internal.store.MarketDataStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -23,12 +24,23 @@ import java.util.stream.Collectors;
 public class StockService {
 
     private static final Logger log = LoggerFactory.getLogger(StockService.class);
+    private static final String HISTORY = "stockHistory";
+    /** Sessions after a row that the ML targets look at (return7d, maxDrawdown7d) */
+    static final int ML_LOOKAHEAD = 7;
     private final StockRepository repository;
     private final MongoTemplate mongoTemplate;
+    private final StockSnapshotService stockSnapshot;
+    private final MarketDataStore store;
+    private final HistoryRangeCache historyCache;
 
-    public StockService(StockRepository repository, MongoTemplate mongoTemplate) {
+    public StockService(StockRepository repository, MongoTemplate mongoTemplate,
+                        StockSnapshotService stockSnapshot, MarketDataStore store,
+                        HistoryRangeCache historyCache) {
         this.repository = repository;
         this.mongoTemplate = mongoTemplate;
+        this.stockSnapshot = stockSnapshot;
+        this.store = store;
+        this.historyCache = historyCache;
     }
 
     /**
@@ -54,23 +66,11 @@ public class StockService {
                 }
             }
 
-            // Extract all tickers to delete
-            List<String> tickers = stockList.stream()
-                    .map(Stock::getTicker)
-                    .filter(Objects::nonNull)
-                    .distinct()
-                    .collect(Collectors.toList());
-
-            // Delete existing stocks with these tickers
-            if (!tickers.isEmpty()) {
-                Query deleteQuery = Query.query(Criteria.where("ticker").in(tickers));
-                long deletedCount = mongoTemplate.remove(deleteQuery, Stock.class).getDeletedCount();
-                log.info("Deleted {} existing stocks records", deletedCount);
-            }
+            // Delete existing stocks with these tickers and insert the new ones
+            store.replaceStocks(stockList);
 
-            // Insert all new stocks
-            mongoTemplate.insert(stockList, Stock.class);
-            log.info("Inserted {} new stocks records", stockList.size());
+            // Publish the new rows to the resident snapshot so readers pick them up without a reload
+            stockSnapshot.publish(stockList);
         } catch (Exception e) {
             log.error("Failed to bulk insert stocks", e);
         }
@@ -79,38 +79,46 @@ public class StockService {
     public void syncStockHistory() {
         List<Stock> stocks = list();
         if(stocks != null && !stocks.isEmpty()) {
-            deleteHistoryByDate(stocks.getFirst().getHistDate());
             stocks.forEach(stock -> {
                 stock.setId(null);
             });
-            mongoTemplate.insert(stocks, "stockHistory");
+            store.replaceHistory(stocks.getFirst().getHistDate(), stocks);
+            historyCache.invalidate(HISTORY, stocks.getFirst().getHistDate());
         }
     }
 
     public void deleteHistoryByDate(LocalDate histDate) {
-        Query query = Query.query(Criteria.where("histDate").is(histDate));
-        mongoTemplate.remove(query, "stockHistory");
+        store.deleteHistory(histDate);
+        historyCache.invalidate(HISTORY, histDate);
     }
 
+    /**
+     * Single stock by ticker. Returns a copy of the snapshot entry, so callers may attach or modify it freely.
+     */
     public Optional<Stock> getByTicker(String ticker) {
         try {
-            return repository.findById(ticker);
+            return stockSnapshot.get(ticker).map(StockSnapshotService::copyOf);
         } catch (Exception e) {
             return Optional.empty();
         }
     }
 
     public Stock create(Stock stock) {
-        return repository.save(stock);
+        Stock saved = repository.save(stock);
+        stockSnapshot.invalidate();
+        return saved;
     }
 
     public Stock update(String ticker, Stock stock) {
         stock.setTicker(ticker);
-        return repository.save(stock);
+        Stock saved = repository.save(stock);
+        stockSnapshot.invalidate();
+        return saved;
     }
 
     public void delete(String ticker) {
         repository.deleteById(ticker);
+        stockSnapshot.invalidate();
         deleteHistoryByTicker(ticker);
     }
 
@@ -118,9 +126,13 @@ public class StockService {
         return repository.existsById(ticker);
     }
 
+    /**
+     * Fresh, mutable copy of the stock collection read straight from the store.
+     * Only for callers that modify the stocks and write them back; readers should use {@link #listSnapshot()}.
+     */
     public List<Stock> list() {
         try {
-            List<Stock> all = repository.findAll();
+            List<Stock> all = store.loadStocks();
             if (all != null && !all.isEmpty()) return all;
         } catch (Exception ignored) {
             // fall through to empty result
@@ -130,19 +142,44 @@ public class StockService {
         return new ArrayList<>();
     }
 
+    /**
+     * Current stocks served from the resident snapshot without touching Mongo.
+     * The returned list and its stocks are shared and must be treated as read-only.
+     */
+    public List<Stock> listSnapshot() {
+        try {
+            return stockSnapshot.stocks();
+        } catch (Exception e) {
+            log.warn("Stock snapshot unavailable: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Current stocks keyed by upper-case ticker, served from the resident snapshot (read-only).
+     */
+    public Map<String, Stock> snapshotByTicker() {
+        try {
+            return stockSnapshot.current().getByTicker();
+        } catch (Exception e) {
+            log.warn("Stock snapshot unavailable: {}", e.getMessage());
+            return Map.of();
+        }
+    }
 
+    public Map<String, Object> snapshotStats() {
+        return stockSnapshot.stats();
+    }
 
     public void deleteHistoryByTicker(String ticker) {
-        Query query = Query.query(Criteria.where("ticker").is(ticker));
-        mongoTemplate.remove(query, "stockHistory");
+        store.deleteHistory(ticker, null);
+        historyCache.invalidateTicker(HISTORY, UtilHelper.canonicalTicker(ticker));
     }
 
     public void deleteHistoryByTickerAndHistDate(String ticker, LocalDate histDate) {
-            Query query = Query.query(
-                    Criteria.where("ticker").is(ticker)
-                            .and("histDate").is(histDate)
-            );
-        mongoTemplate.remove(query, "stockHistory");
+        if (histDate == null) return;
+        store.deleteHistory(ticker, histDate);
+        historyCache.invalidateTicker(HISTORY, UtilHelper.canonicalTicker(ticker));
     }
 
     public void updateTradingView(List<TradingViewVO> tvList) {
@@ -150,13 +187,8 @@ public class StockService {
             log.info("TradingView update skipped: empty list");
             return;
         }
-        // Load all existing stocks once
-        List<Stock> existList = list();
-
-        // Create a map for fast lookup by ticker
-        Map<String, Stock> stockMap = existList.stream()
-                .filter(s -> s.getTicker() != null && !s.getTicker().isBlank())
-                .collect(Collectors.toMap(Stock::getTicker, s -> s, (a, b) -> a));
+        // Current stocks by ticker from the resident snapshot
+        Map<String, Stock> stockMap = snapshotByTicker();
 
         List<Stock> toSave = new ArrayList<>(tvList.size());
 
@@ -164,11 +196,12 @@ public class StockService {
         for (TradingViewVO vo : tvList) {
             if (vo.getTicker() == null || vo.getTicker().isBlank()) continue;
 
-            // Get existing stock from map instead of repository
-            Stock existing = stockMap.get(vo.getTicker());
-            if (existing == null || existing.getTicker() == null || existing.getTicker().isBlank()) {
+            // Get existing stock from map instead of repository; copy it since snapshot entries are shared
+            Stock current = stockMap.get(vo.getTicker().toUpperCase());
+            if (current == null || current.getTicker() == null || current.getTicker().isBlank()) {
                 continue;
             }
+            Stock existing = StockSnapshotService.copyOf(current);
 
             // Update stock with TradingView data
             existing.setPrice(vo.getPrice());
@@ -209,23 +242,26 @@ public class StockService {
     public List<Stock> getStockHistory(String ticker, LocalDate from, LocalDate to) {
         if (ticker == null || ticker.isBlank()) return new ArrayList<>();
 
-        // Build criteria for ticker
-        Criteria criteria = Criteria.where("ticker").is(ticker);
-
-        // Build date range criteria (combine gte and lte in single criteria)
-        if (from != null && to != null) {
-            criteria.and("histDate").gte(from).lte(to);
-        } else if (from != null) {
-            criteria.and("histDate").gte(from);
-        } else if (to != null) {
-            criteria.and("histDate").lte(to);
+        try {
+            return store.history(UtilHelper.canonicalTicker(ticker), from, to);
+        } catch (Exception e) {
+            log.warn("Failed to load history for {}: {}", ticker, e.getMessage());
+            return new ArrayList<>();
         }
+    }
 
-        Query query = Query.query(criteria);
-        query.with(Sort.by(Sort.Direction.DESC, "histDate"));
-
+    /**
+     * Ticker history for the history pages and read-only joins: past sessions come from the
+     * {@link HistoryRangeCache}, only the current session is queried. The returned stocks are shared
+     * and must not be modified; callers that write history back use {@link #getStockHistory}.
+     */
+    public List<Stock> getStockHistorySnapshot(String ticker, LocalDate from, LocalDate to) {
+        if (ticker == null || ticker.isBlank()) return new ArrayList<>();
+        String key = UtilHelper.canonicalTicker(ticker);
         try {
-            return mongoTemplate.find(query, Stock.class, "stockHistory");
+            return historyCache.get(HISTORY, key, from, to, Stock::getHistDate,
+                    session -> store.history(key, null, session.minusDays(1)),
+                    session -> store.history(key, session, null));
         } catch (Exception e) {
             log.warn("Failed to load history for {}: {}", ticker, e.getMessage());
             return new ArrayList<>();
@@ -234,10 +270,8 @@ public class StockService {
 
     public List<Stock> getHistoryByDate(LocalDate histDate) {
         if (histDate == null) return new ArrayList<>();
-        Query query = Query.query(Criteria.where("histDate").is(histDate));
-        query.with(Sort.by(Sort.Direction.ASC, "ticker"));
         try {
-            return mongoTemplate.find(query, Stock.class, "stockHistory");
+            return store.historyOn(histDate);
         } catch (Exception e) {
             log.warn("Failed to load history for date {}: {}", histDate, e.getMessage());
             return new ArrayList<>();
@@ -314,10 +348,8 @@ public class StockService {
                 return new ArrayList<>();
             }
 
-            // Get all stocks for price data
-            List<Stock> allStocks = list();
-            Map<String, Stock> stockMap = allStocks.stream()
-                    .collect(Collectors.toMap(Stock::getTicker, s -> s, (a, b) -> a));
+            // Current stocks for price data
+            Map<String, Stock> stockMap = snapshotByTicker();
 
             // Flattened list - one row per main+related pair
             List<TickerGroupDTO> flattenedGroups = new ArrayList<>();
@@ -333,7 +365,7 @@ public class StockService {
                     continue; // Skip ETFs as main tickers
                 }
 
-                Stock mainStock = stockMap.get(mainTicker);
+                Stock mainStock = stockMap.get(mainTicker.toUpperCase());
 
                 // Find all tickers whose description contains this ticker with spaces around it
                 for (Master relatedMaster : allMasters) {
@@ -370,7 +402,7 @@ public class StockService {
                             }
 
                             // Set related ticker data (single item)
-                            Stock relatedStock = stockMap.get(relatedMaster.getTicker());
+                            Stock relatedStock = stockMap.get(relatedMaster.getTicker().toUpperCase());
                             TickerGroupDTO.RelatedTickerDTO related = new TickerGroupDTO.RelatedTickerDTO();
                             related.setTicker(relatedMaster.getTicker());
                             related.setName(relatedMaster.getName());
@@ -416,20 +448,11 @@ public class StockService {
     // ========== ML EXPORT METHODS ==========
 
     public List<Stock> getStocksByDateRange(LocalDate from, LocalDate to) {
-        Query query = Query.query(
-                Criteria.where("histDate").gte(from).lte(to)
-        );
-        query.with(Sort.by(Sort.Direction.ASC, "histDate"));
-        return mongoTemplate.find(query, Stock.class, "stockHistory");
+        return store.historyBetween(null, from, to);
     }
 
     public List<Stock> getStocksByTickersAndDateRange(List<String> tickers, LocalDate from, LocalDate to) {
-        Query query = Query.query(
-                Criteria.where("ticker").in(tickers)
-                        .and("histDate").gte(from).lte(to)
-        );
-        query.with(Sort.by(Sort.Direction.ASC, "ticker", "histDate"));
-        return mongoTemplate.find(query, Stock.class, "stockHistory");
+        return store.historyBetween(tickers, from, to);
     }
 
     public List<MLTrainingData> convertToMLFormat(List<Stock> historicalData) {
@@ -454,106 +477,113 @@ public class StockService {
                 // Skip if missing critical data
                 if (current.getPrice() == 0) continue;
 
-                // Calculate future returns (if we have future data)
-                Double return1d = null, return3d = null, return7d = null;
-                Boolean hitTarget = null;
-                Double maxDrawdown7d = null;
+                List<Stock> following = tickerHistory.subList(i + 1, Math.min(i + 1 + ML_LOOKAHEAD, tickerHistory.size()));
+                mlDataList.add(toMLTrainingData(current, following));
+            }
+        }
 
-                if (i + 1 < tickerHistory.size()) {
-                    Stock next1d = tickerHistory.get(i + 1);
-                    if (next1d.getPrice() > 0) {
-                        return1d = (next1d.getPrice() - current.getPrice()) / current.getPrice();
-                    }
-                }
+        log.info("Converted to {} ML training records", mlDataList.size());
+        return mlDataList;
+    }
 
-                if (i + 3 < tickerHistory.size()) {
-                    Stock next3d = tickerHistory.get(i + 3);
-                    if (next3d.getPrice() > 0) {
-                        return3d = (next3d.getPrice() - current.getPrice()) / current.getPrice();
-                        hitTarget = return3d >= 0.02; // 2% gain
-                    }
-                }
+    /**
+     * ML row of one history row, with the target variables taken from the sessions that follow it
+     * (up to {@value #ML_LOOKAHEAD}, oldest first; targets beyond them stay null).
+     */
+    static MLTrainingData toMLTrainingData(Stock current, List<Stock> following) {
+        // Calculate future returns (if we have future data)
+        Double return1d = null, return3d = null, return7d = null;
+        Boolean hitTarget = null;
+        Double maxDrawdown7d = null;
+
+        if (following.size() >= 1) {
+            Stock next1d = following.get(0);
+            if (next1d.getPrice() > 0) {
+                return1d = (next1d.getPrice() - current.getPrice()) / current.getPrice();
+            }
+        }
 
-                if (i + 7 < tickerHistory.size()) {
-                    Stock next7d = tickerHistory.get(i + 7);
-                    if (next7d.getPrice() > 0) {
-                        return7d = (next7d.getPrice() - current.getPrice()) / current.getPrice();
+        if (following.size() >= 3) {
+            Stock next3d = following.get(2);
+            if (next3d.getPrice() > 0) {
+                return3d = (next3d.getPrice() - current.getPrice()) / current.getPrice();
+                hitTarget = return3d >= 0.02; // 2% gain
+            }
+        }
 
-                        // Calculate max drawdown in next 7 days
-                        double minPrice = current.getPrice();
-                        for (int j = i + 1; j <= Math.min(i + 7, tickerHistory.size() - 1); j++) {
-                            if (tickerHistory.get(j).getPrice() > 0) {
-                                minPrice = Math.min(minPrice, tickerHistory.get(j).getPrice());
-                            }
-                        }
-                        maxDrawdown7d = (minPrice - current.getPrice()) / current.getPrice();
+        if (following.size() >= 7) {
+            Stock next7d = following.get(6);
+            if (next7d.getPrice() > 0) {
+                return7d = (next7d.getPrice() - current.getPrice()) / current.getPrice();
+
+                // Calculate max drawdown in next 7 days
+                double minPrice = current.getPrice();
+                for (int j = 0; j < 7; j++) {
+                    if (following.get(j).getPrice() > 0) {
+                        minPrice = Math.min(minPrice, following.get(j).getPrice());
                     }
                 }
-
-                // Build ML training data
-                MLTrainingData mlData = MLTrainingData.builder()
-                        .ticker(current.getTicker())
-                        .date(current.getHistDate())
-                        .price(current.getPrice())
-                        .open(current.getOpen())
-                        .high(current.getHigh())
-                        .low(current.getLow())
-                        .change(current.getChange())
-                        .volume(current.getVolume())
-                        .volumeChange(current.getVolumeChange())
-                        .overallScore(current.getScore() != null ? current.getScore().getOverallScore() : 0)
-                        .pickScore(current.getDailyRank() != null ? current.getDailyRank().getPickScore() : 0)
-                        .safetyRank(current.getDailyRank() != null ? current.getDailyRank().getSafetyRank() : 0)
-                        .finalRank(current.getDailyRank() != null ? current.getDailyRank().getFinalRank() : 0)
-                        .allocation(current.getDailyRank() != null ? current.getDailyRank().getAllocation() : 0)
-                        .dayTradingScore(current.getScore() != null ? current.getScore().getDayTradingScore() : 0)
-                        .swingTradingScore(current.getScore() != null ? current.getScore().getSwingTradingScore() : 0)
-                        .reversalScore(current.getScore() != null ? current.getScore().getReversalScore() : 0)
-                        .breakoutScore(current.getScore() != null ? current.getScore().getBreakoutScore() : 0)
-                        .patternScore(current.getScore() != null ? current.getScore().getPatternScore() : 0)
-                        .rsi14(current.getRsi14())
-                        .macd1226(current.getMacd1226())
-                        .atr14(current.getAtr14())
-                        .momentum(current.getMomentum())
-                        .sma9(current.getSma9())
-                        .sma20(current.getSma20())
-                        .sma50(current.getSma50())
-                        .sma200(current.getSma200())
-                        .ema9(current.getEma9())
-                        .ema20(current.getEma20())
-                        .ema50(current.getEma50())
-                        .ema200(current.getEma200())
-                        .vwap(current.getVwap())
-                        .priceChg5D(current.getPriceChg5D())
-                        .priceChg10D(current.getPriceChg10D())
-                        .priceChg20D(current.getPriceChg20D())
-                        .low52(current.getLow52())
-                        .high52(current.getHigh52())
-                        .noOfLongPatterns(current.getNoOfLongPatterns())
-                        .noOfShortPatterns(current.getNoOfShortPatterns())
-                        .signal(current.getScore() != null ? current.getScore().getSignal() : null)
-                        .signalDays(current.getScore() != null ? current.getScore().getSignalDays() : 0)
-                        .upDays(current.getUpDays())
-                        .downDays(current.getDownDays())
-                        .upHigh(current.getUpHigh())
-                        .downLow(current.getDownLow())
-                        .bottomConditionsMet(current.getBottom() != null ? current.getBottom().getConditionsMet() : null)
-                        .bottomStrength(current.getBottom() != null ? current.getBottom().getStrength() : null)
-                        .spikeScore(current.getSpike() != null ? current.getSpike().getSpikeScore() : null)
-                        .spikeType(current.getSpike() != null ? current.getSpike().getSpikeType() : null)
-                        // Target variables
-                        .return1d(return1d)
-                        .return3d(return3d)
-                        .return7d(return7d)
-                        .hitTarget(hitTarget)
-                        .maxDrawdown7d(maxDrawdown7d)
-                        .build();
-
-                mlDataList.add(mlData);
+                maxDrawdown7d = (minPrice - current.getPrice()) / current.getPrice();
             }
         }
 
-        log.info("Converted to {} ML training records", mlDataList.size());
-        return mlDataList;
+        // Build ML training data
+        return MLTrainingData.builder()
+                .ticker(current.getTicker())
+                .date(current.getHistDate())
+                .price(current.getPrice())
+                .open(current.getOpen())
+                .high(current.getHigh())
+                .low(current.getLow())
+                .change(current.getChange())
+                .volume(current.getVolume())
+                .volumeChange(current.getVolumeChange())
+                .overallScore(current.getScore() != null ? current.getScore().getOverallScore() : 0)
+                .pickScore(current.getDailyRank() != null ? current.getDailyRank().getPickScore() : 0)
+                .safetyRank(current.getDailyRank() != null ? current.getDailyRank().getSafetyRank() : 0)
+                .finalRank(current.getDailyRank() != null ? current.getDailyRank().getFinalRank() : 0)
+                .allocation(current.getDailyRank() != null ? current.getDailyRank().getAllocation() : 0)
+                .dayTradingScore(current.getScore() != null ? current.getScore().getDayTradingScore() : 0)
+                .swingTradingScore(current.getScore() != null ? current.getScore().getSwingTradingScore() : 0)
+                .reversalScore(current.getScore() != null ? current.getScore().getReversalScore() : 0)
+                .breakoutScore(current.getScore() != null ? current.getScore().getBreakoutScore() : 0)
+                .patternScore(current.getScore() != null ? current.getScore().getPatternScore() : 0)
+                .rsi14(current.getRsi14())
+                .macd1226(current.getMacd1226())
+                .atr14(current.getAtr14())
+                .momentum(current.getMomentum())
+                .sma9(current.getSma9())
+                .sma20(current.getSma20())
+                .sma50(current.getSma50())
+                .sma200(current.getSma200())
+                .ema9(current.getEma9())
+                .ema20(current.getEma20())
+                .ema50(current.getEma50())
+                .ema200(current.getEma200())
+                .vwap(current.getVwap())
+                .priceChg5D(current.getPriceChg5D())
+                .priceChg10D(current.getPriceChg10D())
+                .priceChg20D(current.getPriceChg20D())
+                .low52(current.getLow52())
+                .high52(current.getHigh52())
+                .noOfLongPatterns(current.getNoOfLongPatterns())
+                .noOfShortPatterns(current.getNoOfShortPatterns())
+                .signal(current.getScore() != null ? current.getScore().getSignal() : null)
+                .signalDays(current.getScore() != null ? current.getScore().getSignalDays() : 0)
+                .upDays(current.getUpDays())
+                .downDays(current.getDownDays())
+                .upHigh(current.getUpHigh())
+                .downLow(current.getDownLow())
+                .bottomConditionsMet(current.getBottom() != null ? current.getBottom().getConditionsMet() : null)
+                .bottomStrength(current.getBottom() != null ? current.getBottom().getStrength() : null)
+                .spikeScore(current.getSpike() != null ? current.getSpike().getSpikeScore() : null)
+                .spikeType(current.getSpike() != null ? current.getSpike().getSpikeType() : null)
+                // Target variables
+                .return1d(return1d)
+                .return3d(return3d)
+                .return7d(return7d)
+                .hitTarget(hitTarget)
+                .maxDrawdown7d(maxDrawdown7d)
+                .build();
     }
 }
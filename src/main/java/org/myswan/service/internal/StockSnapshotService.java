@@ -0,0 +1,213 @@
+package org.myswan.service.internal;
+
+import org.myswan.model.collection.Rating;
+import org.myswan.model.collection.Stock;
+import org.myswan.service.internal.store.MarketDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resident, ticker-indexed snapshot of the {@code stock} collection.
+ *
+ * The snapshot is immutable once published: every write through {@link StockService#replaceStocks}
+ * patches a copy and swaps it in under a new generation number, so readers never touch Mongo and
+ * never observe a half-written state. Writes that bypass {@code replaceStocks} (single-document
+ * saves, cascade deletes, edits made directly in the database) are covered by {@link #invalidate()}
+ * and by the staleness bound, after which the next read reloads from Mongo.
+ *
+ * Stocks handed out by the snapshot are shared between all readers and must not be mutated;
+ * use {@link #copyOf(Stock)} when a caller needs to change one.
+ */
+@Service
+public class StockSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockSnapshotService.class);
+
+    private final MarketDataStore store;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder patches = new LongAdder();
+
+    /** Maximum age of a snapshot before the next read reloads it from Mongo */
+    @Value("${stock.snapshot.max-staleness-seconds:300}")
+    private long maxStalenessSeconds;
+
+    public StockSnapshotService(MarketDataStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Current snapshot, reloading it first if it was never built, was invalidated or is past the staleness bound.
+     */
+    public Snapshot current() {
+        Snapshot snap = current.get();
+        if (snap != null && !isStale(snap)) {
+            hits.increment();
+            return snap;
+        }
+        misses.increment();
+        return reloadIfStale();
+    }
+
+    public List<Stock> stocks() {
+        return current().getStocks();
+    }
+
+    /**
+     * Snapshot entry for a ticker. The stock is shared with every other reader and must be treated as
+     * read-only; {@link StockService#getByTicker} hands out copies for callers outside the snapshot.
+     */
+    public Optional<Stock> get(String ticker) {
+        if (ticker == null || ticker.isBlank()) return Optional.empty();
+        return Optional.ofNullable(current().getByTicker().get(key(ticker)));
+    }
+
+    /**
+     * Patch the snapshot with stocks that were just written to the stock collection.
+     * Stocks not in the list keep their previous entry, matching replaceStocks' delete-by-ticker semantics.
+     * The patched snapshot keeps the build time of the last full load: only the patched tickers are fresh,
+     * so a patch must not push back the reload that picks up writes made outside replaceStocks.
+     * The snapshot keeps {@link #copyOf copies}, so the caller may go on changing its own objects;
+     * nested blocks other than the rating are shared and are replaced, never edited, by compute.
+     */
+    public synchronized void publish(Collection<Stock> written) {
+        if (written == null || written.isEmpty()) return;
+
+        Snapshot base = current.get();
+        if (base == null) {
+            // Nothing resident to patch - build the first snapshot from what is now in Mongo
+            load();
+            return;
+        }
+
+        Map<String, Stock> byTicker = new LinkedHashMap<>(base.getByTicker());
+        for (Stock stock : written) {
+            if (stock.getTicker() != null) {
+                byTicker.put(key(stock.getTicker()), copyOf(stock));
+            }
+        }
+        Snapshot next = new Snapshot(generation.incrementAndGet(), base.getPublishedAt(), byTicker);
+        current.set(next);
+        patches.increment();
+        log.debug("Published stock snapshot generation {} ({} patched, {} total)",
+                next.getGeneration(), written.size(), next.size());
+    }
+
+    /**
+     * Drop the resident snapshot so the next read reloads it. Used after writes that bypass replaceStocks.
+     */
+    public synchronized void invalidate() {
+        current.set(null);
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot snap = current.get();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("generation", snap != null ? snap.getGeneration() : generation.get());
+        stats.put("resident", snap != null);
+        stats.put("size", snap != null ? snap.size() : 0);
+        stats.put("publishedAt", snap != null ? snap.getPublishedAt().toString() : null);
+        stats.put("ageSeconds", snap != null ? Duration.between(snap.getPublishedAt(), Instant.now()).toSeconds() : null);
+        stats.put("maxStalenessSeconds", maxStalenessSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total > 0 ? Math.round(hitCount * 10000.0 / total) / 100.0 : 0.0);
+        stats.put("reloads", reloads.sum());
+        stats.put("patches", patches.sum());
+        return stats;
+    }
+
+    /**
+     * Shallow copy of a stock for callers that need to modify it. The rating is copied as well since
+     * TradingView updates write into it; other nested objects are replaced wholesale by compute.
+     */
+    public static Stock copyOf(Stock source) {
+        Stock copy = new Stock();
+        BeanUtils.copyProperties(source, copy);
+        if (source.getRating() != null) {
+            Rating rating = new Rating();
+            BeanUtils.copyProperties(source.getRating(), rating);
+            copy.setRating(rating);
+        }
+        return copy;
+    }
+
+    private synchronized Snapshot reloadIfStale() {
+        // Another reader may have reloaded while this one was waiting for the lock
+        Snapshot snap = current.get();
+        if (snap != null && !isStale(snap)) return snap;
+        return load();
+    }
+
+    private Snapshot load() {
+        Map<String, Stock> byTicker = new LinkedHashMap<>();
+        try {
+            for (Stock stock : store.loadStocks()) {
+                if (stock.getTicker() != null) {
+                    byTicker.putIfAbsent(key(stock.getTicker()), stock);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to load stock snapshot", e);
+            // Keep serving the previous snapshot rather than an empty one
+            Snapshot previous = current.get();
+            if (previous != null) return previous;
+        }
+        Snapshot next = new Snapshot(generation.incrementAndGet(), Instant.now(), byTicker);
+        current.set(next);
+        reloads.increment();
+        log.info("Loaded stock snapshot generation {} with {} stocks", next.getGeneration(), next.size());
+        return next;
+    }
+
+    private boolean isStale(Snapshot snap) {
+        return maxStalenessSeconds > 0
+                && snap.getPublishedAt().plusSeconds(maxStalenessSeconds).isBefore(Instant.now());
+    }
+
+    private static String key(String ticker) {
+        return ticker.trim().toUpperCase();
+    }
+
+    /**
+     * Immutable view of the stock collection at one generation.
+     */
+    public static final class Snapshot {
+        private final long generation;
+        private final Instant publishedAt;
+        private final Map<String, Stock> byTicker;
+        private final List<Stock> stocks;
+
+        Snapshot(long generation, Instant publishedAt, Map<String, Stock> byTicker) {
+            this.generation = generation;
+            this.publishedAt = publishedAt;
+            this.byTicker = Collections.unmodifiableMap(byTicker);
+            this.stocks = List.copyOf(byTicker.values());
+        }
+
+        public long getGeneration() { return generation; }
+        /** Time of the last full load from Mongo; patches carry it over unchanged */
+        public Instant getPublishedAt() { return publishedAt; }
+        public Map<String, Stock> getByTicker() { return byTicker; }
+        public List<Stock> getStocks() { return stocks; }
+        public int size() { return stocks.size(); }
+    }
+}
@@ -1,6 +1,7 @@
 package org.myswan.service.internal;
 
 import lombok.extern.slf4j.Slf4j;
+import org.myswan.service.internal.job.JobProgress;
 import org.springframework.stereotype.Service;
 
 @Slf4j
@@ -29,10 +30,17 @@ public class SyncService {
     public String syncAllHistory() {
         try {
             log.info("Syncing all history data...");
+            // Messages only: this also runs as the last stage of compute, whose job owns the counts
+            JobProgress progress = JobProgress.current();
+            progress.message("Syncing futures history (1/5)");
             futuresService.syncFuturesHistory();
+            progress.message("Syncing stock history (2/5)");
             stockService.syncStockHistory();
+            progress.message("Syncing pattern history (3/5)");
             patternService.syncPatternHistory();
+            progress.message("Syncing picks history (4/5)");
             picksService.syncPicksHistory();
+            progress.message("Syncing options history (5/5)");
             optionsService.syncOptionsHistory();
             log.info("All history data sync completed.");
             return "SUCCESS";
@@ -40,6 +48,7 @@ public class SyncService {
         catch(Exception ex)
         {
             log.error("All Futures history data sync failed.", ex);
+            JobProgress.current().failed(ex);
             return "FAILURE";
         }
     }
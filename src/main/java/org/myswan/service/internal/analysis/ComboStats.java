@@ -0,0 +1,102 @@
+package org.myswan.service.internal.analysis;
+
+/**
+ * Running return statistics of one factor combination at one horizon: count, wins, Welford mean and
+ * variance, min/max, gross win and loss, and a {@link QuantileSketch} for the median and quartiles.
+ * Memory per combo is constant however many returns it sees, and two accumulators merge exactly
+ * (quantiles within the sketch accuracy), so partial scans can be combined.
+ */
+public final class ComboStats {
+
+    /** Quantiles are within 1% of a return actually seen */
+    private static final double QUANTILE_ACCURACY = 0.01;
+
+    private int count;
+    private int wins;
+    private double mean;
+    private double m2;
+    private double winSum;
+    private double lossSum;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double min = Double.POSITIVE_INFINITY;
+    private final QuantileSketch sketch = new QuantileSketch(QUANTILE_ACCURACY);
+
+    void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        if (value > 0) {
+            wins++;
+            winSum += value;
+        } else if (value < 0) {
+            lossSum += value;
+        }
+        if (value > max) max = value;
+        if (value < min) min = value;
+        sketch.add(value);
+    }
+
+    /**
+     * Fold another accumulator of the same combo into this one (Chan et al. for the variance).
+     */
+    public void merge(ComboStats other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            mean = other.mean;
+            m2 = other.m2;
+        } else {
+            double total = (double) count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * count * other.count / total;
+        }
+        count += other.count;
+        wins += other.wins;
+        winSum += other.winSum;
+        lossSum += other.lossSum;
+        max = Math.max(max, other.max);
+        min = Math.min(min, other.min);
+        sketch.merge(other.sketch);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /** Returns above zero */
+    public int wins() {
+        return wins;
+    }
+
+    public double winRate() {
+        return count == 0 ? 0 : wins * 100.0 / count;
+    }
+
+    public double mean() {
+        return mean;
+    }
+
+    /** Population standard deviation */
+    public double stdDeviation() {
+        return count == 0 ? 0 : Math.sqrt(m2 / count);
+    }
+
+    public double max() {
+        return count == 0 ? 0 : max;
+    }
+
+    public double min() {
+        return count == 0 ? 0 : min;
+    }
+
+    /** Sum of winning returns over the absolute sum of losing ones; 0 without losses */
+    public double profitFactor() {
+        return lossSum < 0 ? winSum / -lossSum : 0;
+    }
+
+    /** Return at quantile q, e.g. 0.5 for the median */
+    public double quantile(double q) {
+        return sketch.quantile(q);
+    }
+}
@@ -0,0 +1,228 @@
+package org.myswan.service.internal.analysis;
+
+import org.myswan.model.collection.Stock;
+import org.myswan.model.compute.MetricsInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-width binary form of a row's Day 0 factors ({@link MetricsInfo#getDay0Code()}) and of the
+ * combo keys the prediction analysis groups them by.
+ *
+ * A factor code packs every {@link Field} at the offset left by the fields before it, low bits first;
+ * bit 63 marks an encoded row, so 0 means "not encoded" and readers fall back to the strings. A combo
+ * key is a score type and bucket, a set of signals and the long-pattern flag, so grouping and counting
+ * never touch a string; {@link #label} turns a key back into the name the reports show.
+ */
+public final class FactorCode {
+
+    /** Factor fields in code order; scores are clamped to 0-127 and the long-pattern count to 0-15 */
+    public enum Field {
+        DAYTRADE(7), SWING(7), BREAKOUT(7), PATTERN(7), REVERSAL(7), OVERALL(7),
+        SPIKE(1), BOTTOM(1), MOMENTUM(1), OVERSOLD(1),
+        LONG_PATTERNS(4);
+
+        private final int width;
+        private int offset;
+
+        static {
+            int offset = 0;
+            for (Field field : values()) {
+                field.offset = offset;
+                offset += field.width;
+            }
+        }
+
+        Field(int width) {
+            this.width = width;
+        }
+
+        public int get(long code) {
+            return (int) ((code >>> offset) & ((1L << width) - 1));
+        }
+
+        long set(long code, int value) {
+            long max = (1L << width) - 1;
+            long clamped = Math.max(0, Math.min(max, value));
+            return (code & ~(max << offset)) | (clamped << offset);
+        }
+    }
+
+    public static final long ENCODED = 1L << 63;
+
+    /** Score fields that form combos, in the order the first qualifying one becomes the primary score */
+    private static final Field[] SCORES = {Field.DAYTRADE, Field.SWING, Field.BREAKOUT, Field.PATTERN, Field.REVERSAL};
+    private static final Field[] SIGNALS = {Field.SPIKE, Field.BOTTOM, Field.MOMENTUM, Field.OVERSOLD};
+    private static final String[] BUCKETS = {":60-69", ":70-79", ":80-89", ">90"};
+
+    // Combo key layout: score type (1-5, 0 = none), score bucket, signal mask, long pattern, no factors
+    private static final int BUCKET_SHIFT = 3;
+    private static final int SIGNAL_SHIFT = 5;
+    public static final long LONG_PATTERN = 1L << 9;
+    public static final long NO_FACTORS = 1L << 10;
+
+    private FactorCode() {
+    }
+
+    /**
+     * Code of the Day 0 stock, equal to {@link #fromFactors} of the strings DayChange writes for it.
+     */
+    public static long encode(Stock stock) {
+        long code = ENCODED;
+        if (stock.getScore() != null) {
+            code = Field.DAYTRADE.set(code, stock.getScore().getDayTradingScore());
+            code = Field.SWING.set(code, stock.getScore().getSwingTradingScore());
+            code = Field.BREAKOUT.set(code, stock.getScore().getBreakoutScore());
+            code = Field.PATTERN.set(code, stock.getScore().getPatternScore());
+            code = Field.REVERSAL.set(code, stock.getScore().getReversalScore());
+            code = Field.OVERALL.set(code, stock.getScore().getOverallScore());
+        }
+        if (stock.getSpike() != null && stock.getSpike().isSpikeLikely()) code = Field.SPIKE.set(code, 1);
+        if (stock.getBottom() != null && stock.getBottom().isBottom()) code = Field.BOTTOM.set(code, 1);
+        if (stock.getMomPop() != null && stock.getMomPop().isMomentumPop()) code = Field.MOMENTUM.set(code, 1);
+        if (stock.getOversold() != null && stock.getOversold().isOversoldBounce()) code = Field.OVERSOLD.set(code, 1);
+        return Field.LONG_PATTERNS.set(code, stock.getNoOfLongPatterns());
+    }
+
+    /**
+     * Code of rows written before day0Code existed, parsed from their factor strings
+     * ("SCORE-DAYTRADE=65", "SPIKE-ISSPIKE=true", ...; the older '-' separator is accepted too).
+     */
+    public static long fromFactors(List<String> factors) {
+        if (factors == null || factors.isEmpty()) return 0;
+        long code = ENCODED;
+        for (String factor : factors) {
+            if (factor.contains("SCORE-DAYTRADE")) {
+                code = Field.DAYTRADE.set(code, value(factor));
+            } else if (factor.contains("SCORE-SWINGTRADE")) {
+                code = Field.SWING.set(code, value(factor));
+            } else if (factor.contains("SCORE-BREAKOUT")) {
+                code = Field.BREAKOUT.set(code, value(factor));
+            } else if (factor.contains("SCORE-PATTERN")) {
+                code = Field.PATTERN.set(code, value(factor));
+            } else if (factor.contains("SCORE-REVERSAL")) {
+                code = Field.REVERSAL.set(code, value(factor));
+            } else if (factor.contains("SCORE-OVERALL")) {
+                code = Field.OVERALL.set(code, value(factor));
+            } else if (factor.contains("SPIKE-ISSPIKE=true") || factor.contains("SPIKE-ISSPIKE-true")) {
+                code = Field.SPIKE.set(code, 1);
+            } else if (factor.contains("BOTTOM-ISBOTTOM=true") || factor.contains("BOTTOM-ISBOTTOM-true")) {
+                code = Field.BOTTOM.set(code, 1);
+            } else if (factor.contains("MOMENTUMPOP-ISMOMENTUMPOP=true") || factor.contains("MOMENTUMPOP-ISMOMENTUMPOP-true")) {
+                code = Field.MOMENTUM.set(code, 1);
+            } else if (factor.contains("OVERSOLDBOUNCE-ISOVERSOLD=true") || factor.contains("OVERSOLDBOUNCE-ISOVERSOLD-true")) {
+                code = Field.OVERSOLD.set(code, 1);
+            } else if ((factor.contains("PATTERN-LONG=") || factor.contains("PATTERN-LONG-"))
+                    && !factor.contains("PATTERN-LONG=0") && !factor.contains("PATTERN-LONG-0")) {
+                code = Field.LONG_PATTERNS.set(code, Math.max(1, value(factor)));
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Stored code of the row, or the one parsed from its strings when it predates day0Code.
+     */
+    public static long of(MetricsInfo metrics) {
+        return metrics.getDay0Code() != 0 ? metrics.getDay0Code() : fromFactors(metrics.getDay0Factors());
+    }
+
+    /**
+     * Combo keys of a code: each score of 60+ alone, the first of them with each signal, each signal
+     * alone, all signals together, and the long-pattern variants when a signal is present. Weak setups
+     * (no signal and no score of 70+) yield none; an unencoded row yields {@link #NO_FACTORS}.
+     */
+    public static long[] combos(long code) {
+        if (code == 0) return new long[]{NO_FACTORS};
+
+        long[] keys = new long[16];
+        int size = 0;
+        long primary = 0;
+        boolean goodScore = false;
+        for (int i = 0; i < SCORES.length; i++) {
+            int score = SCORES[i].get(code);
+            if (score < 60) continue;
+            int bucket = score >= 90 ? 3 : score >= 80 ? 2 : score >= 70 ? 1 : 0;
+            long key = (i + 1) | ((long) bucket << BUCKET_SHIFT);
+            if (primary == 0) primary = key;
+            goodScore |= bucket > 0;
+            keys[size++] = key;
+        }
+        int scoreCount = size;
+        long allSignals = 0;
+        int signalCount = 0;
+        for (int i = 0; i < SIGNALS.length; i++) {
+            if (SIGNALS[i].get(code) != 0) {
+                allSignals |= 1L << (SIGNAL_SHIFT + i);
+                signalCount++;
+            }
+        }
+
+        if (signalCount == 0 && !goodScore) return new long[0];
+
+        for (int i = 0; i < SIGNALS.length && primary != 0; i++) {
+            long signal = allSignals & (1L << (SIGNAL_SHIFT + i));
+            if (signal != 0) keys[size++] = primary | signal;
+        }
+        for (int i = 0; i < SIGNALS.length; i++) {
+            long signal = allSignals & (1L << (SIGNAL_SHIFT + i));
+            if (signal != 0) keys[size++] = signal;
+        }
+        if (signalCount >= 2) {
+            keys[size++] = primary | allSignals;
+        }
+        if (Field.LONG_PATTERNS.get(code) > 0 && signalCount > 0) {
+            if (scoreCount > 0) keys[size++] = primary | LONG_PATTERN;
+            keys[size++] = allSignals | LONG_PATTERN;
+        }
+        return size == keys.length ? keys : Arrays.copyOf(keys, size);
+    }
+
+    /**
+     * Report name of a combo key, e.g. "SWING:80-89 + SPIKE + BOTTOM".
+     */
+    public static String label(long key) {
+        if ((key & NO_FACTORS) != 0) return "NO_FACTORS";
+        List<String> parts = new ArrayList<>(6);
+        int score = (int) (key & 7);
+        if (score > 0) {
+            parts.add(SCORES[score - 1].name() + BUCKETS[(int) ((key >>> BUCKET_SHIFT) & 3)]);
+        }
+        for (int i = 0; i < SIGNALS.length; i++) {
+            if ((key & (1L << (SIGNAL_SHIFT + i))) != 0) parts.add(SIGNALS[i].name());
+        }
+        if ((key & LONG_PATTERN) != 0) parts.add("LONG_PATTERN");
+        return String.join(" + ", parts);
+    }
+
+    public static List<String> labels(long[] keys) {
+        List<String> labels = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            labels.add(label(key));
+        }
+        return labels;
+    }
+
+    /**
+     * Numeric value of a factor string, accepting both "NAME=9" and "NAME-9"; 0 when unparseable.
+     */
+    private static int value(String factor) {
+        try {
+            if (factor.contains("=")) {
+                String[] parts = factor.split("=");
+                if (parts.length == 2) {
+                    return Integer.parseInt(parts[1].replace(";", "").trim());
+                }
+            }
+            String[] parts = factor.split("-");
+            if (parts.length >= 3) {
+                return Integer.parseInt(parts[2].replace(";", "").trim());
+            }
+        } catch (Exception e) {
+            // Ignore parse errors
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,171 @@
+package org.myswan.service.internal.analysis;
+
+import org.myswan.model.collection.Stock;
+import org.myswan.model.compute.MetricsDay;
+import org.myswan.model.compute.MetricsInfo;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Single-pass accumulator behind the prediction analysis. Each history row is decoded once: its Day 0
+ * factor code is turned into {@link FactorCode} combo keys and its D1-D10 returns are read, then the
+ * row feeds the per-combo statistics of all ten horizons and the peak (threshold hit on any day) counts
+ * together. Nothing of the row is kept, so memory is bounded by the number of distinct combos rather
+ * than by the history.
+ */
+public final class MetricsScan implements Consumer<Stock> {
+
+    public static final int HORIZONS = 10;
+
+    /** Peak analysis ignores single-day returns outside this range as data errors */
+    private static final double OUTLIER_HIGH = 200.0;
+    private static final double OUTLIER_LOW = -90.0;
+
+    private final double peakThreshold;
+    private final List<Map<Long, ComboStats>> horizons = new ArrayList<>(HORIZONS);
+    private final Map<Long, int[]> peak = new HashMap<>();
+    private final double[] returns = new double[HORIZONS];
+
+    private long rows;
+    private long peakRows;
+    private long outliers;
+    private List<String> sampleFactors;
+    private List<String> sampleCombos;
+
+    /**
+     * @param peakThreshold return a row must reach on any day to count as a peak win
+     */
+    public MetricsScan(double peakThreshold) {
+        this.peakThreshold = peakThreshold;
+        for (int day = 1; day <= HORIZONS; day++) {
+            horizons.add(new HashMap<>());
+        }
+    }
+
+    @Override
+    public void accept(Stock stock) {
+        rows++;
+        MetricsInfo metrics = stock.getMetricsInfo();
+        if (metrics == null || (metrics.getDay0Code() == 0 && metrics.getDay0Factors() == null)) return;
+
+        long[] keys = FactorCode.combos(FactorCode.of(metrics));
+        if (sampleCombos == null) {
+            sampleFactors = metrics.getDay0Factors();
+            sampleCombos = FactorCode.labels(keys);
+        }
+        for (int day = 1; day <= HORIZONS; day++) {
+            returns[day - 1] = dayReturn(metrics, day);
+        }
+
+        // Peak: did any day reach the threshold (outliers skipped, scan stops at the first hit)
+        peakRows++;
+        boolean hit = false;
+        for (double value : returns) {
+            if (Double.isNaN(value)) continue;
+            if (value > OUTLIER_HIGH || value < OUTLIER_LOW) {
+                outliers++;
+                continue;
+            }
+            if (value >= peakThreshold) {
+                hit = true;
+                break;
+            }
+        }
+        for (long key : keys) {
+            int[] counts = peak.computeIfAbsent(key, k -> new int[2]);
+            counts[0]++;
+            if (hit) counts[1]++;
+        }
+
+        // Horizons: every day with a return feeds every combo of the row
+        for (int day = 0; day < HORIZONS; day++) {
+            double value = returns[day];
+            if (Double.isNaN(value)) continue;
+            Map<Long, ComboStats> byCombo = horizons.get(day);
+            for (long key : keys) {
+                byCombo.computeIfAbsent(key, k -> new ComboStats()).add(value);
+            }
+        }
+    }
+
+    /**
+     * Fold the scan of another history slice into this one. Merging the same slices in the same order
+     * gives the same result, whichever threads scanned them.
+     */
+    public void merge(MetricsScan other) {
+        rows += other.rows;
+        peakRows += other.peakRows;
+        outliers += other.outliers;
+        if (sampleCombos == null) {
+            sampleFactors = other.sampleFactors;
+            sampleCombos = other.sampleCombos;
+        }
+        for (int day = 0; day < HORIZONS; day++) {
+            Map<Long, ComboStats> byCombo = horizons.get(day);
+            other.horizons.get(day).forEach((key, stats) -> byCombo.computeIfAbsent(key, k -> new ComboStats()).merge(stats));
+        }
+        other.peak.forEach((key, counts) -> {
+            int[] merged = peak.computeIfAbsent(key, k -> new int[2]);
+            merged[0] += counts[0];
+            merged[1] += counts[1];
+        });
+    }
+
+    /** Per-combo statistics of one horizon, day 1 to 10, keyed by {@link FactorCode} combo key */
+    public Map<Long, ComboStats> horizon(int day) {
+        return horizons.get(day - 1);
+    }
+
+    /** combo -> [rows, rows that reached the threshold] */
+    public Map<Long, int[]> peak() {
+        return peak;
+    }
+
+    public double peakThreshold() {
+        return peakThreshold;
+    }
+
+    /** Rows seen, with or without metrics */
+    public long rows() {
+        return rows;
+    }
+
+    /** Rows with Day 0 factors, the ones the peak analysis counted */
+    public long peakRows() {
+        return peakRows;
+    }
+
+    public long outliers() {
+        return outliers;
+    }
+
+    /** Factors and combo keys of the first row, for the debug log */
+    public List<String> sampleFactors() {
+        return sampleFactors;
+    }
+
+    public List<String> sampleCombos() {
+        return sampleCombos;
+    }
+
+    /**
+     * Return of the given day, NaN when the day has no data yet.
+     */
+    private static double dayReturn(MetricsInfo metrics, int day) {
+        MetricsDay metricsDay = switch (day) {
+            case 1 -> metrics.getD1();
+            case 2 -> metrics.getD2();
+            case 3 -> metrics.getD3();
+            case 4 -> metrics.getD4();
+            case 5 -> metrics.getD5();
+            case 6 -> metrics.getD6();
+            case 7 -> metrics.getD7();
+            case 8 -> metrics.getD8();
+            case 9 -> metrics.getD9();
+            case 10 -> metrics.getD10();
+            default -> null;
+        };
+        return metricsDay != null ? metricsDay.getPriceChgPct() : Double.NaN;
+    }
+}
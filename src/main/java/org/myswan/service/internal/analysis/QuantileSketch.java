@@ -0,0 +1,135 @@
+package org.myswan.service.internal.analysis;
+
+/**
+ * Mergeable quantile sketch with a relative error guarantee (the DDSketch scheme): each value lands in
+ * a logarithmic bucket of ratio gamma, so any quantile is answered within the configured relative
+ * accuracy of a value actually seen, whatever the distribution. Memory grows with the log of the
+ * value range, not with the number of values, and two sketches of the same accuracy merge by adding
+ * their bucket counts.
+ */
+public final class QuantileSketch {
+
+    /** Values closer to zero than this are counted as zero */
+    private static final double MIN_INDEXED = 1e-4;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final Store positive = new Store();
+    private final Store negative = new Store();
+    private long zeros;
+    private long count;
+
+    /**
+     * @param relativeAccuracy e.g. 0.01 for quantiles within 1% of the true value
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        if (value > MIN_INDEXED) {
+            positive.add(index(value));
+        } else if (value < -MIN_INDEXED) {
+            negative.add(index(-value));
+        } else {
+            zeros++;
+        }
+        count++;
+    }
+
+    /**
+     * Fold another sketch of the same accuracy into this one.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of accuracy " + relativeAccuracy
+                    + " and " + other.relativeAccuracy);
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeros += other.zeros;
+        count += other.count;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Value at quantile q (0 = minimum, 0.5 = median, 1 = maximum); 0 when empty.
+     */
+    public double quantile(double q) {
+        if (count == 0) return 0;
+        long rank = (long) Math.floor(Math.max(0, Math.min(1, q)) * (count - 1));
+        long seen = 0;
+        // Most negative first: the negative store is walked from its highest index down
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) return -value(negative.offset + i);
+        }
+        seen += zeros;
+        if (seen > rank) return 0;
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) return value(positive.offset + i);
+        }
+        return value(positive.offset + positive.counts.length - 1);
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /** Representative of bucket i, within relativeAccuracy of every value in (gamma^(i-1), gamma^i] */
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * Dense bucket counts covering the indexes seen so far, grown on either side as needed.
+     */
+    private static final class Store {
+        private long[] counts = new long[0];
+        private int offset;
+
+        void add(int index) {
+            add(index, 1);
+        }
+
+        void add(int index, long n) {
+            cover(index);
+            counts[index - offset] += n;
+        }
+
+        void merge(Store other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) add(other.offset + i, other.counts[i]);
+            }
+        }
+
+        private void cover(int index) {
+            if (counts.length == 0) {
+                counts = new long[8];
+                offset = index - 4;
+                return;
+            }
+            if (index >= offset && index < offset + counts.length) return;
+            int low = Math.min(offset, index);
+            int high = Math.max(offset + counts.length - 1, index);
+            // Grow with some slack so a widening range does not copy on every new bucket
+            int slack = Math.max(8, (high - low + 1) / 2);
+            int newLow = index < offset ? low - slack : low;
+            long[] grown = new long[high - low + 1 + slack];
+            System.arraycopy(counts, 0, grown, offset - newLow, counts.length);
+            counts = grown;
+            offset = newLow;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.myswan.service.internal.archive;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Filter applied to cold history rows: ticker set, inclusive date range, field equality and field existence.
+ * Mirrors the shapes of the Mongo queries the history readers issue against the hot tier.
+ */
+public class ArchiveQuery {
+
+    private final String collection;
+    private Set<String> tickers;
+    private LocalDate from;
+    private LocalDate to;
+    private final Map<String, Object> equalTo = new LinkedHashMap<>();
+    private final List<String> exists = new ArrayList<>();
+
+    private ArchiveQuery(String collection) {
+        this.collection = collection;
+    }
+
+    public static ArchiveQuery of(String collection) {
+        return new ArchiveQuery(collection);
+    }
+
+    public ArchiveQuery ticker(String ticker) {
+        return ticker == null ? this : tickers(List.of(ticker));
+    }
+
+    public ArchiveQuery tickers(Collection<String> values) {
+        if (values != null) {
+            Set<String> upper = new HashSet<>();
+            values.stream().filter(Objects::nonNull).forEach(t -> upper.add(t.trim().toUpperCase()));
+            this.tickers = upper;
+        }
+        return this;
+    }
+
+    public ArchiveQuery from(LocalDate from) {
+        this.from = from;
+        return this;
+    }
+
+    public ArchiveQuery to(LocalDate to) {
+        this.to = to;
+        return this;
+    }
+
+    public ArchiveQuery on(LocalDate date) {
+        this.from = date;
+        this.to = date;
+        return this;
+    }
+
+    public ArchiveQuery is(String field, Object value) {
+        equalTo.put(field, value);
+        return this;
+    }
+
+    public ArchiveQuery exists(String field) {
+        exists.add(field);
+        return this;
+    }
+
+    public String getCollection() { return collection; }
+    public LocalDate getFrom() { return from; }
+    public LocalDate getTo() { return to; }
+
+    /**
+     * Cheap pruning on the row group header, before any column is decoded.
+     */
+    boolean mayMatch(ColumnarFile.RowGroup group) {
+        if (from != null && group.getMaxEpochDay() != Long.MIN_VALUE && group.getMaxEpochDay() < from.toEpochDay()) {
+            return false;
+        }
+        if (to != null && group.getMinEpochDay() != Long.MAX_VALUE && group.getMinEpochDay() > to.toEpochDay()) {
+            return false;
+        }
+        if (tickers != null && !group.getMinKey().isEmpty()) {
+            for (String ticker : tickers) {
+                if (ticker.compareTo(group.getMinKey()) >= 0 && ticker.compareTo(group.getMaxKey()) <= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rows of the group matching every condition. Only the filter columns are decoded here.
+     */
+    BitSet select(ColumnarFile.RowGroup group, String dateField) throws IOException {
+        int rows = group.getRowCount();
+        BitSet selected = new BitSet(rows);
+        selected.set(0, rows);
+
+        if (tickers != null) {
+            Object[] values = group.column("ticker");
+            for (int i = 0; i < rows; i++) {
+                if (!(values[i] instanceof String t) || !tickers.contains(t.toUpperCase())) selected.clear(i);
+            }
+        }
+        if (from != null || to != null) {
+            Object[] values = group.column(dateField);
+            for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                Long day = ColumnarFile.toEpochDay(values[i]);
+                if (day == null
+                        || (from != null && day < from.toEpochDay())
+                        || (to != null && day > to.toEpochDay())) {
+                    selected.clear(i);
+                }
+            }
+        }
+        for (Map.Entry<String, Object> condition : equalTo.entrySet()) {
+            Object[] values = group.column(condition.getKey());
+            for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                if (!Objects.equals(values[i], condition.getValue())) selected.clear(i);
+            }
+        }
+        for (String field : exists) {
+            BitSet present = new BitSet(rows);
+            String prefix = field + ".";
+            for (String column : group.columnNames()) {
+                if (!column.equals(field) && !column.startsWith(prefix)) continue;
+                Object[] values = group.column(column);
+                for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                    if (values[i] != null) present.set(i);
+                }
+            }
+            selected.and(present);
+        }
+        return selected;
+    }
+}
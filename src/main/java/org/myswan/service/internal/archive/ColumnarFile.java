@@ -0,0 +1,547 @@
+package org.myswan.service.internal.archive;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.springframework.data.convert.Jsr310Converters;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Small self-describing columnar file format for cold history.
+ *
+ * A file is a sequence of row groups. Each row group stores every (dotted) field path of its documents
+ * as one column block with a null bitmap followed by the dense non-null values, optionally deflated per column.
+ * Row group headers carry the date and key ranges so readers can skip groups without decoding them.
+ *
+ * <pre>
+ * file      := "MSCOL" version:byte rowGroup* 0:int
+ * rowGroup  := rowCount:int minDay:long maxDay:long minKey:str maxKey:str columnCount:int column* block*
+ * column    := name:str type:byte codec:byte rawLength:int storedLength:int
+ * block     := nullBitmap values      (DOUBLE/LONG/DATE 8 bytes, INT 4, BOOL 1, OBJECT_ID 12,
+ *                                      STRING dictionary + int codes, BSON length-prefixed documents)
+ * </pre>
+ */
+public final class ColumnarFile {
+
+    static final byte[] MAGIC = "MSCOL".getBytes(StandardCharsets.US_ASCII);
+    static final byte VERSION = 1;
+
+    static final byte CODEC_NONE = 0;
+    static final byte CODEC_DEFLATE = 1;
+
+    public enum ColumnType { DOUBLE, INT, LONG, BOOL, DATE, STRING, OBJECT_ID, BSON }
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private ColumnarFile() {
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Writer
+    // ---------------------------------------------------------------------------------------------
+
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final String dateColumn;
+        private final String keyColumn;
+        private final boolean compress;
+        private long rowsWritten;
+
+        /**
+         * @param dateColumn column used for the row group date range: Date, ISO string or Integer epoch
+         *                   day values (may be null)
+         * @param keyColumn  string column used for the row group key range, e.g. ticker (may be null)
+         * @param compress   deflate each column block
+         */
+        public Writer(Path path, String dateColumn, String keyColumn, boolean compress) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+            this.dateColumn = dateColumn;
+            this.keyColumn = keyColumn;
+            this.compress = compress;
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        public void writeRowGroup(List<Document> documents) throws IOException {
+            if (documents == null || documents.isEmpty()) return;
+            int rowCount = documents.size();
+
+            // Flatten every document and collect the union of field paths in first-seen order
+            List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+            LinkedHashSet<String> columns = new LinkedHashSet<>();
+            for (Document doc : documents) {
+                Map<String, Object> flat = new LinkedHashMap<>();
+                flatten("", doc, flat);
+                columns.addAll(flat.keySet());
+                rows.add(flat);
+            }
+
+            long minDay = Long.MAX_VALUE;
+            long maxDay = Long.MIN_VALUE;
+            String minKey = null;
+            String maxKey = null;
+            for (Map<String, Object> row : rows) {
+                if (dateColumn != null) {
+                    Object date = row.get(dateColumn);
+                    Long day = date instanceof Integer epochDay ? Long.valueOf(epochDay) : toEpochDay(date);
+                    if (day != null) {
+                        minDay = Math.min(minDay, day);
+                        maxDay = Math.max(maxDay, day);
+                    }
+                }
+                if (keyColumn != null && row.get(keyColumn) instanceof String key) {
+                    String upper = key.toUpperCase();
+                    if (minKey == null || upper.compareTo(minKey) < 0) minKey = upper;
+                    if (maxKey == null || upper.compareTo(maxKey) > 0) maxKey = upper;
+                }
+            }
+
+            List<String> names = new ArrayList<>(columns);
+            List<ColumnType> types = new ArrayList<>(names.size());
+            List<byte[]> raw = new ArrayList<>(names.size());
+            List<byte[]> stored = new ArrayList<>(names.size());
+            for (String name : names) {
+                Object[] values = new Object[rowCount];
+                for (int i = 0; i < rowCount; i++) {
+                    values[i] = rows.get(i).get(name);
+                }
+                ColumnType type = inferType(values);
+                byte[] encoded = encode(type, values);
+                types.add(type);
+                raw.add(encoded);
+                stored.add(compress ? deflate(encoded) : encoded);
+            }
+
+            out.writeInt(rowCount);
+            out.writeLong(minDay);
+            out.writeLong(maxDay);
+            writeString(out, minKey != null ? minKey : "");
+            writeString(out, maxKey != null ? maxKey : "");
+            out.writeInt(names.size());
+            for (int c = 0; c < names.size(); c++) {
+                writeString(out, names.get(c));
+                out.writeByte(types.get(c).ordinal());
+                out.writeByte(compress ? CODEC_DEFLATE : CODEC_NONE);
+                out.writeInt(raw.get(c).length);
+                out.writeInt(stored.get(c).length);
+            }
+            for (byte[] block : stored) {
+                out.write(block);
+            }
+            rowsWritten += rowCount;
+        }
+
+        public long getRowsWritten() {
+            return rowsWritten;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeInt(0);
+            out.close();
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Reader
+    // ---------------------------------------------------------------------------------------------
+
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private boolean finished;
+
+        public Reader(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                in.close();
+                throw new IOException("Not a columnar history file: " + path);
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Unsupported columnar file version " + version + ": " + path);
+            }
+        }
+
+        /**
+         * Next row group, or null at the end of the file. Column blocks are held compressed and decoded on demand.
+         */
+        public RowGroup next() throws IOException {
+            if (finished) return null;
+            int rowCount = in.readInt();
+            if (rowCount == 0) {
+                finished = true;
+                return null;
+            }
+            RowGroup group = new RowGroup(rowCount, in.readLong(), in.readLong(), readString(in), readString(in));
+            int columnCount = in.readInt();
+            List<Column> columns = new ArrayList<>(columnCount);
+            for (int c = 0; c < columnCount; c++) {
+                columns.add(new Column(readString(in), ColumnType.values()[in.readByte()], in.readByte(),
+                        in.readInt(), in.readInt()));
+            }
+            for (Column column : columns) {
+                column.stored = in.readNBytes(column.storedLength);
+                group.columns.put(column.name, column);
+            }
+            return group;
+        }
+
+        /**
+         * Total rows in the file, skipping over the column blocks.
+         */
+        public long countRows() throws IOException {
+            long total = 0;
+            while (!finished) {
+                int rowCount = in.readInt();
+                if (rowCount == 0) {
+                    finished = true;
+                    break;
+                }
+                in.readLong();
+                in.readLong();
+                readString(in);
+                readString(in);
+                int columnCount = in.readInt();
+                long blockBytes = 0;
+                for (int c = 0; c < columnCount; c++) {
+                    readString(in);
+                    in.readByte();
+                    in.readByte();
+                    in.readInt();
+                    blockBytes += in.readInt();
+                }
+                in.skipNBytes(blockBytes);
+                total += rowCount;
+            }
+            return total;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    public static final class RowGroup {
+        private final int rowCount;
+        private final long minEpochDay;
+        private final long maxEpochDay;
+        private final String minKey;
+        private final String maxKey;
+        private final LinkedHashMap<String, Column> columns = new LinkedHashMap<>();
+
+        RowGroup(int rowCount, long minEpochDay, long maxEpochDay, String minKey, String maxKey) {
+            this.rowCount = rowCount;
+            this.minEpochDay = minEpochDay;
+            this.maxEpochDay = maxEpochDay;
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+        }
+
+        public int getRowCount() { return rowCount; }
+        public long getMinEpochDay() { return minEpochDay; }
+        public long getMaxEpochDay() { return maxEpochDay; }
+        public String getMinKey() { return minKey; }
+        public String getMaxKey() { return maxKey; }
+
+        public Set<String> columnNames() {
+            return Collections.unmodifiableSet(columns.keySet());
+        }
+
+        /**
+         * Decoded values of one column, one entry per row (null where absent). Missing columns decode as all-null.
+         */
+        public Object[] column(String name) throws IOException {
+            Column column = columns.get(name);
+            if (column == null) return new Object[rowCount];
+            return column.decode(rowCount);
+        }
+
+        /**
+         * Rebuild the selected rows as nested documents.
+         */
+        public List<Document> rows(BitSet selected) throws IOException {
+            List<Document> docs = new ArrayList<>(selected.cardinality());
+            int[] index = new int[rowCount];
+            Arrays.fill(index, -1);
+            for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                index[i] = docs.size();
+                docs.add(new Document());
+            }
+            for (String name : columns.keySet()) {
+                Object[] values = column(name);
+                String[] path = name.split("\\.");
+                for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                    if (values[i] != null) {
+                        put(docs.get(index[i]), path, values[i]);
+                    }
+                }
+            }
+            return docs;
+        }
+    }
+
+    static final class Column {
+        final String name;
+        final ColumnType type;
+        final byte codec;
+        final int rawLength;
+        final int storedLength;
+        byte[] stored;
+        Object[] decoded;
+
+        Column(String name, ColumnType type, byte codec, int rawLength, int storedLength) {
+            this.name = name;
+            this.type = type;
+            this.codec = codec;
+            this.rawLength = rawLength;
+            this.storedLength = storedLength;
+        }
+
+        Object[] decode(int rowCount) throws IOException {
+            if (decoded == null) {
+                byte[] raw = codec == CODEC_DEFLATE ? inflate(stored, rawLength) : stored;
+                decoded = ColumnarFile.decode(type, raw, rowCount);
+                stored = null;
+            }
+            return decoded;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Encoding
+    // ---------------------------------------------------------------------------------------------
+
+    static ColumnType inferType(Object[] values) {
+        EnumSet<ColumnType> seen = EnumSet.noneOf(ColumnType.class);
+        for (Object v : values) {
+            if (v == null) continue;
+            if (v instanceof Double) seen.add(ColumnType.DOUBLE);
+            else if (v instanceof Integer) seen.add(ColumnType.INT);
+            else if (v instanceof Long) seen.add(ColumnType.LONG);
+            else if (v instanceof Boolean) seen.add(ColumnType.BOOL);
+            else if (v instanceof Date) seen.add(ColumnType.DATE);
+            else if (v instanceof String) seen.add(ColumnType.STRING);
+            else if (v instanceof ObjectId) seen.add(ColumnType.OBJECT_ID);
+            else seen.add(ColumnType.BSON);
+        }
+        if (seen.isEmpty()) return ColumnType.BSON;
+        if (seen.size() == 1) return seen.iterator().next();
+        EnumSet<ColumnType> numeric = EnumSet.of(ColumnType.INT, ColumnType.LONG, ColumnType.DOUBLE);
+        if (numeric.containsAll(seen)) {
+            return seen.contains(ColumnType.DOUBLE) ? ColumnType.DOUBLE : ColumnType.LONG;
+        }
+        return ColumnType.BSON;
+    }
+
+    static byte[] encode(ColumnType type, Object[] values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        byte[] nulls = new byte[(values.length + 7) / 8];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) nulls[i >> 3] |= (byte) (1 << (i & 7));
+        }
+        out.write(nulls);
+
+        switch (type) {
+            case DOUBLE -> {
+                for (Object v : values) if (v != null) out.writeDouble(((Number) v).doubleValue());
+            }
+            case INT -> {
+                for (Object v : values) if (v != null) out.writeInt((Integer) v);
+            }
+            case LONG -> {
+                for (Object v : values) if (v != null) out.writeLong(((Number) v).longValue());
+            }
+            case BOOL -> {
+                for (Object v : values) if (v != null) out.writeByte((Boolean) v ? 1 : 0);
+            }
+            case DATE -> {
+                for (Object v : values) if (v != null) out.writeLong(((Date) v).getTime());
+            }
+            case OBJECT_ID -> {
+                for (Object v : values) if (v != null) out.write(((ObjectId) v).toByteArray());
+            }
+            case STRING -> {
+                // Dictionary-encode: tickers, signals and categories repeat heavily within a month
+                Map<String, Integer> dictionary = new LinkedHashMap<>();
+                int[] codes = new int[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) {
+                        codes[i] = dictionary.computeIfAbsent((String) values[i], k -> dictionary.size());
+                    }
+                }
+                out.writeInt(dictionary.size());
+                for (String entry : dictionary.keySet()) {
+                    writeString(out, entry);
+                }
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] != null) out.writeInt(codes[i]);
+                }
+            }
+            case BSON -> {
+                for (Object v : values) {
+                    if (v == null) continue;
+                    RawBsonDocument wrapper = new RawBsonDocument(new Document("v", v), DOCUMENT_CODEC);
+                    ByteBuffer buffer = wrapper.getByteBuffer().asNIO();
+                    byte[] encoded = new byte[buffer.remaining()];
+                    buffer.get(encoded);
+                    out.writeInt(encoded.length);
+                    out.write(encoded);
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Object[] decode(ColumnType type, byte[] raw, int rowCount) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+        byte[] nulls = in.readNBytes((rowCount + 7) / 8);
+        Object[] values = new Object[rowCount];
+
+        String[] dictionary = null;
+        if (type == ColumnType.STRING) {
+            dictionary = new String[in.readInt()];
+            for (int d = 0; d < dictionary.length; d++) {
+                dictionary[d] = readString(in);
+            }
+        }
+
+        for (int i = 0; i < rowCount; i++) {
+            if ((nulls[i >> 3] & (1 << (i & 7))) != 0) continue;
+            values[i] = switch (type) {
+                case DOUBLE -> in.readDouble();
+                case INT -> in.readInt();
+                case LONG -> in.readLong();
+                case BOOL -> in.readByte() != 0;
+                case DATE -> new Date(in.readLong());
+                case OBJECT_ID -> new ObjectId(in.readNBytes(12));
+                case STRING -> dictionary[in.readInt()];
+                case BSON -> {
+                    byte[] encoded = in.readNBytes(in.readInt());
+                    yield new RawBsonDocument(encoded).decode(DOCUMENT_CODEC).get("v");
+                }
+            };
+        }
+        return values;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Helpers
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Epoch day of a history date value. LocalDate fields are stored as a Date by Spring Data's converters,
+     * so a Date is read back through the same converter rather than a zone of our own; legacy rows may
+     * still carry an ISO "yyyy-MM-dd" string.
+     */
+    public static Long toEpochDay(Object value) {
+        if (value instanceof Date date) {
+            return Jsr310Converters.DateToLocalDateConverter.INSTANCE.convert(date).toEpochDay();
+        }
+        if (value instanceof String text && text.length() >= 10) {
+            try {
+                return LocalDate.parse(text.substring(0, 10)).toEpochDay();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The Date Spring Data stores for a LocalDate field, for queries against stored history dates.
+     */
+    public static Date toDate(LocalDate date) {
+        return Jsr310Converters.LocalDateToDateConverter.INSTANCE.convert(date);
+    }
+
+    private static void flatten(String prefix, Document doc, Map<String, Object> out) {
+        for (Map.Entry<String, Object> entry : doc.entrySet()) {
+            String key = prefix.isEmpty() ? entry.getKey() : prefix + "." + entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof Document nested && !nested.isEmpty()) {
+                flatten(key, nested, out);
+            } else if (value != null) {
+                out.put(key, value);
+            }
+        }
+    }
+
+    private static void put(Document root, String[] path, Object value) {
+        Document current = root;
+        for (int p = 0; p < path.length - 1; p++) {
+            Object child = current.get(path[p]);
+            if (!(child instanceof Document)) {
+                child = new Document();
+                current.put(path[p], child);
+            }
+            current = (Document) child;
+        }
+        current.put(path[path.length - 1], value);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] stored, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            byte[] raw = new byte[rawLength];
+            int offset = 0;
+            while (offset < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, offset, rawLength - offset);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                offset += n;
+            }
+            if (offset != rawLength) {
+                throw new IOException("Truncated column block: expected " + rawLength + " bytes, got " + offset);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,537 @@
+package org.myswan.service.internal.archive;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.myswan.config.CompactSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier for the daily history collections.
+ *
+ * Whole calendar months older than {@code history.archive.age-days} are moved out of Mongo into
+ * {@link ColumnarFile} parts under {@code <dir>/<collection>/<yyyy-MM>/}, then deleted from the hot
+ * collection. History readers call {@link #find} alongside their Mongo query so results span both tiers.
+ */
+@Service
+public class HistoryArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryArchiveService.class);
+
+    public static final List<String> COLLECTIONS = List.of("stockHistory", "optionsHistory", "patternHistory");
+    private static final String DATE_FIELD = "histDate";
+    private static final String PART_SUFFIX = ".mscol";
+    private static final int DELETE_BATCH = 5000;
+
+    private final MongoTemplate mongoTemplate;
+
+    /** Enables the scheduled archive run; reads from existing archive files work either way */
+    @Value("${history.archive.enabled:false}")
+    private boolean enabled;
+
+    /** Root directory of the archive files */
+    @Value("${history.archive.dir:./data/archive}")
+    private String archiveDir;
+
+    /** Sessions older than this many days are eligible, one whole month at a time */
+    @Value("${history.archive.age-days:180}")
+    private int ageDays;
+
+    /** Rows per row group; bounds memory while writing and the unit of pruning while reading */
+    @Value("${history.archive.row-group-size:20000}")
+    private int rowGroupSize;
+
+    /** Rows per part file; a part's rows are deleted from Mongo once the part is verified on disk */
+    @Value("${history.archive.part-rows:250000}")
+    private long partRows;
+
+    public HistoryArchiveService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Archive job
+    // ---------------------------------------------------------------------------------------------
+
+    @Scheduled(cron = "${history.archive.cron:0 30 1 * * SUN}")
+    public void scheduledArchive() {
+        if (!enabled) return;
+        log.info("=== Scheduled history archive ===");
+        archiveAll();
+    }
+
+    public synchronized List<Map<String, Object>> archiveAll() {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String collection : COLLECTIONS) {
+            results.add(archiveCollection(collection));
+        }
+        return results;
+    }
+
+    /**
+     * Move every whole month that ends before the age cutoff from the collection into archive files.
+     */
+    public synchronized Map<String, Object> archiveCollection(String collection) {
+        long start = System.currentTimeMillis();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("collection", collection);
+
+        LocalDate cutoff = LocalDate.now().minusDays(ageDays);
+        YearMonth lastEligible = YearMonth.from(cutoff).minusMonths(1);
+        result.put("cutoff", cutoff.toString());
+
+        long archived = 0;
+        List<String> months = new ArrayList<>();
+        try {
+            YearMonth oldest = oldestMonth(collection);
+            for (YearMonth month = oldest; month != null && !month.isAfter(lastEligible); month = month.plusMonths(1)) {
+                long rows = archiveMonth(collection, month);
+                if (rows > 0) {
+                    archived += rows;
+                    months.add(month.toString());
+                }
+            }
+            result.put("status", "SUCCESS");
+        } catch (Exception e) {
+            log.error("History archive failed for {}", collection, e);
+            result.put("status", "FAILURE");
+            result.put("error", e.getMessage());
+        }
+        result.put("rowsArchived", archived);
+        result.put("months", months);
+        result.put("durationMs", System.currentTimeMillis() - start);
+        log.info("Archived {} rows from {} ({} months) in {} ms", archived, collection, months.size(), result.get("durationMs"));
+        return result;
+    }
+
+    private long archiveMonth(String collection, YearMonth month) throws IOException {
+        MongoCollection<Document> mongo = mongoTemplate.getCollection(collection);
+        Bson filter = monthFilter(month);
+        if (mongo.countDocuments(filter) == 0) return 0;
+
+        Path monthDir = monthDir(collection, month);
+        Files.createDirectories(monthDir);
+
+        // Rows of an earlier run whose delete did not complete are already on disk - skip them, just delete
+        Set<Object> alreadyArchived = readIds(monthDir);
+        List<Object> leftovers = new ArrayList<>();
+
+        long written = 0;
+        long deleted = 0;
+        int parts = 0;
+        try (MongoCursor<Document> cursor = mongo.find(filter)
+                .sort(Sorts.ascending("ticker", DATE_FIELD))
+                .allowDiskUse(true)
+                .batchSize(2000)
+                .iterator()) {
+            // One part per partRows rows; each part's rows leave Mongo as soon as the part is safely on disk
+            while (cursor.hasNext()) {
+                Path part = nextPart(monthDir);
+                Path tmp = part.resolveSibling(part.getFileName() + ".tmp");
+                List<Object> ids = new ArrayList<>();
+                long rows;
+                try (ColumnarFile.Writer writer = new ColumnarFile.Writer(tmp, DATE_FIELD, "ticker", true)) {
+                    List<Document> group = new ArrayList<>(rowGroupSize);
+                    while (cursor.hasNext() && writer.getRowsWritten() + group.size() < Math.max(1, partRows)) {
+                        Document doc = cursor.next();
+                        Object id = doc.get("_id");
+                        if (alreadyArchived.contains(id)) {
+                            leftovers.add(id);
+                            if (leftovers.size() >= DELETE_BATCH) deleted += delete(mongo, leftovers);
+                            continue;
+                        }
+                        ids.add(id);
+                        group.add(doc);
+                        if (group.size() >= rowGroupSize) {
+                            writer.writeRowGroup(group);
+                            group.clear();
+                        }
+                    }
+                    writer.writeRowGroup(group);
+                    rows = writer.getRowsWritten();
+                }
+                if (rows == 0) {
+                    Files.deleteIfExists(tmp);
+                    continue;
+                }
+                commitPart(tmp, part, rows);
+                deleted += delete(mongo, ids);
+                written += rows;
+                parts++;
+            }
+        }
+        deleted += delete(mongo, leftovers);
+        log.info("Archived {} {} rows for {} into {} parts (removed {} from Mongo)", written, collection, month, parts, deleted);
+        return written;
+    }
+
+    /**
+     * Verify what landed on disk before anything is removed from Mongo, then publish the part.
+     */
+    private static void commitPart(Path tmp, Path part, long written) throws IOException {
+        long onDisk;
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(tmp)) {
+            onDisk = reader.countRows();
+        }
+        if (onDisk != written) {
+            Files.deleteIfExists(tmp);
+            throw new IOException("Archive verification failed for " + part + ": wrote " + written + ", read " + onDisk);
+        }
+        Files.move(tmp, part, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Delete the given ids from Mongo in batches and clear the list.
+     */
+    private static long delete(MongoCollection<Document> mongo, List<Object> ids) {
+        long deleted = 0;
+        for (int i = 0; i < ids.size(); i += DELETE_BATCH) {
+            List<Object> batch = ids.subList(i, Math.min(i + DELETE_BATCH, ids.size()));
+            deleted += mongo.deleteMany(Filters.in("_id", batch)).getDeletedCount();
+        }
+        ids.clear();
+        return deleted;
+    }
+
+    /**
+     * Oldest month present in the hot collection. History dates are BSON dates, or ISO strings on older rows.
+     */
+    private YearMonth oldestMonth(String collection) {
+        MongoCollection<Document> mongo = mongoTemplate.getCollection(collection);
+        LocalDate oldest = null;
+        for (String type : List.of("date", "string")) {
+            Document first = mongo.find(Filters.type(DATE_FIELD, type))
+                    .projection(Projections.include(DATE_FIELD))
+                    .sort(Sorts.ascending(DATE_FIELD))
+                    .limit(1)
+                    .first();
+            Long day = first != null ? ColumnarFile.toEpochDay(first.get(DATE_FIELD)) : null;
+            if (day != null && (oldest == null || day < oldest.toEpochDay())) {
+                oldest = LocalDate.ofEpochDay(day);
+            }
+        }
+        return oldest != null ? YearMonth.from(oldest) : null;
+    }
+
+    private Bson monthFilter(YearMonth month) {
+        LocalDate first = month.atDay(1);
+        LocalDate next = month.plusMonths(1).atDay(1);
+        return Filters.or(
+                Filters.and(Filters.gte(DATE_FIELD, ColumnarFile.toDate(first)),
+                        Filters.lt(DATE_FIELD, ColumnarFile.toDate(next))),
+                Filters.and(Filters.gte(DATE_FIELD, first.toString()),
+                        Filters.lt(DATE_FIELD, next.toString())));
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Read path
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Archived rows matching the query, mapped to the entity type the same way Mongo reads are.
+     */
+    public <T> List<T> find(ArchiveQuery query, Class<T> type) {
+        return find(query, type, UnaryOperator.identity());
+    }
+
+    /**
+     * Same as {@link #find(ArchiveQuery, Class)}, with each raw row passed through {@code upgrade} first.
+     * Parts are immutable, so rows archived under an older document schema are upgraded on read.
+     */
+    public <T> List<T> find(ArchiveQuery query, Class<T> type, UnaryOperator<Document> upgrade) {
+        List<T> results = new ArrayList<>();
+        forEach(query, type, upgrade, results::add);
+        return results;
+    }
+
+    public <T> void forEach(ArchiveQuery query, Class<T> type, Consumer<T> consumer) {
+        forEach(query, type, UnaryOperator.identity(), consumer);
+    }
+
+    public <T> void forEach(ArchiveQuery query, Class<T> type, UnaryOperator<Document> upgrade, Consumer<T> consumer) {
+        Path collectionDir = collectionDir(query.getCollection());
+        if (!Files.isDirectory(collectionDir)) return;
+
+        for (Path part : parts(collectionDir, query.getFrom(), query.getTo())) {
+            try (ColumnarFile.Reader reader = new ColumnarFile.Reader(part)) {
+                ColumnarFile.RowGroup group;
+                while ((group = reader.next()) != null) {
+                    if (!query.mayMatch(group)) continue;
+                    BitSet selected = query.select(group, DATE_FIELD);
+                    if (selected.isEmpty()) continue;
+                    for (Document doc : group.rows(selected)) {
+                        // Parts keep whatever key layout the rows had in Mongo when they were archived
+                        Document expanded = CompactSchema.expand(query.getCollection(), doc);
+                        consumer.accept(mongoTemplate.getConverter().read(type, upgrade.apply(expanded)));
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Failed to read archive part {}: {}", part, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Archived rows matching the query as one cursor per part. Each part is written in (ticker, date)
+     * order, so each cursor is too, ready to be merged with a live cursor of the same order. A cursor
+     * decodes one row group at a time; callers close every cursor they get.
+     */
+    public <T> List<PartCursor<T>> sortedCursors(ArchiveQuery query, Class<T> type) {
+        return sortedCursors(query, type, UnaryOperator.identity());
+    }
+
+    /**
+     * Same as {@link #sortedCursors(ArchiveQuery, Class)}, with each raw row passed through {@code upgrade}
+     * first, as {@link #forEach(ArchiveQuery, Class, UnaryOperator, Consumer)} does.
+     */
+    public <T> List<PartCursor<T>> sortedCursors(ArchiveQuery query, Class<T> type, UnaryOperator<Document> upgrade) {
+        List<PartCursor<T>> cursors = new ArrayList<>();
+        Path collectionDir = collectionDir(query.getCollection());
+        if (!Files.isDirectory(collectionDir)) return cursors;
+        for (Path part : parts(collectionDir, query.getFrom(), query.getTo())) {
+            try {
+                cursors.add(new PartCursor<>(part, query, type, upgrade));
+            } catch (IOException e) {
+                log.error("Failed to read archive part {}: {}", part, e.getMessage());
+            }
+        }
+        return cursors;
+    }
+
+    /**
+     * Months that have archive parts, oldest first.
+     */
+    public List<YearMonth> months(String collection) {
+        SortedSet<YearMonth> months = new TreeSet<>();
+        for (Path part : parts(collectionDir(collection), null, null)) {
+            months.add(YearMonth.parse(part.getParent().getFileName().toString()));
+        }
+        return new ArrayList<>(months);
+    }
+
+    /**
+     * Remove every archived row of the given tickers, rewriting only the parts that contain them.
+     */
+    public synchronized long deleteTickers(String collection, Collection<String> tickers) {
+        Path collectionDir = collectionDir(collection);
+        if (tickers == null || tickers.isEmpty() || !Files.isDirectory(collectionDir)) return 0;
+
+        ArchiveQuery query = ArchiveQuery.of(collection).tickers(tickers);
+        long removed = 0;
+        for (Path part : parts(collectionDir, null, null)) {
+            try {
+                removed += rewriteWithout(part, query);
+            } catch (IOException e) {
+                log.error("Failed to remove {} from archive part {}: {}", tickers, part, e.getMessage());
+            }
+        }
+        if (removed > 0) {
+            log.info("Removed {} archived {} rows for {}", removed, collection, tickers);
+        }
+        return removed;
+    }
+
+    private long rewriteWithout(Path part, ArchiveQuery query) throws IOException {
+        // First pass: anything to remove at all?
+        boolean affected = false;
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(part)) {
+            ColumnarFile.RowGroup group;
+            while (!affected && (group = reader.next()) != null) {
+                affected = query.mayMatch(group) && !query.select(group, DATE_FIELD).isEmpty();
+            }
+        }
+        if (!affected) return 0;
+
+        Path tmp = part.resolveSibling(part.getFileName() + ".tmp");
+        long removed = 0;
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(part);
+             ColumnarFile.Writer writer = new ColumnarFile.Writer(tmp, DATE_FIELD, "ticker", true)) {
+            ColumnarFile.RowGroup group;
+            while ((group = reader.next()) != null) {
+                BitSet drop = query.mayMatch(group) ? query.select(group, DATE_FIELD) : new BitSet();
+                BitSet keep = new BitSet(group.getRowCount());
+                keep.set(0, group.getRowCount());
+                keep.andNot(drop);
+                removed += drop.cardinality();
+                writer.writeRowGroup(group.rows(keep));
+            }
+        }
+        Files.move(tmp, part, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return removed;
+    }
+
+    /**
+     * Rows of one archive part matching a query, in the order they were written.
+     */
+    public final class PartCursor<T> implements Iterator<T>, AutoCloseable {
+        private final Path part;
+        private final ColumnarFile.Reader reader;
+        private final ArchiveQuery query;
+        private final Class<T> type;
+        private final UnaryOperator<Document> upgrade;
+        private Iterator<Document> rows = Collections.emptyIterator();
+        private boolean exhausted;
+
+        private PartCursor(Path part, ArchiveQuery query, Class<T> type, UnaryOperator<Document> upgrade) throws IOException {
+            this.part = part;
+            this.reader = new ColumnarFile.Reader(part);
+            this.query = query;
+            this.type = type;
+            this.upgrade = upgrade;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!rows.hasNext() && !exhausted) {
+                try {
+                    ColumnarFile.RowGroup group = reader.next();
+                    if (group == null) {
+                        exhausted = true;
+                    } else if (query.mayMatch(group)) {
+                        BitSet selected = query.select(group, DATE_FIELD);
+                        if (!selected.isEmpty()) rows = group.rows(selected).iterator();
+                    }
+                } catch (IOException e) {
+                    // Same as forEach: an unreadable part is logged and skipped
+                    log.error("Failed to read archive part {}: {}", part, e.getMessage());
+                    exhausted = true;
+                }
+            }
+            return rows.hasNext();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Document expanded = CompactSchema.expand(query.getCollection(), rows.next());
+            return mongoTemplate.getConverter().read(type, upgrade.apply(expanded));
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.warn("Failed to close archive part {}: {}", part, e.getMessage());
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Status
+    // ---------------------------------------------------------------------------------------------
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("dir", Paths.get(archiveDir).toAbsolutePath().toString());
+        status.put("ageDays", ageDays);
+
+        List<Map<String, Object>> collections = new ArrayList<>();
+        for (String collection : COLLECTIONS) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("collection", collection);
+            List<Path> parts = parts(collectionDir(collection), null, null);
+            long rows = 0;
+            long bytes = 0;
+            SortedSet<String> months = new TreeSet<>();
+            for (Path part : parts) {
+                try (ColumnarFile.Reader reader = new ColumnarFile.Reader(part)) {
+                    rows += reader.countRows();
+                    bytes += Files.size(part);
+                    months.add(part.getParent().getFileName().toString());
+                } catch (IOException e) {
+                    log.warn("Unreadable archive part {}: {}", part, e.getMessage());
+                }
+            }
+            info.put("months", months);
+            info.put("parts", parts.size());
+            info.put("rows", rows);
+            info.put("bytes", bytes);
+            collections.add(info);
+        }
+        status.put("collections", collections);
+        return status;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Files
+    // ---------------------------------------------------------------------------------------------
+
+    private Path collectionDir(String collection) {
+        return Paths.get(archiveDir, collection);
+    }
+
+    private Path monthDir(String collection, YearMonth month) {
+        return collectionDir(collection).resolve(month.toString());
+    }
+
+    /**
+     * Part files of the months overlapping [from, to], oldest month first.
+     */
+    private List<Path> parts(Path collectionDir, LocalDate from, LocalDate to) {
+        List<Path> parts = new ArrayList<>();
+        if (!Files.isDirectory(collectionDir)) return parts;
+        try (Stream<Path> monthDirs = Files.list(collectionDir)) {
+            List<Path> dirs = monthDirs.filter(Files::isDirectory).sorted().toList();
+            for (Path dir : dirs) {
+                YearMonth month;
+                try {
+                    month = YearMonth.parse(dir.getFileName().toString());
+                } catch (Exception e) {
+                    continue;
+                }
+                if (from != null && month.atEndOfMonth().isBefore(from)) continue;
+                if (to != null && month.atDay(1).isAfter(to)) continue;
+                try (Stream<Path> files = Files.list(dir)) {
+                    files.filter(p -> p.getFileName().toString().endsWith(PART_SUFFIX)).sorted().forEach(parts::add);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to list archive directory {}: {}", collectionDir, e.getMessage());
+        }
+        return parts;
+    }
+
+    private Path nextPart(Path monthDir) throws IOException {
+        try (Stream<Path> files = Files.list(monthDir)) {
+            long existing = files.filter(p -> p.getFileName().toString().endsWith(PART_SUFFIX)).count();
+            return monthDir.resolve(String.format("part-%04d%s", existing + 1, PART_SUFFIX));
+        }
+    }
+
+    private Set<Object> readIds(Path monthDir) throws IOException {
+        Set<Object> ids = new HashSet<>();
+        try (Stream<Path> files = Files.list(monthDir)) {
+            for (Path part : files.filter(p -> p.getFileName().toString().endsWith(PART_SUFFIX)).toList()) {
+                try (ColumnarFile.Reader reader = new ColumnarFile.Reader(part)) {
+                    ColumnarFile.RowGroup group;
+                    while ((group = reader.next()) != null) {
+                        for (Object id : group.column("_id")) {
+                            if (id != null) ids.add(id);
+                        }
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+}
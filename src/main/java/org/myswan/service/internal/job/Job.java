@@ -0,0 +1,128 @@
+package org.myswan.service.internal.job;
+
+import org.myswan.model.dto.JobStatus;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One submitted run of a {@link JobType}: its state, progress counters, result or error, and the
+ * event streams following it. Progress may be reported from any thread.
+ */
+final class Job {
+
+    enum State {QUEUED, RUNNING, SUCCEEDED, FAILED}
+
+    final String id;
+    final JobType type;
+    final String params;
+    /** Type and parameters; identical submits while this job is pending share it */
+    final String key;
+    final Instant submittedAt = Instant.now();
+    final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    private final Consumer<Job> onProgress;
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong done = new AtomicLong();
+    private volatile State state = State.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String message;
+    private volatile Object result;
+    private volatile String error;
+    /** First failure reported through {@link JobProgress#failed} by work that still returned normally */
+    private volatile Throwable failure;
+
+    Job(String id, JobType type, String params, Consumer<Job> onProgress) {
+        this.id = id;
+        this.type = type;
+        this.params = params;
+        this.key = type + "|" + (params == null ? "" : params);
+        this.onProgress = onProgress;
+    }
+
+    State state() {
+        return state;
+    }
+
+    boolean finished() {
+        return state == State.SUCCEEDED || state == State.FAILED;
+    }
+
+    Instant finishedAt() {
+        return finishedAt;
+    }
+
+    Object result() {
+        return result;
+    }
+
+    void start() {
+        startedAt = Instant.now();
+        state = State.RUNNING;
+    }
+
+    void succeed(Object value) {
+        result = value;
+        if (total.get() > 0) done.set(total.get());
+        finishedAt = Instant.now();
+        state = State.SUCCEEDED;
+    }
+
+    void recordFailure(Throwable e) {
+        if (failure == null) failure = e;
+    }
+
+    Throwable failure() {
+        return failure;
+    }
+
+    void fail(Throwable e) {
+        error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        finishedAt = Instant.now();
+        state = State.FAILED;
+    }
+
+    void total(long units) {
+        total.set(Math.max(0, units));
+        done.set(0);
+        onProgress.accept(this);
+    }
+
+    void advance(long units) {
+        done.addAndGet(units);
+        onProgress.accept(this);
+    }
+
+    void message(String text) {
+        message = text;
+        onProgress.accept(this);
+    }
+
+    JobStatus status() {
+        JobStatus status = new JobStatus();
+        status.setId(id);
+        status.setType(type.name());
+        status.setState(state.name());
+        status.setParams(params);
+        status.setSubmittedAt(submittedAt.toString());
+        status.setStartedAt(startedAt != null ? startedAt.toString() : null);
+        status.setFinishedAt(finishedAt != null ? finishedAt.toString() : null);
+        long units = total.get();
+        long completed = Math.min(done.get(), units > 0 ? units : Long.MAX_VALUE);
+        status.setTotal(units);
+        status.setDone(completed);
+        status.setPercent(units > 0 ? Math.round(completed * 1000.0 / units) / 10.0 : null);
+        status.setMessage(message);
+        status.setError(error);
+        status.setResultAvailable(state == State.SUCCEEDED);
+        status.setStatusUrl("/api/jobs/" + id);
+        status.setEventsUrl("/api/jobs/" + id + "/events");
+        status.setResultUrl("/api/jobs/" + id + "/result");
+        return status;
+    }
+}
@@ -0,0 +1,57 @@
+package org.myswan.service.internal.job;
+
+/**
+ * Progress reporting for code that may run as a background job. {@link #current()} is bound to the
+ * job running on this thread, or does nothing when the code was called directly, so services report
+ * unconditionally. The handle is thread-safe: take it before fanning work out to other threads.
+ */
+public final class JobProgress {
+
+    private static final ThreadLocal<Job> CURRENT = new ThreadLocal<>();
+    private static final JobProgress NONE = new JobProgress(null);
+
+    private final Job job;
+
+    private JobProgress(Job job) {
+        this.job = job;
+    }
+
+    public static JobProgress current() {
+        Job job = CURRENT.get();
+        return job == null ? NONE : new JobProgress(job);
+    }
+
+    static void bind(Job job) {
+        CURRENT.set(job);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    /** Announce the work units of the current stage and restart the count */
+    public void total(long units) {
+        if (job != null) job.total(units);
+    }
+
+    public void step() {
+        advance(1);
+    }
+
+    public void advance(long units) {
+        if (job != null) job.advance(units);
+    }
+
+    /**
+     * Record a failure that the code reports as a result rather than throws (the "FAILURE" strings);
+     * the job then finishes FAILED with this cause whatever it returns.
+     */
+    public void failed(Throwable e) {
+        if (job != null) job.recordFailure(e);
+    }
+
+    /** Current stage shown to pollers, e.g. "Scoring" */
+    public void message(String text) {
+        if (job != null) job.message(text);
+    }
+}
@@ -0,0 +1,208 @@
+package org.myswan.service.internal.job;
+
+import org.myswan.model.dto.JobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Runs long operations in the background so the request that starts them returns at once with a job
+ * id. Each job runs on its own virtual thread once a permit of its type is free (bounded per type),
+ * and a submit identical in type and parameters to a job still queued or running joins that job
+ * instead of starting another. Progress reported through {@link JobProgress} is pushed to event
+ * stream subscribers at most every jobs.progress-interval-ms; finished jobs and their results are
+ * kept for jobs.retention-minutes.
+ */
+@Service
+public class JobService {
+
+    private static final Logger log = LoggerFactory.getLogger(JobService.class);
+
+    private final Environment environment;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    /** Job key -> job still queued or running. Guarded by itself for submit. */
+    private final Map<String, Job> pending = new HashMap<>();
+    private final Map<JobType, Semaphore> permits = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastPublished = new ConcurrentHashMap<>();
+
+    /** Finished jobs and their results are kept this long */
+    @Value("${jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    /** Minimum interval between progress events per job */
+    @Value("${jobs.progress-interval-ms:500}")
+    private long progressIntervalMs;
+
+    /** Event streams close after this long even if the job is still running; 0 = never */
+    @Value("${jobs.sse-timeout-ms:3600000}")
+    private long sseTimeoutMs;
+
+    public JobService(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Queue the work as a job, or return the identical job already queued or running (coalesced).
+     */
+    public JobStatus submit(JobType type, String params, Supplier<?> work) {
+        Job job;
+        synchronized (pending) {
+            Job created = new Job(UUID.randomUUID().toString(), type, params, j -> publish(j, false));
+            Job existing = pending.get(created.key);
+            if (existing != null) {
+                log.info("Job {} {} coalesced into running job {}", type, params, existing.id);
+                JobStatus status = existing.status();
+                status.setCoalesced(true);
+                return status;
+            }
+            job = created;
+            pending.put(job.key, job);
+            jobs.put(job.id, job);
+        }
+        Thread.ofVirtual().name("job-" + type.property() + "-" + job.id).start(() -> run(job, work));
+        log.info("Job {} {} submitted with id {}", type, params, job.id);
+        return job.status();
+    }
+
+    public Optional<JobStatus> status(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::status);
+    }
+
+    /** All retained jobs, newest first */
+    public List<JobStatus> list() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing((Job j) -> j.submittedAt).reversed())
+                .map(Job::status)
+                .toList();
+    }
+
+    /**
+     * Result of a job that succeeded; empty while it is pending or when it failed.
+     */
+    public Optional<Object> result(String id) {
+        Job job = jobs.get(id);
+        return job != null && job.state() == Job.State.SUCCEEDED ? Optional.ofNullable(job.result()) : Optional.empty();
+    }
+
+    /**
+     * Event stream of a job: the current status at once, "progress" events as it advances and a final
+     * "done" event, after which the stream completes. Empty for an unknown id.
+     */
+    public Optional<SseEmitter> subscribe(String id) {
+        Job job = jobs.get(id);
+        if (job == null) return Optional.empty();
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        emitter.onCompletion(() -> job.emitters.remove(emitter));
+        emitter.onTimeout(() -> job.emitters.remove(emitter));
+        emitter.onError(e -> job.emitters.remove(emitter));
+        synchronized (job) {
+            if (job.finished()) {
+                send(emitter, "done", job.status());
+                emitter.complete();
+            } else {
+                job.emitters.add(emitter);
+                send(emitter, "progress", job.status());
+            }
+        }
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Drop finished jobs past retention; pending jobs are never dropped.
+     */
+    @Scheduled(fixedDelayString = "${jobs.cleanup-interval-ms:300000}")
+    public void purgeFinished() {
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(retentionMinutes));
+        jobs.values().removeIf(job -> job.finished() && job.finishedAt().isBefore(cutoff));
+        lastPublished.keySet().retainAll(jobs.keySet());
+    }
+
+    private void run(Job job, Supplier<?> work) {
+        Semaphore semaphore = permits.computeIfAbsent(job.type, this::newPermits);
+        boolean acquired = false;
+        try {
+            semaphore.acquire();
+            acquired = true;
+            job.start();
+            publish(job, true);
+            log.info("Job {} {} started", job.type, job.id);
+            JobProgress.bind(job);
+            Object result = work.get();
+            if (job.failure() != null) {
+                log.error("Job {} {} failed", job.type, job.id, job.failure());
+                job.fail(job.failure());
+            } else {
+                job.succeed(result);
+                log.info("Job {} {} succeeded in {} ms", job.type, job.id,
+                        Duration.between(job.submittedAt, job.finishedAt()).toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail(e);
+        } catch (Exception e) {
+            log.error("Job {} {} failed", job.type, job.id, e);
+            job.fail(e);
+        } finally {
+            JobProgress.unbind();
+            if (acquired) semaphore.release();
+            synchronized (pending) {
+                pending.remove(job.key, job);
+            }
+            finish(job);
+        }
+    }
+
+    private Semaphore newPermits(JobType type) {
+        int concurrency = environment.getProperty("jobs.concurrency." + type.property(), Integer.class,
+                type.defaultConcurrency());
+        return new Semaphore(Math.max(1, concurrency), true);
+    }
+
+    private void publish(Job job, boolean force) {
+        if (job.emitters.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        if (!force) {
+            Long last = lastPublished.get(job.id);
+            if (last != null && now - last < progressIntervalMs) return;
+        }
+        lastPublished.put(job.id, now);
+        JobStatus status = job.status();
+        for (SseEmitter emitter : job.emitters) {
+            if (!send(emitter, "progress", status)) job.emitters.remove(emitter);
+        }
+    }
+
+    private void finish(Job job) {
+        synchronized (job) {
+            JobStatus status = job.status();
+            for (SseEmitter emitter : job.emitters) {
+                send(emitter, "done", status);
+                emitter.complete();
+            }
+            job.emitters.clear();
+        }
+    }
+
+    private static boolean send(SseEmitter emitter, String event, JobStatus status) {
+        try {
+            emitter.send(SseEmitter.event().name(event).id(status.getId()).data(status));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the emitter callbacks drop it
+            return false;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.myswan.service.internal.job;
+
+/**
+ * Long-running operations that can be submitted as background jobs, with how many of each may run at
+ * once (jobs.concurrency.&lt;property&gt; overrides the default).
+ */
+public enum JobType {
+    COMPUTE("compute", 1),
+    DAY_CHANGE_METRICS("day-change-metrics", 1),
+    ANALYZE_PREDICTIONS("analyze-predictions", 2),
+    FETCH_ETRADE_PATTERNS("fetch-etrade", 1),
+    SYNC_HISTORY("sync-history", 1),
+    DELETE_BULK("delete-bulk", 1),
+    ML_COLUMNAR_EXPORT("ml-columnar-export", 1);
+
+    private final String property;
+    private final int defaultConcurrency;
+
+    JobType(String property, int defaultConcurrency) {
+        this.property = property;
+        this.defaultConcurrency = defaultConcurrency;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    public int defaultConcurrency() {
+        return defaultConcurrency;
+    }
+}
@@ -0,0 +1,158 @@
+package org.myswan.service.internal.migration;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.myswan.config.CompactSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * V6: rewrite the history collections to the key layout selected by {@code history.compact.enabled}
+ * (short keys from {@link CompactSchema}, or back to property names). The checksum is the selected
+ * layout, so flipping the property re-runs the migration in the other direction.
+ *
+ * The report carries collStats and a range scan of one ticker's history before and after, so the
+ * storage and scan I/O savings are recorded with the schemaVersion entry.
+ */
+@Service
+public class CompactHistoryMigration implements Migration {
+
+    private static final Logger log = LoggerFactory.getLogger(CompactHistoryMigration.class);
+
+    private static final int BATCH_SIZE = 1000;
+    private static final DocumentCodec CODEC = new DocumentCodec();
+
+    private final MongoTemplate mongoTemplate;
+
+    /** Short-key layout for history documents */
+    @Value("${history.compact.enabled:false}")
+    private boolean compact;
+
+    public CompactHistoryMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public int version() {
+        return 6;
+    }
+
+    @Override
+    public String description() {
+        return "History key layout from history.compact.enabled";
+    }
+
+    @Override
+    public String checksum() {
+        return compact ? "compact" : "long";
+    }
+
+    @Override
+    public Map<String, Object> run() {
+        List<Map<String, Object>> collections = new ArrayList<>();
+        for (String collection : CompactSchema.COLLECTIONS) {
+            collections.add(migrate(collection));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("layout", checksum());
+        report.put("collections", collections);
+        return report;
+    }
+
+    private Map<String, Object> migrate(String collection) {
+        MongoCollection<Document> mongo = mongoTemplate.getCollection(collection);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("collection", collection);
+        result.put("before", StorageStats.of(mongoTemplate, collection));
+        String ticker = sampleTicker(mongo);
+        result.put("scanTicker", ticker);
+        result.put("scanBefore", rangeScan(collection, ticker));
+
+        long rewritten = 0;
+        List<WriteModel<Document>> batch = new ArrayList<>(BATCH_SIZE);
+        for (Document doc : mongo.find()) {
+            if (!CompactSchema.needsRewrite(collection, doc, compact)) continue;
+            Document target = compact ? CompactSchema.compact(collection, doc) : CompactSchema.expand(collection, doc);
+            batch.add(new ReplaceOneModel<>(Filters.eq("_id", target.get("_id")), target));
+            if (batch.size() >= BATCH_SIZE) {
+                rewritten += mongo.bulkWrite(batch, new BulkWriteOptions().ordered(false)).getModifiedCount();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            rewritten += mongo.bulkWrite(batch, new BulkWriteOptions().ordered(false)).getModifiedCount();
+        }
+
+        result.put("rewritten", rewritten);
+        result.put("after", StorageStats.of(mongoTemplate, collection));
+        result.put("scanAfter", rangeScan(collection, ticker));
+        log.info("History layout migration ({}) for {}: {} documents rewritten", checksum(), collection, rewritten);
+        return result;
+    }
+
+    /**
+     * Estimate the saving without touching the data: BSON size of a random sample in both layouts.
+     */
+    public Map<String, Object> estimate(String collection, int sample) {
+        long longBytes = 0;
+        long compactBytes = 0;
+        int docs = 0;
+        for (Document doc : mongoTemplate.getCollection(collection)
+                .aggregate(List.of(Aggregates.sample(Math.max(1, sample))))) {
+            longBytes += bsonSize(CompactSchema.expand(collection, doc));
+            compactBytes += bsonSize(CompactSchema.compact(collection, doc));
+            docs++;
+        }
+        Map<String, Object> estimate = new LinkedHashMap<>();
+        estimate.put("collection", collection);
+        estimate.put("mappedFields", CompactSchema.dictionary(collection).size());
+        estimate.put("sampled", docs);
+        estimate.put("avgLongBytes", docs > 0 ? longBytes / docs : 0);
+        estimate.put("avgCompactBytes", docs > 0 ? compactBytes / docs : 0);
+        estimate.put("savingPercent", longBytes > 0 ? Math.round((longBytes - compactBytes) * 1000.0 / longBytes) / 10.0 : 0.0);
+        estimate.put("stats", StorageStats.of(mongoTemplate, collection));
+        return estimate;
+    }
+
+    /**
+     * Bytes and time to read one ticker's full history, newest first (the history screen's query).
+     */
+    private Map<String, Object> rangeScan(String collection, String ticker) {
+        Map<String, Object> scan = new LinkedHashMap<>();
+        if (ticker == null) return scan;
+        long start = System.nanoTime();
+        long docs = 0;
+        long bytes = 0;
+        for (RawBsonDocument raw : mongoTemplate.getCollection(collection).withDocumentClass(RawBsonDocument.class)
+                .find(Filters.eq("ticker", ticker)).sort(Sorts.descending("histDate"))) {
+            docs++;
+            bytes += raw.getByteBuffer().remaining();
+        }
+        scan.put("documents", docs);
+        scan.put("bytes", bytes);
+        scan.put("millis", Math.round((System.nanoTime() - start) / 1e4) / 100.0);
+        return scan;
+    }
+
+    private static String sampleTicker(MongoCollection<Document> mongo) {
+        Document first = mongo.find(Filters.exists("ticker")).first();
+        return first == null ? null : first.getString("ticker");
+    }
+
+    private static int bsonSize(Document doc) {
+        return new RawBsonDocument(doc, CODEC).getByteBuffer().remaining();
+    }
+}
@@ -0,0 +1,159 @@
+package org.myswan.service.internal.migration;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+import org.myswan.service.internal.analysis.FactorCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * V8: add metricsInfo.day0Code to stockHistory rows computed before it existed, parsed once from their
+ * day0Factors strings. The strings stay in place. Archived rows are never rewritten; the analysis
+ * parses those on read via {@link FactorCode#of}.
+ */
+@Service
+public class FactorCodeMigration implements Migration {
+
+    private static final Logger log = LoggerFactory.getLogger(FactorCodeMigration.class);
+
+    private static final String HISTORY = "stockHistory";
+    private static final int BATCH_SIZE = 1000;
+    private static final int ROUNDS = 5;
+    private static final DocumentCodec CODEC = new DocumentCodec();
+
+    private final MongoTemplate mongoTemplate;
+
+    public FactorCodeMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public int version() {
+        return 8;
+    }
+
+    @Override
+    public String description() {
+        return "Binary Day 0 factor code on stockHistory metrics";
+    }
+
+    @Override
+    public Map<String, Object> run() {
+        Bson pending = Filters.and(Filters.exists("metricsInfo.day0Factors"),
+                Filters.or(Filters.exists("metricsInfo.day0Code", false), Filters.eq("metricsInfo.day0Code", 0L)));
+        List<WriteModel<Document>> batch = new ArrayList<>(BATCH_SIZE);
+        long encoded = 0;
+        for (Document doc : mongoTemplate.getCollection(HISTORY).find(pending)
+                .projection(Projections.include("metricsInfo.day0Factors"))) {
+            long code = FactorCode.fromFactors(factors(doc));
+            if (code == 0) continue;
+            batch.add(new UpdateOneModel<>(Filters.eq("_id", doc.get("_id")), Updates.set("metricsInfo.day0Code", code)));
+            if (batch.size() >= BATCH_SIZE) {
+                encoded += write(batch);
+            }
+        }
+        encoded += write(batch);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("encoded", encoded);
+        report.put("benchmark", benchmark(1000));
+        log.info("Factor code migration: {} stockHistory rows encoded", encoded);
+        return report;
+    }
+
+    /**
+     * Compare the string and binary factor forms on a random sample of history rows: combo keys built and
+     * grouped per row (ROUNDS passes each), stored BSON bytes, and rows whose stored code disagrees with
+     * their strings. Reads only.
+     */
+    public Map<String, Object> benchmark(int sample) {
+        List<List<String>> strings = new ArrayList<>();
+        List<Long> stored = new ArrayList<>();
+        for (Document doc : mongoTemplate.getCollection(HISTORY).aggregate(List.of(
+                Aggregates.match(Filters.exists("metricsInfo.day0Factors")),
+                Aggregates.sample(Math.max(1, sample)),
+                Aggregates.project(Projections.include("metricsInfo.day0Factors", "metricsInfo.day0Code"))))) {
+            strings.add(factors(doc));
+            Object code = doc.get("metricsInfo", Document.class).get("day0Code");
+            stored.add(code instanceof Number number ? number.longValue() : 0L);
+        }
+
+        long[] codes = new long[strings.size()];
+        long stringBytes = 0;
+        int mismatches = 0;
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = FactorCode.fromFactors(strings.get(i));
+            stringBytes += bsonSize(new Document("day0Factors", strings.get(i)));
+            if (stored.get(i) != 0 && !Arrays.equals(FactorCode.combos(stored.get(i)), FactorCode.combos(codes[i]))) {
+                mismatches++;
+            }
+        }
+
+        // Strings: parse every row and group by combo name, as the analysis did before day0Code
+        long start = System.nanoTime();
+        Map<String, Integer> byName = new HashMap<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (List<String> factors : strings) {
+                for (long key : FactorCode.combos(FactorCode.fromFactors(factors))) {
+                    byName.merge(FactorCode.label(key), 1, Integer::sum);
+                }
+            }
+        }
+        long stringNanos = System.nanoTime() - start;
+
+        // Codes: bit operations only, grouped by the long key
+        start = System.nanoTime();
+        Map<Long, Integer> byKey = new HashMap<>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (long code : codes) {
+                for (long key : FactorCode.combos(code)) {
+                    byKey.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+        long codeNanos = System.nanoTime() - start;
+
+        long rows = (long) codes.length * ROUNDS;
+        Map<String, Object> benchmark = new LinkedHashMap<>();
+        benchmark.put("sampled", codes.length);
+        benchmark.put("rounds", ROUNDS);
+        benchmark.put("combos", byKey.size());
+        benchmark.put("stringNanosPerRow", rows > 0 ? stringNanos / rows : 0);
+        benchmark.put("codeNanosPerRow", rows > 0 ? codeNanos / rows : 0);
+        benchmark.put("avgStringBytes", codes.length > 0 ? stringBytes / codes.length : 0);
+        benchmark.put("codeBytes", bsonSize(new Document("day0Code", FactorCode.ENCODED)));
+        benchmark.put("sameCombos", byName.size() == byKey.size());
+        benchmark.put("storedCodeMismatches", mismatches);
+        return benchmark;
+    }
+
+    private long write(List<WriteModel<Document>> batch) {
+        if (batch.isEmpty()) return 0;
+        long modified = mongoTemplate.getCollection(HISTORY)
+                .bulkWrite(batch, new BulkWriteOptions().ordered(false)).getModifiedCount();
+        batch.clear();
+        return modified;
+    }
+
+    private static List<String> factors(Document doc) {
+        Document metrics = doc.get("metricsInfo", Document.class);
+        return metrics == null ? null : metrics.getList("day0Factors", String.class);
+    }
+
+    private static int bsonSize(Document doc) {
+        return new RawBsonDocument(doc, CODEC).getByteBuffer().remaining();
+    }
+}
@@ -0,0 +1,79 @@
+package org.myswan.service.internal.migration;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * V1: remove duplicate ticker+histDate rows from futuresHistory so the unique index in the plan can be
+ * built. Keeps the most recent document (highest _id) of each group and deletes the rest in batches.
+ */
+@Service
+public class FuturesHistoryDedupeMigration implements Migration {
+
+    private static final Logger log = LoggerFactory.getLogger(FuturesHistoryDedupeMigration.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    public FuturesHistoryDedupeMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public int version() {
+        return 1;
+    }
+
+    @Override
+    public String description() {
+        return "Remove duplicate ticker+histDate rows from futuresHistory";
+    }
+
+    @Override
+    public Map<String, Object> run() {
+        MongoCollection<Document> futuresHistory = mongoTemplate.getCollection("futuresHistory");
+
+        long groups = 0;
+        long deleted = 0;
+        List<Object> batch = new ArrayList<>(BATCH_SIZE);
+        for (Document group : futuresHistory.aggregate(List.of(
+                        Aggregates.group(new Document("ticker", "$ticker").append("histDate", "$histDate"),
+                                Accumulators.max("keep", "$_id"),
+                                Accumulators.push("ids", "$_id"),
+                                Accumulators.sum("count", 1)),
+                        Aggregates.match(Filters.gt("count", 1))))
+                .allowDiskUse(true)) {
+            groups++;
+            Object keep = group.get("keep");
+            for (Object id : group.getList("ids", Object.class)) {
+                if (id.equals(keep)) continue;
+                batch.add(id);
+                if (batch.size() >= BATCH_SIZE) {
+                    deleted += futuresHistory.deleteMany(Filters.in("_id", batch)).getDeletedCount();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleted += futuresHistory.deleteMany(Filters.in("_id", batch)).getDeletedCount();
+        }
+
+        if (groups > 0) {
+            log.info("Removed {} duplicate futuresHistory rows from {} ticker+histDate groups", deleted, groups);
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("duplicateGroups", groups);
+        report.put("deleted", deleted);
+        return report;
+    }
+}
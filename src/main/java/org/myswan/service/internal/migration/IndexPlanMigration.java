@@ -0,0 +1,53 @@
+package org.myswan.service.internal.migration;
+
+import org.myswan.config.IndexPlan;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * V2: build every index declared in {@link IndexPlan}. Runs again whenever the plan changes.
+ */
+@Service
+public class IndexPlanMigration implements Migration {
+
+    private final MongoTemplate mongoTemplate;
+
+    public IndexPlanMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public int version() {
+        return 2;
+    }
+
+    @Override
+    public String description() {
+        return "Apply the declared index plan";
+    }
+
+    @Override
+    public String checksum() {
+        String plan = IndexPlan.specs().stream()
+                .map(spec -> spec.getCollection() + spec.getKeys() + (spec.isUnique() ? "u" : ""))
+                .collect(Collectors.joining(";"));
+        return Integer.toHexString(plan.hashCode());
+    }
+
+    @Override
+    public Map<String, Object> run() {
+        int declared = IndexPlan.specs().size();
+        int ensured = IndexPlan.apply(mongoTemplate);
+        if (ensured < declared) {
+            throw new IllegalStateException("Only " + ensured + " of " + declared + " indexes could be built");
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("declared", declared);
+        report.put("ensured", ensured);
+        return report;
+    }
+}
@@ -0,0 +1,30 @@
+package org.myswan.service.internal.migration;
+
+import java.util.Map;
+
+/**
+ * A one-time schema or data migration. Applied migrations are recorded in the schemaVersion
+ * collection by {@link MigrationRunner}, which runs each version exactly once, in version order.
+ * Implementations must be idempotent: a failed run is retried from the start on the next boot.
+ */
+public interface Migration {
+
+    int version();
+
+    String description();
+
+    /**
+     * Apply the migration. Throw to mark it failed; the runner stops at the first failure.
+     *
+     * @return report stored with the schemaVersion record
+     */
+    Map<String, Object> run();
+
+    /**
+     * For migrations derived from declared state (e.g. the index plan): when the checksum differs from
+     * the one recorded, the migration runs again. Null means run once only.
+     */
+    default String checksum() {
+        return null;
+    }
+}
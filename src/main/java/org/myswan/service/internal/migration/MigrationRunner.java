@@ -0,0 +1,194 @@
+package org.myswan.service.internal.migration;
+
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.myswan.service.internal.HistoryRangeCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Runs pending {@link Migration}s in version order and records each one in the schemaVersion
+ * collection ({_id: version, description, status, checksum, appliedAt, durationMs, report}).
+ * Applied versions are never run again (unless their checksum changes), so index builds and data
+ * cleanups stay off the startup path once done. By default the runner starts on a background
+ * thread once the application reports ready.
+ */
+@Service
+public class MigrationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MigrationRunner.class);
+
+    static final String COLLECTION = "schemaVersion";
+    static final String APPLIED = "APPLIED";
+    static final String FAILED = "FAILED";
+
+    private final MongoTemplate mongoTemplate;
+    private final List<Migration> migrations;
+    private final HistoryRangeCache historyCache;
+
+    /** Run pending migrations when the application is ready */
+    @Value("${migrations.enabled:true}")
+    private boolean enabled;
+
+    /** Run them on a background thread instead of the ready-event thread */
+    @Value("${migrations.background:true}")
+    private boolean background;
+
+    private volatile boolean running;
+
+    public MigrationRunner(MongoTemplate mongoTemplate, List<Migration> migrations, HistoryRangeCache historyCache) {
+        this.mongoTemplate = mongoTemplate;
+        this.historyCache = historyCache;
+        this.migrations = migrations.stream()
+                .sorted(Comparator.comparingInt(Migration::version))
+                .toList();
+        Set<Integer> versions = new HashSet<>();
+        for (Migration migration : this.migrations) {
+            if (!versions.add(migration.version())) {
+                throw new IllegalStateException("Duplicate migration version " + migration.version());
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            log.info("Migrations disabled (migrations.enabled=false)");
+            return;
+        }
+        if (background) {
+            Thread.ofVirtual().name("schema-migrations").start(this::runPending);
+        } else {
+            runPending();
+        }
+    }
+
+    /**
+     * Run every migration that is not applied yet (or whose checksum changed), stopping at the first failure.
+     */
+    public synchronized List<Map<String, Object>> runPending() {
+        running = true;
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            Map<Integer, Document> recorded = recorded();
+            for (Migration migration : migrations) {
+                Document record = recorded.get(migration.version());
+                if (isApplied(migration, record)) continue;
+                Document result = apply(migration);
+                results.add(result);
+                if (FAILED.equals(result.getString("status"))) {
+                    log.warn("Stopping at failed migration V{}; later migrations will run once it succeeds",
+                            migration.version());
+                    break;
+                }
+            }
+            if (results.isEmpty()) {
+                log.info("Schema is up to date at version {}", currentVersion());
+            }
+        } finally {
+            running = false;
+        }
+        return results;
+    }
+
+    /**
+     * Run one migration again regardless of its recorded state.
+     */
+    public synchronized Map<String, Object> rerun(int version) {
+        Migration migration = migrations.stream()
+                .filter(m -> m.version() == version)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown migration version " + version));
+        running = true;
+        try {
+            return apply(migration);
+        } finally {
+            running = false;
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<Integer, Document> recorded = recorded();
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Migration migration : migrations) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("version", migration.version());
+            entry.put("description", migration.description());
+            Document record = recorded.get(migration.version());
+            entry.put("status", record == null ? "PENDING"
+                    : isApplied(migration, record) ? APPLIED
+                    : APPLIED.equals(record.getString("status")) ? "CHANGED" : record.getString("status"));
+            if (record != null) {
+                entry.put("appliedAt", record.get("appliedAt"));
+                entry.put("durationMs", record.get("durationMs"));
+                entry.put("report", record.get("report"));
+                entry.put("error", record.get("error"));
+            }
+            list.add(entry);
+        }
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("currentVersion", currentVersion());
+        status.put("latestVersion", migrations.isEmpty() ? 0 : migrations.getLast().version());
+        status.put("running", running);
+        status.put("migrations", list);
+        return status;
+    }
+
+    /**
+     * Highest version with every version up to it applied.
+     */
+    public int currentVersion() {
+        Map<Integer, Document> recorded = recorded();
+        int current = 0;
+        for (Migration migration : migrations) {
+            Document record = recorded.get(migration.version());
+            if (record == null || !APPLIED.equals(record.getString("status"))) break;
+            current = migration.version();
+        }
+        return current;
+    }
+
+    private Document apply(Migration migration) {
+        log.info("Running migration V{}: {}", migration.version(), migration.description());
+        long start = System.currentTimeMillis();
+        Document record = new Document("_id", migration.version())
+                .append("description", migration.description())
+                .append("checksum", migration.checksum());
+        try {
+            Map<String, Object> report = migration.run();
+            record.append("status", APPLIED).append("report", new Document(report));
+            // Migrations rewrite history in place, so nothing cached from before is trusted
+            historyCache.clear();
+            log.info("Migration V{} applied in {} ms", migration.version(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Migration V{} failed: {}", migration.version(), e.getMessage(), e);
+            record.append("status", FAILED).append("error", e.getMessage());
+        }
+        record.append("appliedAt", new Date())
+                .append("durationMs", System.currentTimeMillis() - start);
+        mongoTemplate.getCollection(COLLECTION).replaceOne(new Document("_id", migration.version()), record,
+                new ReplaceOptions().upsert(true));
+        return record;
+    }
+
+    private static boolean isApplied(Migration migration, Document record) {
+        return record != null
+                && APPLIED.equals(record.getString("status"))
+                && Objects.equals(migration.checksum(), record.getString("checksum"));
+    }
+
+    private Map<Integer, Document> recorded() {
+        Map<Integer, Document> recorded = new HashMap<>();
+        for (Document doc : mongoTemplate.getCollection(COLLECTION).find()) {
+            if (doc.get("_id") instanceof Integer version) recorded.put(version, doc);
+        }
+        return recorded;
+    }
+}
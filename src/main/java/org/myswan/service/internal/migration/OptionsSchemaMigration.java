@@ -0,0 +1,75 @@
+package org.myswan.service.internal.migration;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * V5: drop the embedded Stock copy from options and optionsHistory, keeping the
+ * underlying price and change as plain fields. Runs as one server-side pipeline update per collection.
+ */
+@Service
+public class OptionsSchemaMigration implements Migration {
+
+    private static final Logger log = LoggerFactory.getLogger(OptionsSchemaMigration.class);
+
+    static final List<String> COLLECTIONS = List.of("options", "optionsHistory");
+
+    private final MongoTemplate mongoTemplate;
+
+    public OptionsSchemaMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public int version() {
+        return 5;
+    }
+
+    @Override
+    public String description() {
+        return "Options without the embedded stock";
+    }
+
+    @Override
+    public Map<String, Object> run() {
+        List<Map<String, Object>> collections = new ArrayList<>();
+        for (String collection : COLLECTIONS) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("collection", collection);
+            result.put("before", StorageStats.of(mongoTemplate, collection));
+            UpdateResult update = mongoTemplate.getCollection(collection).updateMany(
+                    Filters.exists("stock"),
+                    List.of(
+                            new Document("$set", new Document()
+                                    .append("stockPriceCurrent", new Document("$ifNull", List.of("$stock.price", "$stockPriceCurrent")))
+                                    .append("underlyingChange", new Document("$ifNull", List.of("$stock.change", 0.0)))),
+                            new Document("$unset", "stock")));
+            result.put("migrated", update.getModifiedCount());
+            result.put("after", StorageStats.of(mongoTemplate, collection));
+            log.info("Options schema migration for {}: {} documents migrated", collection, update.getModifiedCount());
+            collections.add(result);
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("collections", collections);
+        return report;
+    }
+
+    /**
+     * Upgrade a raw option document in place (used for archived rows, which are never rewritten).
+     */
+    public static Document upgrade(Document doc) {
+        if (doc.get("stock") instanceof Document stock) {
+            if (stock.get("price") instanceof Number price) doc.put("stockPriceCurrent", price.doubleValue());
+            if (stock.get("change") instanceof Number change) doc.put("underlyingChange", change.doubleValue());
+        }
+        doc.remove("stock");
+        return doc;
+    }
+}
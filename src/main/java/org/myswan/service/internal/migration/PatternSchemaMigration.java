@@ -0,0 +1,153 @@
+package org.myswan.service.internal.migration;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * V4: migrate pattern and patternHistory to the typed schema: numeric entry/minPT/maxPT/stop,
+ * date-typed histDate and event dates, and no embedded stock copy (the stock is joined at read time).
+ */
+@Service
+public class PatternSchemaMigration implements Migration {
+
+    private static final Logger log = LoggerFactory.getLogger(PatternSchemaMigration.class);
+
+    static final List<String> COLLECTIONS = List.of("pattern", "patternHistory");
+    static final List<String> PRICE_FIELDS = List.of("entry", "minPT", "maxPT", "stop");
+    static final List<String> DATE_FIELDS = List.of("histDate", "targetDate", "patternEmergenceDate",
+            "eventBeginDate", "eventEndDate");
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    public PatternSchemaMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public int version() {
+        return 4;
+    }
+
+    @Override
+    public String description() {
+        return "Typed pattern fields without the embedded stock";
+    }
+
+    @Override
+    public Map<String, Object> run() {
+        List<Map<String, Object>> collections = new ArrayList<>();
+        for (String collection : COLLECTIONS) {
+            collections.add(migrate(collection));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("collections", collections);
+        return report;
+    }
+
+    private Map<String, Object> migrate(String collection) {
+        MongoCollection<Document> mongo = mongoTemplate.getCollection(collection);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("collection", collection);
+        result.put("before", StorageStats.of(mongoTemplate, collection));
+
+        // Documents still on the old schema: an embedded stock or any string-typed price/date
+        List<Bson> legacy = new ArrayList<>();
+        legacy.add(Filters.exists("stock"));
+        PRICE_FIELDS.forEach(f -> legacy.add(Filters.type(f, "string")));
+        DATE_FIELDS.forEach(f -> legacy.add(Filters.type(f, "string")));
+
+        long migrated = 0;
+        List<WriteModel<Document>> batch = new ArrayList<>(BATCH_SIZE);
+        for (Document doc : mongo.find(Filters.or(legacy))) {
+            Object id = doc.get("_id");
+            Document set = new Document();
+            Document unset = new Document();
+            upgradeFields(doc, set, unset);
+            Document update = new Document();
+            if (!set.isEmpty()) update.append("$set", set);
+            if (!unset.isEmpty()) update.append("$unset", unset);
+            if (update.isEmpty()) continue;
+
+            batch.add(new UpdateOneModel<>(Filters.eq("_id", id), update));
+            if (batch.size() >= BATCH_SIZE) {
+                migrated += mongo.bulkWrite(batch, new BulkWriteOptions().ordered(false)).getModifiedCount();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            migrated += mongo.bulkWrite(batch, new BulkWriteOptions().ordered(false)).getModifiedCount();
+        }
+
+        result.put("migrated", migrated);
+        result.put("after", StorageStats.of(mongoTemplate, collection));
+        log.info("Pattern schema migration for {}: {} documents migrated", collection, migrated);
+        return result;
+    }
+
+    /**
+     * Upgrade a raw pattern document in place (used for archived rows, which are never rewritten).
+     */
+    public static Document upgrade(Document doc) {
+        Document set = new Document();
+        Document unset = new Document();
+        upgradeFields(doc, set, unset);
+        doc.putAll(set);
+        unset.keySet().forEach(doc::remove);
+        return doc;
+    }
+
+    private static void upgradeFields(Document doc, Document set, Document unset) {
+        if (doc.containsKey("stock")) unset.append("stock", "");
+        for (String field : PRICE_FIELDS) {
+            if (doc.get(field) instanceof String value) {
+                Double price = parsePrice(value);
+                if (price != null) set.append(field, price);
+                else unset.append(field, "");
+            }
+        }
+        for (String field : DATE_FIELDS) {
+            if (doc.get(field) instanceof String value) {
+                Date date = parseDate(value);
+                if (date != null) set.append(field, date);
+                else unset.append(field, "");
+            }
+        }
+    }
+
+    private static Double parsePrice(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * yyyy-MM-dd to the same Date Spring Data writes for a LocalDate (start of day, system zone).
+     */
+    private static Date parseDate(String value) {
+        if (value == null || value.length() < 10) return null;
+        try {
+            return Date.from(LocalDate.parse(value.substring(0, 10)).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.myswan.service.internal.migration;
+
+import org.myswan.config.CompactSchema;
+import org.myswan.model.collection.Stock;
+import org.myswan.service.internal.store.RatingDimension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * V7: move ratings and earningsDate of stockHistory into the ratingDimension (history.scd.enabled),
+ * or copy them back onto the rows when the property is turned off. The checksum is the selected
+ * layout, so flipping the property re-runs the migration in the other direction.
+ *
+ * Rows are streamed per ticker in date order; each ticker's values go through
+ * {@link RatingDimension#record} (one version per change) and are then unset from the rows, under
+ * both the long and the compact key. The archive keeps its rows as archived.
+ */
+@Service
+public class RatingDimensionMigration implements Migration {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingDimensionMigration.class);
+
+    private static final String HISTORY = "stockHistory";
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final RatingDimension ratings;
+
+    public RatingDimensionMigration(MongoTemplate mongoTemplate, RatingDimension ratings) {
+        this.mongoTemplate = mongoTemplate;
+        this.ratings = ratings;
+    }
+
+    @Override
+    public int version() {
+        return 7;
+    }
+
+    @Override
+    public String description() {
+        return "Ratings and earningsDate layout from history.scd.enabled";
+    }
+
+    @Override
+    public String checksum() {
+        return ratings.isEnabled() ? "dimension" : "embedded";
+    }
+
+    @Override
+    public Map<String, Object> run() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("layout", checksum());
+        report.put("before", StorageStats.of(mongoTemplate, HISTORY));
+        ratings.reload();
+        long[] counts = ratings.isEnabled() ? detachAll() : embedAll();
+        report.put("versionsWritten", counts[0]);
+        report.put("rowsUpdated", counts[1]);
+        report.put("after", StorageStats.of(mongoTemplate, HISTORY));
+        report.put("dimension", ratings.stats());
+        log.info("Rating dimension migration ({}): {} versions written, {} stockHistory rows updated",
+                checksum(), counts[0], counts[1]);
+        return report;
+    }
+
+    private long[] detachAll() {
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("rating").exists(true), Criteria.where(compactKey("rating")).exists(true)))
+                .with(Sort.by(Sort.Direction.ASC, "ticker", "histDate"));
+        long versions = 0;
+        long rows = 0;
+        List<Stock> ticker = new ArrayList<>();
+        List<Object> ids = new ArrayList<>(BATCH_SIZE);
+        try (Stream<Stock> stream = mongoTemplate.stream(query, Stock.class, HISTORY)) {
+            Iterator<Stock> it = stream.iterator();
+            while (it.hasNext()) {
+                Stock row = it.next();
+                // record() cannot place a row without ticker or date, so those keep their values
+                if (row.getTicker() == null || row.getHistDate() == null) continue;
+                if (!ticker.isEmpty() && !Objects.equals(ticker.getFirst().getTicker(), row.getTicker())) {
+                    versions += ratings.record(ticker);
+                    ticker.clear();
+                }
+                ticker.add(row);
+                ids.add(row.getId());
+                // Versions go out before the rows that depend on them lose their values
+                if (ids.size() >= BATCH_SIZE) {
+                    versions += ratings.record(ticker);
+                    ticker.clear();
+                    rows += unset(ids);
+                    ids.clear();
+                }
+            }
+        }
+        versions += ratings.record(ticker);
+        rows += unset(ids);
+        return new long[]{versions, rows};
+    }
+
+    private long unset(List<Object> ids) {
+        if (ids.isEmpty()) return 0;
+        Update update = new Update();
+        for (String field : List.of("rating", "earningsDate")) {
+            update.unset(field);
+            if (!compactKey(field).equals(field)) update.unset(compactKey(field));
+        }
+        return mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)), update, HISTORY).getModifiedCount();
+    }
+
+    private long[] embedAll() {
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("rating").exists(false),
+                Criteria.where(compactKey("rating")).exists(false)));
+        long rows = 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HISTORY);
+        int pending = 0;
+        try (Stream<Stock> stream = mongoTemplate.stream(query, Stock.class, HISTORY)) {
+            Iterator<Stock> it = stream.iterator();
+            while (it.hasNext()) {
+                Stock row = it.next();
+                ratings.fill(row, row.getHistDate());
+                if (row.getRating() == null) continue;
+                Update update = new Update().set("rating", row.getRating()).set("earningsDate", row.getEarningsDate());
+                bulk.updateOne(Query.query(Criteria.where("_id").is(row.getId())), update);
+                if (++pending >= BATCH_SIZE) {
+                    rows += bulk.execute().getModifiedCount();
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HISTORY);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            rows += bulk.execute().getModifiedCount();
+        }
+        return new long[]{0, rows};
+    }
+
+    private static String compactKey(String field) {
+        return CompactSchema.dictionary(HISTORY).getOrDefault(field, field);
+    }
+}
@@ -0,0 +1,35 @@
+package org.myswan.service.internal.migration;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * collStats summary used for before/after storage reports around schema migrations and retention runs.
+ * {@code size} is the uncompressed data size; {@code storageSize} only shrinks once WiredTiger
+ * reuses or compacts the freed space.
+ */
+public final class StorageStats {
+
+    private static final Logger log = LoggerFactory.getLogger(StorageStats.class);
+
+    private StorageStats() {
+    }
+
+    public static Map<String, Object> of(MongoTemplate mongoTemplate, String collection) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        try {
+            Document result = mongoTemplate.getDb().runCommand(new Document("collStats", collection));
+            for (String key : new String[]{"count", "size", "avgObjSize", "storageSize", "totalIndexSize"}) {
+                stats.put(key, result.get(key));
+            }
+        } catch (Exception e) {
+            log.warn("collStats failed for {}: {}", collection, e.getMessage());
+        }
+        return stats;
+    }
+}
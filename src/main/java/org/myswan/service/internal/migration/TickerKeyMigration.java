@@ -0,0 +1,118 @@
+package org.myswan.service.internal.migration;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.myswan.common.UtilHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * V3: rewrite every stored ticker to its canonical upper-case form. Where the canonical row already exists (same ticker and date under a
+ * unique key, or a ticker-keyed document), the canonical row wins and the non-canonical one is removed.
+ */
+@Service
+public class TickerKeyMigration implements Migration {
+
+    private static final Logger log = LoggerFactory.getLogger(TickerKeyMigration.class);
+
+    /** Collections whose _id is the ticker itself */
+    private static final Set<String> KEYED_BY_TICKER = Set.of("stock", "master");
+
+    static final List<String> TICKER_COLLECTIONS = List.of(
+            "stock", "stockHistory", "master", "futures", "futuresHistory",
+            "pattern", "patternHistory", "picks", "picksHistory",
+            "options", "optionsHistory", "guaranteedPicks", "watchlist");
+
+    private final MongoTemplate mongoTemplate;
+
+    public TickerKeyMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public int version() {
+        return 3;
+    }
+
+    @Override
+    public String description() {
+        return "Canonical upper-case ticker key in every collection";
+    }
+
+    @Override
+    public Map<String, Object> run() {
+        List<Map<String, Object>> collections = new ArrayList<>();
+        for (String collection : TICKER_COLLECTIONS) {
+            collections.add(canonicalize(collection));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("collections", collections);
+        return report;
+    }
+
+    private Map<String, Object> canonicalize(String collection) {
+        MongoCollection<Document> mongo = mongoTemplate.getCollection(collection);
+
+        // ticker != toUpper(trim(ticker))
+        Bson nonCanonical = Filters.and(
+                Filters.type("ticker", "string"),
+                Filters.expr(new Document("$ne", List.of("$ticker",
+                        new Document("$toUpper", new Document("$trim", new Document("input", "$ticker")))))));
+
+        // Collect first: the rewrite below changes the set the filter matches
+        List<Document> targets = new ArrayList<>();
+        mongo.find(nonCanonical).projection(Projections.include("_id", "ticker")).into(targets);
+
+        long updated = 0;
+        long removed = 0;
+        for (Document target : targets) {
+            Object id = target.get("_id");
+            String canonical = UtilHelper.canonicalTicker(target.getString("ticker"));
+
+            if (KEYED_BY_TICKER.contains(collection) && id instanceof String key && key.equalsIgnoreCase(canonical)) {
+                // _id has to change as well: re-insert under the canonical key unless it is already there
+                Document full = mongo.find(Filters.eq("_id", id)).first();
+                if (full == null) continue;
+                if (mongo.find(Filters.eq("_id", canonical)).first() == null) {
+                    full.put("_id", canonical);
+                    full.put("ticker", canonical);
+                    mongo.insertOne(full);
+                    updated++;
+                } else {
+                    removed++;
+                }
+                mongo.deleteOne(Filters.eq("_id", id));
+                continue;
+            }
+
+            try {
+                mongo.updateOne(Filters.eq("_id", id), Updates.set("ticker", canonical));
+                updated++;
+            } catch (MongoWriteException e) {
+                if (e.getError().getCategory() != ErrorCategory.DUPLICATE_KEY) throw e;
+                // The canonical row for the same key already exists
+                mongo.deleteOne(Filters.eq("_id", id));
+                removed++;
+            }
+        }
+
+        if (!targets.isEmpty()) {
+            log.info("Canonicalized tickers in {}: {} updated, {} duplicates removed", collection, updated, removed);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("collection", collection);
+        result.put("updated", updated);
+        result.put("duplicatesRemoved", removed);
+        return result;
+    }
+}
@@ -1,48 +1,109 @@
 package org.myswan.service.internal.onetime;
 
+import org.myswan.common.UtilHelper;
 import org.myswan.model.collection.Stock;
 import org.myswan.model.compute.MetricsDay;
 import org.myswan.model.compute.MetricsInfo;
+import org.myswan.service.internal.HistoryRangeCache;
 import org.myswan.service.internal.StockService;
+import org.myswan.service.internal.analysis.FactorCode;
+import org.myswan.service.internal.job.JobProgress;
+import org.myswan.service.internal.store.MarketDataStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.mongodb.core.BulkOperations;
-import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class DayChange {
 
     private static final Logger log = LoggerFactory.getLogger(DayChange.class);
 
+    /** Sessions after Day 0 that metricsInfo covers (D1-D10) */
+    private static final int HORIZON = 10;
+
     private final StockService stockService;
-    private final MongoTemplate mongoTemplate;
+    private final MarketDataStore store;
+    private final HistoryRangeCache historyCache;
+
+    /** Rows per metricsInfo bulk write in a full rebuild */
+    @Value("${daychange.rebuild.batch-size:1000}")
+    private int batchSize;
 
-    public DayChange(StockService stockService, MongoTemplate mongoTemplate) {
+    /** Bulk writes in flight at once in a full rebuild; the scan waits while all are busy */
+    @Value("${daychange.rebuild.writers:4}")
+    private int writerCount;
+
+    public DayChange(StockService stockService, MarketDataStore store, HistoryRangeCache historyCache) {
         this.stockService = stockService;
-        this.mongoTemplate = mongoTemplate;
+        this.store = store;
+        this.historyCache = historyCache;
     }
 
+    /**
+     * Recompute metricsInfo on every live history row in one pass and reset the watermarks. The rows come
+     * through a single cursor sorted by ticker and date; a ring of the current ticker's last
+     * {@value #HORIZON} + 1 rows fills each row's D1-D10 as the later rows arrive, and finished rows go out
+     * in batches to a bounded set of concurrent bulk writers.
+     */
     public void computeDayChangeForAllHistory() {
+        long start = System.currentTimeMillis();
+        JobProgress progress = JobProgress.current();
+        progress.message("Rebuilding metrics from one sorted history scan");
+        progress.total(store.liveHistoryCount());
+        Map<String, LocalDate> watermarks = new HashMap<>();
+        ForwardWindow window;
+        try (BulkWriters writers = new BulkWriters(progress)) {
+            window = new ForwardWindow(writers, watermarks);
+            store.forEachHistoryByTicker(window::add);
+            window.flush();
+        } catch (Exception e) {
+            log.error("Fatal error in computeDayChangeForAllHistory", e);
+            throw new RuntimeException("Failed to compute day changes", e);
+        }
+        // Only once every batch is written, so a failed rebuild leaves no watermark ahead of its rows
+        watermarks.forEach(store::saveMetricsWatermark);
+        historyCache.invalidate("stockHistory", null);
+        log.info("Metrics rebuild completed: {} rows of {} tickers in {} ms ({} writers, batches of {})",
+                 window.rows, watermarks.size(), System.currentTimeMillis() - start, writerCount, batchSize);
+    }
+
+    /**
+     * Recompute only the rows whose D1-D10 window can still change: per ticker, the rows after its
+     * watermark, i.e. at most the last {@value #HORIZON} sessions plus those appended since the last run.
+     * Tickers without a watermark, or whose watermark row is gone or lacks metrics (history deleted or
+     * rebuilt), are computed in full.
+     */
+    public void computeDayChangeIncremental() {
         try {
-            List<Stock> allStocks = stockService.list();
+            List<Stock> allStocks = stockService.listSnapshot();
             if (allStocks == null || allStocks.isEmpty()) {
                 log.warn("No stocks found in database");
                 return;
             }
 
-            log.info("Starting metrics computation for {} tickers", allStocks.size());
+            Map<String, LocalDate> watermarks = store.metricsWatermarks();
+            log.info("Starting incremental metrics computation for {} tickers ({} with a watermark)",
+                     allStocks.size(), watermarks.size());
             AtomicInteger processedCount = new AtomicInteger(0);
             AtomicInteger errorCount = new AtomicInteger(0);
+            long rowsWritten = 0;
+            JobProgress progress = JobProgress.current();
+            progress.total(allStocks.size());
 
             for (Stock stock : allStocks) {
                 try {
@@ -51,7 +112,8 @@ public class DayChange {
                         continue;
                     }
 
-                    processTickerHistory(stock.getTicker());
+                    String ticker = UtilHelper.canonicalTicker(stock.getTicker());
+                    rowsWritten += processTickerHistory(stock.getTicker(), watermarks.get(ticker));
                     processedCount.incrementAndGet();
 
                     if (processedCount.get() % 10 == 0) {
@@ -61,35 +123,48 @@ public class DayChange {
                     errorCount.incrementAndGet();
                     String tickerName = (stock != null && stock.getTicker() != null) ? stock.getTicker() : "unknown";
                     log.error("Error processing ticker: {}", tickerName, e);
+                } finally {
+                    progress.step();
                 }
             }
 
-            log.info("Metrics computation completed. Success: {}, Errors: {}",
-                     processedCount.get(), errorCount.get());
+            log.info("Metrics computation completed. Success: {}, Errors: {}, Rows written: {}",
+                     processedCount.get(), errorCount.get(), rowsWritten);
 
         } catch (Exception e) {
-            log.error("Fatal error in computeDayChangeForAllHistory", e);
+            log.error("Fatal error in computeDayChangeIncremental", e);
             throw new RuntimeException("Failed to compute day changes", e);
         }
     }
 
-    private void processTickerHistory(String ticker) {
-        // Fetch all history for this ticker
-        List<Stock> history = stockService.getStockHistory(ticker, null, null);
+    /**
+     * Compute the rows of one ticker after its watermark (all rows when null), write them back and move
+     * the watermark to the last row whose window is now final.
+     * @return rows written
+     */
+    private int processTickerHistory(String ticker, LocalDate watermark) {
+        // Newest first; the watermark row itself is loaded only to check it is still in place
+        List<Stock> history = stockService.getStockHistory(ticker, watermark, null);
+        if (watermark != null && !watermarkIntact(history, watermark)) {
+            log.info("Watermark {} of ticker {} no longer matches its history, recomputing in full", watermark, ticker);
+            watermark = null;
+            history = stockService.getStockHistory(ticker, null, null);
+        }
 
         if (history == null || history.isEmpty()) {
             log.debug("No history found for ticker: {}", ticker);
-            return;
+            return 0;
         }
 
         // Reverse to get chronological order (oldest first)
         Collections.reverse(history);
+        int first = watermark != null ? 1 : 0;
 
         List<Stock> updatedStocks = new ArrayList<>();
 
-        // Process ALL records - populate D1-D10 with whatever future data is available
+        // Process the open rows - populate D1-D10 with whatever future data is available
         // Recent records may have partial data (e.g., only D1-D5 if only 5 days of future data exist)
-        for (int i = 0; i < history.size(); i++) {
+        for (int i = first; i < history.size(); i++) {
             Stock day0Stock = history.get(i);  // This is "Day 0" for this iteration
             if (day0Stock == null) {
                 continue;
@@ -100,7 +175,7 @@ public class DayChange {
                 MetricsInfo metricsInfo = buildMetricsInfo(day0Stock, history, i);
 
                 // Log first few records to verify
-                if (i < 3) {
+                if (i < first + 3) {
                     log.debug("Ticker: {} | Index: {} | Day0 Date: {} | Day0 Price: {} | Day0 Factors: {}",
                              ticker, i, day0Stock.getHistDate(), day0Stock.getPrice(),
                              metricsInfo.getDay0Factors().size());
@@ -119,18 +194,29 @@ public class DayChange {
 
         // Save all updated records back to stockHistory collection in one bulk operation
         if (!updatedStocks.isEmpty()) {
-            // Use bulk operations for better performance - single DB call
-            BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "stockHistory");
-
-            for (Stock stock : updatedStocks) {
-                Query query = Query.query(Criteria.where("_id").is(stock.getId()));
-                Update update = new Update().set("metricsInfo", stock.getMetricsInfo());
-                bulkOps.updateOne(query, update);
-            }
-
-            bulkOps.execute();
+            // Single bulk write of the metricsInfo of every row
+            store.updateMetrics(updatedStocks);
+            historyCache.invalidateTicker("stockHistory", UtilHelper.canonicalTicker(ticker));
             log.debug("Bulk updated metrics for {} records of ticker: {}", updatedStocks.size(), ticker);
         }
+
+        // A window is final once its D10 session is older than the newest one, which a re-sync of the
+        // current session can still replace
+        int finalIndex = history.size() - 1 - (HORIZON + 1);
+        LocalDate completeThrough = finalIndex >= first ? history.get(finalIndex).getHistDate() : watermark;
+        if (!Objects.equals(completeThrough, watermark) || watermark == null) {
+            store.saveMetricsWatermark(UtilHelper.canonicalTicker(ticker), completeThrough);
+        }
+        return updatedStocks.size();
+    }
+
+    /**
+     * The oldest row loaded from the watermark on is the watermark row itself, still carrying metrics.
+     */
+    private static boolean watermarkIntact(List<Stock> history, LocalDate watermark) {
+        if (history == null || history.isEmpty()) return false;
+        Stock oldest = history.getLast();
+        return oldest != null && watermark.equals(oldest.getHistDate()) && oldest.getMetricsInfo() != null;
     }
 
     private MetricsInfo buildMetricsInfo(Stock day0Stock, List<Stock> history, int day0Index) {
@@ -250,5 +336,157 @@ public class DayChange {
         // Pattern counts
         factors.add("PATTERN-LONG=" + day0Stock.getNoOfLongPatterns());
         factors.add("PATTERN-SHORT=" + day0Stock.getNoOfShortPatterns());
+
+        // Same factors in binary form, which the analysis reads instead of parsing the strings
+        metricsInfo.setDay0Code(FactorCode.encode(day0Stock));
+    }
+
+    private static void setDay(MetricsInfo metricsInfo, int day, MetricsDay value) {
+        switch (day) {
+            case 1 -> metricsInfo.setD1(value);
+            case 2 -> metricsInfo.setD2(value);
+            case 3 -> metricsInfo.setD3(value);
+            case 4 -> metricsInfo.setD4(value);
+            case 5 -> metricsInfo.setD5(value);
+            case 6 -> metricsInfo.setD6(value);
+            case 7 -> metricsInfo.setD7(value);
+            case 8 -> metricsInfo.setD8(value);
+            case 9 -> metricsInfo.setD9(value);
+            case 10 -> metricsInfo.setD10(value);
+            default -> throw new IllegalArgumentException("No metrics day " + day);
+        }
+    }
+
+    /**
+     * The open rows of the ticker being scanned, in a ring of {@value #HORIZON} + 1 slots. Each arriving
+     * row is Day N for the up to ten rows before it; a row leaves the ring once its D10 is filled, or
+     * with whatever days it has when its ticker ends (missing days empty, as in the per-ticker path).
+     */
+    private final class ForwardWindow {
+        private final Stock[] ring = new Stock[HORIZON + 1];
+        private final BulkWriters writers;
+        private final Map<String, LocalDate> watermarks;
+        private String ticker;
+        private long seen;                  // Rows of the current ticker so far
+        private LocalDate lastComplete;     // Last row of the ticker with all ten days
+        private LocalDate previousComplete; // The one before, whose D10 is not the newest session
+        long rows;
+
+        ForwardWindow(BulkWriters writers, Map<String, LocalDate> watermarks) {
+            this.writers = writers;
+            this.watermarks = watermarks;
+        }
+
+        void add(Stock row) {
+            if (row == null || row.getTicker() == null || row.getHistDate() == null) return;
+            if (!row.getTicker().equals(ticker)) {
+                flush();
+                ticker = row.getTicker();
+            }
+            long n = seen++;
+            for (int back = 1; back <= HORIZON && back <= n; back++) {
+                Stock day0 = ring[slot(n - back)];
+                setDay(day0.getMetricsInfo(), back, computeMetricsDay(day0, row));
+            }
+            // The slot's previous row (n - 11) already left when its D10 arrived
+            MetricsInfo metricsInfo = new MetricsInfo();
+            metricsInfo.setTicker(row.getTicker());
+            metricsInfo.setDay0Factors(new ArrayList<>());
+            addDay0Factors(metricsInfo, row);
+            row.setMetricsInfo(metricsInfo);
+            ring[slot(n)] = row;
+            if (n >= HORIZON) {
+                Stock complete = ring[slot(n - HORIZON)];
+                previousComplete = lastComplete;
+                lastComplete = complete.getHistDate();
+                emit(complete);
+            }
+        }
+
+        /**
+         * Emit the current ticker's rows still open and record its watermark.
+         */
+        void flush() {
+            if (ticker == null) return;
+            for (long i = Math.max(0, seen - HORIZON); i < seen; i++) {
+                Stock open = ring[slot(i)];
+                for (int day = (int) (seen - i); day <= HORIZON; day++) {
+                    setDay(open.getMetricsInfo(), day, new MetricsDay());
+                }
+                emit(open);
+            }
+            // Same rule as the incremental path: final once D10 is older than the newest session
+            watermarks.put(UtilHelper.canonicalTicker(ticker), previousComplete);
+            Arrays.fill(ring, null);
+            ticker = null;
+            seen = 0;
+            lastComplete = null;
+            previousComplete = null;
+        }
+
+        private void emit(Stock row) {
+            rows++;
+            writers.add(row);
+        }
+
+        private int slot(long index) {
+            return (int) (index % ring.length);
+        }
+    }
+
+    /**
+     * metricsInfo bulk writes on virtual threads with at most {@code writerCount} batches in flight; the
+     * scan blocks while all are busy, so memory stays bounded however fast the cursor reads. The first
+     * failed write fails the rebuild.
+     */
+    private final class BulkWriters implements AutoCloseable {
+        private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        private final Semaphore inFlight = new Semaphore(Math.max(1, writerCount));
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final JobProgress progress;
+        private List<Stock> batch = new ArrayList<>(Math.max(1, batchSize));
+
+        BulkWriters(JobProgress progress) {
+            this.progress = progress;
+        }
+
+        void add(Stock row) {
+            batch.add(row);
+            if (batch.size() >= batchSize) submit();
+        }
+
+        private void submit() {
+            checkFailure();
+            if (batch.isEmpty()) return;
+            List<Stock> rows = batch;
+            batch = new ArrayList<>(Math.max(1, batchSize));
+            inFlight.acquireUninterruptibly();
+            executor.execute(() -> {
+                try {
+                    store.updateMetrics(rows);
+                    progress.advance(rows.size());
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+
+        private void checkFailure() {
+            Throwable e = failure.get();
+            if (e != null) throw new IllegalStateException("Metrics bulk write failed", e);
+        }
+
+        /** Write the last batch and wait for every write */
+        @Override
+        public void close() {
+            try {
+                if (failure.get() == null) submit();
+            } finally {
+                executor.close();
+            }
+            checkFailure();
+        }
     }
 }
@@ -0,0 +1,305 @@
+package org.myswan.service.internal.retention;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.myswan.service.internal.HistoryRangeCache;
+import org.myswan.service.internal.migration.StorageStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retention rules for the hot history collections, run as a throttled weekly job.
+ *
+ * <ul>
+ *   <li>{@code optionsExpired}: optionsHistory rows of contracts that expired more than N days ago
+ *       (expiry read from the YYMMDD prefix of the OCC option name)</li>
+ *   <li>{@code patternCollapse}: patternHistory events whose targetDate is more than N days past keep
+ *       only their last daily row</li>
+ *   <li>{@code stockHistoryNonTrading}: stockHistory rows dated on a weekend, written by syncs that ran
+ *       outside a session</li>
+ *   <li>{@code futuresExpired}: futuresHistory rows of contract months that expired more than N days ago</li>
+ * </ul>
+ *
+ * Deletes go out in batches of {@code retention.batch-size} keys with a pause between batches so the
+ * job never competes with the daily sync for the write path. Rows already moved to the history
+ * archive are not touched.
+ */
+@Service
+public class RetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionService.class);
+
+    public static final List<String> RULES = List.of(
+            "optionsExpired", "patternCollapse", "stockHistoryNonTrading", "futuresExpired");
+
+    private static final DateTimeFormatter OCC_DATE = DateTimeFormatter.ofPattern("yyMMdd");
+    private static final List<DateTimeFormatter> EXPIRY_FORMATS = List.of(
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("MM/dd/yyyy"),
+            DateTimeFormatter.ofPattern("MM/dd/yy"));
+
+    private final MongoTemplate mongoTemplate;
+    private final HistoryRangeCache historyCache;
+
+    private final Map<String, Map<String, Object>> lastRuns = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> totalDeleted = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    /** Enables the scheduled retention run; manual runs work either way */
+    @Value("${retention.enabled:false}")
+    private boolean enabled;
+
+    /** Keys (ids, option ids or tickers) per delete batch */
+    @Value("${retention.batch-size:1000}")
+    private int batchSize;
+
+    /** Pause between delete batches */
+    @Value("${retention.pause-ms:200}")
+    private long pauseMs;
+
+    /** Days after expiry before an option contract's history is dropped */
+    @Value("${retention.options.expired-days:30}")
+    private int optionsExpiredDays;
+
+    /** Days after targetDate before a pattern event is collapsed to its last row */
+    @Value("${retention.pattern.collapse-after-days:30}")
+    private int patternCollapseDays;
+
+    /** Remove weekend-dated stockHistory rows */
+    @Value("${retention.stock-history.drop-non-trading:true}")
+    private boolean dropNonTrading;
+
+    /** Days after expiry before a futures contract month's history is dropped */
+    @Value("${retention.futures.expired-days:90}")
+    private int futuresExpiredDays;
+
+    public RetentionService(MongoTemplate mongoTemplate, HistoryRangeCache historyCache) {
+        this.mongoTemplate = mongoTemplate;
+        this.historyCache = historyCache;
+    }
+
+    @Scheduled(cron = "${retention.cron:0 0 2 * * SAT}")
+    public void scheduledRun() {
+        if (!enabled) return;
+        log.info("=== Scheduled history retention ===");
+        runAll(false);
+    }
+
+    public synchronized List<Map<String, Object>> runAll(boolean dryRun) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String rule : RULES) {
+            results.add(runRule(rule, dryRun));
+        }
+        return results;
+    }
+
+    /**
+     * Run one rule. With dryRun the matching keys are counted but nothing is deleted.
+     */
+    public synchronized Map<String, Object> runRule(String rule, boolean dryRun) {
+        long start = System.currentTimeMillis();
+        running = true;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rule", rule);
+        result.put("dryRun", dryRun);
+        try {
+            String collection = switch (rule) {
+                case "optionsExpired" -> "optionsHistory";
+                case "patternCollapse" -> "patternHistory";
+                case "stockHistoryNonTrading" -> "stockHistory";
+                case "futuresExpired" -> "futuresHistory";
+                default -> throw new IllegalArgumentException("Unknown retention rule " + rule);
+            };
+            result.put("collection", collection);
+            result.put("before", StorageStats.of(mongoTemplate, collection));
+            Deletion deletion = switch (rule) {
+                case "optionsExpired" -> expiredOptions();
+                case "patternCollapse" -> collapsedPatterns();
+                case "stockHistoryNonTrading" -> nonTradingStockHistory();
+                default -> expiredFutures();
+            };
+            result.put("cutoff", deletion.cutoff() == null ? null : deletion.cutoff().toString());
+            result.put("matchedKeys", deletion.keys().size());
+            long deleted = dryRun ? 0 : deleteInBatches(collection, deletion.field(), deletion.keys());
+            result.put("deleted", deleted);
+            if (!dryRun) {
+                historyCache.invalidate(collection, null);
+                result.put("after", StorageStats.of(mongoTemplate, collection));
+                totalDeleted.computeIfAbsent(rule, r -> new LongAdder()).add(deleted);
+            }
+            result.put("status", "SUCCESS");
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("status", "INTERRUPTED");
+        } catch (Exception e) {
+            log.error("Retention rule {} failed", rule, e);
+            result.put("status", "FAILURE");
+            result.put("error", e.getMessage());
+        } finally {
+            running = false;
+        }
+        result.put("durationMs", System.currentTimeMillis() - start);
+        result.put("ranAt", new Date());
+        lastRuns.put(rule, result);
+        log.info("Retention rule {}{}: {} keys matched, {} rows deleted in {} ms", rule, dryRun ? " (dry run)" : "",
+                result.get("matchedKeys"), result.get("deleted"), result.get("durationMs"));
+        return result;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("running", running);
+        status.put("batchSize", batchSize);
+        status.put("pauseMs", pauseMs);
+        Map<String, Object> rules = new LinkedHashMap<>();
+        for (String rule : RULES) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            LongAdder deleted = totalDeleted.get(rule);
+            entry.put("totalDeleted", deleted == null ? 0 : deleted.sum());
+            entry.put("lastRun", lastRuns.get(rule));
+            rules.put(rule, entry);
+        }
+        status.put("rules", rules);
+        return status;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Rules
+    // ---------------------------------------------------------------------------------------------
+
+    private Deletion expiredOptions() {
+        LocalDate cutoff = LocalDate.now().minusDays(optionsExpiredDays);
+        List<Object> optionIds = new ArrayList<>();
+        for (Document contract : mongoTemplate.getCollection("optionsHistory").aggregate(List.of(
+                        Aggregates.match(Filters.exists("optionName")),
+                        Aggregates.group("$optionId", Accumulators.first("optionName", "$optionName"))))
+                .allowDiskUse(true)) {
+            LocalDate expiry = occExpiry(contract.getString("optionName"));
+            if (contract.get("_id") != null && expiry != null && expiry.isBefore(cutoff)) {
+                optionIds.add(contract.get("_id"));
+            }
+        }
+        return new Deletion("optionId", optionIds, cutoff);
+    }
+
+    private Deletion collapsedPatterns() {
+        LocalDate cutoff = LocalDate.now().minusDays(patternCollapseDays);
+        List<Object> ids = new ArrayList<>();
+        for (Document event : mongoTemplate.getCollection("patternHistory").aggregate(List.of(
+                        Aggregates.match(Filters.and(Filters.lt("targetDate", toDate(cutoff)), Filters.exists("eventId"))),
+                        Aggregates.sort(Sorts.descending("histDate")),
+                        Aggregates.group("$eventId",
+                                Accumulators.push("ids", "$_id"),
+                                Accumulators.sum("count", 1)),
+                        Aggregates.match(Filters.gt("count", 1))))
+                .allowDiskUse(true)) {
+            // The first id is the event's last daily row, which is kept
+            List<Object> eventIds = event.getList("ids", Object.class);
+            ids.addAll(eventIds.subList(1, eventIds.size()));
+        }
+        return new Deletion("_id", ids, cutoff);
+    }
+
+    private Deletion nonTradingStockHistory() {
+        List<Object> ids = new ArrayList<>();
+        if (dropNonTrading) {
+            // $dayOfWeek: 1 = Sunday, 7 = Saturday, evaluated in the zone the dates were written in
+            Document dayOfWeek = new Document("$dayOfWeek",
+                    new Document("date", "$histDate").append("timezone", ZoneId.systemDefault().getId()));
+            Document weekend = new Document("$in", List.of(dayOfWeek, List.of(1, 7)));
+            mongoTemplate.getCollection("stockHistory")
+                    .find(Filters.and(Filters.type("histDate", "date"), Filters.expr(weekend)))
+                    .projection(Projections.include("_id"))
+                    .forEach(doc -> ids.add(doc.get("_id")));
+        }
+        return new Deletion("_id", ids, null);
+    }
+
+    private Deletion expiredFutures() {
+        LocalDate cutoff = LocalDate.now().minusDays(futuresExpiredDays);
+        List<Object> tickers = new ArrayList<>();
+        for (Document contract : mongoTemplate.getCollection("futuresHistory").aggregate(List.of(
+                        Aggregates.match(Filters.exists("expiryDate")),
+                        Aggregates.sort(Sorts.ascending("histDate")),
+                        Aggregates.group("$ticker", Accumulators.last("expiryDate", "$expiryDate"))))
+                .allowDiskUse(true)) {
+            LocalDate expiry = parseExpiry(contract.getString("expiryDate"));
+            if (contract.get("_id") != null && expiry != null && expiry.isBefore(cutoff)) {
+                tickers.add(contract.get("_id"));
+            }
+        }
+        return new Deletion("ticker", tickers, cutoff);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Helpers
+    // ---------------------------------------------------------------------------------------------
+
+    private long deleteInBatches(String collection, String field, List<Object> keys) throws InterruptedException {
+        MongoCollection<Document> mongo = mongoTemplate.getCollection(collection);
+        int size = Math.max(1, batchSize);
+        long deleted = 0;
+        for (int from = 0; from < keys.size(); from += size) {
+            List<Object> batch = keys.subList(from, Math.min(keys.size(), from + size));
+            deleted += mongo.deleteMany(Filters.in(field, batch)).getDeletedCount();
+            if (pauseMs > 0 && from + size < keys.size()) {
+                Thread.sleep(pauseMs);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Expiry of an OCC option name such as "260320C00685000" (YYMMDD, right, strike).
+     */
+    static LocalDate occExpiry(String optionName) {
+        if (optionName == null || optionName.length() < 6) return null;
+        try {
+            return LocalDate.parse(optionName.substring(0, 6), OCC_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    static LocalDate parseExpiry(String value) {
+        if (value == null || value.isBlank()) return null;
+        for (DateTimeFormatter format : EXPIRY_FORMATS) {
+            try {
+                return LocalDate.parse(value.trim(), format);
+            } catch (DateTimeParseException ignored) {
+                // try the next format
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Same Date Spring Data writes for a LocalDate (start of day, system zone).
+     */
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private record Deletion(String field, List<Object> keys, LocalDate cutoff) {
+    }
+}
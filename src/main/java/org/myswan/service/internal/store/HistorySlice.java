@@ -0,0 +1,15 @@
+package org.myswan.service.internal.store;
+
+import org.myswan.model.collection.Stock;
+
+import java.util.function.Consumer;
+
+/**
+ * One part of a history scan split by {@link MarketDataStore#metricsSlices}. Slices of the same split
+ * never share a row, so they can be streamed on separate threads.
+ */
+@FunctionalInterface
+public interface HistorySlice {
+
+    void forEach(Consumer<Stock> action);
+}
@@ -0,0 +1,437 @@
+package org.myswan.service.internal.store;
+
+import org.myswan.model.collection.Options;
+import org.myswan.model.collection.Pattern;
+import org.myswan.model.collection.Picks;
+import org.myswan.model.collection.Rating;
+import org.myswan.model.collection.Stock;
+import org.myswan.service.internal.StockSnapshotService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * {@link MarketDataStore} held entirely on the heap, selected with the {@code inmemory} profile.
+ *
+ * History is indexed twice, by date then ticker and by ticker then date, so session reads, ticker
+ * range reads and ticker-group range reads are all sub-map views rather than scans. Both indexes
+ * point at the same row objects, so a million history rows cost the rows plus two map entries each.
+ * History rows handed out are the stored rows; callers change them only through {@link #updateMetrics}.
+ * Current stocks are copied on read since callers modify and write them back.
+ */
+@Service
+@Profile("inmemory")
+public class InMemoryMarketDataStore implements MarketDataStore {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryMarketDataStore.class);
+
+    private final Map<String, Stock> stocks = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<LocalDate, ConcurrentSkipListMap<String, Stock>> historyByDate = new ConcurrentSkipListMap<>();
+    private final Map<String, ConcurrentSkipListMap<LocalDate, Stock>> historyByTicker = new ConcurrentHashMap<>();
+    private final Map<String, Pattern> patterns = new ConcurrentHashMap<>();
+    private final Map<String, Options> options = new ConcurrentHashMap<>();
+    private final Map<String, Picks> picks = new ConcurrentHashMap<>();
+    private final Map<String, LocalDate> watermarks = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    // ========== Stocks ==========
+
+    @Override
+    public List<Stock> loadStocks() {
+        List<Stock> copies = new ArrayList<>(stocks.size());
+        stocks.values().forEach(stock -> copies.add(StockSnapshotService.copyOf(stock)));
+        return copies;
+    }
+
+    @Override
+    public void replaceStocks(List<Stock> rows) {
+        for (Stock stock : rows) {
+            if (stock.getTicker() == null) continue;
+            if (stock.getId() == null) stock.setId(nextId());
+            stocks.put(stock.getTicker(), stock);
+        }
+    }
+
+    // ========== Stock history ==========
+
+    @Override
+    public List<Stock> history(String ticker, LocalDate from, LocalDate to) {
+        ConcurrentSkipListMap<LocalDate, Stock> rows = historyByTicker.get(ticker);
+        if (rows == null) return new ArrayList<>();
+        return new ArrayList<>(range(rows, from, to).descendingMap().values());
+    }
+
+    @Override
+    public List<Stock> historyOn(LocalDate histDate) {
+        ConcurrentSkipListMap<String, Stock> rows = historyByDate.get(histDate);
+        return rows == null ? new ArrayList<>() : new ArrayList<>(rows.values());
+    }
+
+    @Override
+    public List<Stock> historyBetween(Collection<String> tickers, LocalDate from, LocalDate to) {
+        List<Stock> result = new ArrayList<>();
+        if (tickers == null) {
+            range(historyByDate, from, to).values().forEach(rows -> result.addAll(rows.values()));
+            return result;
+        }
+        for (String ticker : new TreeSet<>(tickers)) {
+            ConcurrentSkipListMap<LocalDate, Stock> rows = historyByTicker.get(ticker);
+            if (rows != null) result.addAll(range(rows, from, to).values());
+        }
+        return result;
+    }
+
+    @Override
+    public void forEachHistorySorted(Collection<String> tickers, LocalDate from, LocalDate to, Consumer<Stock> action) {
+        for (String ticker : new TreeSet<>(tickers != null ? tickers : historyByTicker.keySet())) {
+            ConcurrentSkipListMap<LocalDate, Stock> rows = historyByTicker.get(ticker);
+            if (rows != null) range(rows, from, to).values().forEach(action);
+        }
+    }
+
+    @Override
+    public List<YearMonth> historyMonths() {
+        return historyByDate.keySet().stream().map(YearMonth::from).distinct().toList();
+    }
+
+    @Override
+    public List<LocalDate> recentSessions(int count) {
+        List<LocalDate> sessions = new ArrayList<>(historyByDate.keySet());
+        return new ArrayList<>(sessions.subList(Math.max(0, sessions.size() - count), sessions.size()));
+    }
+
+    @Override
+    public List<Stock> historyWithMetrics(String ticker) {
+        List<Stock> result = new ArrayList<>();
+        Collection<ConcurrentSkipListMap<LocalDate, Stock>> source = ticker == null
+                ? historyByTicker.values()
+                : Optional.ofNullable(historyByTicker.get(ticker)).map(List::of).orElse(List.of());
+        for (ConcurrentSkipListMap<LocalDate, Stock> rows : source) {
+            for (Stock stock : rows.values()) {
+                if (stock.getMetricsInfo() != null) result.add(stock);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void forEachWithMetrics(String ticker, Consumer<Stock> action) {
+        Collection<ConcurrentSkipListMap<LocalDate, Stock>> source = ticker == null
+                ? historyByTicker.values()
+                : Optional.ofNullable(historyByTicker.get(ticker)).map(List::of).orElse(List.of());
+        for (ConcurrentSkipListMap<LocalDate, Stock> rows : source) {
+            for (Stock stock : rows.values()) {
+                if (stock.getMetricsInfo() != null) action.accept(stock);
+            }
+        }
+    }
+
+    @Override
+    public List<HistorySlice> metricsSlices(int groups) {
+        List<List<String>> byGroup = new ArrayList<>();
+        for (int i = 0; i < groups; i++) {
+            byGroup.add(new ArrayList<>());
+        }
+        for (String ticker : new TreeSet<>(historyByTicker.keySet())) {
+            byGroup.get(Math.floorMod(ticker.hashCode(), groups)).add(ticker);
+        }
+        List<HistorySlice> slices = new ArrayList<>();
+        for (List<String> group : byGroup) {
+            if (group.isEmpty()) continue;
+            slices.add(action -> group.forEach(ticker -> forEachWithMetrics(ticker, action)));
+        }
+        return slices;
+    }
+
+    @Override
+    public void forEachHistoryByTicker(Consumer<Stock> action) {
+        for (String ticker : new TreeSet<>(historyByTicker.keySet())) {
+            ConcurrentSkipListMap<LocalDate, Stock> rows = historyByTicker.get(ticker);
+            if (rows != null) rows.values().forEach(action);
+        }
+    }
+
+    @Override
+    public long liveHistoryCount() {
+        return historyByTicker.values().stream().mapToLong(Map::size).sum();
+    }
+
+    @Override
+    public void replaceHistory(LocalDate histDate, List<Stock> rows) {
+        deleteHistory(histDate);
+        rows.forEach(this::putHistory);
+    }
+
+    @Override
+    public void deleteHistory(LocalDate histDate) {
+        ConcurrentSkipListMap<String, Stock> removed = historyByDate.remove(histDate);
+        if (removed == null) return;
+        for (String ticker : removed.keySet()) {
+            ConcurrentSkipListMap<LocalDate, Stock> rows = historyByTicker.get(ticker);
+            if (rows != null) rows.remove(histDate);
+        }
+    }
+
+    @Override
+    public void deleteHistory(String ticker, LocalDate histDate) {
+        ConcurrentSkipListMap<LocalDate, Stock> rows = historyByTicker.get(ticker);
+        if (rows == null) return;
+        Collection<LocalDate> dates = histDate == null ? List.copyOf(rows.keySet()) : List.of(histDate);
+        for (LocalDate date : dates) {
+            rows.remove(date);
+            ConcurrentSkipListMap<String, Stock> session = historyByDate.get(date);
+            if (session != null) session.remove(ticker);
+        }
+        if (histDate == null) {
+            historyByTicker.remove(ticker);
+            watermarks.remove(ticker);
+        }
+    }
+
+    @Override
+    public void updateMetrics(List<Stock> rows) {
+        for (Stock row : rows) {
+            ConcurrentSkipListMap<LocalDate, Stock> byDate = historyByTicker.get(row.getTicker());
+            Stock stored = byDate == null || row.getHistDate() == null ? null : byDate.get(row.getHistDate());
+            if (stored != null) stored.setMetricsInfo(row.getMetricsInfo());
+        }
+    }
+
+    @Override
+    public Map<String, LocalDate> metricsWatermarks() {
+        return new HashMap<>(watermarks);
+    }
+
+    @Override
+    public void saveMetricsWatermark(String ticker, LocalDate completeThrough) {
+        if (completeThrough == null) {
+            watermarks.remove(ticker);
+        } else {
+            watermarks.put(ticker, completeThrough);
+        }
+    }
+
+    // ========== Patterns, options, picks ==========
+
+    @Override
+    public List<Pattern> patterns() {
+        return new ArrayList<>(patterns.values());
+    }
+
+    @Override
+    public List<Pattern> patterns(String ticker) {
+        return patterns.values().stream()
+                .filter(p -> ticker.equals(p.getTicker()))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public long replacePatterns(List<Pattern> rows) {
+        Map<String, Pattern> next = new HashMap<>();
+        for (Pattern pattern : rows) {
+            if (pattern.getId() == null) pattern.setId(nextId());
+            next.putIfAbsent(pattern.getId(), pattern);
+        }
+        long removed = patterns.keySet().stream().filter(id -> !next.containsKey(id)).count();
+        patterns.keySet().retainAll(next.keySet());
+        patterns.putAll(next);
+        return removed;
+    }
+
+    @Override
+    public List<Options> options() {
+        return new ArrayList<>(options.values());
+    }
+
+    @Override
+    public List<Options> options(String ticker) {
+        return options.values().stream()
+                .filter(o -> ticker.equals(o.getTicker()))
+                .sorted(Comparator.comparing(Options::getHistDate, Comparator.nullsLast(Comparator.reverseOrder())))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public List<Picks> picks() {
+        return new ArrayList<>(picks.values());
+    }
+
+    @Override
+    public List<Picks> picks(String ticker) {
+        return picks.values().stream()
+                .filter(p -> ticker.equals(p.getTicker()))
+                .sorted(Comparator.comparing(Picks::getAddedDate, Comparator.nullsLast(Comparator.reverseOrder())))
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "inmemory");
+        stats.put("stock", stocks.size());
+        stats.put("stockHistory", historyByTicker.values().stream().mapToLong(Map::size).sum());
+        stats.put("historyTickers", historyByTicker.size());
+        stats.put("historySessions", historyByDate.size());
+        stats.put("firstSession", historyByDate.isEmpty() ? null : historyByDate.firstKey().toString());
+        stats.put("lastSession", historyByDate.isEmpty() ? null : historyByDate.lastKey().toString());
+        stats.put("pattern", patterns.size());
+        stats.put("options", options.size());
+        stats.put("picks", picks.size());
+        return stats;
+    }
+
+    /**
+     * Replace the contents with a deterministic random walk: {@code tickers} tickers over the last
+     * {@code days} weekday sessions, the last session also becoming the current stock set. Every
+     * tenth ticker gets a call and a put and every twentieth an open pick, both added mid-range.
+     */
+    public Map<String, Object> seed(int tickers, int days, long seed) {
+        long start = System.currentTimeMillis();
+        clear();
+        List<LocalDate> sessions = new ArrayList<>(days);
+        for (LocalDate date = LocalDate.now(); sessions.size() < days; date = date.minusDays(1)) {
+            if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+                sessions.add(date);
+            }
+        }
+        Collections.reverse(sessions);
+
+        Random random = new Random(seed);
+        for (int t = 0; t < tickers; t++) {
+            String ticker = String.format("T%05d", t);
+            double price = 5 + random.nextDouble() * 195;
+            double volume = 100_000 + random.nextDouble() * 5_000_000;
+            Stock last = null;
+            for (LocalDate date : sessions) {
+                double previous = price;
+                price = Math.max(0.5, price * (1 + random.nextGaussian() * 0.025));
+                Stock row = syntheticRow(ticker, date, previous, price, volume * (0.5 + random.nextDouble()), random);
+                putHistory(row);
+                last = row;
+            }
+            if (last != null) {
+                Stock current = StockSnapshotService.copyOf(last);
+                current.setId(null);
+                current.setMetricsInfo(null);
+                replaceStocks(List.of(current));
+                // Options and picks have no write path through the port, so the seed is their only source
+                Stock added = historyByTicker.get(ticker).get(sessions.get(sessions.size() / 2));
+                if (t % 10 == 0) seedOptions(added, last, random);
+                if (t % 20 == 0) seedPick(added, last);
+            }
+        }
+        Map<String, Object> report = stats();
+        report.put("seedMillis", System.currentTimeMillis() - start);
+        log.info("Seeded in-memory store with {} tickers x {} sessions in {} ms", tickers, days, report.get("seedMillis"));
+        return report;
+    }
+
+    public void clear() {
+        stocks.clear();
+        historyByDate.clear();
+        historyByTicker.clear();
+        patterns.clear();
+        options.clear();
+        picks.clear();
+        watermarks.clear();
+    }
+
+    private void putHistory(Stock row) {
+        if (row.getTicker() == null || row.getHistDate() == null) return;
+        if (row.getId() == null) row.setId(nextId());
+        historyByDate.computeIfAbsent(row.getHistDate(), d -> new ConcurrentSkipListMap<>()).put(row.getTicker(), row);
+        historyByTicker.computeIfAbsent(row.getTicker(), t -> new ConcurrentSkipListMap<>()).put(row.getHistDate(), row);
+    }
+
+    private static Stock syntheticRow(String ticker, LocalDate date, double previous, double price, double volume,
+                                      Random random) {
+        Stock row = new Stock();
+        row.setTicker(ticker);
+        row.setType("STOCK");
+        row.setHistDate(date);
+        row.setRating(new Rating());
+        row.setOpen(round(previous * (1 + random.nextGaussian() * 0.005)));
+        row.setPrice(round(price));
+        row.setHigh(round(Math.max(price, row.getOpen()) * (1 + random.nextDouble() * 0.02)));
+        row.setLow(round(Math.min(price, row.getOpen()) * (1 - random.nextDouble() * 0.02)));
+        row.setChange(round(price - previous));
+        row.setVolume(Math.round(volume));
+        row.setRsi14(round(30 + random.nextDouble() * 40));
+        return row;
+    }
+
+    /** A call and a put bought at the added session, priced as of the last */
+    private void seedOptions(Stock added, Stock last, Random random) {
+        for (String type : List.of("CALL", "PUT")) {
+            double strike = Math.round(added.getPrice());
+            double priceOnAdd = round(Math.max(0.05, added.getPrice() * 0.04));
+            double move = (last.getPrice() - added.getPrice()) * (type.equals("CALL") ? 0.5 : -0.5);
+            double price = round(Math.max(0.01, priceOnAdd + move));
+            Options option = new Options();
+            option.setId(nextId());
+            option.setTicker(added.getTicker());
+            option.setHistDate(added.getHistDate());
+            option.setOptionId(added.getTicker() + "-" + type + "-" + strike);
+            option.setOptionName(added.getTicker() + " " + strike + " " + type);
+            option.setType(type);
+            option.setPriceOnAdd(priceOnAdd);
+            option.setStockPriceOnAdd(added.getPrice());
+            option.setStockPriceCurrent(last.getPrice());
+            option.setUnderlyingChange(last.getChange());
+            option.setPrice(price);
+            option.setChangeSinceAdded(round((price - priceOnAdd) / priceOnAdd * 100));
+            option.setVolume(random.nextInt(5_000));
+            option.setOpenInterest(random.nextInt(20_000));
+            option.setIv(round(0.2 + random.nextDouble() * 0.6));
+            options.put(option.getId(), option);
+        }
+    }
+
+    /** An open pick added at the added session with a 10% target and a 5% stop */
+    private void seedPick(Stock added, Stock last) {
+        Picks pick = new Picks();
+        pick.setId(nextId());
+        pick.setTicker(added.getTicker());
+        pick.setReason("seed");
+        pick.setAddedDate(added.getHistDate());
+        pick.setAddedPrice(added.getPrice());
+        pick.setEntry(added.getPrice());
+        pick.setTarget(round(added.getPrice() * 1.10));
+        pick.setStopLoss(round(added.getPrice() * 0.95));
+        pick.setStatus("OPEN");
+        pick.setMax(Math.max(added.getPrice(), last.getPrice()));
+        pick.setMin(Math.min(added.getPrice(), last.getPrice()));
+        picks.put(pick.getId(), pick);
+    }
+
+    /**
+     * Inclusive date-range view of a date-keyed map; null bounds are open.
+     */
+    private static <V> ConcurrentNavigableMap<LocalDate, V> range(ConcurrentNavigableMap<LocalDate, V> map,
+                                                                  LocalDate from, LocalDate to) {
+        if (from != null && to != null) return from.isAfter(to) ? new ConcurrentSkipListMap<>() : map.subMap(from, true, to, true);
+        if (from != null) return map.tailMap(from, true);
+        if (to != null) return map.headMap(to, true);
+        return map;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private String nextId() {
+        return "mem-" + ids.incrementAndGet();
+    }
+}
@@ -0,0 +1,131 @@
+package org.myswan.service.internal.store;
+
+import org.myswan.model.collection.Options;
+import org.myswan.model.collection.Pattern;
+import org.myswan.model.collection.Picks;
+import org.myswan.model.collection.Stock;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Storage port for the market data the compute and analytics paths read and write: the current
+ * stock set, stock history, and the current pattern, options and picks sets.
+ *
+ * {@link MongoMarketDataStore} is the default; {@link InMemoryMarketDataStore} replaces it under the
+ * {@code inmemory} profile so compute and analytics can run and be measured without a database.
+ * History reads include archived rows where the implementation has an archive tier.
+ */
+public interface MarketDataStore {
+
+    // ========== Stocks ==========
+
+    /** Every document of the current stock set */
+    List<Stock> loadStocks();
+
+    /** Replace the current stocks of the given tickers (stocks of other tickers are kept) */
+    void replaceStocks(List<Stock> stocks);
+
+    // ========== Stock history ==========
+
+    /** History of one ticker, newest first; null bounds are open */
+    List<Stock> history(String ticker, LocalDate from, LocalDate to);
+
+    /** Every ticker's row for one session, by ticker */
+    List<Stock> historyOn(LocalDate histDate);
+
+    /**
+     * Rows between two dates (inclusive), by ticker then date, or by date alone when tickers is null.
+     */
+    List<Stock> historyBetween(Collection<String> tickers, LocalDate from, LocalDate to);
+
+    /**
+     * Stream the rows between two dates (inclusive), archived ones included, sorted by ticker then
+     * histDate, for the given tickers or all when tickers is null. Memory does not grow with the range:
+     * the live cursor and the archive parts are merged row by row.
+     */
+    void forEachHistorySorted(Collection<String> tickers, LocalDate from, LocalDate to, Consumer<Stock> action);
+
+    /** Months that have history rows, archived ones included, oldest first */
+    List<YearMonth> historyMonths();
+
+    /** The newest {@code count} live session dates, oldest first */
+    List<LocalDate> recentSessions(int count);
+
+    /** Rows that carry metricsInfo, for one ticker or for all when ticker is null */
+    List<Stock> historyWithMetrics(String ticker);
+
+    /**
+     * Stream the rows that carry metricsInfo through a cursor, one at a time, for one ticker or for all
+     * when ticker is null. Only ticker, histDate and metricsInfo are guaranteed to be populated.
+     */
+    void forEachWithMetrics(String ticker, Consumer<Stock> action);
+
+    /**
+     * Split the rows carrying metricsInfo into slices that together visit each row exactly once, for
+     * scanning in parallel: live history into {@code groups} slices by ticker hash, archived history one
+     * slice per month. The split depends only on the data and {@code groups}, never on thread count.
+     */
+    List<HistorySlice> metricsSlices(int groups);
+
+    /**
+     * Stream the live history rows through one cursor sorted by ticker then histDate, without their
+     * metricsInfo, for a full metrics rebuild. Archived rows are left out: their metrics are never
+     * rewritten, and the D1-D10 sessions of a live row are live too.
+     */
+    void forEachHistoryByTicker(Consumer<Stock> action);
+
+    /** Live history rows, possibly estimated; the total of a {@link #forEachHistoryByTicker} scan for progress */
+    long liveHistoryCount();
+
+    /** Replace one session: delete the rows of that date and append the given rows */
+    void replaceHistory(LocalDate histDate, List<Stock> rows);
+
+    void deleteHistory(LocalDate histDate);
+
+    /** Delete the rows of one ticker, for one date or all dates when histDate is null */
+    void deleteHistory(String ticker, LocalDate histDate);
+
+    /** Write back the metricsInfo of history rows, matched by id */
+    void updateMetrics(List<Stock> rows);
+
+    /**
+     * Per ticker, the last Day 0 session whose D1-D10 metrics are complete and final (the DayChange
+     * watermark); rows after it are the only ones an incremental run recomputes.
+     */
+    Map<String, LocalDate> metricsWatermarks();
+
+    /** Set the watermark of one ticker, or drop it when completeThrough is null */
+    void saveMetricsWatermark(String ticker, LocalDate completeThrough);
+
+    // ========== Patterns, options, picks ==========
+    // Options and picks are read-only here: their services write them through their own repositories,
+    // so under the inmemory profile they hold what InMemoryMarketDataStore#seed generated.
+
+    List<Pattern> patterns();
+
+    List<Pattern> patterns(String ticker);
+
+    /**
+     * Replace the current pattern set keyed by id; patterns not in the list are removed.
+     * @return number of patterns removed
+     */
+    long replacePatterns(List<Pattern> patterns);
+
+    List<Options> options();
+
+    /** Options of one ticker, newest first */
+    List<Options> options(String ticker);
+
+    List<Picks> picks();
+
+    /** Picks of one ticker, most recently added first */
+    List<Picks> picks(String ticker);
+
+    /** Implementation name and row counts */
+    Map<String, Object> stats();
+}
@@ -0,0 +1,393 @@
+package org.myswan.service.internal.store;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.myswan.model.collection.Options;
+import org.myswan.model.collection.Pattern;
+import org.myswan.model.collection.Picks;
+import org.myswan.model.collection.Stock;
+import org.myswan.service.internal.archive.ArchiveQuery;
+import org.myswan.service.internal.archive.ColumnarFile;
+import org.myswan.service.internal.archive.HistoryArchiveService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * {@link MarketDataStore} backed by MongoDB, with stockHistory reads merged with the history archive
+ * and joined to the {@link RatingDimension} for rows stored without their ratings.
+ */
+@Service
+@Profile("!inmemory")
+public class MongoMarketDataStore implements MarketDataStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoMarketDataStore.class);
+
+    private static final String HISTORY = "stockHistory";
+    private static final String WATERMARKS = "metricsWatermark";
+
+    private final MongoTemplate mongoTemplate;
+    private final HistoryArchiveService historyArchive;
+    private final RatingDimension ratings;
+
+    public MongoMarketDataStore(MongoTemplate mongoTemplate, HistoryArchiveService historyArchive,
+                                RatingDimension ratings) {
+        this.mongoTemplate = mongoTemplate;
+        this.historyArchive = historyArchive;
+        this.ratings = ratings;
+    }
+
+    @Override
+    public List<Stock> loadStocks() {
+        return mongoTemplate.findAll(Stock.class, "stock");
+    }
+
+    @Override
+    public void replaceStocks(List<Stock> stocks) {
+        List<String> tickers = stocks.stream()
+                .map(Stock::getTicker)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (!tickers.isEmpty()) {
+            long deletedCount = mongoTemplate.remove(Query.query(Criteria.where("ticker").in(tickers)), Stock.class)
+                    .getDeletedCount();
+            log.info("Deleted {} existing stocks records", deletedCount);
+        }
+        mongoTemplate.insert(stocks, Stock.class);
+        log.info("Inserted {} new stocks records", stocks.size());
+    }
+
+    @Override
+    public List<Stock> history(String ticker, LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where("ticker").is(ticker);
+        if (from != null && to != null) {
+            criteria.and("histDate").gte(from).lte(to);
+        } else if (from != null) {
+            criteria.and("histDate").gte(from);
+        } else if (to != null) {
+            criteria.and("histDate").lte(to);
+        }
+        Query query = Query.query(criteria).with(Sort.by(Sort.Direction.DESC, "histDate"));
+        List<Stock> history = mongoTemplate.find(query, Stock.class, HISTORY);
+        return ratings.fill(withArchived(history, ArchiveQuery.of(HISTORY).ticker(ticker).from(from).to(to),
+                Comparator.comparing(Stock::getHistDate).reversed()));
+    }
+
+    @Override
+    public List<Stock> historyOn(LocalDate histDate) {
+        Query query = Query.query(Criteria.where("histDate").is(histDate)).with(Sort.by(Sort.Direction.ASC, "ticker"));
+        List<Stock> history = mongoTemplate.find(query, Stock.class, HISTORY);
+        if (!history.isEmpty()) return ratings.fill(history);
+        // Sessions are archived a whole month at a time, so a date is either hot or cold
+        return ratings.fill(withArchived(history, ArchiveQuery.of(HISTORY).on(histDate), Comparator.comparing(Stock::getTicker)));
+    }
+
+    @Override
+    public List<Stock> historyBetween(Collection<String> tickers, LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where("histDate").gte(from).lte(to);
+        ArchiveQuery archived = ArchiveQuery.of(HISTORY).from(from).to(to);
+        Sort sort = Sort.by(Sort.Direction.ASC, "histDate");
+        Comparator<Stock> order = Comparator.comparing(Stock::getHistDate);
+        if (tickers != null) {
+            criteria = Criteria.where("ticker").in(tickers).and("histDate").gte(from).lte(to);
+            archived = archived.tickers(List.copyOf(tickers));
+            sort = Sort.by(Sort.Direction.ASC, "ticker", "histDate");
+            order = Comparator.comparing(Stock::getTicker).thenComparing(Stock::getHistDate);
+        }
+        List<Stock> history = mongoTemplate.find(Query.query(criteria).with(sort), Stock.class, HISTORY);
+        return ratings.fill(withArchived(history, archived, order));
+    }
+
+    @Override
+    public void forEachHistorySorted(Collection<String> tickers, LocalDate from, LocalDate to, Consumer<Stock> action) {
+        Criteria criteria = Criteria.where("histDate").gte(from).lte(to);
+        ArchiveQuery archived = ArchiveQuery.of(HISTORY).from(from).to(to);
+        if (tickers != null) {
+            criteria = Criteria.where("ticker").in(tickers).and("histDate").gte(from).lte(to);
+            archived = archived.tickers(List.copyOf(tickers));
+        }
+        Query query = Query.query(criteria).with(Sort.by(Sort.Direction.ASC, "ticker", "histDate"));
+        List<HistoryArchiveService.PartCursor<Stock>> parts = historyArchive.sortedCursors(archived, Stock.class);
+        try (Stream<Stock> live = mongoTemplate.stream(query, Stock.class, HISTORY)) {
+            List<Iterator<Stock>> sources = new ArrayList<>(parts);
+            sources.add(live.iterator());
+            mergeSorted(sources, row -> {
+                ratings.fill(row, row.getHistDate());
+                action.accept(row);
+            });
+        } finally {
+            parts.forEach(HistoryArchiveService.PartCursor::close);
+        }
+    }
+
+    @Override
+    public List<YearMonth> historyMonths() {
+        SortedSet<YearMonth> months = new TreeSet<>(historyArchive.months(HISTORY));
+        for (LocalDate session : sessions()) {
+            months.add(YearMonth.from(session));
+        }
+        return new ArrayList<>(months);
+    }
+
+    @Override
+    public List<LocalDate> recentSessions(int count) {
+        List<LocalDate> sessions = new ArrayList<>(sessions());
+        return new ArrayList<>(sessions.subList(Math.max(0, sessions.size() - count), sessions.size()));
+    }
+
+    @Override
+    public List<Stock> historyWithMetrics(String ticker) {
+        Query query = new Query();
+        ArchiveQuery archived = ArchiveQuery.of(HISTORY);
+        if (ticker != null) {
+            query.addCriteria(Criteria.where("ticker").is(ticker));
+            archived = archived.ticker(ticker);
+        }
+        query.addCriteria(Criteria.where("metricsInfo").exists(true));
+        List<Stock> history = mongoTemplate.find(query, Stock.class, HISTORY);
+        history.addAll(historyArchive.find(archived.exists("metricsInfo"), Stock.class));
+        return ratings.fill(history);
+    }
+
+    @Override
+    public void forEachWithMetrics(String ticker, Consumer<Stock> action) {
+        Query query = new Query();
+        ArchiveQuery archived = ArchiveQuery.of(HISTORY);
+        if (ticker != null) {
+            query.addCriteria(Criteria.where("ticker").is(ticker));
+            archived = archived.ticker(ticker);
+        }
+        streamMetrics(query, action);
+        historyArchive.forEach(archived.exists("metricsInfo"), Stock.class, action);
+    }
+
+    @Override
+    public List<HistorySlice> metricsSlices(int groups) {
+        List<List<String>> byGroup = new ArrayList<>();
+        for (int i = 0; i < groups; i++) {
+            byGroup.add(new ArrayList<>());
+        }
+        List<String> tickers = mongoTemplate.findDistinct(new Query(), "ticker", HISTORY, String.class);
+        for (String ticker : new TreeSet<>(tickers)) {
+            byGroup.get(Math.floorMod(ticker.hashCode(), groups)).add(ticker);
+        }
+
+        List<HistorySlice> slices = new ArrayList<>();
+        for (List<String> group : byGroup) {
+            if (group.isEmpty()) continue;
+            slices.add(action -> streamMetrics(Query.query(Criteria.where("ticker").in(group)), action));
+        }
+        for (YearMonth month : historyArchive.months(HISTORY)) {
+            ArchiveQuery archived = ArchiveQuery.of(HISTORY).from(month.atDay(1)).to(month.atEndOfMonth()).exists("metricsInfo");
+            slices.add(action -> historyArchive.forEach(archived, Stock.class, action));
+        }
+        return slices;
+    }
+
+    private void streamMetrics(Query query, Consumer<Stock> action) {
+        query.addCriteria(Criteria.where("metricsInfo").exists(true));
+        // The analysis reads nothing else, and metricsInfo is most of the row anyway
+        query.fields().include("ticker", "histDate", "metricsInfo");
+        try (Stream<Stock> rows = mongoTemplate.stream(query, Stock.class, HISTORY)) {
+            rows.forEach(action);
+        }
+    }
+
+    @Override
+    public void forEachHistoryByTicker(Consumer<Stock> action) {
+        // Walks the unique (ticker, histDate) index; the metrics being rebuilt are not read
+        Query query = new Query().with(Sort.by("ticker", "histDate"));
+        query.fields().exclude("metricsInfo");
+        try (Stream<Stock> rows = mongoTemplate.stream(query, Stock.class, HISTORY)) {
+            rows.forEach(action);
+        }
+    }
+
+    @Override
+    public long liveHistoryCount() {
+        return mongoTemplate.getCollection(HISTORY).estimatedDocumentCount();
+    }
+
+    @Override
+    public void replaceHistory(LocalDate histDate, List<Stock> rows) {
+        deleteHistory(histDate);
+        if (ratings.isEnabled()) {
+            // Only rating changes reach the dimension; the stored rows go out without the slow fields
+            ratings.record(rows);
+            rows.forEach(row -> ratings.detach(row, row.getHistDate()));
+        }
+        mongoTemplate.insert(rows, HISTORY);
+    }
+
+    @Override
+    public void deleteHistory(LocalDate histDate) {
+        mongoTemplate.remove(Query.query(Criteria.where("histDate").is(histDate)), HISTORY);
+    }
+
+    @Override
+    public void deleteHistory(String ticker, LocalDate histDate) {
+        Criteria criteria = Criteria.where("ticker").is(ticker);
+        if (histDate != null) {
+            criteria.and("histDate").is(histDate);
+        }
+        mongoTemplate.remove(Query.query(criteria), HISTORY);
+        if (histDate == null) {
+            historyArchive.deleteTickers(HISTORY, List.of(ticker));
+            saveMetricsWatermark(ticker, null);
+        }
+    }
+
+    @Override
+    public void updateMetrics(List<Stock> rows) {
+        if (rows.isEmpty()) return;
+        BulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, HISTORY);
+        for (Stock stock : rows) {
+            bulkOps.updateOne(Query.query(Criteria.where("_id").is(stock.getId())),
+                    new Update().set("metricsInfo", stock.getMetricsInfo()));
+        }
+        bulkOps.execute();
+    }
+
+    @Override
+    public Map<String, LocalDate> metricsWatermarks() {
+        Map<String, LocalDate> watermarks = new HashMap<>();
+        for (Document doc : mongoTemplate.getCollection(WATERMARKS).find()) {
+            String completeThrough = doc.getString("completeThrough");
+            if (completeThrough != null) watermarks.put(doc.getString("_id"), LocalDate.parse(completeThrough));
+        }
+        return watermarks;
+    }
+
+    @Override
+    public void saveMetricsWatermark(String ticker, LocalDate completeThrough) {
+        Query query = Query.query(Criteria.where("_id").is(ticker));
+        if (completeThrough == null) {
+            mongoTemplate.remove(query, WATERMARKS);
+            return;
+        }
+        // ISO date strings: compared and parsed as dates only, free of any time zone
+        mongoTemplate.upsert(query, new Update()
+                .set("completeThrough", completeThrough.toString())
+                .set("updatedAt", new Date()), WATERMARKS);
+    }
+
+    @Override
+    public List<Pattern> patterns() {
+        return mongoTemplate.findAll(Pattern.class);
+    }
+
+    @Override
+    public List<Pattern> patterns(String ticker) {
+        return mongoTemplate.find(Query.query(Criteria.where("ticker").is(ticker)), Pattern.class);
+    }
+
+    @Override
+    public long replacePatterns(List<Pattern> patterns) {
+        Set<String> ids = new HashSet<>();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Pattern.class);
+        int operations = 0;
+        for (Pattern pattern : patterns) {
+            // Patterns without an eventId get a fresh id, so they count as active and survive the removal below
+            if (pattern.getId() == null) pattern.setId(new ObjectId().toHexString());
+            if (!ids.add(pattern.getId())) continue;
+            bulk.replaceOne(Query.query(Criteria.where("_id").is(pattern.getId())), pattern,
+                    FindAndReplaceOptions.options().upsert());
+            operations++;
+        }
+        if (operations > 0) {
+            bulk.execute();
+        }
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").nin(ids)), Pattern.class).getDeletedCount();
+    }
+
+    @Override
+    public List<Options> options() {
+        return mongoTemplate.findAll(Options.class);
+    }
+
+    @Override
+    public List<Options> options(String ticker) {
+        Query query = Query.query(Criteria.where("ticker").is(ticker)).with(Sort.by(Sort.Direction.DESC, "histDate"));
+        return mongoTemplate.find(query, Options.class);
+    }
+
+    @Override
+    public List<Picks> picks() {
+        return mongoTemplate.findAll(Picks.class);
+    }
+
+    @Override
+    public List<Picks> picks(String ticker) {
+        Query query = Query.query(Criteria.where("ticker").is(ticker)).with(Sort.by(Sort.Direction.DESC, "addedDate"));
+        return mongoTemplate.find(query, Picks.class);
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("store", "mongo");
+        for (String collection : List.of("stock", HISTORY, "pattern", "options", "picks")) {
+            stats.put(collection, mongoTemplate.getCollection(collection).estimatedDocumentCount());
+        }
+        stats.put("ratingDimension", ratings.stats());
+        return stats;
+    }
+
+    /**
+     * K-way merge of sources each sorted by ticker then histDate, holding one row per source.
+     */
+    private static void mergeSorted(List<Iterator<Stock>> sources, Consumer<Stock> action) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparing((Head head) -> head.row().getTicker(),
+                        Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                .thenComparing(head -> head.row().getHistDate(), Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder())));
+        for (Iterator<Stock> source : sources) {
+            if (source.hasNext()) heads.add(new Head(source.next(), source));
+        }
+        while (!heads.isEmpty()) {
+            Head head = heads.poll();
+            action.accept(head.row());
+            if (head.source().hasNext()) heads.add(new Head(head.source().next(), head.source()));
+        }
+    }
+
+    private record Head(Stock row, Iterator<Stock> source) {
+    }
+
+    /**
+     * Append the archived rows matching the query to the hot rows and restore the requested order.
+     */
+    private List<Stock> withArchived(List<Stock> hot, ArchiveQuery query, Comparator<Stock> order) {
+        List<Stock> cold = historyArchive.find(query, Stock.class);
+        if (cold.isEmpty()) return hot;
+        List<Stock> merged = new ArrayList<>(hot.size() + cold.size());
+        merged.addAll(hot);
+        merged.addAll(cold);
+        merged.sort(order);
+        return merged;
+    }
+
+    /** Distinct live session dates, from the histDate index */
+    private SortedSet<LocalDate> sessions() {
+        SortedSet<LocalDate> sessions = new TreeSet<>();
+        for (Object value : mongoTemplate.findDistinct(new Query(), "histDate", HISTORY, Object.class)) {
+            Long day = ColumnarFile.toEpochDay(value);
+            if (day != null) sessions.add(LocalDate.ofEpochDay(day));
+        }
+        return sessions;
+    }
+}
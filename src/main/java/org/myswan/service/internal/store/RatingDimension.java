@@ -0,0 +1,231 @@
+package org.myswan.service.internal.store;
+
+import org.myswan.common.UtilHelper;
+import org.myswan.model.collection.Rating;
+import org.myswan.model.collection.RatingVersion;
+import org.myswan.model.collection.Stock;
+import org.myswan.service.internal.archive.ArchiveQuery;
+import org.myswan.service.internal.archive.HistoryArchiveService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Slowly-changing dimension for the fields that rarely move from one session to the next: the
+ * {@link Rating} block and earningsDate. Each ticker has a chain of {@link RatingVersion}s in the
+ * ratingDimension collection, and a new version is written only when the values change.
+ *
+ * With {@code history.scd.enabled}, history writers {@link #record} the values and {@link #detach}
+ * them from the rows they store; readers {@link #fill} detached rows as of the row's date. Rows
+ * that still carry their own values are left as they are, so both layouts read the same.
+ *
+ * The dimension is small (a version per ticker per change), so it is held in memory once loaded.
+ */
+@Service
+public class RatingDimension {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingDimension.class);
+
+    private static final String HISTORY = "stockHistory";
+
+    private final MongoTemplate mongoTemplate;
+    private final HistoryArchiveService historyArchive;
+
+    /** ticker -> validFrom -> version, loaded on first use. Guarded by this. */
+    private Map<String, NavigableMap<LocalDate, RatingVersion>> versions;
+
+    /** Store ratings and earningsDate once per change instead of on every history row */
+    @Value("${history.scd.enabled:false}")
+    private boolean enabled;
+
+    public RatingDimension(MongoTemplate mongoTemplate, HistoryArchiveService historyArchive) {
+        this.mongoTemplate = mongoTemplate;
+        this.historyArchive = historyArchive;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record the slow fields of each row as of its own histDate and return the number of versions
+     * written. A row matching the version in force is a no-op; otherwise the version is split at the
+     * row's date. When the version already covers stored sessions after that date (a re-sync or
+     * backfill of a past session), the new values hold only until the next of them and the old values
+     * resume from there. Rows of one ticker are expected in ascending date order.
+     */
+    public synchronized int record(Collection<Stock> rows) {
+        Map<String, RatingVersion> changed = new LinkedHashMap<>();
+        for (Stock row : rows) {
+            if (row.getTicker() == null || row.getHistDate() == null || row.getRating() == null) continue;
+            String ticker = UtilHelper.canonicalTicker(row.getTicker());
+            LocalDate date = row.getHistDate();
+            NavigableMap<LocalDate, RatingVersion> chain = resident().computeIfAbsent(ticker, t -> new TreeMap<>());
+            Map.Entry<LocalDate, RatingVersion> floor = chain.floorEntry(date);
+            RatingVersion current = floor != null && covers(floor.getValue(), date) ? floor.getValue() : null;
+
+            if (current != null && sameValues(current, row.getRating(), row.getEarningsDate())) continue;
+
+            LocalDate validTo;
+            if (current != null) {
+                // A backfill inside the version: the later rows were detached against the old values, so
+                // those values go on in a version of their own from the next stored session
+                LocalDate next = nextSession(ticker, date, current.getValidTo());
+                if (next != null) {
+                    RatingVersion rest = new RatingVersion(ticker + "|" + next, ticker, next, current.getValidTo(),
+                            copy(current.getRating()), current.getEarningsDate());
+                    chain.put(next, rest);
+                    changed.put(rest.getId(), rest);
+                }
+                if (current.getValidFrom().equals(date)) {
+                    current.setRating(copy(row.getRating()));
+                    current.setEarningsDate(row.getEarningsDate());
+                    if (next != null) current.setValidTo(next);
+                    changed.put(current.getId(), current);
+                    continue;
+                }
+                validTo = next != null ? next : current.getValidTo();
+                current.setValidTo(date);
+                changed.put(current.getId(), current);
+            } else {
+                Map.Entry<LocalDate, RatingVersion> next = chain.higherEntry(date);
+                validTo = next != null ? next.getKey() : null;
+            }
+            RatingVersion version = new RatingVersion(ticker + "|" + date, ticker, date, validTo,
+                    copy(row.getRating()), row.getEarningsDate());
+            chain.put(date, version);
+            changed.put(version.getId(), version);
+        }
+        save(changed.values());
+        return changed.size();
+    }
+
+    /**
+     * Clear the slow fields of a row about to be stored, if the dimension holds the same values for its
+     * date. Returns whether the row was detached; rows whose values were never recorded keep them.
+     */
+    public synchronized boolean detach(Stock row, LocalDate date) {
+        if (row == null || row.getRating() == null) return false;
+        RatingVersion version = versionAt(row.getTicker(), date);
+        if (version == null || !sameValues(version, row.getRating(), row.getEarningsDate())) return false;
+        row.setRating(null);
+        row.setEarningsDate(null);
+        return true;
+    }
+
+    /**
+     * Join detached rows (no rating) to the version in force on their histDate.
+     */
+    public <C extends Collection<Stock>> C fill(C rows) {
+        for (Stock row : rows) {
+            fill(row, row.getHistDate());
+        }
+        return rows;
+    }
+
+    public synchronized void fill(Stock row, LocalDate date) {
+        if (row == null || row.getRating() != null) return;
+        RatingVersion version = versionAt(row.getTicker(), date);
+        if (version != null) {
+            row.setRating(copy(version.getRating()));
+            row.setEarningsDate(version.getEarningsDate());
+        }
+    }
+
+    /**
+     * Drop the resident copy so the next use reloads the collection.
+     */
+    public synchronized void reload() {
+        versions = null;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("tickers", resident().size());
+        stats.put("versions", resident().values().stream().mapToInt(Map::size).sum());
+        return stats;
+    }
+
+    private RatingVersion versionAt(String ticker, LocalDate date) {
+        if (ticker == null || date == null) return null;
+        NavigableMap<LocalDate, RatingVersion> chain = resident().get(UtilHelper.canonicalTicker(ticker));
+        if (chain == null) return null;
+        Map.Entry<LocalDate, RatingVersion> floor = chain.floorEntry(date);
+        return floor != null && covers(floor.getValue(), date) ? floor.getValue() : null;
+    }
+
+    /**
+     * First stored session of the ticker after date and before validTo (open when null), live or
+     * archived; null when the date is the newest session of the version.
+     */
+    private LocalDate nextSession(String ticker, LocalDate date, LocalDate validTo) {
+        Criteria criteria = Criteria.where("ticker").is(ticker).and("histDate").gt(date);
+        if (validTo != null) criteria = Criteria.where("ticker").is(ticker).and("histDate").gt(date).lt(validTo);
+        Query query = Query.query(criteria).with(Sort.by(Sort.Direction.ASC, "histDate")).limit(1);
+        query.fields().include("histDate");
+        Stock live = mongoTemplate.findOne(query, Stock.class, HISTORY);
+        LocalDate next = live != null ? live.getHistDate() : null;
+
+        // Archived months are older than the live ones, so an archived session after date comes first
+        ArchiveQuery archived = ArchiveQuery.of(HISTORY).ticker(ticker).from(date.plusDays(1));
+        if (validTo != null) archived = archived.to(validTo.minusDays(1));
+        for (Stock row : historyArchive.find(archived, Stock.class)) {
+            if (row.getHistDate() != null && row.getHistDate().isAfter(date)
+                    && (next == null || row.getHistDate().isBefore(next))) {
+                next = row.getHistDate();
+            }
+        }
+        return next;
+    }
+
+    private Map<String, NavigableMap<LocalDate, RatingVersion>> resident() {
+        if (versions == null) {
+            Map<String, NavigableMap<LocalDate, RatingVersion>> loaded = new HashMap<>();
+            for (RatingVersion version : mongoTemplate.findAll(RatingVersion.class)) {
+                if (version.getTicker() == null || version.getValidFrom() == null) continue;
+                loaded.computeIfAbsent(version.getTicker(), t -> new TreeMap<>()).put(version.getValidFrom(), version);
+            }
+            versions = loaded;
+            log.info("Loaded rating dimension: {} tickers", loaded.size());
+        }
+        return versions;
+    }
+
+    private void save(Collection<RatingVersion> changed) {
+        if (changed.isEmpty()) return;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RatingVersion.class);
+        for (RatingVersion version : changed) {
+            bulk.replaceOne(Query.query(Criteria.where("_id").is(version.getId())), version,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        bulk.execute();
+    }
+
+    private static boolean covers(RatingVersion version, LocalDate date) {
+        return !date.isBefore(version.getValidFrom())
+                && (version.getValidTo() == null || date.isBefore(version.getValidTo()));
+    }
+
+    private static boolean sameValues(RatingVersion version, Rating rating, LocalDate earningsDate) {
+        return Objects.equals(version.getRating(), rating) && Objects.equals(version.getEarningsDate(), earningsDate);
+    }
+
+    private static Rating copy(Rating source) {
+        if (source == null) return null;
+        Rating rating = new Rating();
+        BeanUtils.copyProperties(source, rating);
+        return rating;
+    }
+}
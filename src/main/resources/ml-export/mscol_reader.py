@@ -0,0 +1,259 @@
+"""
+Reference reader for the MySwan ML columnar export.
+
+The export directory holds manifest.json, this file, and one directory per month of sessions with one
+part per append: <yyyy-MM>/part-NNNN.mscol. Read the parts the manifest lists; a part that is on disk
+but not in the manifest is the leftover of an interrupted append and is removed by the next one.
+
+Part layout (MSCOL version 1). All integers are big-endian; str is an int32 byte length followed by
+UTF-8 bytes.
+
+    file      := "MSCOL" version:u8 rowGroup* 0:i32
+    rowGroup  := rowCount:i32 minDay:i64 maxDay:i64 minKey:str maxKey:str
+                 columnCount:i32 column{columnCount} block{columnCount}
+    column    := name:str type:u8 codec:u8 rawLength:i32 storedLength:i32
+    block     := storedLength bytes; inflate with zlib when codec is 1 (rawLength bytes after)
+    raw block := nullBitmap values
+
+    nullBitmap: ceil(rowCount / 8) bytes; bit (i % 8) of byte (i / 8), least significant first, is
+                set when row i is null
+    values:     the non-null values only, in row order
+        0 DOUBLE     f64
+        1 INT        i32
+        2 LONG       i64
+        3 BOOL       u8 (0 or 1)
+        4 DATE       i64 epoch milliseconds
+        5 STRING     dictionarySize:i32 str{dictionarySize} code:i32 per value
+        6 OBJECT_ID  12 bytes
+        7 BSON       length:i32 document per value ({"v": value})
+
+minDay/maxDay are the epoch-day range of the date column in the group, minKey/maxKey the range of the
+upper-cased ticker, so groups can be skipped without decoding them.
+
+The manifest's "columns" is the schema of every part. Types are fixed per column, but a column whose
+values are all null within a row group is left out of that group: treat it as all null. Dictionaries
+are per row group. The date column is an INT of days since 1970-01-01 (a calendar date, no time
+zone); see "dateEncoding" in the manifest.
+
+Uncompressed blocks ("compressed": false in the manifest) can be used in place: with numpy installed,
+Column.numpy() returns views over the memory-mapped file for columns without nulls.
+
+    import mscol_reader
+    rows = mscol_reader.read_export("./data/ml-export")      # {column: list}, every listed part
+    frame = mscol_reader.to_pandas("./data/ml-export")       # needs pandas
+    for group in mscol_reader.read_part(path):
+        prices = group.column("price").numpy()
+"""
+
+import json
+import mmap
+import os
+import struct
+import zlib
+
+try:
+    import numpy as np
+except ImportError:  # The reader works without numpy; numpy() is then unavailable
+    np = None
+
+MAGIC = b"MSCOL"
+VERSION = 1
+CODEC_DEFLATE = 1
+TYPES = ["DOUBLE", "INT", "LONG", "BOOL", "DATE", "STRING", "OBJECT_ID", "BSON"]
+
+# struct code and numpy dtype of the fixed-width types
+_FIXED = {
+    "DOUBLE": ("d", ">f8"),
+    "INT": ("i", ">i4"),
+    "LONG": ("q", ">i8"),
+    "BOOL": ("B", "u1"),
+    "DATE": ("q", ">i8"),
+}
+
+
+class Column:
+    """One column of one row group: the null bitmap and the dense non-null values."""
+
+    def __init__(self, name, type_name, rows, block):
+        self.name = name
+        self.type = type_name
+        self.rows = rows
+        bitmap_length = (rows + 7) // 8
+        self._bitmap = bytes(block[:bitmap_length])
+        self._block = block
+        self._offset = bitmap_length
+        self.null_count = sum(bin(byte).count("1") for byte in self._bitmap)
+        # Padding bits past the last row are never set, so this counts rows only
+        self.count = rows - self.null_count
+
+    def is_null(self, row):
+        return (self._bitmap[row >> 3] >> (row & 7)) & 1 == 1
+
+    def dense(self):
+        """Non-null values in row order, as a tuple."""
+        if self.type in _FIXED:
+            code = _FIXED[self.type][0]
+            values = struct.unpack_from(">%d%s" % (self.count, code), self._block, self._offset)
+            return tuple(v != 0 for v in values) if self.type == "BOOL" else values
+        if self.type == "STRING":
+            dictionary, offset = self.dictionary()
+            codes = struct.unpack_from(">%di" % self.count, self._block, offset)
+            return tuple(dictionary[c] for c in codes)
+        if self.type == "OBJECT_ID":
+            return tuple(bytes(self._block[self._offset + 12 * i:self._offset + 12 * (i + 1)]).hex()
+                         for i in range(self.count))
+        # BSON: raw documents, decode with the bson package if needed
+        values, offset = [], self._offset
+        for _ in range(self.count):
+            (length,) = struct.unpack_from(">i", self._block, offset)
+            values.append(bytes(self._block[offset + 4:offset + 4 + length]))
+            offset += 4 + length
+        return tuple(values)
+
+    def dictionary(self):
+        """(entries, offset of the codes) of a STRING column."""
+        (size,) = struct.unpack_from(">i", self._block, self._offset)
+        offset = self._offset + 4
+        entries = []
+        for _ in range(size):
+            (length,) = struct.unpack_from(">i", self._block, offset)
+            entries.append(bytes(self._block[offset + 4:offset + 4 + length]).decode("utf-8"))
+            offset += 4 + length
+        return entries, offset
+
+    def values(self):
+        """One value per row, None where null."""
+        dense = iter(self.dense())
+        return [None if self.is_null(i) else next(dense) for i in range(self.rows)]
+
+    def numpy(self):
+        """
+        Fixed-width columns as a numpy array: a zero-copy big-endian view when there are no nulls,
+        otherwise a masked array. STRING columns come back as (int32 codes with -1 for null, entries).
+        """
+        if np is None:
+            raise ImportError("numpy is required for Column.numpy()")
+        present = ~np.unpackbits(np.frombuffer(self._bitmap, dtype=np.uint8),
+                                 bitorder="little")[:self.rows].astype(bool)
+        if self.type == "STRING":
+            entries, offset = self.dictionary()
+            codes = np.full(self.rows, -1, dtype=np.int32)
+            codes[present] = np.frombuffer(self._block, dtype=">i4", count=self.count, offset=offset)
+            return codes, entries
+        if self.type not in _FIXED:
+            return np.array(self.values(), dtype=object)
+        dense = np.frombuffer(self._block, dtype=_FIXED[self.type][1], count=self.count, offset=self._offset)
+        if self.type == "BOOL":
+            dense = dense.astype(bool)
+        if self.null_count == 0:
+            return dense
+        full = np.zeros(self.rows, dtype=dense.dtype.newbyteorder("="))
+        full[present] = dense
+        return np.ma.masked_array(full, mask=~present)
+
+
+class RowGroup:
+    def __init__(self, rows, min_day, max_day, min_key, max_key, columns):
+        self.rows = rows
+        self.min_day = min_day
+        self.max_day = max_day
+        self.min_key = min_key
+        self.max_key = max_key
+        self.columns = columns
+
+    def column(self, name):
+        """The column, or None when it is all null in this group."""
+        return self.columns.get(name)
+
+
+class _Cursor:
+    def __init__(self, buffer):
+        self.buffer = buffer
+        self.pos = 0
+
+    def unpack(self, fmt):
+        values = struct.unpack_from(fmt, self.buffer, self.pos)
+        self.pos += struct.calcsize(fmt)
+        return values[0] if len(values) == 1 else values
+
+    def string(self):
+        length = self.unpack(">i")
+        value = bytes(self.buffer[self.pos:self.pos + length]).decode("utf-8")
+        self.pos += length
+        return value
+
+
+def read_part(path):
+    """Yield the row groups of one part file, memory-mapped."""
+    with open(path, "rb") as file:
+        if os.fstat(file.fileno()).st_size == 0:
+            raise ValueError("Empty part file: %s" % path)
+        mapped = mmap.mmap(file.fileno(), 0, access=mmap.ACCESS_READ)
+    view = memoryview(mapped)
+    cursor = _Cursor(view)
+    if bytes(view[:len(MAGIC)]) != MAGIC:
+        raise ValueError("Not an MSCOL file: %s" % path)
+    cursor.pos = len(MAGIC)
+    version = cursor.unpack(">B")
+    if version != VERSION:
+        raise ValueError("Unsupported MSCOL version %d: %s" % (version, path))
+    while True:
+        rows = cursor.unpack(">i")
+        if rows == 0:
+            return
+        min_day, max_day = cursor.unpack(">qq")
+        min_key, max_key = cursor.string(), cursor.string()
+        headers = []
+        for _ in range(cursor.unpack(">i")):
+            name = cursor.string()
+            type_code, codec, raw_length, stored_length = cursor.unpack(">BBii")
+            headers.append((name, TYPES[type_code], codec, raw_length, stored_length))
+        columns = {}
+        for name, type_name, codec, raw_length, stored_length in headers:
+            block = view[cursor.pos:cursor.pos + stored_length]
+            cursor.pos += stored_length
+            if codec == CODEC_DEFLATE:
+                block = memoryview(zlib.decompress(block))
+                if len(block) != raw_length:
+                    raise ValueError("Truncated column %s in %s" % (name, path))
+            columns[name] = Column(name, type_name, rows, block)
+        yield RowGroup(rows, min_day, max_day, min_key, max_key, columns)
+
+
+def read_manifest(root):
+    with open(os.path.join(root, "manifest.json"), encoding="utf-8") as file:
+        return json.load(file)
+
+
+def read_export(root, columns=None):
+    """
+    Every row of the parts listed in the manifest, as {column: list}, columns in schema order (or the
+    requested ones). Columns missing from a row group read as None.
+    """
+    manifest = read_manifest(root)
+    names = columns or [column["name"] for column in manifest["columns"]]
+    result = {name: [] for name in names}
+    for part in manifest["parts"]:
+        for group in read_part(os.path.join(root, part["file"])):
+            for name in names:
+                column = group.column(name)
+                result[name].extend(column.values() if column is not None else [None] * group.rows)
+    return result
+
+
+def to_pandas(root, columns=None):
+    """The export as a pandas DataFrame with nullable dtypes and the date column as datetime64."""
+    import pandas as pd
+
+    manifest = read_manifest(root)
+    types = {column["name"]: column["type"] for column in manifest["columns"]}
+    dtypes = {"DOUBLE": "float64", "INT": "Int32", "LONG": "Int64", "BOOL": "boolean"}
+    frame = pd.DataFrame(read_export(root, columns))
+    for name in frame.columns:
+        if name == manifest.get("dateColumn"):
+            frame[name] = pd.to_datetime(frame[name], unit="D")
+        elif types.get(name) == "STRING":
+            frame[name] = frame[name].astype("category")
+        elif types.get(name) in dtypes:
+            frame[name] = frame[name].astype(dtypes[types[name]])
+    return frame
@@ -0,0 +1,101 @@
+package org.myswan.config;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactSchemaTest {
+
+    @Test
+    void stockHistoryExpandsBackToTheOriginalDocument() {
+        Document original = stockRow();
+        Document compacted = CompactSchema.compact("stockHistory", stockRow().append("_class", "org.myswan.model.collection.Stock"));
+
+        assertThat(compacted.keySet()).containsExactly("_id", "ticker", "histDate", "p", "v", "rt", "sc", "metricsInfo");
+        assertThat(compacted.get("rt", Document.class).keySet()).containsExactly("br", "zk");
+        assertThat(compacted.get("sc", Document.class).keySet()).containsExactly("o", "sd", "sr");
+        // Not mapped: filtered and $set by name, nested keys included
+        assertThat(compacted.get("metricsInfo")).isEqualTo(original.get("metricsInfo"));
+
+        assertThat(CompactSchema.expand("stockHistory", compacted)).isEqualTo(original);
+    }
+
+    @Test
+    void optionsAndPatternHistoryExpandBackToTheOriginalDocument() {
+        Document option = new Document("_id", "o1").append("ticker", "AAPL").append("histDate", new Date(0))
+                .append("optionId", "AAPL250117C200").append("optionName", "AAPL 01/17/2025 200 C")
+                .append("price", 3.2).append("iv", 0.41).append("delta", 0.55).append("openInterest", 1200);
+        Document pattern = new Document("_id", "p1").append("ticker", "AAPL").append("histDate", new Date(0))
+                .append("eventId", "e1").append("targetDate", "2025-02-01")
+                .append("name", "Cup with handle").append("entry", 180.0).append("status", "Emerged");
+
+        Document compactOption = CompactSchema.compact("optionsHistory", new Document(option));
+        Document compactPattern = CompactSchema.compact("patternHistory", new Document(pattern));
+
+        assertThat(compactOption.keySet()).contains("optionId", "optionName", "iv", "p", "dl", "oi");
+        assertThat(compactPattern.keySet()).contains("eventId", "targetDate", "n", "en", "s");
+        assertThat(CompactSchema.expand("optionsHistory", compactOption)).isEqualTo(option);
+        assertThat(CompactSchema.expand("patternHistory", compactPattern)).isEqualTo(pattern);
+    }
+
+    @Test
+    void documentsAlreadyInTheTargetLayoutPassThrough() {
+        Document longLayout = stockRow();
+        assertThat(CompactSchema.expand("stockHistory", longLayout)).isEqualTo(stockRow());
+
+        Document compacted = CompactSchema.compact("stockHistory", stockRow());
+        Document copy = new Document(compacted);
+        assertThat(CompactSchema.compact("stockHistory", compacted)).isEqualTo(copy);
+    }
+
+    @Test
+    void needsRewriteLooksForKeysOfTheOtherLayout() {
+        Document longLayout = stockRow();
+        assertThat(CompactSchema.needsRewrite("stockHistory", longLayout, true)).isTrue();
+        assertThat(CompactSchema.needsRewrite("stockHistory", longLayout, false)).isFalse();
+
+        Document compacted = CompactSchema.compact("stockHistory", stockRow());
+        assertThat(CompactSchema.needsRewrite("stockHistory", compacted, true)).isFalse();
+        assertThat(CompactSchema.needsRewrite("stockHistory", compacted, false)).isTrue();
+
+        assertThat(CompactSchema.needsRewrite("stockHistory", new Document("_class", "Stock"), true)).isTrue();
+    }
+
+    @Test
+    void otherCollectionsAreLeftAlone() {
+        Document stock = stockRow();
+        assertThat(CompactSchema.covers("stock")).isFalse();
+        assertThat(CompactSchema.compact("stock", stock)).isEqualTo(stockRow());
+        assertThat(CompactSchema.expand("stock", stock)).isEqualTo(stockRow());
+    }
+
+    @Test
+    void dictionaryListsNestedPropertiesWithTheirParent() {
+        Map<String, String> dictionary = CompactSchema.dictionary("stockHistory");
+
+        assertThat(dictionary).containsEntry("price", "p");
+        assertThat(dictionary).containsEntry("rating", "rt");
+        assertThat(dictionary).containsEntry("rating.btRating", "br");
+        assertThat(dictionary).containsEntry("score.signalDays", "sd");
+        assertThat(dictionary.keySet()).doesNotContain("ticker", "histDate", "metricsInfo");
+        assertThat(CompactSchema.dictionary("stock")).isEmpty();
+    }
+
+    private static Document stockRow() {
+        return new Document("_id", "AAPL_2025-01-02")
+                .append("ticker", "AAPL")
+                .append("histDate", new Date(1735776000000L))
+                .append("price", 243.85)
+                .append("volume", 55_000_000L)
+                .append("rating", new Document("btRating", "BUY").append("zacksRank", 2))
+                .append("score", new Document("overallScore", 72).append("signalDays", 3)
+                        .append("signalReason", List.of("RSI", "MACD")))
+                .append("metricsInfo", new Document("day0Factors", List.of("SCORE-OVERALL=72"))
+                        .append("price", 243.85));
+    }
+}
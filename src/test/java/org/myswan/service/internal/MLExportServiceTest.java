@@ -0,0 +1,139 @@
+package org.myswan.service.internal;
+
+import org.junit.jupiter.api.Test;
+import org.myswan.model.collection.Stock;
+import org.myswan.model.compute.Score;
+import org.myswan.model.dto.MLTrainingData;
+import org.myswan.repository.StockRepository;
+import org.myswan.service.internal.store.MarketDataStore;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+
+class MLExportServiceTest {
+
+    private static final LocalDate JAN_1 = LocalDate.of(2025, 1, 1);
+
+    /** Sessions per ticker: longer than the lookahead, shorter than it, and just above it */
+    private static final Map<String, Integer> SESSIONS = Map.of("AAPL", 20, "AMD", 3, "MSFT", 9);
+
+    /** Sessions with a price of 0: skipped as rows, and never used as a target */
+    private static final Set<String> ZERO_PRICE = Set.of("AAPL|5", "AAPL|12", "AMD|2", "MSFT|0", "MSFT|8");
+
+    @Test
+    void lookaheadMatchesTheInMemoryConversion() {
+        List<Stock> sorted = history();
+        List<Stock> shuffled = history();
+        Collections.shuffle(shuffled, new Random(5));
+
+        List<MLTrainingData> expected = stockService().convertToMLFormat(shuffled);
+        List<MLTrainingData> streamed = stream(sorted);
+
+        assertThat(expected).hasSize(32 - ZERO_PRICE.size());
+        assertThat(streamed).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void lookaheadEmitsInTickerAndDateOrder() {
+        List<MLTrainingData> streamed = stream(history());
+
+        for (int i = 1; i < streamed.size(); i++) {
+            MLTrainingData previous = streamed.get(i - 1);
+            MLTrainingData row = streamed.get(i);
+            int byTicker = previous.getTicker().compareTo(row.getTicker());
+            assertThat(byTicker < 0 || (byTicker == 0 && previous.getDate().isBefore(row.getDate()))).isTrue();
+        }
+    }
+
+    @Test
+    void targetsStopAtTheTickerBoundaryAndSkipZeroPrices() {
+        List<MLTrainingData> streamed = stream(history());
+
+        // AAPL day 5 has no price: not exported, and day 4 has no 1-day return
+        assertThat(row(streamed, "AAPL", 5)).isNull();
+        assertThat(row(streamed, "AAPL", 4).getReturn1d()).isNull();
+        assertThat(row(streamed, "AAPL", 4).getReturn3d()).isNotNull();
+
+        // The drawdown of day 6 ignores the zero-price day 12 and is never positive
+        MLTrainingData day6 = row(streamed, "AAPL", 6);
+        assertThat(day6.getMaxDrawdown7d()).isNotNull();
+        assertThat(day6.getMaxDrawdown7d()).isLessThanOrEqualTo(0.0);
+        assertThat(day6.getMaxDrawdown7d()).isGreaterThan(-1.0);
+
+        // The last AAPL sessions look only at AAPL, never at the AMD rows that follow in the scan
+        MLTrainingData lastAapl = row(streamed, "AAPL", 19);
+        assertThat(lastAapl.getReturn1d()).isNull();
+        assertThat(lastAapl.getReturn3d()).isNull();
+        assertThat(lastAapl.getReturn7d()).isNull();
+        assertThat(row(streamed, "AAPL", 17).getReturn3d()).isNull();
+
+        // AMD: day 0's 1-day return comes from AMD day 1; day 1's next session has no price
+        double amd0 = price("AMD", 0);
+        assertThat(row(streamed, "AMD", 0).getReturn1d()).isCloseTo((price("AMD", 1) - amd0) / amd0, within(1e-12));
+        assertThat(row(streamed, "AMD", 0).getReturn3d()).isNull();
+        assertThat(row(streamed, "AMD", 1).getReturn1d()).isNull();
+
+        // MSFT day 1 sees seven later sessions, the last of which has no price
+        MLTrainingData msft1 = row(streamed, "MSFT", 1);
+        assertThat(msft1.getReturn3d()).isNotNull();
+        assertThat(msft1.getHitTarget()).isNotNull();
+        assertThat(msft1.getReturn7d()).isNull();
+    }
+
+    private static List<MLTrainingData> stream(List<Stock> sorted) {
+        List<MLTrainingData> rows = new ArrayList<>();
+        MLExportService.Lookahead lookahead = new MLExportService.Lookahead(rows::add);
+        sorted.forEach(lookahead::add);
+        lookahead.drain();
+        return rows;
+    }
+
+    private static MLTrainingData row(List<MLTrainingData> rows, String ticker, int day) {
+        return rows.stream()
+                .filter(row -> row.getTicker().equals(ticker) && row.getDate().equals(JAN_1.plusDays(day)))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static StockService stockService() {
+        return new StockService(mock(StockRepository.class), mock(MongoTemplate.class),
+                mock(StockSnapshotService.class), mock(MarketDataStore.class), mock(HistoryRangeCache.class));
+    }
+
+    /** Fresh rows sorted by ticker then date, as the history cursor returns them */
+    private static List<Stock> history() {
+        List<Stock> rows = new ArrayList<>();
+        for (String ticker : SESSIONS.keySet().stream().sorted().toList()) {
+            for (int day = 0; day < SESSIONS.get(ticker); day++) {
+                Score score = new Score();
+                score.setOverallScore(50 + day);
+                score.setSignal(day % 2 == 0 ? "BUY" : "HOLD");
+
+                Stock row = new Stock();
+                row.setTicker(ticker);
+                row.setHistDate(JAN_1.plusDays(day));
+                row.setPrice(price(ticker, day));
+                row.setVolume(1_000_000 + day);
+                row.setScore(score);
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /** Prices that rise and fall by a few percent, with 0 on the ZERO_PRICE sessions */
+    private static double price(String ticker, int day) {
+        if (ZERO_PRICE.contains(ticker + "|" + day)) return 0;
+        return 100 + ticker.length() * 10 + (day % 4) * 3 - (day % 3) * 2;
+    }
+}
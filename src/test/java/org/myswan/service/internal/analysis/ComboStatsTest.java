@@ -0,0 +1,79 @@
+package org.myswan.service.internal.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ComboStatsTest {
+
+    @Test
+    void statisticsMatchTheDirectFormulas() {
+        double[] returns = {2.5, -1.0, 0.0, 4.0, -3.5, 1.0};
+        ComboStats stats = new ComboStats();
+        for (double value : returns) {
+            stats.add(value);
+        }
+
+        double mean = 3.0 / 6;
+        double variance = 0;
+        for (double value : returns) {
+            variance += (value - mean) * (value - mean);
+        }
+        assertThat(stats.count()).isEqualTo(6);
+        assertThat(stats.wins()).isEqualTo(3);
+        assertThat(stats.winRate()).isCloseTo(50.0, within(1e-12));
+        assertThat(stats.mean()).isCloseTo(mean, within(1e-12));
+        assertThat(stats.stdDeviation()).isCloseTo(Math.sqrt(variance / 6), within(1e-12));
+        assertThat(stats.max()).isEqualTo(4.0);
+        assertThat(stats.min()).isEqualTo(-3.5);
+        assertThat(stats.profitFactor()).isCloseTo(7.5 / 4.5, within(1e-12));
+    }
+
+    @Test
+    void mergedPartialsMatchOneAccumulatorOverAllReturns() {
+        Random random = new Random(3);
+        ComboStats whole = new ComboStats();
+        ComboStats[] parts = {new ComboStats(), new ComboStats(), new ComboStats(), new ComboStats()};
+        for (int i = 0; i < 10_000; i++) {
+            // Partials with very different means; the last one stays empty
+            int part = random.nextInt(3);
+            double value = (part - 1) * 500 + random.nextGaussian() * (part + 1) * 3;
+            whole.add(value);
+            parts[part].add(value);
+        }
+        ComboStats merged = new ComboStats();
+        for (ComboStats part : parts) {
+            merged.merge(part);
+        }
+
+        assertThat(merged.count()).isEqualTo(whole.count());
+        assertThat(merged.wins()).isEqualTo(whole.wins());
+        assertThat(merged.mean()).isCloseTo(whole.mean(), within(1e-9));
+        assertThat(merged.stdDeviation()).isCloseTo(whole.stdDeviation(), within(1e-9));
+        assertThat(merged.max()).isEqualTo(whole.max());
+        assertThat(merged.min()).isEqualTo(whole.min());
+        assertThat(merged.profitFactor()).isCloseTo(whole.profitFactor(), within(1e-9));
+        for (double q : new double[]{0, 0.25, 0.5, 0.75, 1}) {
+            assertThat(merged.quantile(q)).isEqualTo(whole.quantile(q));
+        }
+    }
+
+    @Test
+    void mergingEmptyAccumulatorsChangesNothing() {
+        ComboStats stats = new ComboStats();
+        stats.merge(new ComboStats());
+        assertThat(stats.count()).isEqualTo(0);
+        assertThat(stats.max()).isEqualTo(0.0);
+        assertThat(stats.min()).isEqualTo(0.0);
+        assertThat(stats.stdDeviation()).isEqualTo(0.0);
+
+        stats.add(-2);
+        stats.merge(new ComboStats());
+        assertThat(stats.count()).isEqualTo(1);
+        assertThat(stats.mean()).isEqualTo(-2.0);
+        assertThat(stats.profitFactor()).isEqualTo(0.0);
+    }
+}
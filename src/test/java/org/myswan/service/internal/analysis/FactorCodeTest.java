@@ -0,0 +1,156 @@
+package org.myswan.service.internal.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FactorCodeTest {
+
+    @Test
+    void combosMatchTheStringVariationsForRandomFactors() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            List<String> factors = randomFactors(random);
+            long code = FactorCode.fromFactors(factors);
+
+            assertThat(FactorCode.labels(FactorCode.combos(code)))
+                    .as("factors %s", factors)
+                    .containsExactlyElementsOf(stringVariations(factors));
+        }
+    }
+
+    @Test
+    void unencodedRowsGroupUnderNoFactors() {
+        assertThat(FactorCode.fromFactors(null)).isEqualTo(0L);
+        assertThat(FactorCode.fromFactors(List.of())).isEqualTo(0L);
+        assertThat(FactorCode.labels(FactorCode.combos(0))).containsExactly("NO_FACTORS");
+    }
+
+    @Test
+    void weakSetupsYieldNoCombos() {
+        long onlySixties = FactorCode.fromFactors(List.of("SCORE-DAYTRADE=65", "SCORE-SWINGTRADE=69", "PATTERN-LONG=3"));
+        assertThat(FactorCode.combos(onlySixties)).isEmpty();
+
+        long nothing = FactorCode.fromFactors(List.of("SCORE-OVERALL=95", "SPIKE-ISSPIKE=false"));
+        assertThat(FactorCode.combos(nothing)).isEmpty();
+    }
+
+    @Test
+    void firstQualifyingScoreIsThePrimaryOne() {
+        long code = FactorCode.fromFactors(List.of("SCORE-DAYTRADE=40", "SCORE-SWINGTRADE=85", "SCORE-REVERSAL=92",
+                "SPIKE-ISSPIKE=true", "BOTTOM-ISBOTTOM=true", "PATTERN-LONG=2"));
+
+        assertThat(FactorCode.labels(FactorCode.combos(code))).containsExactly(
+                "SWING:80-89", "REVERSAL>90",
+                "SWING:80-89 + SPIKE", "SWING:80-89 + BOTTOM",
+                "SPIKE", "BOTTOM",
+                "SWING:80-89 + SPIKE + BOTTOM",
+                "SWING:80-89 + LONG_PATTERN", "SPIKE + BOTTOM + LONG_PATTERN");
+    }
+
+    @Test
+    void legacyDashSeparatorParsesLikeTheEqualsSign() {
+        long dashed = FactorCode.fromFactors(List.of("SCORE-BREAKOUT-75", "MOMENTUMPOP-ISMOMENTUMPOP-true", "PATTERN-LONG-1"));
+        long equals = FactorCode.fromFactors(List.of("SCORE-BREAKOUT=75", "MOMENTUMPOP-ISMOMENTUMPOP=true", "PATTERN-LONG=1"));
+
+        assertThat(dashed).isEqualTo(equals);
+        assertThat(FactorCode.Field.BREAKOUT.get(dashed)).isEqualTo(75);
+        assertThat(FactorCode.Field.MOMENTUM.get(dashed)).isEqualTo(1);
+        assertThat(FactorCode.Field.LONG_PATTERNS.get(dashed)).isEqualTo(1);
+    }
+
+    @Test
+    void fieldsAreClampedToTheirWidth() {
+        long code = FactorCode.fromFactors(List.of("SCORE-PATTERN=300", "SCORE-REVERSAL=-5", "PATTERN-LONG=40"));
+
+        assertThat(FactorCode.Field.PATTERN.get(code)).isEqualTo(127);
+        assertThat(FactorCode.Field.REVERSAL.get(code)).isEqualTo(0);
+        assertThat(FactorCode.Field.LONG_PATTERNS.get(code)).isEqualTo(15);
+        assertThat(code & FactorCode.ENCODED).isNotEqualTo(0L);
+    }
+
+    /** Day 0 factor strings in the form DayChange writes them, with scores around the bucket edges */
+    private static List<String> randomFactors(Random random) {
+        List<String> factors = new ArrayList<>();
+        if (random.nextInt(10) == 0) return factors;
+        if (random.nextInt(5) > 0) {
+            factors.add("SCORE-SIGNAL=BUY");
+            factors.add("SCORE-OVERALL=" + score(random));
+            factors.add("SCORE-DAYTRADE=" + score(random));
+            factors.add("SCORE-SWINGTRADE=" + score(random));
+            factors.add("SCORE-BREAKOUT=" + score(random));
+            factors.add("SCORE-PATTERN=" + score(random));
+            factors.add("SCORE-REVERSAL=" + score(random));
+        }
+        if (random.nextBoolean()) factors.add("BOTTOM-ISBOTTOM=" + (random.nextInt(3) == 0));
+        if (random.nextBoolean()) factors.add("SPIKE-ISSPIKE=" + (random.nextInt(3) == 0));
+        if (random.nextBoolean()) factors.add("OVERSOLDBOUNCE-ISOVERSOLD=" + (random.nextInt(3) == 0));
+        if (random.nextBoolean()) factors.add("MOMENTUMPOP-ISMOMENTUMPOP=" + (random.nextInt(3) == 0));
+        factors.add("PATTERN-LONG=" + (random.nextBoolean() ? 0 : random.nextInt(20)));
+        factors.add("PATTERN-SHORT=" + random.nextInt(3));
+        return factors;
+    }
+
+    private static int score(Random random) {
+        return random.nextInt(3) == 0 ? 55 + random.nextInt(45) : random.nextInt(101);
+    }
+
+    /**
+     * The string combos the prediction analysis built before factor codes, kept as the reference:
+     * each score of 60+ alone, the first with each signal, each signal, all signals, long-pattern variants.
+     */
+    private static List<String> stringVariations(List<String> factors) {
+        List<String> variations = new ArrayList<>();
+        if (factors == null || factors.isEmpty()) {
+            variations.add("NO_FACTORS");
+            return variations;
+        }
+
+        int[] scores = new int[5];
+        String[] names = {"DAYTRADE", "SWING", "BREAKOUT", "PATTERN", "REVERSAL"};
+        String[] prefixes = {"SCORE-DAYTRADE", "SCORE-SWINGTRADE", "SCORE-BREAKOUT", "SCORE-PATTERN", "SCORE-REVERSAL"};
+        for (String factor : factors) {
+            for (int i = 0; i < prefixes.length; i++) {
+                if (factor.contains(prefixes[i])) scores[i] = Integer.parseInt(factor.split("=")[1]);
+            }
+        }
+
+        List<String> signals = new ArrayList<>();
+        if (factors.contains("SPIKE-ISSPIKE=true")) signals.add("SPIKE");
+        if (factors.contains("BOTTOM-ISBOTTOM=true")) signals.add("BOTTOM");
+        if (factors.contains("MOMENTUMPOP-ISMOMENTUMPOP=true")) signals.add("MOMENTUM");
+        if (factors.contains("OVERSOLDBOUNCE-ISOVERSOLD=true")) signals.add("OVERSOLD");
+        boolean hasLongPattern = factors.stream().anyMatch(f -> f.startsWith("PATTERN-LONG=") && !f.equals("PATTERN-LONG=0"));
+
+        List<String> scoreVariations = new ArrayList<>();
+        boolean hasGoodScore = false;
+        for (int i = 0; i < scores.length; i++) {
+            int score = scores[i];
+            if (score < 60) continue;
+            scoreVariations.add(names[i] + (score >= 90 ? ">90" : score >= 80 ? ":80-89" : score >= 70 ? ":70-79" : ":60-69"));
+            hasGoodScore |= score >= 70;
+        }
+        if (signals.isEmpty() && !hasGoodScore) return variations;
+
+        variations.addAll(scoreVariations);
+        if (!scoreVariations.isEmpty()) {
+            for (String signal : signals) {
+                variations.add(scoreVariations.getFirst() + " + " + signal);
+            }
+        }
+        variations.addAll(signals);
+        if (signals.size() >= 2) {
+            String multiSignal = String.join(" + ", signals);
+            variations.add(scoreVariations.isEmpty() ? multiSignal : scoreVariations.getFirst() + " + " + multiSignal);
+        }
+        if (hasLongPattern && !signals.isEmpty()) {
+            if (!scoreVariations.isEmpty()) variations.add(scoreVariations.getFirst() + " + LONG_PATTERN");
+            variations.add(String.join(" + ", signals) + " + LONG_PATTERN");
+        }
+        return variations;
+    }
+}
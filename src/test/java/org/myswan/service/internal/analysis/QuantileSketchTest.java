@@ -0,0 +1,91 @@
+package org.myswan.service.internal.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class QuantileSketchTest {
+
+    private static final double ACCURACY = 0.01;
+    private static final double[] QUANTILES = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1};
+
+    @Test
+    void quantilesAreWithinTheRelativeAccuracyOfTheExactOnes() {
+        Random random = new Random(7);
+        // Daily returns in percent, a heavy right tail, and values spanning several decades
+        assertErrorBound(() -> random.nextGaussian() * 4, 10_000);
+        assertErrorBound(() -> Math.exp(random.nextGaussian() * 2), 10_000);
+        assertErrorBound(() -> (random.nextBoolean() ? 1 : -1) * Math.pow(10, random.nextDouble() * 6 - 2), 10_000);
+        assertErrorBound(() -> 5.0, 100);
+        assertErrorBound(() -> -0.37, 1);
+    }
+
+    @Test
+    void valuesNearZeroCountAsZero() {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        sketch.add(-2);
+        sketch.add(0);
+        sketch.add(0.00001);
+        sketch.add(3);
+        sketch.add(Double.NaN);
+
+        assertThat(sketch.count()).isEqualTo(4L);
+        assertThat(sketch.quantile(0.34)).isEqualTo(0.0);
+        assertThat(sketch.quantile(0.67)).isEqualTo(0.0);
+    }
+
+    @Test
+    void mergedSketchAnswersLikeOneBuiltFromAllValues() {
+        Random random = new Random(11);
+        QuantileSketch whole = new QuantileSketch(ACCURACY);
+        QuantileSketch left = new QuantileSketch(ACCURACY);
+        QuantileSketch right = new QuantileSketch(ACCURACY);
+        for (int i = 0; i < 5_000; i++) {
+            // Different ranges on each side, so the merge has to grow the bucket arrays both ways
+            double value = i % 2 == 0 ? random.nextGaussian() * 50 : random.nextDouble() * 0.5;
+            whole.add(value);
+            (i % 2 == 0 ? left : right).add(value);
+        }
+        left.merge(right);
+
+        assertThat(left.count()).isEqualTo(whole.count());
+        for (double q : QUANTILES) {
+            assertThat(left.quantile(q)).isEqualTo(whole.quantile(q));
+        }
+    }
+
+    @Test
+    void emptySketchAnswersZero() {
+        assertThat(new QuantileSketch(ACCURACY).quantile(0.5)).isEqualTo(0.0);
+    }
+
+    @Test
+    void rejectsInvalidOrMismatchedAccuracy() {
+        assertThatThrownBy(() -> new QuantileSketch(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new QuantileSketch(1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new QuantileSketch(0.01).merge(new QuantileSketch(0.02)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void assertErrorBound(DoubleSupplier values, int count) {
+        QuantileSketch sketch = new QuantileSketch(ACCURACY);
+        double[] exact = new double[count];
+        for (int i = 0; i < count; i++) {
+            exact[i] = values.getAsDouble();
+            sketch.add(exact[i]);
+        }
+        Arrays.sort(exact);
+
+        for (double q : QUANTILES) {
+            double expected = exact[(int) Math.floor(q * (count - 1))];
+            assertThat(Math.abs(sketch.quantile(q) - expected))
+                    .as("quantile %s of %s", q, expected)
+                    .isLessThanOrEqualTo(ACCURACY * Math.abs(expected) + 1e-4);
+        }
+    }
+}
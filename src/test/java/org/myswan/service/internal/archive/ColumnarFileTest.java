@@ -0,0 +1,184 @@
+package org.myswan.service.internal.archive;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnarFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsUncompressed() throws IOException {
+        assertRoundTrip(dir.resolve("plain.mscol"), false);
+    }
+
+    @Test
+    void roundTripsDeflated() throws IOException {
+        assertRoundTrip(dir.resolve("deflated.mscol"), true);
+    }
+
+    @Test
+    void stringColumnsAreDictionaryEncodedPerRowGroup() throws IOException {
+        Path path = dir.resolve("strings.mscol");
+        List<Document> first = new ArrayList<>();
+        List<Document> second = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            first.add(new Document("ticker", i % 2 == 0 ? "AAPL" : "MSFT").append("signal", i % 3 == 0 ? null : "BUY"));
+            second.add(new Document("ticker", i % 2 == 0 ? "NVDA" : "Zürich Ω").append("signal", "SELL"));
+        }
+        try (ColumnarFile.Writer writer = new ColumnarFile.Writer(path, null, "ticker", false)) {
+            writer.writeRowGroup(first);
+            writer.writeRowGroup(second);
+        }
+
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(path)) {
+            ColumnarFile.RowGroup group = reader.next();
+            assertThat(group.getMinKey()).isEqualTo("AAPL");
+            assertThat(group.getMaxKey()).isEqualTo("MSFT");
+            assertThat(group.column("ticker")).containsExactly(first.stream().map(d -> d.get("ticker")).toArray());
+            assertThat(group.column("signal")).containsExactly(first.stream().map(d -> d.get("signal")).toArray());
+
+            group = reader.next();
+            assertThat(group.getMinKey()).isEqualTo("NVDA");
+            assertThat(group.getMaxKey()).isEqualTo("ZÜRICH Ω");
+            assertThat(group.column("ticker")).containsExactly(second.stream().map(d -> d.get("ticker")).toArray());
+            assertThat(group.column("signal")).containsOnly("SELL");
+            assertThat(reader.next()).isNull();
+        }
+
+        // Null bitmap, a dictionary of the two tickers, then one int code per row
+        byte[] raw = ColumnarFile.encode(ColumnarFile.ColumnType.STRING,
+                first.stream().map(d -> d.get("ticker")).toArray());
+        assertThat(raw.length).isEqualTo(7 + 4 + 2 * (4 + 4) + 50 * 4);
+    }
+
+    @Test
+    void columnsAllNullInARowGroupAreLeftOutAndReadAsNull() throws IOException {
+        Path path = dir.resolve("sparse.mscol");
+        List<Document> withEarnings = List.of(
+                new Document("ticker", "AAPL").append("earningsDate", "2025-01-30").append("price", 1.5),
+                new Document("ticker", "AAPL").append("earningsDate", null).append("price", 2.5));
+        List<Document> withoutEarnings = List.of(
+                new Document("ticker", "MSFT").append("earningsDate", null).append("price", 3.5),
+                new Document("ticker", "MSFT").append("price", 4.5));
+        try (ColumnarFile.Writer writer = new ColumnarFile.Writer(path, null, "ticker", true)) {
+            writer.writeRowGroup(withEarnings);
+            writer.writeRowGroup(withoutEarnings);
+        }
+
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(path)) {
+            ColumnarFile.RowGroup group = reader.next();
+            assertThat(group.columnNames()).containsExactly("ticker", "earningsDate", "price");
+            assertThat(group.column("earningsDate")).containsExactly("2025-01-30", null);
+
+            group = reader.next();
+            assertThat(group.columnNames()).containsExactly("ticker", "price");
+            assertThat(group.column("earningsDate")).containsExactly(null, null);
+            assertThat(group.column("price")).containsExactly(3.5, 4.5);
+            BitSet all = new BitSet();
+            all.set(0, 2);
+            assertThat(group.rows(all)).containsExactly(
+                    new Document("ticker", "MSFT").append("price", 3.5),
+                    new Document("ticker", "MSFT").append("price", 4.5));
+        }
+    }
+
+    @Test
+    void rowGroupHeadersCarryTheDateRangeAndCountRowsSkipsBlocks() throws IOException {
+        Path path = dir.resolve("ranges.mscol");
+        LocalDate jan1 = LocalDate.of(2025, 1, 1);
+        List<Document> rows = new ArrayList<>();
+        for (int day = 0; day < 10; day++) {
+            rows.add(new Document("ticker", "AAPL").append("histDate", toDate(jan1.plusDays(day))));
+        }
+        List<Document> epochDays = List.of(new Document("ticker", "AAPL")
+                .append("histDate", Math.toIntExact(jan1.plusDays(40).toEpochDay())));
+        try (ColumnarFile.Writer writer = new ColumnarFile.Writer(path, "histDate", "ticker", true)) {
+            writer.writeRowGroup(rows);
+            writer.writeRowGroup(List.of());
+            writer.writeRowGroup(epochDays);
+            assertThat(writer.getRowsWritten()).isEqualTo(11);
+        }
+
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(path)) {
+            ColumnarFile.RowGroup group = reader.next();
+            assertThat(group.getMinEpochDay()).isEqualTo(jan1.toEpochDay());
+            assertThat(group.getMaxEpochDay()).isEqualTo(jan1.plusDays(9).toEpochDay());
+            group = reader.next();
+            assertThat(group.getMinEpochDay()).isEqualTo(jan1.plusDays(40).toEpochDay());
+            assertThat(group.getMaxEpochDay()).isEqualTo(jan1.plusDays(40).toEpochDay());
+            assertThat(reader.next()).isNull();
+        }
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(path)) {
+            assertThat(reader.countRows()).isEqualTo(11);
+        }
+    }
+
+    private static void assertRoundTrip(Path path, boolean compress) throws IOException {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 21; i++) {
+            Document rating = new Document("btRating", i % 4 == 0 ? null : "B" + (i % 3))
+                    .append("zacksRank", i % 5);
+            documents.add(new Document("ticker", i < 10 ? "aapl" : "MSFT")
+                    .append("histDate", toDate(LocalDate.of(2025, 3, 1).plusDays(i)))
+                    .append("price", i % 7 == 0 ? null : 100.25 + i)
+                    .append("volume", 1_000_000L * i)
+                    .append("myFavorite", i % 2 == 0)
+                    .append("rating", rating));
+        }
+        try (ColumnarFile.Writer writer = new ColumnarFile.Writer(path, "histDate", "ticker", compress)) {
+            writer.writeRowGroup(documents);
+        }
+
+        try (ColumnarFile.Reader reader = new ColumnarFile.Reader(path)) {
+            ColumnarFile.RowGroup group = reader.next();
+            assertThat(group.getRowCount()).isEqualTo(21);
+            assertThat(group.getMinKey()).isEqualTo("AAPL");
+            assertThat(group.getMaxKey()).isEqualTo("MSFT");
+            assertThat(group.columnNames())
+                    .containsExactlyInAnyOrder("ticker", "histDate", "price", "volume", "myFavorite", "rating.btRating", "rating.zacksRank");
+
+            BitSet all = new BitSet();
+            all.set(0, documents.size());
+            List<Document> read = group.rows(all);
+            for (int i = 0; i < documents.size(); i++) {
+                assertThat(read.get(i)).isEqualTo(withoutNulls(documents.get(i)));
+            }
+
+            BitSet some = new BitSet();
+            some.set(3);
+            some.set(14);
+            assertThat(group.rows(some)).containsExactly(withoutNulls(documents.get(3)), withoutNulls(documents.get(14)));
+            assertThat(reader.next()).isNull();
+        }
+    }
+
+    /** Null fields are not stored, so they come back absent */
+    private static Document withoutNulls(Document document) {
+        Document copy = new Document();
+        document.forEach((key, value) -> {
+            if (value instanceof Document nested) {
+                copy.put(key, withoutNulls(nested));
+            } else if (value != null) {
+                copy.put(key, value);
+            }
+        });
+        return copy;
+    }
+
+    private static Date toDate(LocalDate date) {
+        return ColumnarFile.toDate(date);
+    }
+}
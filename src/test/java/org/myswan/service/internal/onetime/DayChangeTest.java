@@ -0,0 +1,165 @@
+package org.myswan.service.internal.onetime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.myswan.model.collection.Stock;
+import org.myswan.model.compute.MetricsInfo;
+import org.myswan.model.compute.Score;
+import org.myswan.model.compute.SpikeSignal;
+import org.myswan.service.internal.HistoryRangeCache;
+import org.myswan.service.internal.StockService;
+import org.myswan.service.internal.store.MarketDataStore;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DayChangeTest {
+
+    private static final LocalDate JAN_1 = LocalDate.of(2025, 1, 1);
+
+    /** Ticker and session count: shorter than the horizon, exactly Day 0 plus ten, and longer */
+    private static final Map<String, Integer> SESSIONS = Map.of("AAPL", 25, "AMD", 4, "MSFT", 11, "NVDA", 1);
+
+    private StockService stockService;
+    private MarketDataStore store;
+    private DayChange dayChange;
+    private Map<String, MetricsInfo> written;
+    private Map<String, LocalDate> watermarks;
+
+    @BeforeEach
+    void setUp() {
+        stockService = mock(StockService.class);
+        store = mock(MarketDataStore.class);
+        dayChange = new DayChange(stockService, store, mock(HistoryRangeCache.class));
+        ReflectionTestUtils.setField(dayChange, "batchSize", 7);
+        ReflectionTestUtils.setField(dayChange, "writerCount", 2);
+
+        // Rebuild batches are written from several threads
+        written = new ConcurrentHashMap<>();
+        watermarks = Collections.synchronizedMap(new HashMap<>());
+        doAnswer(invocation -> {
+            List<Stock> rows = invocation.getArgument(0);
+            rows.forEach(row -> written.put(key(row), row.getMetricsInfo()));
+            return null;
+        }).when(store).updateMetrics(any());
+        doAnswer(invocation -> {
+            watermarks.put(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(store).saveMetricsWatermark(anyString(), any());
+    }
+
+    @Test
+    void rebuildMatchesThePerTickerComputation() {
+        when(stockService.listSnapshot()).thenReturn(SESSIONS.keySet().stream().map(DayChangeTest::current).toList());
+        when(stockService.getStockHistory(anyString(), isNull(), isNull())).thenAnswer(invocation -> {
+            List<Stock> newestFirst = history(invocation.getArgument(0));
+            Collections.reverse(newestFirst);
+            return newestFirst;
+        });
+        when(store.metricsWatermarks()).thenReturn(Map.of());
+        dayChange.computeDayChangeIncremental();
+        Map<String, MetricsInfo> perTicker = new HashMap<>(written);
+        Map<String, LocalDate> perTickerWatermarks = new HashMap<>(watermarks);
+
+        written.clear();
+        watermarks.clear();
+        doAnswer(invocation -> {
+            Consumer<Stock> action = invocation.getArgument(0);
+            SESSIONS.keySet().stream().sorted().flatMap(ticker -> history(ticker).stream()).forEach(action);
+            return null;
+        }).when(store).forEachHistoryByTicker(any());
+        dayChange.computeDayChangeForAllHistory();
+
+        assertThat(perTicker).hasSize(SESSIONS.values().stream().mapToInt(Integer::intValue).sum());
+        assertThat(written).isEqualTo(perTicker);
+        assertThat(watermarks).isEqualTo(perTickerWatermarks);
+    }
+
+    @Test
+    void rebuildFillsForwardReturnsAcrossTheHorizon() {
+        doAnswer(invocation -> {
+            Consumer<Stock> action = invocation.getArgument(0);
+            history("AAPL").forEach(action);
+            history("AMD").forEach(action);
+            return null;
+        }).when(store).forEachHistoryByTicker(any());
+
+        dayChange.computeDayChangeForAllHistory();
+
+        // AAPL prices rise by 1 a session from 100, except the zero-price session 7
+        MetricsInfo first = written.get("AAPL|" + JAN_1);
+        assertThat(first.getD1().getPriceDiff()).isEqualTo(1.0);
+        assertThat(first.getD1().getPriceChgPct()).isEqualTo(1.0);
+        assertThat(first.getD6().getPriceChgPct()).isEqualTo(-100.0);
+        assertThat(first.getD10().getPriceDiff()).isEqualTo(10.0);
+        assertThat(first.getDay0Factors()).contains("SCORE-DAYTRADE=60", "SPIKE-ISSPIKE=true");
+        assertThat(first.getDay0Code()).isNotEqualTo(0L);
+
+        // Day 0 price of zero: every day stays empty
+        MetricsInfo zero = written.get("AAPL|" + JAN_1.plusDays(6));
+        assertThat(zero.getD1().getPriceChgPct()).isEqualTo(0.0);
+        assertThat(zero.getD10().getPriceChgPct()).isEqualTo(0.0);
+
+        // The last AAPL session has no later ones; AMD's first price never reaches back into AAPL
+        MetricsInfo last = written.get("AAPL|" + JAN_1.plusDays(24));
+        assertThat(last.getD1().getPriceDiff()).isEqualTo(0.0);
+        MetricsInfo amd = written.get("AMD|" + JAN_1);
+        assertThat(amd.getD3().getPriceDiff()).isEqualTo(3.0);
+        assertThat(amd.getD4().getPriceDiff()).isEqualTo(0.0);
+
+        // Final once D10 is older than the newest session: AAPL day 14 (D10 = day 24 of 25); AMD none
+        assertThat(watermarks).containsEntry("AAPL", JAN_1.plusDays(13));
+        assertThat(watermarks).containsEntry("AMD", null);
+    }
+
+    private static String key(Stock row) {
+        return row.getTicker() + "|" + row.getHistDate();
+    }
+
+    private static Stock current(String ticker) {
+        Stock stock = new Stock();
+        stock.setTicker(ticker);
+        return stock;
+    }
+
+    /**
+     * Fresh rows of one ticker, oldest first. Prices climb by one a session, with a zero-price session
+     * at index 6 of the longer histories; scores and the spike flag vary so the factors differ per row.
+     */
+    private static List<Stock> history(String ticker) {
+        List<Stock> rows = new ArrayList<>();
+        for (int i = 0; i < SESSIONS.get(ticker); i++) {
+            Score score = new Score();
+            score.setDayTradingScore(60 + i % 40);
+            score.setSwingTradingScore(90 - i);
+            SpikeSignal spike = new SpikeSignal();
+            spike.setSpikeLikely(i % 3 == 0);
+
+            Stock row = new Stock();
+            row.setId(ticker + "_" + i);
+            row.setTicker(ticker);
+            row.setHistDate(JAN_1.plusDays(i));
+            row.setPrice(i == 6 ? 0 : 100 + i);
+            row.setScore(score);
+            row.setSpike(spike);
+            row.setNoOfLongPatterns(i % 2);
+            rows.add(row);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,109 @@
+package org.myswan.service.internal.store;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.myswan.model.collection.Rating;
+import org.myswan.model.collection.RatingVersion;
+import org.myswan.model.collection.Stock;
+import org.myswan.service.internal.archive.HistoryArchiveService;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RatingDimensionTest {
+
+    private static final LocalDate JAN_1 = LocalDate.of(2025, 1, 1);
+
+    private MongoTemplate mongoTemplate;
+    private RatingDimension dimension;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.findAll(RatingVersion.class)).thenReturn(new ArrayList<>());
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(RatingVersion.class)))
+                .thenReturn(mock(BulkOperations.class));
+        dimension = new RatingDimension(mongoTemplate, mock(HistoryArchiveService.class));
+    }
+
+    @Test
+    void appendAtTailClosesTheVersionInForce() {
+        List<Stock> days = rows(1, 10, "A");
+        dimension.record(days);
+        days.forEach(row -> dimension.detach(row, row.getHistDate()));
+
+        dimension.record(List.of(row(11, "B")));
+
+        assertThat(ratingOn(10)).isEqualTo("A");
+        assertThat(ratingOn(11)).isEqualTo("B");
+        assertThat(ratingOn(20)).isEqualTo("B");
+    }
+
+    @Test
+    void backfillInsideAVersionKeepsTheLaterSessions() {
+        List<Stock> days = rows(1, 10, "A");
+        dimension.record(days);
+        days.forEach(row -> dimension.detach(row, row.getHistDate()));
+        // Sessions 6-10 are stored after the backfilled one
+        when(mongoTemplate.findOne(any(Query.class), eq(Stock.class), eq("stockHistory"))).thenReturn(row(6, "A"));
+
+        dimension.record(List.of(row(5, "B")));
+
+        assertThat(ratingOn(4)).isEqualTo("A");
+        assertThat(ratingOn(5)).isEqualTo("B");
+        for (int day = 6; day <= 10; day++) {
+            assertThat(ratingOn(day)).isEqualTo("A");
+        }
+    }
+
+    @Test
+    void backfillOnTheFirstDayOfAVersionKeepsTheLaterSessions() {
+        dimension.record(rows(1, 4, "A"));
+        List<Stock> days = rows(5, 10, "B");
+        dimension.record(days);
+        days.forEach(row -> dimension.detach(row, row.getHistDate()));
+        when(mongoTemplate.findOne(any(Query.class), eq(Stock.class), eq("stockHistory"))).thenReturn(row(6, "B"));
+
+        dimension.record(List.of(row(5, "C")));
+
+        assertThat(ratingOn(4)).isEqualTo("A");
+        assertThat(ratingOn(5)).isEqualTo("C");
+        assertThat(ratingOn(6)).isEqualTo("B");
+        assertThat(ratingOn(10)).isEqualTo("B");
+    }
+
+    private String ratingOn(int day) {
+        Stock detached = new Stock();
+        detached.setTicker("AAPL");
+        dimension.fill(detached, JAN_1.plusDays(day - 1));
+        return detached.getRating() != null ? detached.getRating().getBtRating() : null;
+    }
+
+    private static List<Stock> rows(int fromDay, int toDay, String value) {
+        List<Stock> rows = new ArrayList<>();
+        for (int day = fromDay; day <= toDay; day++) {
+            rows.add(row(day, value));
+        }
+        return rows;
+    }
+
+    private static Stock row(int day, String value) {
+        Rating rating = new Rating();
+        rating.setBtRating(value);
+        Stock stock = new Stock();
+        stock.setTicker("AAPL");
+        stock.setHistDate(JAN_1.plusDays(day - 1));
+        stock.setRating(rating);
+        return stock;
+    }
+}